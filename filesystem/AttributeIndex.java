@@ -0,0 +1,132 @@
+package filesystem;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * A class of indexes ordering the files directly or indirectly in a directory
+ * by their size and by their modification time.
+ *
+ * The files are kept in sorted maps from a size or a modification time to the files
+ * having it, so range queries only visit the files in the range. The maps can be
+ * read while the index is being updated: a stream over the index reflects the
+ * changes made while it is consumed or not, but never fails because of them.
+ *
+ * @invar	Each file in this index is registered under its current size.
+ * @invar	Each file in this index that has a modification time is registered
+ * 			under its current modification time.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class AttributeIndex implements SubtreeIndex {
+
+	/**
+	 * Variable referencing the files in this index per size.
+	 */
+	private final ConcurrentSkipListMap<Integer, Set<File>> bySize =
+			new ConcurrentSkipListMap<Integer, Set<File>>();
+
+	/**
+	 * Variable referencing the files in this index that have a modification time,
+	 * per modification time in milliseconds.
+	 */
+	private final ConcurrentSkipListMap<Long, Set<File>> byModificationTime =
+			new ConcurrentSkipListMap<Long, Set<File>>();
+
+	/**
+	 * Return a stream over the files in this index with a size between the given
+	 * bounds (both inclusive), ordered by size.
+	 *
+	 * @param	descending
+	 * 			Whether the largest files come first.
+	 */
+	Stream<File> getFilesBySize(int minSize, int maxSize, boolean descending) {
+		if (minSize > maxSize)
+			return Stream.empty();
+		NavigableMap<Integer, Set<File>> range = bySize.subMap(minSize, true, maxSize, true);
+		return stream(descending ? range.descendingMap() : range);
+	}
+
+	/**
+	 * Return a stream over the files in this index with a modification time between
+	 * the given bounds in milliseconds (both inclusive), ordered by modification time.
+	 *
+	 * @param	descending
+	 * 			Whether the most recently modified files come first.
+	 */
+	Stream<File> getFilesByModificationTime(long from, long to, boolean descending) {
+		if (from > to)
+			return Stream.empty();
+		NavigableMap<Long, Set<File>> range = byModificationTime.subMap(from, true, to, true);
+		return stream(descending ? range.descendingMap() : range);
+	}
+
+	/**
+	 * Return a lazy stream over the files in the given map, in the order of its keys.
+	 */
+	private static Stream<File> stream(NavigableMap<?, Set<File>> map) {
+		return map.values().stream().flatMap(Set::stream);
+	}
+
+	@Override
+	public synchronized void fileAdded(File file) {
+		add(bySize, file.getSize(), file);
+		if (file.getModificationTime() != null)
+			add(byModificationTime, file.getModificationTime().getTime(), file);
+	}
+
+	@Override
+	public synchronized void fileRemoved(File file) {
+		if (remove(bySize, file.getSize(), file) && file.getModificationTime() != null)
+			remove(byModificationTime, file.getModificationTime().getTime(), file);
+	}
+
+	@Override
+	public synchronized void fileResized(File file, int oldSize) {
+		if (remove(bySize, oldSize, file))
+			add(bySize, file.getSize(), file);
+	}
+
+	@Override
+	public synchronized void fileModified(File file, Date oldTime) {
+		if (!contains(bySize, file.getSize(), file))
+			return;
+		if (oldTime != null)
+			remove(byModificationTime, oldTime.getTime(), file);
+		if (file.getModificationTime() != null)
+			add(byModificationTime, file.getModificationTime().getTime(), file);
+	}
+
+	/**
+	 * Register the given file under the given key in the given map.
+	 */
+	private static <K> void add(ConcurrentSkipListMap<K, Set<File>> map, K key, File file) {
+		map.computeIfAbsent(key, k -> ConcurrentHashMap.<File>newKeySet()).add(file);
+	}
+
+	/**
+	 * Unregister the given file from the given key in the given map.
+	 *
+	 * @return	True if and only if the file was registered under the given key.
+	 */
+	private static <K> boolean remove(ConcurrentSkipListMap<K, Set<File>> map, K key, File file) {
+		Set<File> files = map.get(key);
+		if (files == null || !files.remove(file))
+			return false;
+		if (files.isEmpty())
+			map.remove(key, files);
+		return true;
+	}
+
+	/**
+	 * Check whether the given file is registered under the given key in the given map.
+	 */
+	private static <K> boolean contains(ConcurrentSkipListMap<K, Set<File>> map, K key, File file) {
+		Set<File> files = map.get(key);
+		return files != null && files.contains(file);
+	}
+
+}
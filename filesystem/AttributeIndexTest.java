@@ -0,0 +1,100 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the size and modification time index of the Directory Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class AttributeIndexTest {
+
+	Directory root;
+	Directory sub;
+	Directory other;
+	File small;
+	File medium;
+	File large;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		other = new Directory(root, "other");
+		small = new File(sub, "klein", Type.TEXT, 10, true);
+		medium = new File(sub, "middel", Type.JAVA, 100, true);
+		large = new File(other, "groot", Type.PDF, 1000, true);
+	}
+
+	private List<File> collect(java.util.stream.Stream<File> files) {
+		return files.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testGetFilesBySize_indexedAndWalked() {
+		List<File> walked = collect(root.getFilesBySize(50, 5000));
+		root.enableAttributeIndex();
+		assertTrue(root.hasAttributeIndex());
+		assertEquals(Arrays.asList(medium, large), collect(root.getFilesBySize(50, 5000)));
+		assertEquals(walked, collect(root.getFilesBySize(50, 5000)));
+		assertEquals(Arrays.asList(large, medium), collect(root.getLargestFiles(2)));
+	}
+
+	@Test
+	public void testAttributeIndex_resizeMoveAndTerminate() {
+		root.enableAttributeIndex();
+		small.enlarge(2000);
+		assertEquals(Arrays.asList(small, large), collect(root.getLargestFiles(2)));
+		large.move(sub);
+		large.changeName("grootst");
+		assertEquals(3, root.getFilesBySize(0, Integer.MAX_VALUE).count());
+		sub.makeRoot();
+		assertEquals(0, root.getFilesBySize(0, Integer.MAX_VALUE).count());
+		medium.terminate();
+		assertEquals(Arrays.asList(large, small), collect(sub.getFilesBySize(0, Integer.MAX_VALUE)));
+	}
+
+	@Test
+	public void testAttributeIndex_createDirectory() {
+		root.enableAttributeIndex();
+		Directory created = new Directory(sub, "nieuw");
+		File inside = new File(created, "binnen", Type.TEXT, 500, true);
+		assertTrue(sub.hasProperItems());
+		assertEquals(Arrays.asList(large, inside), collect(root.getLargestFiles(2)));
+		inside.terminate();
+		created.terminate();
+		assertEquals(3, root.getFilesBySize(0, Integer.MAX_VALUE).count());
+	}
+
+	@Test
+	public void testGetFilesModifiedBetween() throws InterruptedException {
+		root.enableAttributeIndex();
+		assertEquals(0, root.getLeastRecentlyModifiedFiles(3).count());
+		medium.enlarge(1);
+		Thread.sleep(5);
+		Date between = new Date();
+		Thread.sleep(5);
+		small.enlarge(1);
+		large.enlarge(1);
+		assertEquals(Arrays.asList(medium), collect(root.getFilesModifiedBetween(new Date(0), between)));
+		assertEquals(medium, root.getLeastRecentlyModifiedFiles(1).findFirst().get());
+		assertEquals(2, root.getFilesModifiedBetween(between, new Date()).count());
+		medium.enlarge(1);
+		assertEquals(0, root.getFilesModifiedBetween(new Date(0), between).count());
+		root.disableAttributeIndex();
+		assertEquals(3, root.getFilesModifiedBetween(between, new Date()).count());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGetLargestFiles_negativeNumber() {
+		root.getLargestFiles(-1);
+	}
+
+}
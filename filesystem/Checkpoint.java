@@ -0,0 +1,496 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.exception.UnvalidLinkException;
+
+/**
+ * A class of checkpoints of the trees attached to a journal.
+ *
+ * A checkpoint is captured at a point where no mutation is in progress, for instance
+ * by the thread performing the mutations, in between two of them. Capturing only encodes
+ * the names, types, sizes, timestamps, writability, parent relations and link relations
+ * of all items in memory; the captured state is then written to disk by write(Path),
+ * possibly by another thread, while the trees continue to be mutated.
+ * Once the checkpoint is durable, the records of the journal it covers are removed.
+ *
+ * A checkpoint file consists of a header followed by a stream of chunks. Each chunk
+ * holds a number of item records and is sealed with a checksum; an empty chunk marks
+ * the end of the checkpoint.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class Checkpoint {
+
+	/**********************************************************
+	 * File format
+	 **********************************************************/
+
+	/**
+	 * Constant registering the magic number identifying a checkpoint file.
+	 */
+	private static final int MAGIC = 0x46434B50;
+
+	/**
+	 * Constant registering the version of the checkpoint format.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Constant registering the number of bytes above which a chunk is closed.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Constants registering the kinds of item records.
+	 */
+	private static final byte ROOT = 0, DIRECTORY = 1, FILE = 2, DIRECTORY_LINK = 3, FILE_LINK = 4;
+
+	/**
+	 * Constant registering a missing modification time.
+	 */
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Constants registering the target of a link that is not in a captured tree, and the
+	 * target of a link that is no longer valid because its target has been terminated.
+	 */
+	private static final int NO_TARGET = -1, INVALID_TARGET = -2;
+
+	/**********************************************************
+	 * Capturing
+	 **********************************************************/
+
+	/**
+	 * Capture a checkpoint of all trees attached to the given journal.
+	 *
+	 * @param	journal
+	 * 			The journal to capture the attached trees of.
+	 * @return	A checkpoint covering all records appended to the given journal so far.
+	 * 			| result.getSequenceNumber() == journal.getLastSequenceNumber()
+	 * @note	No mutation may be in progress while the checkpoint is captured.
+	 * @throws	IllegalArgumentException
+	 * 			The given journal is not effective.
+	 * 			| journal == null
+	 */
+	public static Checkpoint capture(Journal journal) throws IllegalArgumentException {
+		if (journal == null)
+			throw new IllegalArgumentException();
+		return new Checkpoint(journal);
+	}
+
+	/**
+	 * Check whether a new checkpoint of the given journal is due.
+	 *
+	 * @param	journal
+	 * 			The journal to check.
+	 * @param	maximumRecords
+	 * 			The maximum number of records to replay after a crash.
+	 * @return	True if and only if the given journal holds more than the given number of records.
+	 * 			| result == (journal.getLastSequenceNumber() - journal.getBaseSequenceNumber() > maximumRecords)
+	 */
+	public static boolean isDue(Journal journal, long maximumRecords) {
+		return journal.getLastSequenceNumber() - journal.getBaseSequenceNumber() > maximumRecords;
+	}
+
+	/**
+	 * Initialize a new checkpoint, capturing the trees attached to the given journal.
+	 */
+	private Checkpoint(Journal journal) {
+		this.journal = journal;
+		this.sequenceNumber = journal.getLastSequenceNumber();
+		this.nextRootNumber = journal.getNextRootNumber();
+		Map<Integer, Directory> roots = journal.getRootsByNumber();
+		// the link targets and directories are the only items referred to by other records
+		Map<Item, Integer> indices = new IdentityHashMap<Item, Integer>();
+		List<Link> links = new ArrayList<Link>();
+		for (Map.Entry<Integer, Directory> entry : roots.entrySet()) {
+			indices.put(entry.getValue(), nbItems);
+			putRecord(entry.getValue(), ROOT, entry.getKey());
+			ArrayDeque<Directory> stack = new ArrayDeque<Directory>();
+			stack.push(entry.getValue());
+			while (!stack.isEmpty()) {
+				Directory directory = stack.pop();
+				int parent = indices.get(directory);
+				for (int i = 1; i <= directory.getNbItems(); i++) {
+					Item item = directory.getItemAt(i);
+					if (item instanceof Link) {
+						links.add((Link) item);
+					} else {
+						indices.put(item, nbItems);
+						if (item instanceof Directory) {
+							stack.push((Directory) item);
+							putRecord(item, DIRECTORY, parent);
+						} else {
+							putRecord(item, FILE, parent);
+						}
+					}
+				}
+			}
+		}
+		for (Link link : links) {
+			byte kind = link instanceof DirectoryLink ? DIRECTORY_LINK : FILE_LINK;
+			putRecord(link, kind, indices.get(link.getParentDirectory()));
+			try {
+				Integer index = indices.get(link.getRefDiskItem());
+				chunk().putInt(index == null ? NO_TARGET : index);
+			} catch (UnvalidLinkException e) {
+				chunk().putInt(INVALID_TARGET);
+			}
+		}
+		closeChunk();
+	}
+
+	/**
+	 * Variable referencing the journal of this checkpoint.
+	 */
+	private final Journal journal;
+
+	/**
+	 * Variable registering the sequence number of the last journal record covered by this checkpoint.
+	 */
+	private final long sequenceNumber;
+
+	/**
+	 * Variable registering the number for the next root directory when this checkpoint was captured.
+	 */
+	private final int nextRootNumber;
+
+	/**
+	 * Variable registering the number of captured items.
+	 */
+	private int nbItems = 0;
+
+	/**
+	 * Variable referencing the closed chunks of this checkpoint.
+	 */
+	private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+	/**
+	 * Variable referencing the chunk being filled.
+	 */
+	private ByteBuffer chunk = null;
+
+	/**
+	 * Variable registering the number of records in the chunk being filled.
+	 */
+	private int nbRecordsInChunk = 0;
+
+	/**
+	 * Return the sequence number of the last journal record covered by this checkpoint.
+	 */
+	@Basic @Immutable
+	public long getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	/**
+	 * Return the number of items captured in this checkpoint.
+	 */
+	@Basic @Immutable
+	public int getNbItems() {
+		return nbItems;
+	}
+
+	/**
+	 * Return the chunk being filled, making sure it can hold at least one more record.
+	 */
+	private ByteBuffer chunk() {
+		if (chunk == null)
+			chunk = ByteBuffer.allocate(CHUNK_SIZE + 4 * 1024);
+		return chunk;
+	}
+
+	/**
+	 * Append a record of the given item, of the given kind and with the given parent index
+	 * (or root number), to the chunk being filled.
+	 */
+	private void putRecord(Item item, byte kind, int parent) {
+		if (chunk != null && chunk.position() >= CHUNK_SIZE)
+			closeChunk();
+		byte[] name = item.getName().getBytes(StandardCharsets.US_ASCII);
+		if (chunk().remaining() < name.length + 64) {
+			ByteBuffer larger = ByteBuffer.allocate(chunk.position() + name.length + 64);
+			chunk.flip();
+			larger.put(chunk);
+			chunk = larger;
+		}
+		chunk.put(kind).putInt(parent).putShort((short) name.length).put(name);
+		chunk.put((byte) (item.isWritable() ? 1 : 0));
+		chunk.putLong(item.getCreationTime().getTime());
+		chunk.putLong(item.getModificationTime() == null ? NO_TIME : item.getModificationTime().getTime());
+		if (item instanceof File)
+			chunk.put((byte) ((File) item).getType().ordinal()).putInt(((File) item).getSize());
+		nbItems++;
+		nbRecordsInChunk++;
+	}
+
+	/**
+	 * Close the chunk being filled, if it holds any record.
+	 */
+	private void closeChunk() {
+		if (chunk != null && nbRecordsInChunk > 0) {
+			chunk.flip();
+			ByteBuffer sealed = ByteBuffer.allocate(chunk.remaining() + 12);
+			CRC32 crc = new CRC32();
+			crc.update(chunk.duplicate());
+			sealed.putInt(nbRecordsInChunk).putInt(chunk.remaining()).put(chunk).putInt((int) crc.getValue());
+			sealed.flip();
+			chunks.add(sealed);
+		}
+		chunk = null;
+		nbRecordsInChunk = 0;
+	}
+
+	/**********************************************************
+	 * Writing
+	 **********************************************************/
+
+	/**
+	 * Write this checkpoint to the file at the given path and, once it is durable,
+	 * remove the records covered by it from its journal.
+	 *
+	 * @param	path
+	 * 			The path of the checkpoint file.
+	 * @post	The file at the given path holds this checkpoint.
+	 * @post	| journal.getBaseSequenceNumber() >= getSequenceNumber()
+	 * @throws	IllegalArgumentException
+	 * 			The given path is not effective.
+	 * 			| path == null
+	 * @throws	IOException
+	 * 			The checkpoint could not be written, or the journal could not be truncated.
+	 */
+	public void write(Path path) throws IllegalArgumentException, IOException {
+		if (path == null)
+			throw new IllegalArgumentException();
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(24);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(sequenceNumber).putInt(nextRootNumber).putInt(nbItems);
+			header.flip();
+			writeFully(channel, header);
+			for (ByteBuffer each : chunks)
+				writeFully(channel, each.duplicate());
+			writeFully(channel, ByteBuffer.allocate(12));
+			channel.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		// the checkpoint is durable: the journal records it covers are no longer needed
+		journal.sync();
+		if (sequenceNumber > journal.getBaseSequenceNumber())
+			journal.truncateUpTo(sequenceNumber);
+	}
+
+	/**
+	 * Write this checkpoint to the file at the given path using the given executor.
+	 *
+	 * @param	path
+	 * 			The path of the checkpoint file.
+	 * @param	executor
+	 * 			The executor to write the checkpoint with.
+	 * @return	A future that completes when the checkpoint has been written.
+	 * @effect	| write(path)
+	 */
+	public Future<?> writeAsync(Path path, ExecutorService executor) {
+		return executor.submit(() -> {
+			write(path);
+			return null;
+		});
+	}
+
+	/**
+	 * Write all remaining bytes of the given buffer to the given channel.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/**********************************************************
+	 * Restoring
+	 **********************************************************/
+
+	/**
+	 * Rebuild the trees stored in the checkpoint file at the given path, and replay
+	 * the records of the journal at the given path that are not covered by it.
+	 *
+	 * @param	checkpoint
+	 * 			The path of the checkpoint file.
+	 * @param	journal
+	 * 			The path of the journal file.
+	 * @effect	| restore(checkpoint).replay(journal)
+	 */
+	public static Recovery recover(Path checkpoint, Path journal)
+			throws IllegalArgumentException, IOException, IllegalStateException {
+		Recovery recovery = restore(checkpoint);
+		recovery.replay(journal);
+		return recovery;
+	}
+
+	/**
+	 * Rebuild the trees stored in the checkpoint file at the given path.
+	 *
+	 * @param	path
+	 * 			The path of the checkpoint file.
+	 * @return	A recovery holding the rebuilt trees, that has applied all journal
+	 * 			records covered by the checkpoint.
+	 * @throws	IllegalArgumentException
+	 * 			The given path is not effective.
+	 * 			| path == null
+	 * @throws	IOException
+	 * 			The file could not be read, is not a checkpoint file or is incomplete.
+	 */
+	public static Recovery restore(Path path) throws IllegalArgumentException, IOException {
+		if (path == null)
+			throw new IllegalArgumentException();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = readFully(channel, 24);
+			if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION)
+				throw new IOException("Not a checkpoint file");
+			Recovery recovery = new Recovery();
+			recovery.setLastAppliedSequenceNumber(header.getLong());
+			int nextRootNumber = header.getInt();
+			int nbItems = header.getInt();
+			Restorer restorer = new Restorer(recovery, nbItems);
+			while (true) {
+				ByteBuffer sizes = readFully(channel, 8);
+				int nbRecords = sizes.getInt();
+				int length = sizes.getInt();
+				ByteBuffer records = readFully(channel, length + 4);
+				if (nbRecords == 0)
+					break;
+				int checksum = records.getInt(length);
+				records.limit(length);
+				CRC32 crc = new CRC32();
+				crc.update(records.duplicate());
+				if ((int) crc.getValue() != checksum)
+					throw new IOException("Corrupt checkpoint chunk");
+				for (int i = 0; i < nbRecords; i++)
+					restorer.restore(records);
+			}
+			if (restorer.getNbRestored() != nbItems)
+				throw new IOException("Incomplete checkpoint");
+			restorer.finish();
+			recovery.reserveRootNumbersBefore(nextRootNumber);
+			return recovery;
+		}
+	}
+
+	/**
+	 * Read the given number of bytes from the given channel.
+	 *
+	 * @throws	IOException
+	 * 			The channel ends before the given number of bytes.
+	 */
+	private static ByteBuffer readFully(FileChannel channel, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) < 0)
+				throw new IOException("Incomplete checkpoint");
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * A class rebuilding items from checkpoint records.
+	 */
+	private static final class Restorer {
+
+		private Restorer(Recovery recovery, int nbItems) {
+			this.recovery = recovery;
+			this.items = new Item[nbItems];
+			this.creationTimes = new long[nbItems];
+			this.modificationTimes = new long[nbItems];
+		}
+
+		private final Recovery recovery;
+
+		private final Item[] items;
+
+		private final long[] creationTimes;
+
+		private final long[] modificationTimes;
+
+		private final List<Directory> nonWritable = new ArrayList<Directory>();
+
+		private int nbRestored = 0;
+
+		private int getNbRestored() {
+			return nbRestored;
+		}
+
+		/**
+		 * Rebuild the item of the next record in the given buffer. Directories are
+		 * created writable; their writability is restored by finish().
+		 */
+		private void restore(ByteBuffer records) throws IOException {
+			if (nbRestored >= items.length)
+				throw new IOException("Corrupt checkpoint");
+			byte kind = records.get();
+			int parent = records.getInt();
+			String name = JournalReader.getName(records);
+			boolean writable = records.get() != 0;
+			creationTimes[nbRestored] = records.getLong();
+			modificationTimes[nbRestored] = records.getLong();
+			Item item;
+			switch (kind) {
+			case ROOT:
+				item = new Directory(name);
+				recovery.addRoot(parent, (Directory) item);
+				break;
+			case DIRECTORY:
+				item = new Directory((Directory) items[parent], name);
+				break;
+			case FILE:
+				Type type = Type.values()[records.get()];
+				item = new File((Directory) items[parent], name, type, records.getInt(), writable);
+				break;
+			case DIRECTORY_LINK:
+			case FILE_LINK:
+				int target = records.getInt();
+				DiskItem refDiskItem = target < 0 ? Recovery.newUnknownTarget(kind == DIRECTORY_LINK)
+						: (DiskItem) items[target];
+				if (kind == DIRECTORY_LINK)
+					item = new DirectoryLink(name, (Directory) refDiskItem, (Directory) items[parent]);
+				else
+					item = new FileLink(name, (File) refDiskItem, (Directory) items[parent]);
+				if (target == INVALID_TARGET)
+					Recovery.invalidate((Link) item);
+				break;
+			default:
+				throw new IOException("Corrupt checkpoint record");
+			}
+			if (item instanceof Directory && !writable)
+				nonWritable.add((Directory) item);
+			items[nbRestored++] = item;
+		}
+
+		/**
+		 * Restore the writability of the directories and the timestamps of all items.
+		 * This happens last, because creating items changes the writability requirements
+		 * and the modification times of their parents.
+		 */
+		private void finish() {
+			for (Directory directory : nonWritable)
+				directory.setWritable(false);
+			for (int i = 0; i < nbRestored; i++)
+				items[i].restoreTimes(new Date(creationTimes[i]),
+						modificationTimes[i] == NO_TIME ? null : new Date(modificationTimes[i]));
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import org.junit.*;
+
+import filesystem.exception.UnvalidLinkException;
+
+/**
+ * A JUnit test class for testing the public methods of the Checkpoint Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class CheckpointTest {
+
+	Path journalPath;
+	Path checkpointPath;
+	Journal journal;
+	Directory root;
+	Directory sub;
+	File file;
+
+	@Before
+	public void setUpFixture() throws IOException {
+		journalPath = Files.createTempFile("journal", ".log");
+		checkpointPath = Files.createTempFile("checkpoint", ".ckp");
+		Files.delete(journalPath);
+		journal = Journal.open(journalPath);
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		journal.attach(root);
+		file = new File(sub, "bestand", Type.JAVA, 10, true);
+		new FileLink("link", file, root);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		journal.close();
+		Files.deleteIfExists(journalPath);
+		Files.deleteIfExists(checkpointPath);
+	}
+
+	@Test
+	public void testWrite_truncatesJournal() throws IOException {
+		Checkpoint checkpoint = Checkpoint.capture(journal);
+		assertEquals(journal.getLastSequenceNumber(), checkpoint.getSequenceNumber());
+		assertEquals(4, checkpoint.getNbItems());
+		checkpoint.write(checkpointPath);
+		assertEquals(checkpoint.getSequenceNumber(), journal.getBaseSequenceNumber());
+		assertFalse(Checkpoint.isDue(journal, 0));
+		file.enlarge(1);
+		assertTrue(Checkpoint.isDue(journal, 0));
+	}
+
+	@Test
+	public void testRestore() throws IOException {
+		Date created = file.getCreationTime();
+		sub.setWritable(false);
+		Checkpoint.capture(journal).write(checkpointPath);
+		Recovery recovery = Checkpoint.restore(checkpointPath);
+		assertEquals(journal.getLastSequenceNumber(), recovery.getLastAppliedSequenceNumber());
+		Directory recovered = recovery.getRoots().iterator().next();
+		Directory recoveredSub = (Directory) recovered.getItem("sub");
+		File recoveredFile = (File) recoveredSub.getItem("bestand");
+		assertFalse(recoveredSub.isWritable());
+		assertEquals(10, recoveredFile.getSize());
+		assertEquals(created, recoveredFile.getCreationTime());
+		assertSame(recoveredFile, ((Link) recovered.getItem("link")).getRefDiskItem());
+	}
+
+	@Test
+	public void testRestore_invalidLink() throws IOException {
+		File target = new File(sub, "doel", Type.TEXT);
+		new FileLink("ongeldig", target, root);
+		new FileLink("extern", new File(new Directory("buiten"), "ver", Type.TEXT), root);
+		target.terminate();
+		Checkpoint.capture(journal).write(checkpointPath);
+		Directory recovered = Checkpoint.restore(checkpointPath).getRoots().iterator().next();
+		try {
+			((Link) recovered.getItem("ongeldig")).getRefDiskItem();
+			fail();
+		} catch (UnvalidLinkException e) {
+		}
+		assertNotNull(((Link) recovered.getItem("extern")).getRefDiskItem());
+		assertSame(((Directory) recovered.getItem("sub")).getItem("bestand"), ((Link) recovered.getItem("link")).getRefDiskItem());
+	}
+
+	@Test
+	public void testRecover_replaysSuffix() throws IOException {
+		Checkpoint checkpoint = Checkpoint.capture(journal);
+		file.enlarge(5);
+		file.changeName("hernoemd");
+		checkpoint.write(checkpointPath);
+		journal.sync();
+		Recovery recovery = Checkpoint.recover(checkpointPath, journalPath);
+		Directory recovered = recovery.getRoots().iterator().next();
+		File recoveredFile = (File) ((Directory) recovered.getItem("sub")).getItem("hernoemd");
+		assertEquals(15, recoveredFile.getSize());
+		assertEquals(journal.getLastSequenceNumber(), recovery.getLastAppliedSequenceNumber());
+	}
+
+	@Test(expected = IOException.class)
+	public void testRestore_notACheckpoint() throws IOException {
+		Files.write(checkpointPath, new byte[] { 1, 2, 3 });
+		Checkpoint.restore(checkpointPath);
+	}
+
+}
@@ -0,0 +1,209 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import filesystem.exception.*;
+
+/**
+ * A JUnit test class for testing the copies of the Directory Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class CopyTest {
+
+	Directory root;
+	Directory src;
+	Directory lib;
+	File main;
+	File readme;
+	File util;
+	FileLink link;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		src = new Directory(root, "src");
+		lib = new Directory(src, "lib");
+		main = new File(src, "Main", Type.JAVA, 100, true);
+		readme = new File(src, "readme", Type.TEXT, 20, false);
+		util = new File(lib, "Util", Type.JAVA, 50, true);
+		link = new FileLink("hoofd", main, src);
+	}
+
+	@Test
+	public void testCopyTo_legalCase() {
+		Directory copy = src.copyTo(root, "kopie");
+		assertSame(root, copy.getParentDirectory());
+		assertSame(copy, root.getItem("kopie"));
+		assertFalse(copy.hasPendingCopy());
+		assertEquals(src.getNbItems(), copy.getNbItems());
+		for (int i = 1; i <= src.getNbItems(); i++) {
+			assertEquals(src.getItemAt(i).getName(), copy.getItemAt(i).getName());
+			assertNotSame(src.getItemAt(i), copy.getItemAt(i));
+			assertSame(copy, copy.getItemAt(i).getParentDirectory());
+		}
+		File copiedReadme = (File) copy.getItem("readme");
+		assertEquals(Type.TEXT, copiedReadme.getType());
+		assertEquals(20, copiedReadme.getSize());
+		assertFalse(copiedReadme.isWritable());
+		assertNull(copiedReadme.getModificationTime());
+		assertEquals(copy.getCreationTime(), copiedReadme.getCreationTime());
+		assertSame(main, ((Link) copy.getItem("hoofd")).getRefDiskItem());
+		Directory copiedLib = (Directory) copy.getItem("lib");
+		assertEquals(50, ((File) copiedLib.getItem("util")).getSize());
+		assertEquals(3, copiedLib.getItem("util").getDepth());
+		assertTrue(copy.isDirectOrIndirectParentOf(copiedLib.getItem("util")));
+		assertTrue(copy.hasProperItems());
+		assertTrue(copiedLib.hasProperItems());
+		assertEquals(340, root.getTotalDiskUsage());
+		assertEquals(12, root.getNbDescendants());
+		assertEquals(1, copy.getNbNotWritableDescendants());
+		assertNotNull(root.getModificationTime());
+	}
+
+	@Test
+	public void testCopyTo_independentOfSource() {
+		Directory copy = src.copyTo(root, "kopie");
+		main.enlarge(10);
+		util.changeName("Helper");
+		new File(lib, "Extra", Type.JAVA);
+		((File) copy.getItem("main")).shorten(100);
+		assertEquals(110, main.getSize());
+		assertEquals(0, ((File) copy.getItem("main")).getSize());
+		Directory copiedLib = (Directory) copy.getItem("lib");
+		assertEquals(1, copiedLib.getNbItems());
+		assertEquals("Util", copiedLib.getItemAt(1).getName());
+		assertEquals(2, lib.getNbItems());
+	}
+
+	@Test
+	public void testCopyTo_copyOnWrite() {
+		Directory copy = src.copyTo(root, "kopie", true);
+		assertTrue(copy.hasPendingCopy());
+		assertEquals(170, copy.getTotalDiskUsage());
+		assertEquals(5, copy.getNbDescendants());
+		assertEquals(340, root.getTotalDiskUsage());
+		util.enlarge(5);
+		new File(src, "Extra", Type.JAVA);
+		assertEquals(4, copy.getNbItems());
+		assertFalse(copy.hasPendingCopy());
+		Directory copiedLib = (Directory) copy.getItem("lib");
+		assertTrue(copiedLib.hasPendingCopy());
+		assertEquals(2, copiedLib.getDepth());
+		File copiedUtil = new File(copiedLib, "Nieuw", Type.JAVA, 7, true);
+		assertFalse(copiedLib.hasPendingCopy());
+		assertEquals(2, copiedLib.getNbItems());
+		assertSame(copiedUtil, copiedLib.getItemAt(1));
+		assertEquals(50, ((File) copiedLib.getItem("util")).getSize());
+		assertEquals(177, copy.getTotalDiskUsage());
+		assertEquals(57, copiedLib.getTotalDiskUsage());
+	}
+
+	@Test
+	public void testCopyTo_copyOnWriteMoved() {
+		Directory copy = src.copyTo(root, "kopie", true);
+		Directory other = new Directory(root, "ander");
+		copy.move(other);
+		Directory copiedLib = (Directory) copy.getItem("lib");
+		assertEquals(4, copiedLib.getItem("util").getDepth());
+		assertTrue(other.isDirectOrIndirectParentOf(copiedLib.getItem("util")));
+		assertTrue(copy.snapshot().getItem("lib") instanceof DirectorySnapshot);
+	}
+
+	@Test
+	public void testCopyTo_invalidLink() {
+		File target = new File(src, "doel", Type.TEXT);
+		new FileLink("ongeldig", target, src);
+		target.terminate();
+		for (boolean copyOnWrite : new boolean[] { false, true }) {
+			Directory copy = src.copyTo(root, copyOnWrite ? "lui" : "kopie", copyOnWrite);
+			Link copiedLink = (Link) copy.getItem("ongeldig");
+			try {
+				copiedLink.getRefDiskItem();
+				fail();
+			} catch (UnvalidLinkException e) {
+				assertSame(copiedLink, e.getLink());
+			}
+			assertSame(main, ((Link) copy.getItem("hoofd")).getRefDiskItem());
+		}
+	}
+
+	@Test
+	public void testCopyTo_copyOnWriteUnderIndex() {
+		root.enableTypeIndex();
+		Directory copy = src.copyTo(root, "kopie", true);
+		assertFalse(copy.hasPendingCopy());
+		for (Item item : copy.getRegisteredItems())
+			if (item instanceof Directory)
+				assertFalse(((Directory) item).hasPendingCopy());
+		assertEquals(4, root.getNbFilesOfType(Type.JAVA));
+		assertEquals(300, root.getTotalSizeOfType(Type.JAVA));
+		((File) ((Directory) copy.getItem("lib")).getItem("util")).enlarge(10);
+		assertEquals(310, root.getTotalSizeOfType(Type.JAVA));
+	}
+
+	@Test
+	public void testCopyTo_intoOwnSubtree() {
+		Directory copy = src.copyTo(lib, "kopie");
+		assertSame(copy, lib.getItem("kopie"));
+		assertEquals(1, ((Directory) copy.getItem("lib")).getNbItems());
+		assertEquals(3, copy.getDepth());
+		assertEquals(170, copy.getTotalDiskUsage());
+		assertEquals(340, src.getTotalDiskUsage());
+	}
+
+	@Test
+	public void testCopyTo_illegalCases() {
+		try {
+			src.copyTo(root, "SRC");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			src.copyTo(null, "kopie");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			src.copyTo(root, "geen naam");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		Directory closed = new Directory(root, "dicht", false);
+		try {
+			src.copyTo(closed, "kopie");
+			fail();
+		} catch (ItemNotWritableException e) {
+			assertSame(closed, e.getItem());
+		}
+		root.setByteQuota(300);
+		try {
+			src.copyTo(root, "kopie");
+			fail();
+		} catch (QuotaExceededException e) {
+			assertSame(root, e.getDirectory());
+		}
+		assertFalse(root.exists("kopie"));
+		assertEquals(7, root.getNbDescendants());
+		assertEquals(170, root.getTotalDiskUsage());
+	}
+
+	@Test
+	public void testCopyTo_inReadView() throws InterruptedException {
+		try (Versions.ReadView view = Versions.pin()) {
+			Thread thread = new Thread(() -> src.copyTo(root, "kopie", true));
+			thread.start();
+			thread.join();
+			assertFalse(root.exists("kopie"));
+			assertEquals(1, root.getNbItems());
+		}
+		Directory copy = (Directory) root.getItem("kopie");
+		try (Versions.ReadView view = Versions.pin()) {
+			assertEquals(4, copy.getNbItems());
+			assertEquals(50, ((File) ((Directory) copy.getItem("lib")).getItem("util")).getSize());
+		}
+	}
+
+}
@@ -1,6 +1,12 @@
 package filesystem;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 import be.kuleuven.cs.som.annotate.*;
 
@@ -71,7 +77,8 @@ public class Directory extends DiskItem {
 	 */
 	public Directory(Directory parent, String name, boolean writable) 
 			throws IllegalArgumentException, ItemNotWritableException {
-		super(parent,name,writable);    
+		super(parent,name,writable);
+		fireItemCreated();
 	}
 
 	/**
@@ -91,6 +98,29 @@ public class Directory extends DiskItem {
 		this(parent,name,true);    
 	}    
 
+	/**
+	 * Initialize a new directory in the given parent directory as a copy of the
+	 * directory of which the given snapshot was taken, with the given name and
+	 * creation time.
+	 * 
+	 * @effect	| super(parent, name, source, creationTime)
+	 * @post	| new.getNbDescendants() == source.getNbDescendants()
+	 * @post	| new.getTotalDiskUsage() == source.getTotalDiskUsage()
+	 * @post	| new.getNbNotWritableDescendants() == source.getNbNotWritableDescendants()
+	 * @post	The items of the new directory are copies of the items of the given snapshot,
+	 * 			which are only created when the items of the new directory are first used.
+	 * 			| new.getNbItems() == source.getNbItems()
+	 */
+	@Model
+	Directory(@Raw Directory parent, String name, DirectorySnapshot source, Date creationTime) {
+		super(parent, name, source, creationTime);
+		nbDescendants = source.getNbDescendants();
+		totalSize = source.getTotalDiskUsage();
+		nbNotWritableDescendants = source.getNbNotWritableDescendants();
+		if (source.getNbItems() > 0)
+			pendingCopy = source;
+	}
+
 	
 	
 	
@@ -118,9 +148,11 @@ public class Directory extends DiskItem {
 	 * 
 	 * @post 	This directory is terminated.
 	 *       	| new.isTerminated()
-	 * @effect 	If this directory is not terminated and it is not a root, it is made a root
+	 * @effect 	If this directory is not terminated and it is not a root, it is detached
+	 * 			from its parent directory as if it is made a root, but the mutation listeners
+	 * 			are only notified of its termination
 	 * 			| if (!isTerminated() && !isRoot())  
-	 * 			| then makeRoot()
+	 * 			| then detachFromParent()
 	 * @throws 	IllegalStateException
 	 * 		   	This directory is not yet terminated and it can not be terminated.
 	 * 		   	| !isTerminated() && !canBeTerminated()
@@ -130,15 +162,17 @@ public class Directory extends DiskItem {
 			if (!canBeTerminated()) {
 				throw new IllegalStateException("This item cannot be terminated");
 			}
+			Directory oldParent = null;
 			if(!isRoot()){
 				try{
-					makeRoot();
+					oldParent = detachFromParent();
 				}catch(ItemNotWritableException e){
 					//should not happen since this item and its parent are writable
 					assert false;
 				}
 			}
 			this.isTerminated = true;
+			fireItemTerminated(oldParent);
 		}
 	}
 	
@@ -174,15 +208,52 @@ public class Directory extends DiskItem {
 	 *        back to this directory.
 	 *        | for each item in items:
 	 *        |   item.getParentDirectory() == this
+	 * @note  The list is never changed once it is registered: adding or removing
+	 *        an item registers a changed copy, so read views can keep using the
+	 *        list as of their version.
 	 */	
-	private final List<Item> items = new ArrayList<Item>();  
+	private volatile List<Item> items = new ArrayList<Item>();  
+
+	/**
+	 * Return the list of items of this directory as of the version pinned by
+	 * the read view of the current thread, if any.
+	 */
+	@SuppressWarnings("unchecked")
+	@Model @Raw
+	private List<Item> getVersionedItems() {
+		copyPendingItems();
+		return (List<Item>) getVersionedValue(ITEMS, items);
+	}
+
+	/**
+	 * Return the current list of items of this directory, ignoring read views,
+	 * or an empty list while this directory is being initialized.
+	 */
+	@Model @Raw
+	List<Item> getCurrentItems() {
+		copyPendingItems();
+		return getRegisteredItems();
+	}
+
+	/**
+	 * Return the current list of items of this directory, ignoring read views, without
+	 * copying the items of this directory if they still have to be copied.
+	 */
+	@Model @Raw
+	List<Item> getRegisteredItems() {
+		List<Item> current = items;
+		return (current == null) ? Collections.<Item>emptyList() : current;
+	}
 
 	/**
 	 * Return the number of items of this directory.
+	 *
+	 * @note	In a thread with an open read view, the number of items as of the
+	 * 			pinned version is returned.
 	 */
 	@Basic @Raw 
 	public int getNbItems() {
-		return items.size();
+		return getVersionedItems().size();
 	}
 
 	/**
@@ -194,11 +265,12 @@ public class Directory extends DiskItem {
 	 *         	The given index is not strictly positive or exceeds the number
 	 *         	of items registered in this directory. 
 	 *         	| (index < 1) || (index > getNbItems())
+	 * @note	In a thread with an open read view, the item as of the pinned version is returned.
 	 */
 	@Basic @Raw
 	public Item getItemAt(int index) throws IndexOutOfBoundsException {
 		try{
-			return items.get(index - 1);
+			return getVersionedItems().get(index - 1);
 		} catch (IndexOutOfBoundsException e) {
 			//The exception e contains a message indicating that 'index-1' is out of bounds
 			//Here, we throw a new Exception with the right information
@@ -239,13 +311,12 @@ public class Directory extends DiskItem {
 			return false;
 		if (item.isDirectOrIndirectParentOf(this)) 
 			return false;
-		if (this.hasAsItem(item)) {
-			int count = 0;
-			for (int position=1;position<=getNbItems();position++){
-				 if (item.getName().equalsIgnoreCase(getItemAt(position).getName())){ 
-					 count++;}
-			}
-			return (count == 1);
+		int position = positionOf(item);
+		if (position >= 0) {
+			//items with the same name would be next to each other
+			List<Item> current = getVersionedItems();
+			return (position == 0 || !item.getNameKey().matches(current.get(position-1).getNameKey()))
+					&& (position == current.size()-1 || !item.getNameKey().matches(current.get(position+1).getNameKey()));
 		}else{
 			Directory parentDirectory = item.getParentDirectory();
 			if (parentDirectory == null){
@@ -334,14 +405,48 @@ public class Directory extends DiskItem {
 	 *         	| result == 
 	 *         	|    for some I in 1..getNbItems() :
 	 *         	| 	      (getItemAt(I) == item)
+	 * @note	This operation completes in O(log(n)) time, unless the name of the
+	 * 			given item is being changed.
 	 */
 	@Raw
 	public boolean hasAsItem(@Raw Item item) { 
-		for (int i=1; i<=getNbItems(); i++) {
-			if (getItemAt(i) == item)
-				return true;
+		return positionOf(item) >= 0;
+	}
+
+	/**
+	 * Return the position of the given item in the list of items of this directory,
+	 * starting from 0, or -1 if the given item is not registered in this directory.
+	 * 
+	 * @note	Since the items are sorted by name and no two of them have the same name,
+	 * 			the item is looked up by a binary search on its name, in O(log(n)) time.
+	 * 			An item of which the name has been changed is therefore not found until the
+	 * 			order of the items is restored, so the position of an item that is renamed
+	 * 			must be looked up before its new name is set.
+	 */
+	@Model @Raw
+	private int positionOf(@Raw Item item) {
+		List<Item> current = getVersionedItems();
+		if (item == null || current == null)
+			return -1;
+		NameKey key = item.getNameKey();
+		if (key == null)
+			return -1;
+		int low = 0;
+		int high = current.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			Item middleItem = current.get(middle);
+			if (middleItem == item)
+				return middle;
+			int comparison = middleItem.getNameKey().compareTo(key);
+			if (comparison == 0)
+				return -1;
+			if (comparison < 0)
+				low = middle + 1;
+			else
+				high = middle - 1;
 		}
-		return false;
+		return -1;
 	}
 
 	/**
@@ -366,18 +471,65 @@ public class Directory extends DiskItem {
 	 * @throws  IllegalArgumentException
 	 *          The item already exists in this directory or it can not have the given item as item.
 	 *          | hasAsItem(item) || !canHaveAsItem(item)
+	 * @throws	QuotaExceededException(directory)
+	 * 			The items or the size of the files of the given item would exceed a quota
+	 * 			of this directory or of one of its ancestors.
+	 * 			| !canAccept(getNbItemsIn(item), getSizeIn(item))
 	 */ 
 	@Model
-	protected void addAsItem(@Raw Item item) throws IllegalArgumentException{
+	protected void addAsItem(@Raw Item item) throws IllegalArgumentException, QuotaExceededException{
+		addAsItem(item, true);
+	}
+	
+	/**
+	 * Add the given item to the items registered in this directory, checking the quotas
+	 * of this directory and its ancestors only if so requested.
+	 * 
+	 * @effect	| addAsItem(item), except that no quota is checked unless checkQuotas is true
+	 */
+	@Model
+	void addAsItem(@Raw Item item, boolean checkQuotas) throws IllegalArgumentException, QuotaExceededException{
+		if (checkQuotas)
+			reserve(getNbItemsIn(item), getSizeIn(item), getNbNotWritableIn(item));
+		else
+			addToTotals(getNbItemsIn(item), getSizeIn(item), getNbNotWritableIn(item));
+		registerName(item.getNameKey());
+		try {
+			insertInOrder(item);
+		} catch (IllegalArgumentException e) {
+			unregisterName(item.getNameKey());
+			addToTotals(-getNbItemsIn(item), -getSizeIn(item), -getNbNotWritableIn(item));
+			throw e;
+		}
+		attachToIndexes(item);
+		setModificationTime();
+	}
+	
+	/**
+	 * Insert the given item at the position where it belongs in the order of the items.
+	 * 
+	 * @param   item
+	 *          The item to be inserted.
+	 * @effect	| addItemAt(item, I) for the I such that the items stay ordered
+	 * @throws  IllegalArgumentException
+	 *          The item already exists in this directory or it can not have the given item as item.
+	 *          | hasAsItem(item) || !canHaveAsItem(item)
+	 */
+	@Model
+	private void insertInOrder(@Raw Item item) throws IllegalArgumentException{
 		if(hasAsItem(item) || !canHaveAsItem(item))
 			throw new IllegalArgumentException();
 		//now find the right index to add this item
-		int index = 1;
-		while(index <= getNbItems() && getItemAt(index).isOrderedBefore(item)){
-			index++;
+		int low = 1;
+		int high = getNbItems() + 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getItemAt(middle).isOrderedBefore(item))
+				low = middle + 1;
+			else
+				high = middle;
 		}
-		addItemAt(item, index);
-		setModificationTime();
+		addItemAt(item, low);
 	}
 	
 	/**
@@ -403,7 +555,19 @@ public class Directory extends DiskItem {
 	private void addItemAt(@Raw Item item, int index) throws IllegalArgumentException {
 		if (hasAsItem(item) || !canHaveAsItemAt(item,index))
 			throw new IllegalArgumentException("cannot add the given item to this directory");
-		items.add(index-1,item);
+		List<Item> newItems;
+		if (items instanceof TombstoneList) {
+			newItems = ((TombstoneList) items).with(index-1, item);
+		} else {
+			newItems = new ArrayList<Item>(items.size() + 1);
+			newItems.addAll(items);
+			newItems.add(index-1,item);
+		}
+		List<Item> oldItems = items;
+		recordRevision(ITEMS, oldItems);
+		items = newItems;
+		adaptNameKey(item);
+		updateCompactNames(oldItems, newItems, names -> names.withInsertion(index - 1, item.getNameKey().getFolded()));
 	}
 	
 	/**
@@ -421,15 +585,18 @@ public class Directory extends DiskItem {
 	 */
 	@Raw @Model
 	protected void removeAsItem(@Raw Item item) throws IllegalArgumentException{
-		
-		if(!hasAsItem(item))
+		int position = positionOf(item);
+		if(position < 0)
 			throw new IllegalArgumentException("This item is not present in this directory");
 		try{
-			removeItemAt(getIndexOf(item));
+			removeItemAt(position + 1);
 		}catch(IndexOutOfBoundsException e){
 			//this will not happen
 			assert(false);
 		}
+		unregisterName(item.getNameKey());
+		addToTotals(-getNbItemsIn(item), -getSizeIn(item), -getNbNotWritableIn(item));
+		detachFromIndexes(item);
 		setModificationTime();
 	}
 
@@ -455,7 +622,17 @@ public class Directory extends DiskItem {
 	private void removeItemAt(int index) throws IndexOutOfBoundsException{
 		if(index < 1 || index > getNbItems())
 			throw new IndexOutOfBoundsException("Index out of bounds: "+index);
-		items.remove(index-1);
+		List<Item> newItems;
+		if (items instanceof TombstoneList) {
+			newItems = ((TombstoneList) items).without(index-1);
+		} else {
+			newItems = new ArrayList<Item>(items);
+			newItems.remove(index-1);
+		}
+		List<Item> oldItems = items;
+		recordRevision(ITEMS, oldItems);
+		items = newItems;
+		updateCompactNames(oldItems, newItems, names -> names.withRemoval(index - 1));
 	}
 	
 	/**
@@ -502,15 +679,16 @@ public class Directory extends DiskItem {
 	 *        | result ==
 	 *        |   (for some I in 1..getNbItems():
 	 *        |      getItemAt(I).getName().equalsIgnoreCase(name))
+	 * @note	If this directory has a name filter, most names that are not registered
+	 * 			are rejected by the filter, without looking at the items.
 	 */
 	@Raw
 	public boolean exists(String name) {
-		for (int i=1;i<=getNbItems();i++) {
-			if (getItemAt(i).getName().equalsIgnoreCase(name)){
-				return true;
-			}
-		}
-		return false;
+		NameFilter filter = nameFilter;
+		if (name != null && filter != null && Versions.getCurrentView() == null
+				&& !filter.mightContain(NameKey.fold(name)))
+			return false;
+		return getItem(name) != null;
 	}
 
 	/**
@@ -525,18 +703,31 @@ public class Directory extends DiskItem {
 	 *         	| 		result.getName().equalsIgnoreCase(name))
 	 *         	| else result == null
 	 * @note	This operation should complete in O(log(n)) time
+	 * @note	If this directory keeps its names compact, the names are looked up
+	 * 			in the front-coded names rather than in the items themselves.
 	 */
 	public Item getItem(String name) {
+		if (name == null)
+			return null;
+		List<Item> current = getVersionedItems();
+		FrontCodedNames compact = getCompactNames(current);
+		if (compact != null) {
+			int index = compact.indexOf(NameKey.fold(name));
+			return (index < 0) ? null : current.get(index);
+		}
+		//the probe is only folded, so looking up a name does not intern it
+		String folded = NameKey.fold(name);
 		//do a binary search!
 		int low = 1;
 		int high = getNbItems();
-		int middle = (low+high)/2;
 		while (low <= high) {
+			int middle = (low+high)/2;
 			Item middleItem = getItemAt(middle);
-			if(middleItem.getName().equalsIgnoreCase(name)) 
+			int comparison = middleItem.getNameKey().getFolded().compareTo(folded);
+			if (comparison == 0) 
 				return middleItem;
-			if (middleItem.isOrderedAfter(name)) {
-				high = middle;
+			if (comparison > 0) {
+				high = middle-1;
 			} else {
 				low = middle+1;
 			}
@@ -545,6 +736,76 @@ public class Directory extends DiskItem {
 		return null;
 	}
 	
+	/**
+	 * Return the items in this directory with a name starting with the given prefix,
+	 * ignoring case, in the order in which they are registered.
+	 * 
+	 * @param	prefix
+	 * 			The prefix to look for.
+	 * @return	| for each I in 1..getNbItems():
+	 * 			|	result.contains(getItemAt(I)) == getItemAt(I).getName().regionMatches(true, 0, prefix, 0, prefix.length())
+	 * @throws	IllegalArgumentException
+	 * 			The given prefix is not effective.
+	 * 			| prefix == null
+	 * @note	Because the items are ordered by name, the items with the prefix are found
+	 * 			by two binary searches. The result is an unmodifiable view on the items
+	 * 			of this directory as of this call, so it is not copied and does not change
+	 * 			when items are added to or removed from this directory afterwards.
+	 */
+	public List<Item> itemsWithPrefix(String prefix) throws IllegalArgumentException {
+		if (prefix == null)
+			throw new IllegalArgumentException();
+		List<Item> current = getVersionedItems();
+		String folded = NameKey.fold(prefix);
+		int first = firstIndexWithPrefixAtLeast(current, folded, false);
+		int end = firstIndexWithPrefixAtLeast(current, folded, true);
+		return Collections.unmodifiableList(current.subList(first, end));
+	}
+	
+	/**
+	 * Return the index in the given list of items of the first item whose folded name, cut to
+	 * the length of the given folded prefix, is ordered after the prefix (or at it, if not strictly).
+	 */
+	@Model
+	private static int firstIndexWithPrefixAtLeast(List<Item> items, String prefix, boolean strictly) {
+		int low = 0;
+		int high = items.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			String name = items.get(middle).getNameKey().getFolded();
+			int length = Math.min(name.length(), prefix.length());
+			int comparison = 0;
+			for (int i = 0; comparison == 0 && i < length; i++)
+				comparison = name.charAt(i) - prefix.charAt(i);
+			if (comparison == 0 && name.length() < prefix.length())
+				comparison = -1;
+			if (comparison > 0 || (comparison == 0 && !strictly))
+				high = middle;
+			else
+				low = middle + 1;
+		}
+		return low;
+	}
+	
+	/**
+	 * Return a stream over the items in this directory with a name matching the given
+	 * glob pattern, ignoring case, in the order in which they are registered.
+	 * 
+	 * @param	pattern
+	 * 			A glob pattern, in which '*' matches any sequence of characters,
+	 * 			'?' any single character and '[...]' any character of a set.
+	 * @return	| for each I in 1..getNbItems():
+	 * 			|	result.contains(getItemAt(I)) == (getItemAt(I).getName() matches pattern)
+	 * @throws	IllegalArgumentException
+	 * 			The given pattern is not effective or not a valid glob pattern.
+	 * @note	Only the items with a name starting with the part of the pattern before its
+	 * 			first wildcard are matched against the pattern.
+	 */
+	public Stream<Item> itemsMatching(String pattern) throws IllegalArgumentException {
+		Glob glob = new Glob(pattern);
+		return itemsWithPrefix(glob.getLiteralPrefix()).stream().filter(item -> glob.matches(item.getName()));
+	}
+	
 	/**
 	 * Return the position at which the given item is registered.
 	 *
@@ -558,16 +819,10 @@ public class Directory extends DiskItem {
 	 *          | ! hasAsItem(item)
 	 */
 	public int getIndexOf(@Raw Item item) throws IllegalArgumentException {
-		if(!hasAsItem(item))
+		int position = positionOf(item);
+		if(position < 0)
 			throw new IllegalArgumentException("This item is not present in this directory");
-		else{
-			for(int i=1; i<=getNbItems(); i++){
-				if(getItemAt(i) == item) return i;
-			}
-			//this will never happen!
-			assert false;
-			return -1;
-		}
+		return position + 1;
 	}
 	
 	/**
@@ -585,24 +840,111 @@ public class Directory extends DiskItem {
 	 * @throws	IndexOutOfBoundsException
 	 * 			The given index is not valid
 	 * 			| (index < 1) || (index > getNbItems())
+	 * @note	The new position of the item is found by a binary search over the other
+	 * 			items, after which only the items between the old and the new position
+	 * 			are shifted by one.
 	 */
 	@Raw @Model
 	protected void restoreOrderAfterNameChangeAt(int index) {
 		if(index < 1 || index > getNbItems())
 			throw new IndexOutOfBoundsException("The index is not valid");
-		try{
-			Item item = getItemAt(index);
-			removeItemAt(index);
-			addAsItem(item);
-		}catch(IllegalArgumentException e){
-			//this should not happen
-			assert false;
-		}catch(ItemNotWritableException e){
-			//this should not happen
-			assert false;
-		}catch(IndexOutOfBoundsException e){
-			//this should not happen
-			assert false;
+		List<Item> current = items;
+		int from = index - 1;
+		Item item = current.get(from);
+		//find the number of other items ordered before the item
+		int low = 0;
+		int high = current.size() - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			Item other = current.get(middle < from ? middle : middle + 1);
+			if (other.isOrderedBefore(item))
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		//a new list is registered even if the order is unchanged, since the names
+		//of the items of a list must not change once they are cached for that list
+		List<Item> newItems = new ArrayList<Item>(current);
+		if (low < from)
+			Collections.rotate(newItems.subList(low, from + 1), 1);
+		else if (low > from)
+			Collections.rotate(newItems.subList(from, low + 1), -1);
+		recordRevision(ITEMS, current);
+		items = asItemList(newItems);
+		adaptNameKey(item);
+		final int to = low;
+		updateCompactNames(current, items, names -> names.withRemoval(from).withInsertion(to, item.getNameKey().getFolded()));
+		//the item stays in this directory, so the indexes are not updated
+		setModificationTime();
+	}
+	
+	/**
+	 * Change the names of the given items of this directory to the given names, all at once.
+	 * 
+	 * @param	names
+	 * 			The new names, by the items of this directory to give them.
+	 * @effect	Each of the given items gets its new name, as if it were renamed on its own,
+	 * 			except that the items of this directory are sorted only once.
+	 * 			| for each item in names.keySet():
+	 * 			|	item.changeName(names.get(item))
+	 * @throws	IllegalStateException
+	 * 			This directory is terminated.
+	 * 			| isTerminated()
+	 * @throws	IllegalArgumentException
+	 * 			The given names are not effective, one of the items is not an item of this
+	 * 			directory, one of the items can not accept its new name, or two items would
+	 * 			get the same name. No name has been changed.
+	 * 			| names == null || 
+	 * 			| (for some item in names.keySet():
+	 * 			|	!hasAsItem(item) || !item.canAcceptAsNewName(names.get(item)) ||
+	 * 			|	(for some other in names.keySet():
+	 * 			|		other != item && names.get(other).equalsIgnoreCase(names.get(item))))
+	 * @throws	ItemNotWritableException(item)
+	 * 			One of the given items is not writable. No name has been changed.
+	 * 			| for some item in names.keySet(): !item.isWritable()
+	 * @note	An item can not get the current name of another item of this directory,
+	 * 			not even if that item gets a new name as well.
+	 */
+	public void changeNames(Map<Item, String> names)
+			throws IllegalStateException, IllegalArgumentException, ItemNotWritableException {
+		if (isTerminated())
+			throw new IllegalStateException("Directory is terminated!");
+		if (names == null)
+			throw new IllegalArgumentException();
+		Set<String> newNames = new HashSet<String>();
+		for (Map.Entry<Item, String> entry : names.entrySet()) {
+			Item item = entry.getKey();
+			if (item == null || item.getParentDirectory() != this)
+				throw new IllegalArgumentException("The item is not in this directory");
+			if (!item.isWritable())
+				throw new ItemNotWritableException(item);
+			if (!item.canAcceptAsNewName(entry.getValue()) || !newNames.add(NameKey.fold(entry.getValue())))
+				throw new IllegalArgumentException("The item can not accept its new name");
+		}
+		if (names.isEmpty())
+			return;
+		Map<Item, NameKey> oldKeys = new LinkedHashMap<Item, NameKey>();
+		Versions.beginBatch();
+		try {
+			//the old name of each item is removed from the name filter right after the
+			//item is renamed, so a filter rebuilt from the items counts every name once
+			for (Map.Entry<Item, String> entry : names.entrySet()) {
+				NameKey oldKey = entry.getKey().getNameKey();
+				oldKeys.put(entry.getKey(), oldKey);
+				registerName(NameKey.lean(entry.getValue()));
+				entry.getKey().setNameInBatch(entry.getValue());
+				adaptNameKey(entry.getKey());
+				unregisterName(oldKey);
+			}
+			List<Item> newItems = new ArrayList<Item>(items);
+			newItems.sort((first, second) -> first.getNameKey().compareTo(second.getNameKey()));
+			recordRevision(ITEMS, items);
+			items = asItemList(newItems);
+			setModificationTime();
+			for (Map.Entry<Item, NameKey> entry : oldKeys.entrySet())
+				entry.getKey().fireNameChanged(entry.getValue().getName());
+		} finally {
+			Versions.endBatch();
 		}
 	}
 	
@@ -641,19 +983,50 @@ public class Directory extends DiskItem {
 		if ( isTerminated()) 
 			throw new IllegalStateException("Diskitem is terminated!");
 		if (!isRoot()) {
-			if (!isWritable()) 
-				throw new ItemNotWritableException(this);
-			if(!getParentDirectory().isWritable())
-				throw new ItemNotWritableException(getParentDirectory());
-
-			Directory dir = getParentDirectory();
-			setParentDirectory(null); 
-			//this item is now in a raw state
-			dir.removeAsItem(this);
-			setModificationTime();
+			Directory dir = detachFromParent();
+			fireMadeRoot(dir);
 		}
 	}
 
+	/**
+	 * Detach this directory, which is not a root, from its parent directory.
+	 * 
+	 * @return	The parent directory of this directory before it was detached.
+	 * 			| result == getParentDirectory()
+	 * @post	| new.isRoot()
+	 * @effect	| getParentDirectory().removeAsItem(this)
+	 * @effect	| setModificationTime()
+	 * @throws	ItemNotWritableException(this)
+	 * 			| !isWritable()
+	 * @throws	ItemNotWritableException(getParentDirectory())
+	 * 			| !getParentDirectory().isWritable()
+	 */
+	@Model
+	private Directory detachFromParent() throws ItemNotWritableException {
+		if (!isWritable()) 
+			throw new ItemNotWritableException(this);
+		if(!getParentDirectory().isWritable())
+			throw new ItemNotWritableException(getParentDirectory());
+
+		Directory dir = getParentDirectory();
+		setParentDirectory(null); 
+		//this item is now in a raw state
+		dir.removeAsItem(this);
+		setModificationTime();
+		return dir;
+	}
+
+	/**
+	 * Commit the mutation in progress and notify all registered mutation listeners
+	 * that this directory has been made a root, leaving the given parent directory.
+	 */
+	@Model
+	void fireMadeRoot(Directory oldParent) {
+		Versions.commit();
+		for (MutationListener listener : getMutationListeners())
+			listener.madeRoot(this, oldParent);
+	}
+
 	/**
 	 * Check whether this item is a root item.
 	 * 
@@ -679,6 +1052,7 @@ public class Directory extends DiskItem {
 	 * @post  	The given writability is registered as the new writability
 	 *        	for this disk item.
 	 *        	| new.isWritable() == isWritable
+	 * @effect	| restoreWritable(isWritable)
 	 * @throws	DiskItemNotWritableException(this)
 	 * 			The directory is not writable, that can't be changed.
 	 * 			| !this.isWritable()
@@ -686,19 +1060,40 @@ public class Directory extends DiskItem {
 	@Raw 
 	public void setWritable(boolean isWritable) throws ItemNotWritableException {
 		if (this.isWritable) {
-			this.isWritable = isWritable;
+			restoreWritable(isWritable);
 		}
 		else {
 			throw new ItemNotWritableException(this);
 		}
 	}
 	
+	/**
+	 * Set the writability of this directory to the given writability, even if
+	 * this directory is not writable. Used to undo or replay a change of the writability.
+	 *
+	 * @param 	isWritable
+	 *        	The new writability
+	 * @post  	| new.isWritable() == isWritable
+	 * @effect	The snapshots of this directory and its ancestors are invalidated.
+	 * 			| invalidateSnapshot()
+	 * @effect	The version stamps of this directory and its parent directory are incremented.
+	 * 			| incrementVersionStamps()
+	 */
+	@Raw @Model
+	void restoreWritable(boolean isWritable) {
+		recordRevision(WRITABILITY, this.isWritable);
+		changeWritability(this, isWritable);
+		invalidateSnapshot();
+		incrementVersionStamps();
+		fireWritabilityChanged();
+	}
+	
 	/**
 	 * Check whether this item is writable.
 	 */
 	@Raw @Basic
 	public boolean isWritable(){
-		return isWritable;
+		return getVersionedValue(WRITABILITY, isWritable);
 	}
 	
 	
@@ -718,6 +1113,15 @@ public class Directory extends DiskItem {
 	 * 			|	(name != null) && name.matches("[a-zA-Z_0-9-]+")
 	 */
 	public boolean isValidName(String name) {
+		return isValidDirectoryName(name);
+	}
+	
+	/**
+	 * Check whether the given name is a legal name for a directory.
+	 * 
+	 * @return	| result == (name != null) && name.matches("[a-zA-Z_0-9-]+")
+	 */
+	static boolean isValidDirectoryName(String name) {
 		return (name != null && name.matches("[a-zA-Z_0-9-]+"));
 	}
 	
@@ -824,104 +1228,1446 @@ public class Directory extends DiskItem {
 	}
 	
 	/********************************
-	 * extra methods
-	 ********************************
+	 * watch
+	 ********************************/
 	
 	/**
-	 * return the total disk usage from this directory, with every direct and indirect item
+	 * Watch the changes of the items in this directory.
+	 *
+	 * @param	listener
+	 * 			The listener to deliver the changes to.
+	 * @param	subtree
+	 * 			Whether the changes of the items in all directories directly or
+	 * 			indirectly in this directory are delivered as well.
+	 * @return	A new watch of this directory for the given listener.
+	 * 			| result.getDirectory() == this && result.getListener() == listener &&
+	 * 			| result.isSubtree() == subtree && !result.isCancelled()
+	 * @note	The changes are delivered asynchronously, in batches. The watch is
+	 * 			cancelled when this directory is terminated.
+	 * @throws	IllegalArgumentException
+	 * 			The given listener is not effective.
+	 * 			| listener == null
+	 * @throws	IllegalStateException
+	 * 			This directory is terminated.
+	 * 			| isTerminated()
+	 */
+	public DirectoryWatch watch(WatchListener listener, boolean subtree)
+			throws IllegalArgumentException, IllegalStateException {
+		return WatchService.register(this, listener, subtree, DirectoryWatch.DEFAULT_CAPACITY);
+	}
+	
+	/********************************
+	 * version stamp
+	 ********************************/
+	
+	/**
+	 * Variable registering the number of changes to this directory and its items.
+	 */
+	private volatile long versionStamp = 0;
+	
+	/**
+	 * Return the version stamp of this directory. The version stamp changes whenever
+	 * this directory, its list of items or an attribute of one of its items changes.
+	 */
+	@Basic @Raw
+	public long getVersionStamp() {
+		return versionStamp;
+	}
+	
+	/**
+	 * Increment the version stamp of this directory.
+	 *
+	 * @post	| new.getVersionStamp() == getVersionStamp() + 1
+	 */
+	@Model @Raw
+	void incrementVersionStamp() {
+		versionStamp++;
+	}
+	
+	/********************************
+	 * changes without exceptions
+	 ********************************/
+	
+	/**
+	 * Create a new file in this directory with the given name, type, size and writability,
+	 * reporting why it can not be created instead of throwing an exception.
 	 * 
-	 * @return	the total disk usage
-	 * @throws 	IndexOutOfBoundsException
-	 * 			dirIt has no current item.
-	 * 			| getNbRemainingItems() == 0
+	 * @return	| if (isTerminated()) then result == ResultCode.TERMINATED
+	 * 			| else if (!File.isValidType(type) || !File.isValidSize(size) || !isValidFileName(name))
+	 * 			| then result == ResultCode.INVALID_ARGUMENT
+	 * 			| else if (!isWritable()) then result == ResultCode.NOT_WRITABLE
+	 * 			| else if (exists(name)) then result == ResultCode.NAME_CLASH
+	 * 			| else if (!canAccept(1, size)) then result == ResultCode.QUOTA_EXCEEDED
+	 * 			| else result == ResultCode.SUCCESS
+	 * @effect	| if (result == ResultCode.SUCCESS) then new File(this, name, type, size, writable)
+	 * @note	Unlike the constructor of files, this method does not replace an invalid
+	 * 			name by the default name.
 	 */
-	public long getTotalDiskUsage() throws IndexOutOfBoundsException {
-		DirectoryIterator dirIt = iterator();
-		long total = 0;
-		while (dirIt.getNbRemainingItems() != 0) {
-			if (dirIt.getCurrentItem() instanceof Directory){
-				Directory dir = (Directory)dirIt.getCurrentItem();
-				total += dir.getTotalDiskUsage();
-			}
-			else if (dirIt.getCurrentItem() instanceof File){
-				File file = (File)dirIt.getCurrentItem();
-				total += file.getSize();
-			}
-			dirIt.advance();
-		}
-		return total;
+	public ResultCode tryCreateFile(String name, Type type, int size, boolean writable) {
+		if (isTerminated())
+			return ResultCode.TERMINATED;
+		if (!File.isValidType(type) || !File.isValidSize(size) || !File.isValidFileName(name))
+			return ResultCode.INVALID_ARGUMENT;
+		ResultCode result = checkNewItemName(name, size);
+		if (result.isSuccess())
+			new File(this, name, type, size, writable);
+		return result;
 	}
 	
 	/**
-	 * Terminates all items (direct and indirect) in this directory if they are all
-	 * writable.
+	 * Create a new directory in this directory with the given name and writability,
+	 * reporting why it can not be created instead of throwing an exception.
 	 * 
-	 * @post	All items in this directory are terminated
-	 * 			| for all items in this {
-	 * 			|		item.isTerminated()
-	 * 			| }
-	 * @throws 	NotAllWritableException
-	 * 			Not all items in this directory are writable
-	 * 			| !this.allWritable()
-	 * @throws 	IllegalStateException
-	 * 			This item is not yet terminated and it can not be terminated.
-	 * 		   	| !isTerminated() && !canBeTerminated()
+	 * @return	| if (isTerminated()) then result == ResultCode.TERMINATED
+	 * 			| else if (!isValidDirectoryName(name)) then result == ResultCode.INVALID_ARGUMENT
+	 * 			| else if (!isWritable()) then result == ResultCode.NOT_WRITABLE
+	 * 			| else if (exists(name)) then result == ResultCode.NAME_CLASH
+	 * 			| else result == ResultCode.SUCCESS
+	 * @effect	| if (result == ResultCode.SUCCESS) then new Directory(this, name, writable)
 	 */
-	public void deleteRecursive() throws NotAllWritableException, IllegalStateException {
-		if (this.allWritable() && this.canBeTerminated()){
-			DirectoryIterator dirIt = iterator();
-			while (dirIt.getNbRemainingItems() != 0){
-				if (dirIt.getCurrentItem() instanceof Directory){
-					Directory dir = (Directory)dirIt.getCurrentItem();
-					dir.deleteRecursive();
-					dir.terminate();
-				}
-				else {
-					dirIt.getCurrentItem().terminate();
-				}
-				dirIt.advance();
-			}
-		}
-		else {
-			throw new NotAllWritableException(this);
-		}
+	public ResultCode tryCreateDirectory(String name, boolean writable) {
+		if (isTerminated())
+			return ResultCode.TERMINATED;
+		if (!isValidDirectoryName(name))
+			return ResultCode.INVALID_ARGUMENT;
+		ResultCode result = checkNewItemName(name, 0);
+		if (result.isSuccess())
+			new Directory(this, name, writable);
+		return result;
 	}
 	
 	/**
-	 * Return if all direct and indirect items are writable or not.
+	 * Check whether an item with the given valid name, of which the files have the given
+	 * total size, can be added to this directory.
+	 */
+	@Model
+	private ResultCode checkNewItemName(String name, long size) {
+		if (!isWritable())
+			return ResultCode.NOT_WRITABLE;
+		if (exists(name))
+			return ResultCode.NAME_CLASH;
+		if (!canAccept(1, size))
+			return ResultCode.QUOTA_EXCEEDED;
+		return ResultCode.SUCCESS;
+	}
+	
+	/********************************
+	 * compact names
+	 ********************************/
+	
+	/**
+	 * Variable registering whether this directory keeps the names of its items compact.
+	 */
+	private volatile boolean compactNames = false;
+	
+	/**
+	 * Variable referencing the front-coded names of the items of this directory,
+	 * together with the list of items they were encoded from, or null.
+	 */
+	private volatile CompactNames compactNameStore = null;
+	
+	/**
+	 * Check whether this directory keeps the names of its items compact.
+	 */
+	@Basic @Raw
+	public boolean hasCompactNames() {
+		return compactNames;
+	}
+	
+	/**
+	 * Set whether this directory keeps the names of its items compact.
 	 * 
-	 * @return	true if and only if all direct and indirect items are writable,
-	 * 			false otherwise.
-	 * 			| result ==
-	 * 			| (for all items in this {
-	 * 			|		item.isWritable()
-	 * 			| })
+	 * @param	compactNames
+	 * 			Whether the names must be kept compact.
+	 * @post	| new.hasCompactNames() == compactNames
+	 * @note	Compact names are stored front-coded in blocks: the first name of each
+	 * 			block in full, the others as the characters following the prefix they
+	 * 			share with the previous name. Looking up an item by its name then searches
+	 * 			the first names of the blocks and decodes a single block, reading the
+	 * 			names from a few small arrays instead of from every item visited. This suits
+	 * 			large directories of which the names share long prefixes. Adding, removing
+	 * 			or renaming an item only encodes the block of its name again.
+	 * @note	The items of a directory that keeps its names compact have lean name keys,
+	 * 			which do not keep the case-folded form of their name nor its packed words.
 	 */
-	private boolean allWritable(){
-		DirectoryIterator dirIt = iterator();
-		if (!this.isWritable()){
-			return false;
+	public void setCompactNames(boolean compactNames) {
+		this.compactNames = compactNames;
+		if (!compactNames)
+			compactNameStore = null;
+		for (Item item : getCurrentItems())
+			adaptNameKey(item);
+	}
+	
+	/**
+	 * Register the key of the name of the given item of this directory in the form that
+	 * suits this directory: lean if this directory keeps its names compact, interned otherwise.
+	 */
+	@Model
+	private void adaptNameKey(@Raw Item item) {
+		NameKey key = item.getNameKey();
+		if (key != null && key.isLean() != compactNames)
+			item.setNameKey(compactNames ? NameKey.lean(key.getName()) : NameKey.of(key.getName()));
+	}
+	
+	/**
+	 * Return the front-coded names of the given list of items of this directory, or null
+	 * if this directory does not keep its names compact or they can not be encoded.
+	 * 
+	 * @note	The names are only encoded all at once for the first lookup, or after a
+	 * 			change that is not applied to them incrementally, such as changing the
+	 * 			names of several items at once.
+	 */
+	@Model
+	private FrontCodedNames getCompactNames(List<Item> items) {
+		if (!compactNames)
+			return null;
+		CompactNames store = compactNameStore;
+		if (store == null || store.items != items) {
+			store = new CompactNames(items, FrontCodedNames.encode(items));
+			compactNameStore = store;
 		}
-		boolean allWritable = true;
-		while (dirIt.getNbRemainingItems() != 0){
-			if (dirIt.getCurrentItem() instanceof Directory){
-				Directory dir = (Directory)dirIt.getCurrentItem();
-				if (!dir.isWritable()){
-					allWritable = false;
-				}
-				else if (!dir.allWritable()){
-					allWritable = false;
-				}
-			}
-			else if (dirIt.getCurrentItem() instanceof File){
-				File file = (File)dirIt.getCurrentItem();
-				if (!file.isWritable()){
-					allWritable = false;
-				}
-			}
-			dirIt.advance();
+		return store.names;
+	}
+	
+	/**
+	 * Register the front-coded names for the given new list of items of this directory,
+	 * derived by the given update from the names of the given old list, if these are
+	 * registered.
+	 */
+	@Model
+	private void updateCompactNames(List<Item> oldItems, List<Item> newItems, UnaryOperator<FrontCodedNames> update) {
+		CompactNames store = compactNameStore;
+		if (compactNames && store != null && store.items == oldItems && store.names != null)
+			compactNameStore = new CompactNames(newItems, update.apply(store.names));
+	}
+	
+	/**
+	 * A class holding front-coded names together with the list of items they were
+	 * encoded from. The list of items of a directory is never changed once it is
+	 * registered, so the names are valid as long as the directory has that list.
+	 */
+	private static final class CompactNames {
+		
+		CompactNames(List<Item> items, FrontCodedNames names) {
+			this.items = items;
+			this.names = names;
 		}
-		return allWritable;
+		
+		final List<Item> items;
+		
+		final FrontCodedNames names;
+	}
+	
+	/********************************
+	 * lazy removal
+	 ********************************/
+	
+	/**
+	 * Check whether this directory removes its items lazily.
+	 */
+	@Raw
+	public boolean hasLazyRemoval() {
+		return getCurrentItems() instanceof TombstoneList;
+	}
+	
+	/**
+	 * Set whether this directory removes its items lazily.
+	 * 
+	 * @param	lazyRemoval
+	 * 			Whether the items must be removed lazily.
+	 * @post	| new.hasLazyRemoval() == lazyRemoval
+	 * @post	| for each I in 1..getNbItems(): new.getItemAt(I) == getItemAt(I)
+	 * @throws	IllegalStateException
+	 * 			The current thread has an open read view.
+	 * @note	If items are removed lazily, removing an item only marks its slot as
+	 * 			removed, and a Fenwick tree over the slots counts the items before each
+	 * 			slot, so that the item at a given index is still found in O(log(n)) time.
+	 * 			Items added after the last item fill the next free slot. The items are
+	 * 			compacted once half of the slots are removed. This suits directories in
+	 * 			which many items are added and removed, such as spool directories.
+	 */
+	public void setLazyRemoval(boolean lazyRemoval) throws IllegalStateException {
+		if (lazyRemoval == hasLazyRemoval())
+			return;
+		List<Item> oldItems = items;
+		recordRevision(ITEMS, oldItems);
+		items = lazyRemoval ? TombstoneList.of(oldItems) : new ArrayList<Item>(oldItems);
+		updateCompactNames(oldItems, items, names -> names);
+	}
+	
+	/**
+	 * Return the given items in the kind of list this directory keeps its items in.
+	 */
+	@Model
+	private List<Item> asItemList(List<Item> newItems) {
+		return (items instanceof TombstoneList) ? TombstoneList.of(newItems) : newItems;
+	}
+	
+	/********************************
+	 * name filter
+	 ********************************/
+	
+	/**
+	 * Variable referencing the filter over the names of the items of this directory,
+	 * or null if this directory has no name filter.
+	 * 
+	 * @note	Names are counted in the filter before the item is added to the items of
+	 * 			this directory, and removed from it after the item is removed. Since the
+	 * 			filter is registered again after each change, a thread that reads this
+	 * 			variable sees every name of the items it reads afterwards.
+	 */
+	private volatile NameFilter nameFilter = null;
+	
+	/**
+	 * Check whether this directory has a filter over the names of its items.
+	 */
+	@Basic @Raw
+	public boolean hasNameFilter() {
+		return nameFilter != null;
+	}
+	
+	/**
+	 * Set whether this directory has a filter over the names of its items.
+	 * 
+	 * @param	nameFilter
+	 * 			Whether this directory must have a name filter.
+	 * @post	| new.hasNameFilter() == nameFilter
+	 * @note	The filter is a counting Bloom filter over the case-folded names of the
+	 * 			items, which takes a few bytes per item. It answers whether a name might
+	 * 			be registered in this directory, and is certain when it answers no.
+	 * 			Checking whether a name is taken, as is done for every new item and every
+	 * 			new name, then mostly completes without reading the items, which matters
+	 * 			for directories that are large or not kept in memory.
+	 */
+	public void setNameFilter(boolean nameFilter) {
+		if (!nameFilter)
+			this.nameFilter = null;
+		else if (this.nameFilter == null)
+			this.nameFilter = NameFilter.of(getCurrentItems(), 0);
+	}
+	
+	/**
+	 * Count the given name in the name filter of this directory, if any.
+	 * The filter is rebuilt with twice the room if it is full.
+	 */
+	@Model
+	void registerName(NameKey key) {
+		NameFilter filter = nameFilter;
+		if (filter == null)
+			return;
+		if (filter.getNbNames() >= filter.getCapacity())
+			filter = NameFilter.of(getCurrentItems(), 2 * filter.getCapacity());
+		filter.add(key);
+		nameFilter = filter;
+	}
+	
+	/**
+	 * Remove the given name from the name filter of this directory, if any.
+	 */
+	@Model
+	void unregisterName(NameKey key) {
+		NameFilter filter = nameFilter;
+		if (filter == null)
+			return;
+		filter.remove(key);
+		nameFilter = filter;
+	}
+	
+	/********************************
+	 * indexes
+	 ********************************/
+	
+	/**
+	 * Variable referencing the indexes over the files in the subtree of this directory,
+	 * or null if there are none.
+	 * 
+	 * @note	The list is never changed once it is registered, so it can be read
+	 * 			without synchronization.
+	 */
+	private volatile List<SubtreeIndex> indexes = null;
+	
+	/**
+	 * Variable registering the number of indexes registered over all directories.
+	 * Attaching and detaching items does not look for indexes as long as it is 0.
+	 */
+	private static volatile int nbIndexes = 0;
+	
+	/**
+	 * Register the given index over the files in the subtree of this directory,
+	 * and add all of these files to it.
+	 * 
+	 * @param	index
+	 * 			The index to register.
+	 * @effect	| for each file in the subtree of this directory: index.fileAdded(file)
+	 * @throws	IllegalArgumentException
+	 * 			The given index is not effective.
+	 * 			| index == null
+	 */
+	@Model
+	synchronized void addIndex(SubtreeIndex index) throws IllegalArgumentException {
+		if (index == null)
+			throw new IllegalArgumentException();
+		forEachFileIn(this, file -> index.fileAdded(file));
+		List<SubtreeIndex> newIndexes = new ArrayList<SubtreeIndex>();
+		if (indexes != null)
+			newIndexes.addAll(indexes);
+		newIndexes.add(index);
+		indexes = newIndexes;
+		synchronized (Directory.class) {
+			nbIndexes++;
+		}
+	}
+	
+	/**
+	 * Unregister the given index from this directory, if it is registered.
+	 */
+	@Model
+	synchronized void removeIndex(SubtreeIndex index) {
+		if (indexes == null || !indexes.contains(index))
+			return;
+		List<SubtreeIndex> newIndexes = new ArrayList<SubtreeIndex>(indexes);
+		newIndexes.remove(index);
+		indexes = newIndexes.isEmpty() ? null : newIndexes;
+		synchronized (Directory.class) {
+			nbIndexes--;
+		}
+	}
+	
+	/**
+	 * Return the first index of the given class registered in this directory,
+	 * or null if there is none.
+	 */
+	@Model
+	<T extends SubtreeIndex> T getIndex(Class<T> indexClass) {
+		List<SubtreeIndex> current = indexes;
+		if (current != null)
+			for (SubtreeIndex index : current)
+				if (indexClass.isInstance(index))
+					return indexClass.cast(index);
+		return null;
+	}
+	
+	/**
+	 * Apply the given action to each index registered in this directory
+	 * or in one of its direct or indirect parent directories.
+	 */
+	@Model @Raw
+	void forEachIndexAbove(Consumer<SubtreeIndex> action) {
+		if (nbIndexes == 0)
+			return;
+		for (Directory dir = this; dir != null; dir = dir.getParentDirectory()) {
+			List<SubtreeIndex> current = dir.indexes;
+			if (current != null)
+				for (SubtreeIndex index : current)
+					action.accept(index);
+		}
+	}
+	
+	/**
+	 * Add the files in the subtree of the given item, which has been added to
+	 * this directory, to the indexes above this directory.
+	 */
+	@Model @Raw
+	void attachToIndexes(@Raw Item item) {
+		forEachIndexAbove(index -> forEachFileIn(item, file -> index.fileAdded(file)));
+	}
+	
+	/**
+	 * Remove the files in the subtree of the given item, which has been removed from
+	 * this directory, from the indexes above this directory.
+	 */
+	@Model @Raw
+	void detachFromIndexes(@Raw Item item) {
+		forEachIndexAbove(index -> forEachFileIn(item, file -> index.fileRemoved(file)));
+	}
+	
+	/**
+	 * Apply the given action to the given item if it is an initialized file, or to
+	 * each initialized file directly or indirectly in it if it is a directory.
+	 * 
+	 * @note	A directory that is still being initialized has no list of items yet;
+	 * 			it has no files to apply the action to.
+	 */
+	@Model
+	static void forEachFileIn(@Raw Item item, Consumer<File> action) {
+		Deque<Item> pending = new ArrayDeque<Item>();
+		pending.push(item);
+		while (!pending.isEmpty()) {
+			Item current = pending.pop();
+			if (current instanceof File) {
+				if (((File) current).getType() != null)
+					action.accept((File) current);
+			} else if (current instanceof Directory) {
+				List<Item> items = ((Directory) current).getVersionedItems();
+				if (items != null)
+					for (int i = items.size() - 1; i >= 0; i--)
+						pending.push(items.get(i));
+			}
+		}
+	}
+	
+	/**
+	 * Keep an index from types to the files directly or indirectly in this directory,
+	 * so the methods on files of a given type take a time proportional to their result.
+	 * 
+	 * @post	| new.hasTypeIndex()
+	 * @note	The index is kept up to date when files are created, terminated, moved or
+	 * 			resized, at the cost of a walk over the parent directories of the changed item.
+	 */
+	public void enableTypeIndex() {
+		synchronized (this) {
+			if (!hasTypeIndex())
+				addIndex(new TypeIndex());
+		}
+	}
+	
+	/**
+	 * Stop keeping an index from types to the files in this directory.
+	 * 
+	 * @post	| !new.hasTypeIndex()
+	 */
+	public void disableTypeIndex() {
+		removeIndex(getIndex(TypeIndex.class));
+	}
+	
+	/**
+	 * Check whether this directory keeps an index from types to its files.
+	 */
+	@Basic
+	public boolean hasTypeIndex() {
+		return getIndex(TypeIndex.class) != null;
+	}
+	
+	/**
+	 * Return the files of the given type directly or indirectly in this directory.
+	 * 
+	 * @param	type
+	 * 			The type of the files to return.
+	 * @return	| for each file in result: file.getType() == type && 
+	 * 			|	this.isDirectOrIndirectParentOf(file)
+	 * @throws	IllegalArgumentException
+	 * 			The given type is not effective.
+	 * 			| type == null
+	 * @note	The files are looked up in the type index if this directory keeps one,
+	 * 			and collected by a walk over the subtree otherwise.
+	 */
+	public Set<File> getFilesOfType(Type type) throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException();
+		TypeIndex index = getIndex(TypeIndex.class);
+		if (index != null)
+			return index.getFilesOfType(type);
+		Set<File> result = new HashSet<File>();
+		forEachFileIn(this, file -> { if (file.getType() == type) result.add(file); });
+		return result;
+	}
+	
+	/**
+	 * Return the number of files of the given type directly or indirectly in this directory.
+	 * 
+	 * @return	| result == getFilesOfType(type).size()
+	 */
+	public int getNbFilesOfType(Type type) throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException();
+		TypeIndex index = getIndex(TypeIndex.class);
+		if (index != null)
+			return index.getNbFilesOfType(type);
+		return getFilesOfType(type).size();
+	}
+	
+	/**
+	 * Return the total size of the files of the given type directly or indirectly in this directory.
+	 * 
+	 * @return	| result == sum({file.getSize() | file in getFilesOfType(type)})
+	 */
+	public long getTotalSizeOfType(Type type) throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException();
+		TypeIndex index = getIndex(TypeIndex.class);
+		if (index != null)
+			return index.getTotalSizeOfType(type);
+		long total = 0;
+		for (File file : getFilesOfType(type))
+			total += file.getSize();
+		return total;
+	}
+	
+	/**
+	 * Keep an index ordering the files directly or indirectly in this directory by
+	 * their size and by their modification time, so range and top-K queries on these
+	 * attributes only visit the files they return.
+	 * 
+	 * @post	| new.hasAttributeIndex()
+	 * @note	The index is kept up to date when files are created, terminated, moved,
+	 * 			resized or modified, at the cost of a walk over the parent directories
+	 * 			of the changed item.
+	 */
+	public void enableAttributeIndex() {
+		synchronized (this) {
+			if (!hasAttributeIndex())
+				addIndex(new AttributeIndex());
+		}
+	}
+	
+	/**
+	 * Stop keeping an index ordering the files in this directory by size and modification time.
+	 * 
+	 * @post	| !new.hasAttributeIndex()
+	 */
+	public void disableAttributeIndex() {
+		removeIndex(getIndex(AttributeIndex.class));
+	}
+	
+	/**
+	 * Check whether this directory keeps an index ordering its files by size and modification time.
+	 */
+	@Basic
+	public boolean hasAttributeIndex() {
+		return getIndex(AttributeIndex.class) != null;
+	}
+	
+	/**
+	 * Return a stream over the files directly or indirectly in this directory with a size
+	 * between the given bounds, from the smallest to the largest file.
+	 * 
+	 * @param	minSize
+	 * 			The minimum size of the files to return.
+	 * @param	maxSize
+	 * 			The maximum size of the files to return.
+	 * @return	| for each file in result: minSize <= file.getSize() <= maxSize &&
+	 * 			|	this.isDirectOrIndirectParentOf(file)
+	 * @note	If this directory keeps an attribute index, the files are streamed lazily
+	 * 			from the index; otherwise the subtree is walked and sorted first.
+	 */
+	public Stream<File> getFilesBySize(int minSize, int maxSize) {
+		AttributeIndex index = getIndex(AttributeIndex.class);
+		if (index != null)
+			return index.getFilesBySize(minSize, maxSize, false);
+		return sortedFiles(file -> file.getSize() >= minSize && file.getSize() <= maxSize,
+				Comparator.comparingInt(File::getSize));
+	}
+	
+	/**
+	 * Return a stream over the given number of largest files directly or indirectly
+	 * in this directory, from the largest file on.
+	 * 
+	 * @param	number
+	 * 			The maximum number of files to return.
+	 * @return	| result.count() == min(number, number of files in this directory) &&
+	 * 			| for each file in the subtree not in result: 
+	 * 			|	for each other in result: file.getSize() <= other.getSize()
+	 * @throws	IllegalArgumentException
+	 * 			The given number is negative.
+	 * 			| number < 0
+	 */
+	public Stream<File> getLargestFiles(int number) throws IllegalArgumentException {
+		if (number < 0)
+			throw new IllegalArgumentException();
+		AttributeIndex index = getIndex(AttributeIndex.class);
+		if (index != null)
+			return index.getFilesBySize(0, Integer.MAX_VALUE, true).limit(number);
+		return sortedFiles(file -> true, Comparator.comparingInt(File::getSize).reversed()).limit(number);
+	}
+	
+	/**
+	 * Return a stream over the files directly or indirectly in this directory with a
+	 * modification time between the given dates (both inclusive), from the least
+	 * recently modified file on.
+	 * 
+	 * @param	from
+	 * 			The earliest modification time of the files to return.
+	 * @param	to
+	 * 			The latest modification time of the files to return.
+	 * @return	| for each file in result: file.getModificationTime() != null &&
+	 * 			|	!file.getModificationTime().before(from) && !file.getModificationTime().after(to) &&
+	 * 			|	this.isDirectOrIndirectParentOf(file)
+	 * @throws	IllegalArgumentException
+	 * 			One of the given dates is not effective.
+	 * 			| from == null || to == null
+	 * @note	Files that have never been modified have no modification time and are
+	 * 			not returned.
+	 */
+	public Stream<File> getFilesModifiedBetween(Date from, Date to) throws IllegalArgumentException {
+		if (from == null || to == null)
+			throw new IllegalArgumentException();
+		AttributeIndex index = getIndex(AttributeIndex.class);
+		if (index != null)
+			return index.getFilesByModificationTime(from.getTime(), to.getTime(), false);
+		return sortedFiles(file -> file.getModificationTime() != null &&
+					!file.getModificationTime().before(from) && !file.getModificationTime().after(to),
+				Comparator.comparing(File::getModificationTime));
+	}
+	
+	/**
+	 * Return a stream over the given number of least recently modified files directly
+	 * or indirectly in this directory, from the least recently modified file on.
+	 * 
+	 * @param	number
+	 * 			The maximum number of files to return.
+	 * @return	| result == getFilesModifiedBetween(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)).limit(number)
+	 * @throws	IllegalArgumentException
+	 * 			The given number is negative.
+	 * 			| number < 0
+	 */
+	public Stream<File> getLeastRecentlyModifiedFiles(int number) throws IllegalArgumentException {
+		if (number < 0)
+			throw new IllegalArgumentException();
+		return getFilesModifiedBetween(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)).limit(number);
+	}
+	
+	/**
+	 * Return a stream over the files directly or indirectly in this directory that
+	 * satisfy the given condition, sorted by the given order.
+	 */
+	@Model
+	private Stream<File> sortedFiles(Predicate<File> condition, Comparator<File> order) {
+		List<File> result = new ArrayList<File>();
+		forEachFileIn(this, file -> { if (condition.test(file)) result.add(file); });
+		result.sort(order);
+		return result.stream();
+	}
+	
+	/********************************
+	 * snapshot
+	 ********************************/
+	
+	/**
+	 * Return an immutable snapshot of the current state of this directory and
+	 * all items directly or indirectly in it.
+	 * 
+	 * @return	A snapshot with the name, writability and times of this directory,
+	 * 			and a snapshot of each of its items in the same order.
+	 * 			| result.getName().equals(getName()) && result.getNbItems() == getNbItems() &&
+	 * 			| for each I in 1..getNbItems():
+	 * 			|	result.getItemAt(I).getName().equals(getItemAt(I).getName())
+	 * @note	Snapshots are shared between successive calls as long as the items they
+	 * 			describe do not change, so only the directories on the paths to items that
+	 * 			changed since the previous snapshot are copied. A snapshot does not change
+	 * 			when this directory changes afterwards, and can be read by other threads
+	 * 			while this directory is being changed.
+	 * @note	No mutation may be in progress while the snapshot is taken.
+	 */
+	public DirectorySnapshot snapshot() {
+		return (DirectorySnapshot) getSnapshot();
+	}
+	
+	/**
+	 * Return a new snapshot of the current state of this directory.
+	 */
+	@Override @Model
+	DirectorySnapshot createSnapshot() {
+		return new DirectorySnapshot(this);
+	}
+	
+	/********************************
+	 * copies
+	 ********************************/
+	
+	/**
+	 * Return a copy of this directory and of all items directly or indirectly in it,
+	 * registered in the given target directory with the given name.
+	 * 
+	 * @param	target
+	 * 			The directory to register the copy in.
+	 * @param	newName
+	 * 			The name of the copy.
+	 * @effect	| result == copyTo(target, newName, false)
+	 */
+	public Directory copyTo(Directory target, String newName)
+			throws IllegalStateException, IllegalArgumentException, ItemNotWritableException, QuotaExceededException {
+		return copyTo(target, newName, false);
+	}
+	
+	/**
+	 * Return a copy of this directory and of all items directly or indirectly in it,
+	 * registered in the given target directory with the given name, copying the items
+	 * only when they are first used if so requested.
+	 * 
+	 * @param	target
+	 * 			The directory to register the copy in.
+	 * @param	newName
+	 * 			The name of the copy.
+	 * @param	copyOnWrite
+	 * 			Whether the items of each copied directory are only copied when the items
+	 * 			of that directory are first used.
+	 * @return	The copy is a new directory with the given name in the given target directory.
+	 * 			| result != this && result.getName().equals(newName) &&
+	 * 			| result.getParentDirectory() == target && (new target).hasAsItem(result)
+	 * @return	The copy has the writability of this directory, and for each item of this
+	 * 			directory a new item of the same kind, with the same name and writability,
+	 * 			in the same order. The items of directories are copied in the same way, files
+	 * 			have the same type and size, and links reference the same disk item.
+	 * 			| result.isWritable() == isWritable() && result.getNbItems() == getNbItems() &&
+	 * 			| for each I in 1..getNbItems():
+	 * 			|	result.getItemAt(I).getName().equals(getItemAt(I).getName())
+	 * @return	All items of the copy are created at the time of the copy, and have not been
+	 * 			modified since.
+	 * 			| result.getModificationTime() == null
+	 * @effect	The modification time of the target directory is updated.
+	 * 			| target.setModificationTime()
+	 * @throws	IllegalStateException
+	 * 			This directory is terminated.
+	 * 			| isTerminated()
+	 * @throws	IllegalArgumentException
+	 * 			The target directory is not effective or terminated, the given name is not
+	 * 			valid, or the target directory already has an item with the given name.
+	 * 			| target == null || target.isTerminated() || !isValidName(newName) ||
+	 * 			| target.exists(newName)
+	 * @throws	ItemNotWritableException(target)
+	 * 			The target directory is not writable.
+	 * 			| !target.isWritable()
+	 * @throws	QuotaExceededException(directory)
+	 * 			The copy would exceed a quota of the target directory or of one of its ancestors.
+	 * 			| !target.canAccept(1 + getNbDescendants(), getTotalDiskUsage())
+	 * @note	The copy is made from the snapshot of this directory, of which the items are
+	 * 			already ordered and counted. The copy of each directory registers the copies
+	 * 			of its items in that order and takes its totals from the snapshot, so no name
+	 * 			is checked and no position is searched, and copying takes a time linear in
+	 * 			the number of copied items.
+	 * @note	If the items are copied on write, only the copy of this directory is created
+	 * 			upfront. The items of a copied directory are created the first time they are
+	 * 			used, by a read or by a change, so parts of the copy that are never used are
+	 * 			never created and keep sharing the snapshot of this directory.
+	 * @note	The files of a copy must be added to the indexes of its ancestors, so a copy
+	 * 			in the subtree of a directory with a type index or an attribute index is
+	 * 			always made in full, even if its items are to be copied on write. The same
+	 * 			holds for the parts of a copy that are still shared with the snapshot when
+	 * 			the copy is moved under such a directory, or when such an index is kept for
+	 * 			one of its ancestors.
+	 * @note	The quotas, indexes, name filter and lazy removal of the directories are not
+	 * 			copied.
+	 */
+	public Directory copyTo(Directory target, String newName, boolean copyOnWrite)
+			throws IllegalStateException, IllegalArgumentException, ItemNotWritableException, QuotaExceededException {
+		if (isTerminated())
+			throw new IllegalStateException("Item is terminated!");
+		if (target == null || target.isTerminated() || !isValidName(newName) || target.exists(newName))
+			throw new IllegalArgumentException();
+		if (!target.isWritable())
+			throw new ItemNotWritableException(target);
+		DirectorySnapshot source = snapshot();
+		target.checkQuotas(1 + source.getNbDescendants(), source.getTotalDiskUsage());
+		Directory copy = new Directory(null, newName, source, new Date());
+		copy.setParentDirectory(target);
+		target.addAsItem(copy);
+		if (!copyOnWrite)
+			copy.copyAllPendingItems();
+		copy.fireDirectoryCopied();
+		return copy;
+	}
+	
+	/**
+	 * Variable referencing the snapshot of which this directory still has to copy the
+	 * items, or null if the items of this directory are registered.
+	 */
+	private volatile DirectorySnapshot pendingCopy = null;
+	
+	/**
+	 * Check whether the items of this directory still have to be copied.
+	 */
+	@Basic @Raw @Model
+	boolean hasPendingCopy() {
+		return pendingCopy != null;
+	}
+	
+	/**
+	 * Register copies of the items of the snapshot this directory is a copy of, if
+	 * they have not been registered yet.
+	 * 
+	 * @post	| !new.hasPendingCopy()
+	 * @note	No revision is recorded: the items that are registered are the items this
+	 * 			directory has had since it was copied, in every version. The copies may
+	 * 			therefore also be registered by a thread with an open read view.
+	 */
+	@Model @Raw
+	private void copyPendingItems() {
+		if (pendingCopy == null)
+			return;
+		synchronized (this) {
+			DirectorySnapshot source = pendingCopy;
+			if (source == null)
+				return;
+			Date creationTime = getCreationTime();
+			List<Item> copies = new ArrayList<Item>(source.getNbItems());
+			for (int i = 1; i <= source.getNbItems(); i++) {
+				ItemSnapshot item = source.getItemAt(i);
+				copies.add(item.copy(this, item.getName(), creationTime));
+			}
+			items = copies;
+			pendingCopy = null;
+		}
+	}
+	
+	/**
+	 * Register copies of the items of this directory and of all directories directly or
+	 * indirectly in it that still have to be copied.
+	 */
+	@Model
+	private void copyAllPendingItems() {
+		Deque<Directory> pending = new ArrayDeque<Directory>();
+		pending.push(this);
+		while (!pending.isEmpty())
+			for (Item item : pending.pop().getCurrentItems())
+				if (item instanceof Directory)
+					pending.push((Directory) item);
+	}
+	
+	/**
+	 * Commit the mutation in progress and notify all registered mutation listeners
+	 * that this directory has been created as a copy, together with all items in it.
+	 */
+	@Model
+	void fireDirectoryCopied() {
+		Versions.commit();
+		for (MutationListener listener : getMutationListeners())
+			listener.directoryCopied(this);
+	}
+	
+	/********************************
+	 * extra methods
+	 ********************************
+	
+	/**
+	 * return the total disk usage from this directory, with every direct and indirect item
+	 * 
+	 * @return	the total disk usage
+	 * @note	Unless the current thread has an open read view, the total size that
+	 * 			this directory keeps up to date is returned. Otherwise the subtree is
+	 * 			walked as of the pinned version.
+	 */
+	public long getTotalDiskUsage() {
+		if (Versions.getCurrentView() == null)
+			return totalSize;
+		long total = 0;
+		Deque<Directory> pending = new ArrayDeque<Directory>();
+		pending.push(this);
+		while (!pending.isEmpty())
+			for (Item item : pending.pop().getVersionedItems()) {
+				if (item instanceof Directory)
+					pending.push((Directory) item);
+				else if (item instanceof File)
+					total += ((File) item).getSize();
+			}
+		return total;
+	}
+	
+	/**
+	 * Terminates all items (direct and indirect) in this directory if they are all
+	 * writable.
+	 * 
+	 * @post	All items in this directory are terminated
+	 * 			| for all items in this {
+	 * 			|		item.isTerminated()
+	 * 			| }
+	 * @throws 	NotAllWritableException
+	 * 			Not all items in this directory are writable
+	 * 			| !this.allWritable()
+	 * @throws 	IllegalStateException
+	 * 			This item is not yet terminated and it can not be terminated.
+	 * 		   	| !isTerminated() && !canBeTerminated()
+	 */
+	public void deleteRecursive() throws NotAllWritableException, IllegalStateException {
+		if (this.allWritable() && this.canBeTerminated()){
+			DirectoryIterator dirIt = iterator();
+			while (dirIt.getNbRemainingItems() != 0){
+				if (dirIt.getCurrentItem() instanceof Directory){
+					Directory dir = (Directory)dirIt.getCurrentItem();
+					dir.deleteRecursive();
+					dir.terminate();
+				}
+				else {
+					dirIt.getCurrentItem().terminate();
+				}
+				dirIt.advance();
+			}
+		}
+		else {
+			throw new NotAllWritableException(this);
+		}
+	}
+	
+	/**
+	 * Return if all direct and indirect items are writable or not.
+	 * 
+	 * @return	true if and only if all direct and indirect items are writable,
+	 * 			false otherwise.
+	 * 			| result ==
+	 * 			| (for all items in this {
+	 * 			|		item.isWritable()
+	 * 			| })
+	 * @note	This check completes in constant time, since every directory counts
+	 * 			the files and directories in its subtree that are not writable.
+	 */
+	private boolean allWritable(){
+		return this.isWritable() && getNbNotWritableDescendants() == 0;
+	}
+	
+	/**
+	 * Variable registering the number of files and directories that are not writable
+	 * among the direct and indirect items of this directory.
+	 */
+	private volatile int nbNotWritableDescendants = 0;
+	
+	/**
+	 * Return the number of files and directories that are not writable among the
+	 * direct and indirect items of this directory.
+	 * 
+	 * @return	| result == count of items in this {
+	 * 			|	(item instanceof DiskItem) && !item.isWritable()
+	 * 			| }
+	 * @note	In a thread with an open read view, the items are counted as of
+	 * 			the pinned version.
+	 */
+	public int getNbNotWritableDescendants() {
+		if (Versions.getCurrentView() != null)
+			return getNotWritableDescendants().size();
+		return nbNotWritableDescendants;
+	}
+	
+	/**
+	 * Return the files and directories that are not writable among the direct and
+	 * indirect items of this directory.
+	 * 
+	 * @return	| for each item in this:
+	 * 			|	result.contains(item) == (item instanceof DiskItem) && !item.isWritable()
+	 * @note	Only the directories that have items that are not writable in their
+	 * 			subtree are visited, unless the current thread has an open read view.
+	 */
+	public List<Item> getNotWritableDescendants() {
+		List<Item> result = new ArrayList<Item>();
+		boolean guided = Versions.getCurrentView() == null;
+		Deque<Directory> pending = new ArrayDeque<Directory>();
+		pending.push(this);
+		while (!pending.isEmpty()) {
+			Directory directory = pending.pop();
+			if (guided && directory.nbNotWritableDescendants == 0)
+				continue;
+			for (int i = 1; i <= directory.getNbItems(); i++) {
+				Item item = directory.getItemAt(i);
+				if (item instanceof DiskItem && !item.isWritable())
+					result.add(item);
+				if (item instanceof Directory)
+					pending.push((Directory) item);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Return the number of files and directories that are not writable in the subtree
+	 * of the given item, including the item itself.
+	 */
+	@Model
+	private static int getNbNotWritableIn(@Raw Item item) {
+		int count = (item instanceof DiskItem && !item.isWritable) ? 1 : 0;
+		if (item instanceof Directory)
+			count += ((Directory) item).nbNotWritableDescendants;
+		return count;
+	}
+	
+	/**
+	 * Set the writability of this directory and of all files and directories in its
+	 * subtree to the given writability.
+	 * 
+	 * @param	writable
+	 * 			The new writability.
+	 * @effect	| setWritableRecursive(writable, false)
+	 */
+	public void setWritableRecursive(boolean writable) throws IllegalStateException {
+		setWritableRecursive(writable, false);
+	}
+	
+	/**
+	 * Set the writability of this directory and of all files and directories in its
+	 * subtree to the given writability, visiting the directories of the subtree in
+	 * parallel if so requested.
+	 * 
+	 * @param	writable
+	 * 			The new writability.
+	 * @param	parallel
+	 * 			Whether the directories of the subtree may be visited in parallel.
+	 * @post	| new.isWritable() == writable
+	 * @post	| for each item in this:
+	 * 			|	if (item instanceof DiskItem) then (new item).isWritable() == writable
+	 * @post	| new.getNbNotWritableDescendants() == (writable ? 0 : count of DiskItems in this)
+	 * @effect	The writability of every file and directory that changes is notified to the
+	 * 			mutation listeners, and all changes are committed as a single version.
+	 * @throws	IllegalStateException
+	 * 			This directory is terminated, or the current thread has an open read view.
+	 * 			| isTerminated() || Versions.getCurrentView() != null
+	 * @note	The subtree is visited once. The changes of the numbers of items that are not
+	 * 			writable are accumulated for all directories of the subtree during that visit,
+	 * 			rather than added along the ancestors of every item that changes, and the
+	 * 			version stamp of every directory is incremented once.
+	 * @note	The subtree is visited while holding the lock guarding the totals, which
+	 * 			every change of the writability of a single item takes as well. The numbers
+	 * 			of items that are not writable are only adjusted by the changes made here,
+	 * 			so concurrent changes of writability and of the items are never lost.
+	 * @note	Unlike setWritable(boolean), this method also makes directories that are not
+	 * 			writable writable again, so a subtree that has been made read-only as a whole
+	 * 			can be made writable as a whole. The writability of the ancestors of this
+	 * 			directory is neither checked nor changed.
+	 */
+	public void setWritableRecursive(boolean writable, boolean parallel) throws IllegalStateException {
+		if (isTerminated())
+			throw new IllegalStateException("Directory is terminated!");
+		Versions.getWriteVersion();
+		Versions.beginBatch();
+		try {
+			List<DiskItem> changed;
+			synchronized (totalsLock) {
+				int delta;
+				if (parallel) {
+					WritabilityTask task = new WritabilityTask(this, writable);
+					changed = ForkJoinPool.commonPool().invoke(task);
+					delta = task.getDelta();
+				} else {
+					changed = new ArrayList<DiskItem>();
+					List<Directory> directories = new ArrayList<Directory>();
+					Deque<Directory> pending = new ArrayDeque<Directory>();
+					pending.push(this);
+					while (!pending.isEmpty()) {
+						Directory directory = pending.pop();
+						directories.add(directory);
+						for (Item item : directory.getCurrentItems())
+							if (item instanceof Directory)
+								pending.push((Directory) item);
+					}
+					//every directory follows its ancestors, so the subdirectories are done first
+					Map<Directory, Integer> deltas = new IdentityHashMap<Directory, Integer>();
+					delta = 0;
+					for (int i = directories.size() - 1; i >= 0; i--) {
+						Directory directory = directories.get(i);
+						Integer below = deltas.remove(directory);
+						delta = directory.setWritabilityOfItems(writable, (below == null) ? 0 : below, changed);
+						if (directory != this)
+							deltas.merge(directory.getParentDirectory(), delta, Integer::sum);
+					}
+				}
+				if (this.isWritable != writable) {
+					recordRevision(WRITABILITY, this.isWritable);
+					this.isWritable = writable;
+					invalidateSnapshot();
+					incrementVersionStamps();
+					changed.add(this);
+					delta += writable ? -1 : 1;
+				}
+				if (getParentDirectory() != null)
+					getParentDirectory().addNotWritableDescendants(delta);
+			}
+			for (DiskItem item : changed)
+				item.fireWritabilityChanged();
+		} finally {
+			Versions.endBatch();
+		}
+	}
+	
+	/**
+	 * Set the writability of the files and directories of this directory to the given
+	 * writability, and add those of which the writability changes to the given list.
+	 * The number of items in the subtree of this directory that are not writable is
+	 * adjusted by the changes of its items and by the given change in the subtrees of
+	 * its subdirectories.
+	 *
+	 * @return	The change of the number of items in the subtree of this directory that
+	 * 			are not writable.
+	 */
+	@Model
+	private int setWritabilityOfItems(boolean writable, int descendantsDelta, List<DiskItem> changed) {
+		int delta = descendantsDelta;
+		boolean changes = false;
+		for (Item item : getCurrentItems()) {
+			if (!(item instanceof DiskItem))
+				continue;
+			if (item.isWritable != writable) {
+				item.recordRevision(WRITABILITY, item.isWritable);
+				item.isWritable = writable;
+				item.invalidateSnapshot();
+				if (item instanceof Directory)
+					((Directory) item).incrementVersionStamp();
+				changed.add((DiskItem) item);
+				changes = true;
+				delta += writable ? -1 : 1;
+			}
+		}
+		if (changes)
+			incrementVersionStamp();
+		nbNotWritableDescendants += delta;
+		return delta;
+	}
+	
+	/**
+	 * A class of tasks setting the writability of the files and directories in the
+	 * subtree of a directory, returning those of which the writability changes.
+	 * The subdirectories are handled by tasks of their own, before the items of the
+	 * directory itself.
+	 */
+	private static final class WritabilityTask extends RecursiveTask<List<DiskItem>> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		WritabilityTask(Directory directory, boolean writable) {
+			this.directory = directory;
+			this.writable = writable;
+		}
+		
+		private final Directory directory;
+		
+		private final boolean writable;
+		
+		/**
+		 * Variable registering the change of the number of items in the subtree of the
+		 * directory that are not writable, once this task is done.
+		 */
+		private int delta;
+		
+		int getDelta() {
+			return delta;
+		}
+		
+		@Override
+		protected List<DiskItem> compute() {
+			List<WritabilityTask> subtasks = new ArrayList<WritabilityTask>();
+			for (Item item : directory.getCurrentItems())
+				if (item instanceof Directory)
+					subtasks.add(new WritabilityTask((Directory) item, writable));
+			invokeAll(subtasks);
+			List<DiskItem> changed = new ArrayList<DiskItem>();
+			int descendantsDelta = 0;
+			for (WritabilityTask subtask : subtasks) {
+				changed.addAll(subtask.join());
+				descendantsDelta += subtask.getDelta();
+			}
+			delta = directory.setWritabilityOfItems(writable, descendantsDelta, changed);
+			return changed;
+		}
+	}
+	
+	/**
+	 * Add the given number to the number of files and directories that are not writable
+	 * among the items of this directory and of each of its ancestors.
+	 */
+	@Model
+	void addNotWritableDescendants(int delta) {
+		addToTotals(0, 0, delta);
+	}
+	
+	/**
+	 * Set the writability of the given disk item to the given writability, and add the
+	 * change to the numbers of items that are not writable of its ancestors, in one step
+	 * under the lock guarding the totals.
+	 */
+	@Model
+	static void changeWritability(@Raw DiskItem item, boolean writable) {
+		synchronized (totalsLock) {
+			if (item.isWritable != writable && item.getParentDirectory() != null)
+				item.getParentDirectory().addNotWritableDescendants(writable ? -1 : 1);
+			item.isWritable = writable;
+		}
+	}
+	
+	/********************************
+	 * quotas
+	 ********************************/
+	
+	/**
+	 * Constant registering the value of a quota that does not limit anything.
+	 */
+	public static final long NO_QUOTA = Long.MAX_VALUE;
+	
+	/**
+	 * Object guarding the totals of all directories, so that a quota is checked and
+	 * the totals are changed along all ancestors in a single step.
+	 */
+	private static final Object totalsLock = new Object();
+	
+	/**
+	 * Variable registering the number of direct and indirect items of this directory.
+	 */
+	private volatile int nbDescendants = 0;
+	
+	/**
+	 * Variable registering the total size of the files in the subtree of this directory.
+	 */
+	private volatile long totalSize = 0;
+	
+	/**
+	 * Variable registering the largest number of direct and indirect items this directory may have.
+	 */
+	private volatile long itemQuota = NO_QUOTA;
+	
+	/**
+	 * Variable registering the largest total size of the files in the subtree of this directory.
+	 */
+	private volatile long byteQuota = NO_QUOTA;
+	
+	/**
+	 * Return the number of direct and indirect items of this directory.
+	 * 
+	 * @return	| result == count of items in this
+	 * @note	In a thread with an open read view, the items are counted as of
+	 * 			the pinned version.
+	 */
+	public int getNbDescendants() {
+		if (Versions.getCurrentView() == null)
+			return nbDescendants;
+		int count = 0;
+		Deque<Directory> pending = new ArrayDeque<Directory>();
+		pending.push(this);
+		while (!pending.isEmpty())
+			for (Item item : pending.pop().getVersionedItems()) {
+				count++;
+				if (item instanceof Directory)
+					pending.push((Directory) item);
+			}
+		return count;
+	}
+	
+	/**
+	 * Return the largest number of direct and indirect items this directory may have.
+	 */
+	@Basic @Raw
+	public long getItemQuota() {
+		return itemQuota;
+	}
+	
+	/**
+	 * Set the largest number of direct and indirect items this directory may have.
+	 * 
+	 * @param	quota
+	 * 			The new quota, or NO_QUOTA.
+	 * @post	| new.getItemQuota() == quota
+	 * @throws	IllegalArgumentException
+	 * 			| quota < 0
+	 * @note	The items this directory already has are not affected by the quota,
+	 * 			even if there are more of them.
+	 */
+	public void setItemQuota(long quota) throws IllegalArgumentException {
+		if (quota < 0)
+			throw new IllegalArgumentException();
+		this.itemQuota = quota;
+	}
+	
+	/**
+	 * Return the largest total size of the files in the subtree of this directory.
+	 */
+	@Basic @Raw
+	public long getByteQuota() {
+		return byteQuota;
+	}
+	
+	/**
+	 * Set the largest total size of the files in the subtree of this directory.
+	 * 
+	 * @param	quota
+	 * 			The new quota, or NO_QUOTA.
+	 * @post	| new.getByteQuota() == quota
+	 * @throws	IllegalArgumentException
+	 * 			| quota < 0
+	 * @note	The files this directory already has are not affected by the quota,
+	 * 			even if they are larger.
+	 */
+	public void setByteQuota(long quota) throws IllegalArgumentException {
+		if (quota < 0)
+			throw new IllegalArgumentException();
+		this.byteQuota = quota;
+	}
+	
+	/**
+	 * Check whether the given number of items and the given number of bytes can be
+	 * added to the subtree of this directory without exceeding the quotas of this
+	 * directory and of its ancestors.
+	 * 
+	 * @return	| result == (for each directory in this directory and its ancestors:
+	 * 			|	(nbItems <= 0 || directory.getNbDescendants() + nbItems <= directory.getItemQuota()) &&
+	 * 			|	(size <= 0 || directory.getTotalDiskUsage() + size <= directory.getByteQuota()))
+	 */
+	@Raw
+	public boolean canAccept(int nbItems, long size) {
+		return getExceededDirectory(nbItems, size) == null;
+	}
+	
+	/**
+	 * Check that the given number of items and the given number of bytes can be added
+	 * to the subtree of this directory.
+	 * 
+	 * @throws	QuotaExceededException(directory)
+	 * 			| !canAccept(nbItems, size)
+	 */
+	@Model
+	void checkQuotas(int nbItems, long size) throws QuotaExceededException {
+		Directory exceeded = getExceededDirectory(nbItems, size);
+		if (exceeded != null)
+			throw new QuotaExceededException(exceeded);
+	}
+	
+	/**
+	 * Return the first of this directory and its ancestors of which a quota would be
+	 * exceeded by adding the given number of items and bytes, or null if there is none.
+	 */
+	@Model
+	private Directory getExceededDirectory(int nbItems, long size) {
+		if (nbItems <= 0 && size <= 0)
+			return null;
+		for (Directory directory = this; directory != null; directory = directory.getParentDirectory())
+			if ((nbItems > 0 && directory.nbDescendants + (long) nbItems > directory.itemQuota)
+					|| (size > 0 && directory.totalSize + size > directory.byteQuota))
+				return directory;
+		return null;
+	}
+	
+	/**
+	 * Add the given numbers of items, bytes and items that are not writable to the totals
+	 * of this directory and of all its ancestors, if no quota is exceeded by doing so.
+	 * 
+	 * @throws	QuotaExceededException(directory)
+	 * 			No total has been changed.
+	 * 			| !canAccept(nbItems, size)
+	 */
+	@Model
+	void reserve(int nbItems, long size, int nbNotWritable) throws QuotaExceededException {
+		synchronized (totalsLock) {
+			checkQuotas(nbItems, size);
+			addToTotals(nbItems, size, nbNotWritable);
+		}
+	}
+	
+	/**
+	 * Add the given numbers of items, bytes and items that are not writable to the totals
+	 * of this directory and of all its ancestors, without checking the quotas.
+	 */
+	@Model
+	void addToTotals(int nbItems, long size, int nbNotWritable) {
+		if (nbItems == 0 && size == 0 && nbNotWritable == 0)
+			return;
+		synchronized (totalsLock) {
+			for (Directory directory = this; directory != null; directory = directory.getParentDirectory()) {
+				directory.nbDescendants += nbItems;
+				directory.totalSize += size;
+				directory.nbNotWritableDescendants += nbNotWritable;
+			}
+		}
+	}
+	
+	/**
+	 * Return the number of items in the subtree of the given item, including the item itself.
+	 */
+	@Model
+	private static int getNbItemsIn(@Raw Item item) {
+		return (item instanceof Directory) ? 1 + ((Directory) item).nbDescendants : 1;
+	}
+	
+	/**
+	 * Return the total size of the files in the subtree of the given item.
+	 */
+	@Model
+	private static long getSizeIn(@Raw Item item) {
+		if (item instanceof Directory)
+			return ((Directory) item).totalSize;
+		if (item instanceof File)
+			return ((File) item).getCurrentSize();
+		return 0;
 	}
 	
 }
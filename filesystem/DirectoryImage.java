@@ -0,0 +1,668 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of read-only, memory-mapped images of a directory tree.
+ *
+ * An image is written once from a live directory with writeImage(Directory, Path)
+ * and opened with open(Path). Opening only maps the file in memory: the items
+ * of the image are never deserialized, every item view reads its name, size, type,
+ * timestamps, writability and link target straight from the mapped buffers.
+ *
+ * The image file consists of a header, a table of fixed size item records
+ * and a pool of item names. The records are stored in breadth-first order,
+ * such that the items of each directory occupy a contiguous range of records,
+ * in the same (case insensitive) order as in the directory itself.
+ *
+ * @invar	The number of items in this image is not negative.
+ * 			| getNbImageItems() >= 0
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class DirectoryImage {
+
+	/**********************************************************
+	 * Layout
+	 **********************************************************/
+
+	/**
+	 * Constant registering the magic number identifying an image file.
+	 */
+	private static final int MAGIC = 0x4653494D;
+
+	/**
+	 * Constant registering the version of the image format.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Constant registering the size of the header (in bytes).
+	 */
+	private static final int HEADER_SIZE = 64;
+
+	/**
+	 * Constant registering the size of one item record (in bytes).
+	 */
+	private static final int RECORD_SIZE = 56;
+
+	/**
+	 * Constant registering the number of records in one mapped segment.
+	 * A single mapped buffer can not exceed 2 GB, so the record table is
+	 * mapped in segments of this number of records.
+	 */
+	private static final int RECORDS_PER_SEGMENT = 1 << 24;
+
+	/**
+	 * Constant registering the size of one mapped segment of the name pool (in bytes).
+	 * Names never cross the border of a segment.
+	 */
+	private static final int NAME_SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * Offsets of the fields in an item record.
+	 */
+	private static final int KIND = 0, FLAGS = 1, TYPE = 2, PARENT = 4, FIRST_CHILD = 8,
+			NB_CHILDREN = 12, SIZE = 16, LINK_TARGET = 20, CREATION_TIME = 24,
+			MODIFICATION_TIME = 32, NAME_OFFSET = 40, NAME_LENGTH = 48;
+
+	/**
+	 * Constants registering the kinds of items in an image.
+	 */
+	private static final byte DIRECTORY = 0, FILE = 1, DIRECTORY_LINK = 2, FILE_LINK = 3;
+
+	/**
+	 * Constant registering the flag for writable items.
+	 */
+	private static final byte WRITABLE = 1;
+
+	/**
+	 * Constant registering a missing modification time.
+	 */
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Constant registering a missing index (no parent or no link target).
+	 */
+	private static final int NO_INDEX = -1;
+
+	/**********************************************************
+	 * Writing
+	 **********************************************************/
+
+	/**
+	 * Write an image of the given directory and all its direct and indirect
+	 * items to the file at the given path.
+	 *
+	 * @param	directory
+	 * 			The directory to write an image of.
+	 * @param	path
+	 * 			The path of the image file.
+	 * @post	The file at the given path contains an image of the given directory,
+	 * 			that can be opened with open(path).
+	 * 			| open(path).getRoot().getName().equals(directory.getName())
+	 * @note	Links to disk items outside the given directory, or to terminated disk
+	 * 			items are written without a link target.
+	 * @throws	IllegalArgumentException
+	 * 			The given directory or path is not effective, or the given directory
+	 * 			is terminated.
+	 * 			| directory == null || path == null || directory.isTerminated()
+	 * @throws	IOException
+	 * 			The image file could not be written.
+	 */
+	public static void writeImage(Directory directory, Path path) throws IllegalArgumentException, IOException {
+		if (directory == null || path == null || directory.isTerminated())
+			throw new IllegalArgumentException();
+		// first pass: count the items and collect the link targets
+		long count = 0;
+		Set<DiskItem> targets = Collections.newSetFromMap(new IdentityHashMap<DiskItem, Boolean>());
+		ArrayDeque<Directory> queue = new ArrayDeque<Directory>();
+		queue.add(directory);
+		count++;
+		while (!queue.isEmpty()) {
+			Directory dir = queue.poll();
+			for (int i = 1; i <= dir.getNbItems(); i++) {
+				Item item = dir.getItemAt(i);
+				count++;
+				if (item instanceof Directory)
+					queue.add((Directory) item);
+				else if (item instanceof Link) {
+					DiskItem target = getTarget((Link) item);
+					if (target != null)
+						targets.add(target);
+				}
+			}
+		}
+		if (count > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Directory too large for an image");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			new ImageWriter(channel, (int) count, targets).write(directory);
+		}
+	}
+
+	/**
+	 * Return the disk item referenced by the given link, or null if that disk
+	 * item has been terminated.
+	 */
+	@Model
+	private static DiskItem getTarget(Link link) {
+		try {
+			return link.getRefDiskItem();
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * A class writing the records and names of an image in one breadth-first pass.
+	 */
+	private static final class ImageWriter {
+
+		private final FileChannel channel;
+		private final int count;
+		private final Set<DiskItem> targets;
+		private final Map<DiskItem, Integer> targetIndices = new IdentityHashMap<DiskItem, Integer>();
+		private final Map<Integer, DiskItem> pendingLinks = new HashMap<Integer, DiskItem>();
+		private final ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * 1024);
+		private final ByteBuffer names = ByteBuffer.allocate(64 * 1024);
+		private long recordsPosition = HEADER_SIZE;
+		private final long namesStart;
+		private long namesPosition;
+		private long nameOffset = 0;
+
+		private ImageWriter(FileChannel channel, int count, Set<DiskItem> targets) {
+			this.channel = channel;
+			this.count = count;
+			this.targets = targets;
+			this.namesStart = HEADER_SIZE + (long) count * RECORD_SIZE;
+			this.namesPosition = namesStart;
+		}
+
+		private void write(Directory directory) throws IOException {
+			ArrayDeque<Directory> queue = new ArrayDeque<Directory>();
+			ArrayDeque<Integer> parents = new ArrayDeque<Integer>();
+			int index = 0;
+			int next = 1;
+			writeRecord(index++, directory, NO_INDEX, next);
+			next += directory.getNbItems();
+			queue.add(directory);
+			parents.add(0);
+			while (!queue.isEmpty()) {
+				Directory dir = queue.poll();
+				int parent = parents.poll();
+				for (int i = 1; i <= dir.getNbItems(); i++) {
+					Item item = dir.getItemAt(i);
+					int firstChild = NO_INDEX;
+					if (item instanceof Directory) {
+						firstChild = next;
+						next += ((Directory) item).getNbItems();
+						queue.add((Directory) item);
+						parents.add(index);
+					}
+					writeRecord(index++, item, parent, firstChild);
+				}
+			}
+			flushRecords();
+			flushNames();
+			// links to items that came later in the breadth-first order
+			for (Map.Entry<Integer, DiskItem> entry : pendingLinks.entrySet()) {
+				Integer target = targetIndices.get(entry.getValue());
+				if (target != null) {
+					ByteBuffer buffer = ByteBuffer.allocate(4);
+					buffer.putInt(0, target);
+					channel.write(buffer, HEADER_SIZE + (long) entry.getKey() * RECORD_SIZE + LINK_TARGET);
+				}
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(count).putInt(RECORD_SIZE);
+			header.putLong(namesStart).putLong(nameOffset);
+			header.rewind();
+			channel.write(header, 0);
+		}
+
+		private void writeRecord(int index, Item item, int parent, int firstChild) throws IOException {
+			if (targets.contains(item))
+				targetIndices.put((DiskItem) item, index);
+			byte[] name = item.getName().getBytes(StandardCharsets.US_ASCII);
+			if (records.remaining() < RECORD_SIZE)
+				flushRecords();
+			int base = records.position();
+			records.put(kindOf(item));
+			records.put(item.isWritable() ? WRITABLE : 0);
+			records.put(item instanceof File ? (byte) ((File) item).getType().ordinal() : 0);
+			records.put((byte) 0);
+			records.putInt(parent);
+			records.putInt(firstChild);
+			records.putInt(item instanceof Directory ? ((Directory) item).getNbItems() : 0);
+			records.putInt(item instanceof File ? ((File) item).getSize() : 0);
+			int linkTarget = NO_INDEX;
+			if (item instanceof Link) {
+				DiskItem target = getTarget((Link) item);
+				if (target != null) {
+					Integer known = targetIndices.get(target);
+					if (known != null)
+						linkTarget = known;
+					else
+						pendingLinks.put(index, target);
+				}
+			}
+			records.putInt(linkTarget);
+			records.putLong(item.getCreationTime().getTime());
+			records.putLong(item.getModificationTime() == null ? NO_TIME : item.getModificationTime().getTime());
+			records.putLong(reserveName(name.length));
+			records.putInt(name.length);
+			records.putInt(0);
+			assert records.position() - base == RECORD_SIZE;
+			writeName(name);
+		}
+
+		private long reserveName(int length) throws IOException {
+			long segmentEnd = (nameOffset / NAME_SEGMENT_SIZE + 1) * NAME_SEGMENT_SIZE;
+			if (nameOffset + length > segmentEnd) {
+				// pad up to the next segment such that no name crosses a segment
+				flushNames();
+				namesPosition += segmentEnd - nameOffset;
+				nameOffset = segmentEnd;
+			}
+			return nameOffset;
+		}
+
+		private void writeName(byte[] name) throws IOException {
+			if (names.remaining() < name.length)
+				flushNames();
+			if (name.length > names.capacity()) {
+				channel.write(ByteBuffer.wrap(name), namesPosition);
+				namesPosition += name.length;
+			} else {
+				names.put(name);
+			}
+			nameOffset += name.length;
+		}
+
+		private void flushRecords() throws IOException {
+			records.flip();
+			while (records.hasRemaining())
+				recordsPosition += channel.write(records, recordsPosition);
+			records.clear();
+		}
+
+		private void flushNames() throws IOException {
+			names.flip();
+			while (names.hasRemaining())
+				namesPosition += channel.write(names, namesPosition);
+			names.clear();
+		}
+
+		private static byte kindOf(Item item) {
+			if (item instanceof Directory)
+				return DIRECTORY;
+			if (item instanceof File)
+				return FILE;
+			if (item instanceof DirectoryLink)
+				return DIRECTORY_LINK;
+			return FILE_LINK;
+		}
+	}
+
+	/**********************************************************
+	 * Opening
+	 **********************************************************/
+
+	/**
+	 * Open the image stored in the file at the given path.
+	 *
+	 * @param	path
+	 * 			The path of the image file.
+	 * @return	An image mapping the file at the given path. No items are read
+	 * 			while opening the image.
+	 * @throws	IllegalArgumentException
+	 * 			The given path is not effective.
+	 * 			| path == null
+	 * @throws	IOException
+	 * 			The file could not be mapped or is not an image file.
+	 */
+	public static DirectoryImage open(Path path) throws IllegalArgumentException, IOException {
+		if (path == null)
+			throw new IllegalArgumentException();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new DirectoryImage(channel);
+		}
+	}
+
+	/**
+	 * Initialize a new image mapping the given channel.
+	 *
+	 * @param	channel
+	 * 			The channel to map.
+	 * @throws	IOException
+	 * 			The given channel could not be mapped or does not contain an image.
+	 */
+	private DirectoryImage(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining() && channel.read(header, header.position()) > 0);
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION
+				|| header.getInt(12) != RECORD_SIZE)
+			throw new IOException("Not a directory image");
+		this.nbItems = header.getInt(8);
+		long namesStart = header.getLong(16);
+		long namesLength = header.getLong(24);
+		int nbRecordSegments = (int) ((nbItems + (long) RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+		recordSegments = new MappedByteBuffer[nbRecordSegments];
+		for (int i = 0; i < nbRecordSegments; i++) {
+			long first = (long) i * RECORDS_PER_SEGMENT;
+			long nb = Math.min(RECORDS_PER_SEGMENT, nbItems - first);
+			recordSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE, nb * RECORD_SIZE);
+		}
+		int nbNameSegments = (int) ((namesLength + NAME_SEGMENT_SIZE - 1) / NAME_SEGMENT_SIZE);
+		nameSegments = new MappedByteBuffer[nbNameSegments];
+		for (int i = 0; i < nbNameSegments; i++) {
+			long first = (long) i * NAME_SEGMENT_SIZE;
+			nameSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, namesStart + first,
+					Math.min(NAME_SEGMENT_SIZE, namesLength - first));
+		}
+	}
+
+	/**
+	 * Variable registering the number of items in this image.
+	 */
+	private final int nbItems;
+
+	/**
+	 * Variable referencing the mapped segments of the record table.
+	 */
+	private final MappedByteBuffer[] recordSegments;
+
+	/**
+	 * Variable referencing the mapped segments of the name pool.
+	 */
+	private final MappedByteBuffer[] nameSegments;
+
+	/**
+	 * Return the number of items in this image, the root directory included.
+	 */
+	@Basic @Immutable
+	public int getNbImageItems() {
+		return nbItems;
+	}
+
+	/**
+	 * Return a view on the root directory of this image.
+	 *
+	 * @return	A view on the directory this image was written from.
+	 * 			| result.isDirectory() && result.getParent() == null
+	 */
+	public ItemView getRoot() {
+		return new ItemView(0);
+	}
+
+	/**
+	 * Return a view on the item stored at the given record index.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 * 			The given index is negative or not smaller than the number of items.
+	 * 			| index < 0 || index >= getNbImageItems()
+	 */
+	private ItemView viewAt(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= nbItems)
+			throw new IndexOutOfBoundsException("Index out of bounds: " + index);
+		return new ItemView(index);
+	}
+
+	private ByteBuffer segmentOf(int index) {
+		return recordSegments[index / RECORDS_PER_SEGMENT];
+	}
+
+	private int offsetOf(int index) {
+		return (index % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+	}
+
+	private byte getByte(int index, int field) {
+		return segmentOf(index).get(offsetOf(index) + field);
+	}
+
+	private int getInt(int index, int field) {
+		return segmentOf(index).getInt(offsetOf(index) + field);
+	}
+
+	private long getLong(int index, int field) {
+		return segmentOf(index).getLong(offsetOf(index) + field);
+	}
+
+	/**
+	 * Compare the name of the item at the given index with the given name, ignoring case,
+	 * without decoding the stored name.
+	 *
+	 * @return	A negative number, zero or a positive number if the stored name
+	 * 			comes before, equals or comes after the given name, ignoring case.
+	 */
+	private int compareNameIgnoreCase(int index, String name) {
+		long offset = getLong(index, NAME_OFFSET);
+		int length = getInt(index, NAME_LENGTH);
+		ByteBuffer segment = nameSegments[(int) (offset / NAME_SEGMENT_SIZE)];
+		int base = (int) (offset % NAME_SEGMENT_SIZE);
+		int n = Math.min(length, name.length());
+		for (int i = 0; i < n; i++) {
+			char c1 = Character.toLowerCase(Character.toUpperCase((char) segment.get(base + i)));
+			char c2 = Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+			if (c1 != c2)
+				return c1 - c2;
+		}
+		return length - name.length();
+	}
+
+	/**********************************************************
+	 * Item views
+	 **********************************************************/
+
+	/**
+	 * A class of views on the items in a directory image. A view is a
+	 * light-weight handle on a record of the image; it reads all its
+	 * properties from the mapped image on demand.
+	 */
+	public final class ItemView {
+
+		/**
+		 * Initialize a new view on the record at the given index.
+		 */
+		private ItemView(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * Variable registering the index of the record of this view.
+		 */
+		private final int index;
+
+		/**
+		 * Return the name of the viewed item.
+		 */
+		public String getName() {
+			long offset = getLong(index, NAME_OFFSET);
+			int length = getInt(index, NAME_LENGTH);
+			byte[] bytes = new byte[length];
+			ByteBuffer segment = nameSegments[(int) (offset / NAME_SEGMENT_SIZE)].duplicate();
+			segment.position((int) (offset % NAME_SEGMENT_SIZE));
+			segment.get(bytes);
+			return new String(bytes, StandardCharsets.US_ASCII);
+		}
+
+		/**
+		 * Check whether the viewed item is a directory.
+		 */
+		public boolean isDirectory() {
+			return getByte(index, KIND) == DIRECTORY;
+		}
+
+		/**
+		 * Check whether the viewed item is a file.
+		 */
+		public boolean isFile() {
+			return getByte(index, KIND) == FILE;
+		}
+
+		/**
+		 * Check whether the viewed item is a link.
+		 */
+		public boolean isLink() {
+			byte kind = getByte(index, KIND);
+			return kind == DIRECTORY_LINK || kind == FILE_LINK;
+		}
+
+		/**
+		 * Check whether the viewed item was writable.
+		 */
+		public boolean isWritable() {
+			return (getByte(index, FLAGS) & WRITABLE) != 0;
+		}
+
+		/**
+		 * Return the type of the viewed file.
+		 *
+		 * @return	The type of the viewed file, null if the viewed item is no file.
+		 */
+		public Type getType() {
+			return isFile() ? Type.values()[getByte(index, TYPE)] : null;
+		}
+
+		/**
+		 * Return the size of the viewed file (in bytes).
+		 *
+		 * @return	The size of the viewed file, zero if the viewed item is no file.
+		 */
+		public int getSize() {
+			return getInt(index, SIZE);
+		}
+
+		/**
+		 * Return the creation time of the viewed item.
+		 */
+		public Date getCreationTime() {
+			return new Date(getLong(index, CREATION_TIME));
+		}
+
+		/**
+		 * Return the modification time of the viewed item, null if it had not
+		 * been modified.
+		 */
+		public Date getModificationTime() {
+			long time = getLong(index, MODIFICATION_TIME);
+			return time == NO_TIME ? null : new Date(time);
+		}
+
+		/**
+		 * Return a view on the parent directory of the viewed item, null if the
+		 * viewed item is the root of the image.
+		 */
+		public ItemView getParent() {
+			int parent = getInt(index, PARENT);
+			return parent == NO_INDEX ? null : viewAt(parent);
+		}
+
+		/**
+		 * Return a view on the disk item referenced by the viewed link.
+		 *
+		 * @return	Null if the viewed item is no link or if its target is not part of the image.
+		 */
+		public ItemView getLinkTarget() {
+			if (!isLink())
+				return null;
+			int target = getInt(index, LINK_TARGET);
+			return target == NO_INDEX ? null : viewAt(target);
+		}
+
+		/**
+		 * Return the number of items in the viewed directory.
+		 *
+		 * @return	Zero if the viewed item is no directory.
+		 */
+		public int getNbItems() {
+			return getInt(index, NB_CHILDREN);
+		}
+
+		/**
+		 * Return a view on the item at the given position in the viewed directory.
+		 *
+		 * @param	index
+		 * 			The position of the item to return.
+		 * @throws	IndexOutOfBoundsException
+		 * 			The given position is not strictly positive or exceeds the number of items.
+		 * 			| (index < 1) || (index > getNbItems())
+		 */
+		public ItemView getItemAt(int index) throws IndexOutOfBoundsException {
+			if (index < 1 || index > getNbItems())
+				throw new IndexOutOfBoundsException("Index out of bounds: " + index);
+			return viewAt(getInt(this.index, FIRST_CHILD) + index - 1);
+		}
+
+		/**
+		 * Return a view on the item in the viewed directory with the given name (ignoring case).
+		 *
+		 * @return	The view on the item with the given name, null if there is no such item.
+		 * @note	This operation completes in O(log(n)) time, and only the names
+		 * 			visited by the binary search are touched.
+		 */
+		public ItemView getItem(String name) {
+			if (name == null)
+				return null;
+			int first = getInt(index, FIRST_CHILD);
+			int low = 0;
+			int high = getNbItems() - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int comparison = compareNameIgnoreCase(first + middle, name);
+				if (comparison == 0)
+					return viewAt(first + middle);
+				if (comparison > 0)
+					high = middle - 1;
+				else
+					low = middle + 1;
+			}
+			return null;
+		}
+
+		/**
+		 * Check whether this view equals the given object.
+		 *
+		 * @return	True if and only if the given object is a view on the same record
+		 * 			of the same image.
+		 */
+		@Override
+		public boolean equals(Object other) {
+			return (other instanceof ItemView) && ((ItemView) other).index == index
+					&& ((ItemView) other).getImage() == getImage();
+		}
+
+		@Override
+		public int hashCode() {
+			return index;
+		}
+
+		/**
+		 * Return the image of this view.
+		 */
+		private DirectoryImage getImage() {
+			return DirectoryImage.this;
+		}
+
+		/**
+		 * Return a textual representation of this view.
+		 */
+		@Override
+		public String toString() {
+			return isFile() ? getName() + "." + getType().getExtension() : getName();
+		}
+	}
+
+}
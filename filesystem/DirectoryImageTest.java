@@ -0,0 +1,86 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the public methods of the DirectoryImage Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class DirectoryImageTest {
+
+	Directory root;
+	Directory sub;
+	File file;
+	File otherFile;
+	FileLink link;
+	Path path;
+
+	@Before
+	public void setUpFixture() throws IOException {
+		root = new Directory("root");
+		sub = new Directory(root, "sub", false);
+		file = new File(root, "bestand", Type.JAVA, 120, true);
+		otherFile = new File(root, "Aap", Type.PDF, 5, false);
+		link = new FileLink("snelkoppeling", file, root);
+		path = Files.createTempFile("image", ".img");
+		DirectoryImage.writeImage(root, path);
+	}
+
+	@Test
+	public void testOpen_rootDirectory() throws IOException {
+		DirectoryImage image = DirectoryImage.open(path);
+		assertEquals(5, image.getNbImageItems());
+		DirectoryImage.ItemView view = image.getRoot();
+		assertTrue(view.isDirectory());
+		assertEquals("root", view.getName());
+		assertEquals(4, view.getNbItems());
+		assertNull(view.getParent());
+		assertEquals(root.getCreationTime(), view.getCreationTime());
+		Files.delete(path);
+	}
+
+	@Test
+	public void testOpen_itemsInDirectoryOrder() throws IOException {
+		DirectoryImage.ItemView view = DirectoryImage.open(path).getRoot();
+		for (int i = 1; i <= root.getNbItems(); i++)
+			assertEquals(root.getItemAt(i).getName(), view.getItemAt(i).getName());
+		Files.delete(path);
+	}
+
+	@Test
+	public void testGetItem_file() throws IOException {
+		DirectoryImage.ItemView view = DirectoryImage.open(path).getRoot().getItem("BESTAND");
+		assertTrue(view.isFile());
+		assertEquals(Type.JAVA, view.getType());
+		assertEquals(120, view.getSize());
+		assertTrue(view.isWritable());
+		assertEquals("root", view.getParent().getName());
+		assertNull(DirectoryImage.open(path).getRoot().getItem("geen"));
+		Files.delete(path);
+	}
+
+	@Test
+	public void testGetLinkTarget() throws IOException {
+		DirectoryImage.ItemView root = DirectoryImage.open(path).getRoot();
+		DirectoryImage.ItemView view = root.getItem("snelkoppeling");
+		assertTrue(view.isLink());
+		assertEquals(root.getItem("bestand"), view.getLinkTarget());
+		assertFalse(root.getItem("sub").isWritable());
+		Files.delete(path);
+	}
+
+	@Test (expected = IndexOutOfBoundsException.class)
+	public void testGetItemAt_illegalCase() throws IOException {
+		DirectoryImage.ItemView view = DirectoryImage.open(path).getRoot();
+		Files.delete(path);
+		view.getItemAt(5);
+	}
+
+}
@@ -1,5 +1,8 @@
 package filesystem;
 
+import java.util.Date;
+
+import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
 public class DirectoryLink extends Link{
@@ -50,6 +53,18 @@ public class DirectoryLink extends Link{
 		super(name, refDirectory,parent);
 	}
 	
+	/**
+	 * Initialize a new directory link in the given parent directory as a copy of the
+	 * directory link of which the given snapshot was taken, with the given name and
+	 * creation time.
+	 * 
+	 * @effect	| super(parent, name, source, creationTime)
+	 */
+	@Model
+	DirectoryLink(@Raw Directory parent, String name, LinkSnapshot source, Date creationTime) {
+		super(parent, name, source, creationTime);
+	}
+	
 	/*********************************
 	 * name
 	 *********************************
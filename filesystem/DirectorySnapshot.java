@@ -0,0 +1,186 @@
+package filesystem;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable snapshots of the state of a directory and all items directly
+ * or indirectly in it at some point in time.
+ *
+ * Snapshots of items that did not change are shared between snapshots of successive
+ * states, so a snapshot only takes memory for the directories on the paths to items
+ * that changed. Snapshots that are no longer referenced are reclaimed by the garbage
+ * collector.
+ *
+ * @invar	The items of each directory snapshot are ordered by name, ignoring case.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class DirectorySnapshot extends ItemSnapshot implements Iterable<ItemSnapshot> {
+
+	/**
+	 * Initialize a new snapshot of the current state of the given directory.
+	 *
+	 * @param	directory
+	 * 			The directory to take a snapshot of.
+	 * @effect	| super(directory)
+	 * @post	| new.getNbItems() == directory.getNbItems()
+	 * @post	| for each I in 1..directory.getNbItems():
+	 * 			|	new.getItemAt(I) == directory.getItemAt(I).getSnapshot()
+	 */
+	@Model
+	DirectorySnapshot(Directory directory) {
+		super(directory);
+		items = new ItemSnapshot[directory.getNbItems()];
+		long totalDiskUsage = 0;
+		int nbDescendants = 0;
+		int nbNotWritableDescendants = 0;
+		for (int i = 0; i < items.length; i++) {
+			ItemSnapshot item = directory.getItemAt(i + 1).getSnapshot();
+			items[i] = item;
+			totalDiskUsage += item.getTotalDiskUsage();
+			nbDescendants++;
+			if (!item.isWritable() && !(item instanceof LinkSnapshot))
+				nbNotWritableDescendants++;
+			if (item instanceof DirectorySnapshot) {
+				nbDescendants += ((DirectorySnapshot) item).nbDescendants;
+				nbNotWritableDescendants += ((DirectorySnapshot) item).nbNotWritableDescendants;
+			}
+		}
+		this.totalDiskUsage = totalDiskUsage;
+		this.nbDescendants = nbDescendants;
+		this.nbNotWritableDescendants = nbNotWritableDescendants;
+	}
+
+	/**
+	 * Variable referencing the snapshots of the items of the directory.
+	 */
+	private final ItemSnapshot[] items;
+
+	/**
+	 * Variable registering the total disk usage of the directory.
+	 */
+	private final long totalDiskUsage;
+
+	/**
+	 * Variable registering the number of items directly or indirectly in the directory.
+	 */
+	private final int nbDescendants;
+
+	/**
+	 * Variable registering the number of files and directories directly or indirectly
+	 * in the directory that are not writable.
+	 */
+	private final int nbNotWritableDescendants;
+
+	/**
+	 * Return the number of items of the directory.
+	 */
+	@Basic @Immutable
+	public int getNbItems() {
+		return items.length;
+	}
+
+	/**
+	 * Return the snapshot of the item at the given index.
+	 *
+	 * @param	index
+	 * 			The index of the item, starting at 1.
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 1 || index > getNbItems()
+	 */
+	@Basic @Immutable
+	public ItemSnapshot getItemAt(int index) throws IndexOutOfBoundsException {
+		if (index < 1 || index > items.length)
+			throw new IndexOutOfBoundsException();
+		return items[index - 1];
+	}
+
+	/**
+	 * Return the snapshot of the item with the given name, ignoring case.
+	 *
+	 * @param	name
+	 * 			The name of the item.
+	 * @return	| if (for some I in 1..getNbItems(): getItemAt(I).getName().equalsIgnoreCase(name))
+	 * 			|	then result.getName().equalsIgnoreCase(name)
+	 * 			|	else result == null
+	 */
+	public ItemSnapshot getItem(String name) {
+		if (name == null)
+			return null;
+		int low = 0;
+		int high = items.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = items[middle].getName().compareToIgnoreCase(name);
+			if (comparison == 0)
+				return items[middle];
+			if (comparison > 0)
+				high = middle - 1;
+			else
+				low = middle + 1;
+		}
+		return null;
+	}
+
+	/**
+	 * Return an iterator over the snapshots of the items of the directory.
+	 */
+	@Override
+	public Iterator<ItemSnapshot> iterator() {
+		return Collections.unmodifiableList(Arrays.asList(items)).iterator();
+	}
+
+	/**
+	 * Return the total number of bytes used by all files directly or indirectly
+	 * in the directory.
+	 *
+	 * @return	| result == sum({ getItemAt(I).getTotalDiskUsage() | I in 1..getNbItems() })
+	 */
+	@Override @Immutable
+	public long getTotalDiskUsage() {
+		return totalDiskUsage;
+	}
+
+	/**
+	 * Return the number of items directly or indirectly in the directory.
+	 *
+	 * @return	| result == sum({ 1 + (getItemAt(I) instanceof DirectorySnapshot ?
+	 * 			|	((DirectorySnapshot) getItemAt(I)).getNbDescendants() : 0) | I in 1..getNbItems() })
+	 */
+	@Immutable
+	public int getNbDescendants() {
+		return nbDescendants;
+	}
+
+	/**
+	 * Return the number of files and directories directly or indirectly in the directory
+	 * that are not writable.
+	 *
+	 * @return	| result == sum({ (getItemAt(I) instanceof LinkSnapshot || getItemAt(I).isWritable() ? 0 : 1) +
+	 * 			|	(getItemAt(I) instanceof DirectorySnapshot ?
+	 * 			|	((DirectorySnapshot) getItemAt(I)).getNbNotWritableDescendants() : 0) | I in 1..getNbItems() })
+	 */
+	@Immutable
+	public int getNbNotWritableDescendants() {
+		return nbNotWritableDescendants;
+	}
+
+	/**
+	 * Return a new directory in the given parent directory that is a copy of the
+	 * directory of which this snapshot was taken, with the given name and creation time.
+	 *
+	 * @return	| result.getNbItems() == getNbItems()
+	 * @note	The items of the new directory are only copied when they are first used.
+	 */
+	@Override @Model
+	Directory copy(@Raw Directory parent, String name, Date creationTime) {
+		return new Directory(parent, name, this, creationTime);
+	}
+
+}
@@ -0,0 +1,69 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the public methods of the DirectorySnapshot Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class DirectorySnapshotTest {
+
+	Directory root;
+	Directory sub;
+	Directory other;
+	File file;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		other = new Directory(root, "other");
+		file = new File(sub, "bestand", Type.JAVA, 120, true);
+		new File(other, "tekst", Type.TEXT, 30, true);
+	}
+
+	@Test
+	public void testSnapshot_reusedWhenUnchanged() {
+		DirectorySnapshot snapshot = root.snapshot();
+		assertSame(snapshot, root.snapshot());
+		assertEquals(2, snapshot.getNbItems());
+		assertEquals(150, snapshot.getTotalDiskUsage());
+	}
+
+	@Test
+	public void testSnapshot_pointInTime() {
+		DirectorySnapshot before = root.snapshot();
+		file.enlarge(10);
+		file.changeName("hernoemd");
+		DirectorySnapshot after = root.snapshot();
+		assertEquals(150, before.getTotalDiskUsage());
+		assertEquals(160, after.getTotalDiskUsage());
+		assertNotNull(((DirectorySnapshot) before.getItem("sub")).getItem("bestand"));
+		assertNull(((DirectorySnapshot) after.getItem("sub")).getItem("bestand"));
+		assertEquals(130, ((FileSnapshot) ((DirectorySnapshot) after.getItem("SUB")).getItem("hernoemd")).getSize());
+	}
+
+	@Test
+	public void testSnapshot_onlySpineCopied() {
+		DirectorySnapshot before = root.snapshot();
+		file.enlarge(10);
+		DirectorySnapshot after = root.snapshot();
+		assertNotSame(before, after);
+		assertNotSame(before.getItem("sub"), after.getItem("sub"));
+		assertSame(before.getItem("other"), after.getItem("other"));
+	}
+
+	@Test
+	public void testSnapshot_move() {
+		DirectorySnapshot before = root.snapshot();
+		file.move(other);
+		DirectorySnapshot after = root.snapshot();
+		assertEquals(1, ((DirectorySnapshot) before.getItem("sub")).getNbItems());
+		assertEquals(0, ((DirectorySnapshot) after.getItem("sub")).getNbItems());
+		assertEquals(2, ((DirectorySnapshot) after.getItem("other")).getNbItems());
+	}
+
+}
@@ -1,6 +1,11 @@
 package filesystem;
 import static org.junit.Assert.*;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import org.junit.*;
 
@@ -340,4 +345,241 @@ public class DirectoryTest {
 		assertEquals(200, this.dirNameWritable.getTotalDiskUsage());
 	}
 
+	@Test
+	public void testItemsWithPrefix() {
+		File log1 = new File(this.dirNameWritable, "log_2026_01", Type.TEXT);
+		File log2 = new File(this.dirNameWritable, "LOG_2026_02", Type.TEXT);
+		new File(this.dirNameWritable, "log_2025_12", Type.TEXT);
+		new File(this.dirNameWritable, "lof", Type.TEXT);
+		new File(this.dirNameWritable, "logboek", Type.TEXT);
+		assertEquals(Arrays.asList(log1, log2), this.dirNameWritable.itemsWithPrefix("Log_2026"));
+		assertEquals(5, this.dirNameWritable.itemsWithPrefix("").size());
+		assertTrue(this.dirNameWritable.itemsWithPrefix("map").isEmpty());
+	}
+	
+	@Test
+	public void testItemsMatching() {
+		File log1 = new File(this.dirNameWritable, "log_2026_01", Type.TEXT);
+		new File(this.dirNameWritable, "log_2026_12", Type.TEXT);
+		File log3 = new File(this.dirNameWritable, "log_2025_01", Type.TEXT);
+		assertEquals(Arrays.asList(log3, log1),
+				this.dirNameWritable.itemsMatching("log_202?_0*").collect(Collectors.toList()));
+		assertEquals(3, this.dirNameWritable.itemsMatching("*").count());
+		assertEquals(1, this.dirNameWritable.itemsMatching("*6_[!1]1").count());
+	}
+
+	@Test
+	public void testChangeName_restoresOrder() {
+		File a = new File(this.dirNameWritable, "a", Type.TEXT);
+		File c = new File(this.dirNameWritable, "c", Type.TEXT);
+		File e = new File(this.dirNameWritable, "e", Type.TEXT);
+		a.changeName("f");
+		assertEquals(Arrays.asList(c, e, a), this.dirNameWritable.itemsWithPrefix(""));
+		a.changeName("b");
+		assertEquals(Arrays.asList(a, c, e), this.dirNameWritable.itemsWithPrefix(""));
+		c.changeName("d");
+		assertEquals(Arrays.asList(a, c, e), this.dirNameWritable.itemsWithPrefix(""));
+		assertTrue(this.dirNameWritable.hasProperItems());
+		assertNotNull(this.dirNameWritable.getModificationTime());
+	}
+
+	@Test
+	public void testGetIndexOf_manyItems() {
+		File[] files = new File[5000];
+		for (int i = 0; i < files.length; i++)
+			files[i] = new File(this.dirNameWritable, String.format("bestand%05d", i), Type.TEXT);
+		for (int i = 0; i < files.length; i += 2)
+			files[i].terminate();
+		assertEquals(files.length / 2, this.dirNameWritable.getNbItems());
+		for (int i = 1; i < files.length; i += 2) {
+			assertEquals(i / 2 + 1, this.dirNameWritable.getIndexOf(files[i]));
+			assertFalse(this.dirNameWritable.hasAsItem(files[i-1]));
+		}
+		assertFalse(this.dirNameWritable.hasAsItem(this.dirDirectoryName));
+		assertTrue(this.dirNameWritable.hasProperItems());
+	}
+
+	@Test
+	public void testNbNotWritableDescendants() {
+		Directory sub = new Directory(this.dirNameWritable, "sub");
+		File readOnly = new File(sub, "alleenlezen", Type.TEXT, 0, false);
+		Directory locked = new Directory(this.dirNameWritable, "slot", false);
+		assertEquals(2, this.dirNameWritable.getNbNotWritableDescendants());
+		assertEquals(1, sub.getNbNotWritableDescendants());
+		readOnly.setWritable(true);
+		assertEquals(1, this.dirNameWritable.getNbNotWritableDescendants());
+		readOnly.setWritable(false);
+		sub.move(this.dirName);
+		assertEquals(1, this.dirNameWritable.getNbNotWritableDescendants());
+		assertEquals(1, this.dirName.getNbNotWritableDescendants());
+		readOnly.setWritable(true);
+		readOnly.terminate();
+		assertEquals(0, this.dirName.getNbNotWritableDescendants());
+		assertEquals(Arrays.asList(locked), this.dirNameWritable.getNotWritableDescendants());
+	}
+
+	@Test
+	public void testDeleteRecursive_notAllWritable() {
+		Directory sub = new Directory(this.dirNameWritable, "sub");
+		File file = new File(sub, "bestand", Type.TEXT);
+		File readOnly = new File(new Directory(sub, "dieper"), "alleenlezen", Type.TEXT, 0, false);
+		try {
+			this.dirNameWritable.deleteRecursive();
+			fail();
+		} catch (NotAllWritableException e) {
+			assertEquals(Arrays.asList(readOnly), e.getNotWritableItems());
+			assertSame(this.dirNameWritable, e.getDir());
+			assertFalse(file.isTerminated());
+		}
+	}
+
+	@Test
+	public void testSetWritableRecursive() {
+		for (boolean parallel : new boolean[] { false, true }) {
+			Directory release = new Directory(this.dirNameWritable, parallel ? "parallel" : "sequential");
+			File[] files = new File[20];
+			for (int i = 0; i < files.length; i++) {
+				Directory directory = new Directory(i % 2 == 0 ? release : files[i-1].getParentDirectory(), "map" + i);
+				files[i] = new File(directory, "bestand" + i, Type.TEXT, 0, i % 3 != 0);
+			}
+			int before = this.dirNameWritable.getNbNotWritableDescendants();
+			release.setWritableRecursive(false, parallel);
+			assertFalse(release.isWritable());
+			for (File file : files) {
+				assertFalse(file.isWritable());
+				assertFalse(file.getParentDirectory().isWritable());
+			}
+			assertEquals(40, release.getNbNotWritableDescendants());
+			assertEquals(release.getNotWritableDescendants().size(), release.getNbNotWritableDescendants());
+			assertEquals(before + 41 - 7, this.dirNameWritable.getNbNotWritableDescendants());
+		}
+	}
+
+	@Test
+	public void testSetWritableRecursive_writable() {
+		Directory sub = new Directory(this.dirNameWritable, "sub");
+		File file = new File(sub, "bestand", Type.TEXT, 0, false);
+		this.dirNameWritable.setWritableRecursive(true);
+		assertTrue(file.isWritable());
+		assertEquals(0, this.dirNameWritable.getNbNotWritableDescendants());
+		Directory slot = new Directory(sub, "slot", false);
+		file.setWritable(false);
+		this.dirNameWritable.setWritableRecursive(true);
+		assertTrue(slot.isWritable());
+		assertTrue(file.isWritable());
+		assertEquals(0, this.dirNameWritable.getNbNotWritableDescendants());
+	}
+
+	@Test
+	public void testSetWritableRecursive_thawFrozenSubtree() {
+		Directory release = new Directory(this.dirNameWritable, "release");
+		Directory docs = new Directory(release, "docs");
+		File file = new File(docs, "leesmij", Type.TEXT);
+		int before = this.dirNameWritable.getNbNotWritableDescendants();
+		release.setWritableRecursive(false);
+		docs.setWritableRecursive(true);
+		assertFalse(release.isWritable());
+		assertTrue(docs.isWritable());
+		assertTrue(file.isWritable());
+		assertEquals(before + 1, this.dirNameWritable.getNbNotWritableDescendants());
+		release.setWritableRecursive(true, true);
+		assertTrue(release.isWritable());
+		assertEquals(before, this.dirNameWritable.getNbNotWritableDescendants());
+		file.changeName("hernoemd");
+	}
+
+	@Test
+	public void testSetWritableRecursive_inReadView() throws InterruptedException {
+		Directory sub = new Directory(this.dirNameWritable, "sub");
+		File file = new File(sub, "bestand", Type.TEXT);
+		try (Versions.ReadView view = Versions.pin()) {
+			Thread thread = new Thread(() -> this.dirNameWritable.setWritableRecursive(false));
+			thread.start();
+			thread.join();
+			assertEquals(view.getVersion() + 1, Versions.getCurrentVersion());
+			assertTrue(file.isWritable());
+			assertTrue(sub.isWritable());
+		}
+		assertFalse(file.isWritable());
+	}
+
+	@Test
+	public void testSetWritableRecursive_concurrentTransactions() throws InterruptedException {
+		for (boolean parallel : new boolean[] { false, true }) {
+			Directory release = new Directory(this.dirNameWritable, parallel ? "parallel" : "sequential");
+			File[] files = new File[8];
+			for (int i = 0; i < files.length; i++)
+				files[i] = new File(new Directory(release, "map" + i), "bestand" + i, Type.TEXT);
+			int before = this.dirNameWritable.getNbNotWritableDescendants();
+			AtomicBoolean done = new AtomicBoolean();
+			Thread writer = new Thread(() -> {
+				for (int i = 0; !done.get(); i++) {
+					try {
+						new FileSystemTransaction().setWritable(files[i % files.length], (i / files.length) % 2 == 0).commit();
+					} catch (TransactionConflictException e) {
+					}
+				}
+			});
+			writer.start();
+			for (int i = 0; i < 500; i++)
+				release.setWritableRecursive(i % 2 == 0, parallel);
+			done.set(true);
+			writer.join();
+			assertEquals(release.getNotWritableDescendants().size(), release.getNbNotWritableDescendants());
+			for (File file : files)
+				assertEquals(file.isWritable() ? 0 : 1, file.getParentDirectory().getNbNotWritableDescendants());
+			assertEquals(before + release.getNbNotWritableDescendants() + (release.isWritable() ? 0 : 1),
+					this.dirNameWritable.getNbNotWritableDescendants());
+		}
+	}
+
+	@Test
+	public void testChangeNames_legalCase() {
+		File a = new File(this.dirNameWritable, "a", Type.TEXT);
+		File b = new File(this.dirNameWritable, "b", Type.TEXT);
+		File c = new File(this.dirNameWritable, "c", Type.TEXT);
+		Map<Item, String> names = new HashMap<Item, String>();
+		names.put(a, "z");
+		names.put(c, "y");
+		this.dirNameWritable.changeNames(names);
+		assertEquals("z", a.getName());
+		assertEquals("y", c.getName());
+		assertEquals(Arrays.asList(b, c, a), this.dirNameWritable.itemsWithPrefix(""));
+		assertSame(a, this.dirNameWritable.getItem("Z"));
+		assertNotNull(a.getModificationTime());
+	}
+
+	@Test
+	public void testChangeNames_illegalCases() {
+		File a = new File(this.dirNameWritable, "a", Type.TEXT);
+		File b = new File(this.dirNameWritable, "b", Type.TEXT);
+		Map<Item, String> names = new HashMap<Item, String>();
+		names.put(a, "b");
+		names.put(b, "a");
+		try {
+			this.dirNameWritable.changeNames(names);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("a", a.getName());
+		}
+		names.clear();
+		names.put(a, "x");
+		names.put(b, "X");
+		try {
+			this.dirNameWritable.changeNames(names);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("a", a.getName());
+			assertEquals("b", b.getName());
+		}
+		names.clear();
+		names.put(this.dirDirectoryName, "x");
+		try {
+			this.dirNameWritable.changeNames(names);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("map4", this.dirDirectoryName.getName());
+		}
+	}
+
 }
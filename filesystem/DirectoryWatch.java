@@ -0,0 +1,260 @@
+package filesystem;
+
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of watches, delivering the changes in a directory, or in a directory and
+ * all directories in it, to a listener.
+ *
+ * Changes are buffered in a ring buffer of bounded capacity and delivered in batches
+ * by a dispatching thread, so the thread making the changes never waits for the
+ * listener. While events are waiting to be delivered, a change of the same kind
+ * on the same item as the last waiting event for that item is combined with it.
+ * If the buffer is full, further events are dropped and an overflow event is
+ * delivered at the end of the next batch.
+ *
+ * @invar	The number of waiting events never exceeds the capacity.
+ * 			| getNbWaitingEvents() <= getCapacity()
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class DirectoryWatch implements AutoCloseable {
+
+	/**
+	 * Constant registering the default capacity of the buffer of a watch.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Initialize a new watch of the given directory for the given listener.
+	 *
+	 * @param	directory
+	 * 			The watched directory.
+	 * @param	listener
+	 * 			The listener to deliver the changes to.
+	 * @param	subtree
+	 * 			Whether changes in all directories directly or indirectly in the given
+	 * 			directory are delivered as well.
+	 * @param	capacity
+	 * 			The capacity of the buffer.
+	 */
+	@Model
+	DirectoryWatch(Directory directory, WatchListener listener, boolean subtree, int capacity) {
+		this.directory = directory;
+		this.listener = listener;
+		this.subtree = subtree;
+		this.events = new WatchEvent[capacity];
+	}
+
+	/**
+	 * Variable referencing the watched directory.
+	 */
+	private final Directory directory;
+
+	/**
+	 * Variable referencing the listener.
+	 */
+	private final WatchListener listener;
+
+	/**
+	 * Variable registering whether changes in the whole subtree are delivered.
+	 */
+	private final boolean subtree;
+
+	/**
+	 * Variable registering whether this watch has been cancelled.
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Return the watched directory.
+	 */
+	@Basic @Immutable
+	public Directory getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Return the listener of this watch.
+	 */
+	@Basic @Immutable
+	public WatchListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Check whether this watch delivers the changes in all directories directly or
+	 * indirectly in its directory as well.
+	 */
+	@Basic @Immutable
+	public boolean isSubtree() {
+		return subtree;
+	}
+
+	/**
+	 * Return the capacity of the buffer of this watch.
+	 */
+	@Basic @Immutable
+	public int getCapacity() {
+		return events.length;
+	}
+
+	/**
+	 * Check whether this watch has been cancelled.
+	 */
+	@Basic
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Cancel this watch. Events that are waiting are no longer delivered.
+	 *
+	 * @post	| new.isCancelled()
+	 */
+	public void cancel() {
+		if (!cancelled) {
+			cancelled = true;
+			WatchService.unregister(this);
+			synchronized (this) {
+				clear();
+			}
+		}
+	}
+
+	/**
+	 * Cancel this watch.
+	 *
+	 * @effect	| cancel()
+	 */
+	@Override
+	public void close() {
+		cancel();
+	}
+
+	/**********************************************************
+	 * Buffer
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the ring buffer of waiting events.
+	 */
+	private final WatchEvent[] events;
+
+	/**
+	 * Variable registering the position in the ring buffer of the first waiting event.
+	 */
+	private int head = 0;
+
+	/**
+	 * Variable registering the number of waiting events.
+	 */
+	private int size = 0;
+
+	/**
+	 * Variable registering the number of events taken from the buffer so far.
+	 */
+	private long nbTaken = 0;
+
+	/**
+	 * Variable referencing the number of the last waiting event for each item.
+	 */
+	private final Map<Item, Long> lastEvents = new IdentityHashMap<Item, Long>();
+
+	/**
+	 * Variable registering whether events have been dropped since the last batch.
+	 */
+	private boolean overflowed = false;
+
+	/**
+	 * Variable registering whether a batch is being delivered or about to be delivered.
+	 */
+	private boolean dispatching = false;
+
+	/**
+	 * Return the number of events waiting to be delivered.
+	 */
+	public synchronized int getNbWaitingEvents() {
+		return size;
+	}
+
+	/**
+	 * Add the given event to the events waiting to be delivered, and make sure they
+	 * will be delivered.
+	 */
+	@Model
+	synchronized void post(WatchEvent event) {
+		if (cancelled)
+			return;
+		Long last = lastEvents.get(event.getItem());
+		if (last != null) {
+			int position = (int) ((head + last - nbTaken) % events.length);
+			WatchEvent waiting = events[position];
+			if (waiting.getKind() == event.getKind() && event.getKind() != WatchEvent.Kind.CREATED) {
+				events[position] = waiting.coalesce(event);
+				return;
+			}
+			if (event.getKind() == WatchEvent.Kind.TERMINATED && waiting.getKind() == WatchEvent.Kind.MOVED
+					&& waiting.getNewParent() == null) {
+				// a directory that is made a root and then terminated is only reported as terminated
+				events[position] = event;
+				return;
+			}
+		}
+		if (size == events.length) {
+			overflowed = true;
+		} else {
+			events[(head + size) % events.length] = event;
+			lastEvents.put(event.getItem(), nbTaken + size);
+			size++;
+		}
+		if (!dispatching) {
+			dispatching = true;
+			WatchService.dispatch(this);
+		}
+	}
+
+	/**
+	 * Deliver batches of waiting events to the listener until no events are waiting.
+	 */
+	@Model
+	void deliver() {
+		while (true) {
+			List<WatchEvent> batch;
+			synchronized (this) {
+				if (cancelled || (size == 0 && !overflowed)) {
+					dispatching = false;
+					return;
+				}
+				batch = new ArrayList<WatchEvent>(size + 1);
+				for (int i = 0; i < size; i++)
+					batch.add(events[(head + i) % events.length]);
+				if (overflowed)
+					batch.add(WatchEvent.overflow(Versions.getCurrentVersion()));
+				clear();
+			}
+			try {
+				listener.changed(this, Collections.unmodifiableList(batch));
+			} catch (RuntimeException e) {
+				// a failing listener must not stop the delivery of later batches
+			}
+		}
+	}
+
+	/**
+	 * Remove all waiting events.
+	 */
+	private void clear() {
+		for (int i = 0; i < size; i++)
+			events[(head + i) % events.length] = null;
+		head = (head + size) % events.length;
+		nbTaken += size;
+		size = 0;
+		overflowed = false;
+		lastEvents.clear();
+	}
+
+}
@@ -0,0 +1,139 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the public methods of the DirectoryWatch Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class DirectoryWatchTest {
+
+	Directory root;
+	Directory sub;
+	Directory other;
+	File file;
+	LinkedBlockingQueue<WatchEvent> received;
+	CountDownLatch released;
+	WatchListener listener;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		other = new Directory(root, "other");
+		file = new File(sub, "bestand", Type.JAVA, 120, true);
+		received = new LinkedBlockingQueue<WatchEvent>();
+		released = new CountDownLatch(0);
+		listener = (watch, events) -> {
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			received.addAll(events);
+		};
+	}
+
+	private WatchEvent next() throws InterruptedException {
+		WatchEvent event = received.poll(5, TimeUnit.SECONDS);
+		assertNotNull(event);
+		return event;
+	}
+
+	private List<WatchEvent> drain(int nbEvents) throws InterruptedException {
+		List<WatchEvent> events = new ArrayList<WatchEvent>();
+		while (events.size() < nbEvents)
+			events.add(next());
+		return events;
+	}
+
+	@Test
+	public void testWatch_directory() throws InterruptedException {
+		try (DirectoryWatch watch = sub.watch(listener, false)) {
+			File created = new File(sub, "nieuw", Type.TEXT);
+			created.changeName("hernoemd");
+			WatchEvent event = next();
+			assertEquals(WatchEvent.Kind.CREATED, event.getKind());
+			assertSame(created, event.getItem());
+			event = next();
+			assertEquals(WatchEvent.Kind.RENAMED, event.getKind());
+			assertEquals("nieuw", event.getOldName());
+			assertEquals("hernoemd", event.getNewName());
+		}
+	}
+
+	@Test
+	public void testWatch_subtree() throws InterruptedException {
+		try (DirectoryWatch direct = root.watch(listener, false);
+				DirectoryWatch subtree = root.watch(listener, true)) {
+			file.enlarge(1);
+			file.move(other);
+			List<WatchEvent> events = drain(2);
+			assertEquals(WatchEvent.Kind.RESIZED, events.get(0).getKind());
+			assertEquals(WatchEvent.Kind.MOVED, events.get(1).getKind());
+			assertSame(sub, events.get(1).getOldParent());
+			assertSame(other, events.get(1).getNewParent());
+			assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test
+	public void testWatch_coalescing() throws InterruptedException {
+		released = new CountDownLatch(1);
+		try (DirectoryWatch watch = sub.watch(listener, false)) {
+			file.setWritable(false);
+			Thread.sleep(100);
+			file.setWritable(true);
+			file.enlarge(1);
+			file.enlarge(2);
+			file.shorten(10);
+			released.countDown();
+			List<WatchEvent> events = drain(3);
+			assertEquals(WatchEvent.Kind.WRITABILITY_CHANGED, events.get(1).getKind());
+			assertEquals(WatchEvent.Kind.RESIZED, events.get(2).getKind());
+			assertEquals(-7, events.get(2).getDelta());
+		}
+	}
+
+	@Test
+	public void testWatch_overflow() throws InterruptedException {
+		released = new CountDownLatch(1);
+		try (DirectoryWatch watch = WatchService.register(root, listener, false, 2)) {
+			new File(root, "een", Type.TEXT);
+			Thread.sleep(100);
+			new File(root, "twee", Type.TEXT);
+			new File(root, "drie", Type.TEXT);
+			new File(root, "vier", Type.TEXT);
+			released.countDown();
+			List<WatchEvent> events = drain(4);
+			assertEquals("twee", events.get(1).getNewName());
+			assertEquals("drie", events.get(2).getNewName());
+			assertEquals(WatchEvent.Kind.OVERFLOW, events.get(3).getKind());
+		}
+	}
+
+	@Test
+	public void testWatch_terminatedDirectory() throws InterruptedException {
+		Directory empty = new Directory(root, "leeg");
+		DirectoryWatch own = empty.watch(listener, false);
+		released = new CountDownLatch(1);
+		try (DirectoryWatch watch = root.watch(listener, false)) {
+			empty.terminate();
+			released.countDown();
+			WatchEvent event = next();
+			assertEquals(WatchEvent.Kind.TERMINATED, event.getKind());
+			assertSame(root, event.getOldParent());
+			assertTrue(own.isCancelled());
+		}
+	}
+
+}
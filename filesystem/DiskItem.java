@@ -1,5 +1,7 @@
 package filesystem;
 
+import java.util.Date;
+
 import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
@@ -28,8 +30,8 @@ public abstract class DiskItem extends Item{
 	 *         	The name of the new disk item.
 	 * @param  	writable
 	 *         	The writability of the new disk item.
-	 * @effect	The writability is set to the given flag
-	 * 			| setWritable(writable)
+	 * @post	The new disk item has the given writability.
+	 * 			| new.isWritable() == writable
 	 * @post 	The disk item is a root item
 	 * 			| new.isRoot()
 	 * @post    The new creation time of this disk item is initialized to some time during
@@ -42,7 +44,9 @@ public abstract class DiskItem extends Item{
 	@Model
 	protected DiskItem(String name, boolean writable) {
 		super(name);
-		setWritable(writable);
+		// the writability of a new disk item is initialized without notifying
+		// the mutation listeners, the creation of the item is notified as a whole
+		this.isWritable = writable;
 	}
 
 	/**
@@ -56,8 +60,8 @@ public abstract class DiskItem extends Item{
 	 * @param  	writable
 	 *         	The writability of the new disk item.
 	 *         
-	 * @effect	The writability is set to the given flag
-	 * 			| setWritable(writable)
+	 * @post	The new disk item has the given writability.
+	 * 			| new.isWritable() == writable
 	 * @effect 	This item is added to the items of the parent directory
 	 *         	| parent.addAsItem(this)
 	 * @post    The new creation time of this disk item is initialized to some time during
@@ -83,12 +87,45 @@ public abstract class DiskItem extends Item{
 	 *         	the effective parent directory
 	 *          | parent != null && parent.isWritable() && 
 	 *         	|   !isValidName(name) && parent.containsItemWithName(getDefaultName())
+	 * @throws	QuotaExceededException(directory)
+	 * 			The new disk item would exceed the item quota of the given parent directory
+	 * 			or of one of its ancestors.
+	 * 			| parent != null && !parent.canAccept(1, 0)
 	 */
 	@Model
 	protected DiskItem(Directory parent, String name, boolean writable) 
-			throws IllegalArgumentException, ItemNotWritableException {
-		super(parent,name);
-		setWritable(writable);
+			throws IllegalArgumentException, ItemNotWritableException, QuotaExceededException {
+		this(parent, name, writable, true);
+	}
+
+	/**
+	 * Initialize a new disk item with given parent directory, name and writability,
+	 * registering it in the given parent directory only if so requested.
+	 *
+	 * @effect	| super(parent, name, false)
+	 * @post	| new.isWritable() == writable
+	 * @effect	| if (register) then register()
+	 * @note	The writability is initialized before the new disk item is registered, so
+	 * 			that it is counted when its place in the parent directory is reserved.
+	 */
+	@Model
+	DiskItem(Directory parent, String name, boolean writable, boolean register)
+			throws IllegalArgumentException, ItemNotWritableException, QuotaExceededException {
+		super(parent, name, false);
+		this.isWritable = writable;
+		if (register)
+			register();
+	}
+
+	/**
+	 * Initialize a new disk item in the given parent directory as a copy of the disk
+	 * item of which the given snapshot was taken, with the given name and creation time.
+	 * 
+	 * @effect	| super(parent, name, source, creationTime)
+	 */
+	@Model
+	DiskItem(@Raw Directory parent, String name, ItemSnapshot source, Date creationTime) {
+		super(parent, name, source, creationTime);
 	}
 
 	/**********************************************************
@@ -132,6 +169,17 @@ public abstract class DiskItem extends Item{
 	@Raw 
 	protected abstract void setWritable(boolean isWritable)
 			throws ItemNotWritableException;
+
+	/**
+	 * Commit the mutation in progress and notify all registered mutation listeners
+	 * that the writability of this disk item has been set.
+	 */
+	@Model
+	void fireWritabilityChanged() {
+		Versions.commit();
+		for (MutationListener listener : getMutationListeners())
+			listener.writabilityChanged(this);
+	}
 	
 	
 	/**********************************************************
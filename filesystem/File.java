@@ -1,5 +1,7 @@
 package filesystem;
 
+import java.util.Date;
+
 import filesystem.exception.*;
 import be.kuleuven.cs.som.annotate.*;
 
@@ -39,18 +41,28 @@ public class File extends DiskItem{
      * @pre		type is effective
      * 			|type != null
      * @effect 	The new file is a disk item with the given
-     *         	parent, name and writability.
-     *         	| super(parent,name,writable)
+     *         	parent, name and writability, that is not yet registered.
+     *         	| super(parent,name,writable,false)
      * @effect 	The new file has the given size
      *         	| setSize(size)
      * @post   	The type of this new file is set to the given type.
      *         	|new.getType() == type        
+     * @effect 	The new file is registered in its parent directory, reserving its
+     *         	place, its size and its writability in one step.
+     *         	| register()
+     * @throws	QuotaExceededException(directory)
+     * 			The new file would exceed a quota of the given parent directory or of
+     * 			one of its ancestors.
+     * 			| parent != null && !parent.canAccept(1, size)
      */
     public File(Directory parent, String name, Type type, int size, boolean writable)
-    		throws IllegalArgumentException, ItemNotWritableException {
-    	super(parent,name,writable);
+    		throws IllegalArgumentException, ItemNotWritableException, QuotaExceededException {
+    	super(parent,name,writable,false);
     	setSize(size);
     	this.type=type;
+    	//the size and type are known now, so the new file is counted and indexed as a whole
+    	register();
+    	fireItemCreated();
     }
 
     /**
@@ -70,9 +82,23 @@ public class File extends DiskItem{
      *         | this(parent,name,type,0,true)
      */
     public File(Directory parent, String name, Type type)
-    		throws IllegalArgumentException, ItemNotWritableException {
+    		throws IllegalArgumentException, ItemNotWritableException, QuotaExceededException {
     	this(parent,name,type,0,true);
     }    
+
+    /**
+     * Initialize a new file in the given parent directory as a copy of the file
+     * of which the given snapshot was taken, with the given name and creation time.
+     *
+     * @effect	| super(parent, name, source, creationTime)
+     * @post	| new.getType() == source.getType() && new.getSize() == source.getSize()
+     */
+    @Model
+    File(@Raw Directory parent, String name, FileSnapshot source, Date creationTime) {
+    	super(parent, name, source, creationTime);
+    	this.size = source.getSize();
+    	this.type = source.getType();
+    }
     
    /**
 	* Return a textual representation of this file.
@@ -127,8 +153,8 @@ public class File extends DiskItem{
 				throw new IllegalStateException("This item cannot be terminated");
 			}
 			else {
+				Directory dir = getParentDirectory();
 				try{
-					Directory dir = getParentDirectory();
 					setParentDirectory(null); 
 					//this item is now in a raw state
 					dir.removeAsItem(this);
@@ -136,8 +162,9 @@ public class File extends DiskItem{
 					//should not happen since this item and its parent are writable
 					assert false;
 				}
+				this.isTerminated = true;
+				fireItemTerminated(dir);
 			}
-			this.isTerminated = true;
 		}
 	}
     
@@ -181,7 +208,15 @@ public class File extends DiskItem{
     /**
      * Variable registering the size of this file (in bytes).
      */
-    private int size = 0;
+    private volatile int size = 0;
+    
+    /**
+     * Return the current size of this file, ignoring read views.
+     */
+    @Model @Raw
+    int getCurrentSize() {
+        return size;
+    }
     
     /**
      * Variable registering the maximum size of any file (in bytes).
@@ -191,10 +226,13 @@ public class File extends DiskItem{
 
     /**
      * Return the size of this file (in bytes).
+     *
+     * @note   In a thread with an open read view, the size as of the pinned
+     *         version is returned.
      */
     @Raw @Basic 
     public int getSize() {
-        return size;
+        return getVersionedValue(SIZE, size);
     }
     
     /**
@@ -209,6 +247,7 @@ public class File extends DiskItem{
      */
     @Raw @Model 
     private void setSize(int size) {
+        recordRevision(SIZE, this.size);
         this.size = size;
     }
    
@@ -244,7 +283,7 @@ public class File extends DiskItem{
      * @effect  The size of this file is increased with the given delta.
      *          | changeSize(delta)
      */
-    public void enlarge(int delta) throws ItemNotWritableException {
+    public void enlarge(int delta) throws ItemNotWritableException, QuotaExceededException {
         changeSize(delta);
     }
 
@@ -275,20 +314,80 @@ public class File extends DiskItem{
      *         | setSize(getSize()+delta)
      * @effect The modification time is updated.
      *         | setModificationTime()
+     * @effect The indexes over the parent directories of this file are updated.
      * @throws FileNotWritableException(this)
      *         This file is not writable.
      *         | ! isWritable()
+     * @throws QuotaExceededException(directory)
+     *         The new size would exceed a quota of the parent directory of this file
+     *         or of one of its ancestors. The size has not been changed.
+     *         | !isRoot() && !getParentDirectory().canAccept(0, delta)
      */
     @Model 
-    private void changeSize(int delta) throws ItemNotWritableException{
+    private void changeSize(int delta) throws ItemNotWritableException, QuotaExceededException{
         if (isWritable()) {
-            setSize(getSize()+delta);
-            setModificationTime();            
+            if (getParentDirectory() != null)
+                getParentDirectory().reserve(0, delta, 0);
+            int oldSize = getSize();
+            setSize(oldSize+delta);
+            if (getParentDirectory() != null)
+                getParentDirectory().forEachIndexAbove(index -> index.fileResized(this, oldSize));
+            setModificationTime();
+            fireSizeChanged(delta);
         }else{
         	throw new ItemNotWritableException(this);
         }
     }
     
+    /**
+     * Set the modification time of this file to the current time.
+     *
+     * @effect The modification time is set as for any item.
+     *         | super.setModificationTime()
+     * @effect The indexes over the parent directories of this file are updated.
+     */
+    @Override @Model @Raw
+    protected void setModificationTime() {
+        Date oldTime = getModificationTime();
+        super.setModificationTime();
+        modificationTimeChanged(oldTime);
+    }
+
+    /**
+     * Restore the creation time and modification time of this file to the given times.
+     *
+     * @effect The times are restored as for any item.
+     *         | super.restoreTimes(creationTime, modificationTime)
+     * @effect The indexes over the parent directories of this file are updated.
+     */
+    @Override @Raw @Model
+    void restoreTimes(Date creationTime, Date modificationTime) {
+        Date oldTime = getModificationTime();
+        super.restoreTimes(creationTime, modificationTime);
+        modificationTimeChanged(oldTime);
+    }
+
+    /**
+     * Update the indexes over the parent directories of this file after its
+     * modification time has been changed from the given time.
+     */
+    @Model @Raw
+    private void modificationTimeChanged(Date oldTime) {
+        if (getParentDirectory() != null)
+            getParentDirectory().forEachIndexAbove(index -> index.fileModified(this, oldTime));
+    }
+    
+    /**
+     * Commit the mutation in progress and notify all registered mutation listeners
+     * that the size of this file has been changed with the given delta.
+     */
+    @Model
+    void fireSizeChanged(int delta) {
+    	Versions.commit();
+    	for (MutationListener listener : getMutationListeners())
+    		listener.sizeChanged(this, delta);
+    }
+    
     /*********************************
      * root
      *********************************
@@ -327,10 +426,18 @@ public class File extends DiskItem{
 	 * @post  The given writability is registered as the new writability
 	 *        for this file.
 	 *        | new.isWritable() == isWritable
+	 * @effect The snapshots of this file and its ancestors are invalidated.
+	 *        | invalidateSnapshot()
+	 * @effect The version stamp of the parent directory is incremented.
+	 *        | incrementVersionStamps()
 	 */
 	@Raw 
 	public void setWritable(boolean isWritable) {
-		this.isWritable = isWritable;
+		recordRevision(WRITABILITY, this.isWritable);
+		Directory.changeWritability(this, isWritable);
+		invalidateSnapshot();
+		incrementVersionStamps();
+		fireWritabilityChanged();
 	}
 	
 	/**
@@ -338,7 +445,7 @@ public class File extends DiskItem{
 	 */
 	@Raw @Basic
 	public boolean isWritable(){
-		return isWritable;
+		return getVersionedValue(WRITABILITY, isWritable);
 	}
 	
 	
@@ -358,6 +465,27 @@ public class File extends DiskItem{
 	 * 			|	(name != null) && name.matches("[a-zA-Z_0-9.-]+")
 	 */
 	public boolean isValidName(String name) {
+		return isValidFileName(name);
+	}
+	
+	/**
+	 * Check whether the given name is a legal name for a file.
+	 * 
+	 * @return	| result == (name != null) && name.matches("[a-zA-Z_0-9.-]+")
+	 */
+	static boolean isValidFileName(String name) {
 		return (name != null && name.matches("[a-zA-Z_0-9.-]+"));
 	}
-}
\ No newline at end of file
+	
+	/********************************
+	 * snapshot
+	 ********************************/
+	
+	/**
+	 * Return a new snapshot of the current state of this file.
+	 */
+	@Override @Model
+	FileSnapshot createSnapshot() {
+		return new FileSnapshot(this);
+	}
+}
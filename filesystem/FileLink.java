@@ -1,5 +1,8 @@
 package filesystem;
 
+import java.util.Date;
+
+import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
 public class FileLink extends Link{
@@ -50,6 +53,18 @@ public class FileLink extends Link{
 		super(name, refFile ,parent);
 	}
 	
+	/**
+	 * Initialize a new file link in the given parent directory as a copy of the
+	 * file link of which the given snapshot was taken, with the given name and
+	 * creation time.
+	 * 
+	 * @effect	| super(parent, name, source, creationTime)
+	 */
+	@Model
+	FileLink(@Raw Directory parent, String name, LinkSnapshot source, Date creationTime) {
+		super(parent, name, source, creationTime);
+	}
+	
 	/********************************
 	 * name
 	 ********************************
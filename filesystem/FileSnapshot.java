@@ -0,0 +1,78 @@
+package filesystem;
+
+import java.util.Date;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable snapshots of the state of a file at some point in time.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class FileSnapshot extends ItemSnapshot {
+
+	/**
+	 * Initialize a new snapshot of the current state of the given file.
+	 *
+	 * @param	file
+	 * 			The file to take a snapshot of.
+	 * @effect	| super(file)
+	 * @post	| new.getType() == file.getType()
+	 * @post	| new.getSize() == file.getSize()
+	 */
+	@Model
+	FileSnapshot(File file) {
+		super(file);
+		this.type = file.getType();
+		this.size = file.getSize();
+	}
+
+	/**
+	 * Variable referencing the type of the file.
+	 */
+	private final Type type;
+
+	/**
+	 * Variable registering the size of the file.
+	 */
+	private final int size;
+
+	/**
+	 * Return the type of the file.
+	 */
+	@Basic @Immutable
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Return the size of the file.
+	 */
+	@Basic @Immutable
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Return the total number of bytes used by the file.
+	 *
+	 * @return	| result == getSize()
+	 */
+	@Override
+	public long getTotalDiskUsage() {
+		return size;
+	}
+
+	/**
+	 * Return a new file in the given parent directory that is a copy of the file of
+	 * which this snapshot was taken, with the given name and creation time.
+	 *
+	 * @return	| result.getType() == getType() && result.getSize() == getSize()
+	 */
+	@Override @Model
+	File copy(@Raw Directory parent, String name, Date creationTime) {
+		return new File(parent, name, this, creationTime);
+	}
+
+}
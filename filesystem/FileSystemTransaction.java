@@ -0,0 +1,427 @@
+package filesystem;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.exception.*;
+
+/**
+ * A class of transactions, applying a number of changes to items as a whole.
+ *
+ * The changes of a transaction are buffered until it is committed. When a change is
+ * buffered, the version stamps of the directories it depends on are read. Committing
+ * the transaction verifies that none of these directories has changed since, and
+ * then applies all changes. If one of the changes fails, the changes applied before
+ * it are undone. Read views never see a part of the changes of a transaction.
+ * A transaction that conflicts with a change made after it read a directory is not
+ * applied at all; it can be built again and retried by run(Consumer, int).
+ * While a transaction is validated and applied, it only holds the locks guarding the
+ * directories it read and, for moves, the ancestors of the target directories. Transactions
+ * changing disjoint directories are therefore committed concurrently.
+ *
+ * @invar	A transaction is committed at most once.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class FileSystemTransaction {
+
+	/**
+	 * Constant registering the default number of attempts of run(Consumer).
+	 */
+	public static final int DEFAULT_NB_ATTEMPTS = 16;
+
+	/**
+	 * Constant registering the number of locks guarding the directories changed by transactions.
+	 */
+	private static final int NB_LOCKS = 64;
+
+	/**
+	 * Variable referencing the locks guarding the directories changed by transactions.
+	 * A directory is guarded by the lock at the index returned by getLockIndex(Directory).
+	 */
+	private static final ReentrantLock[] locks = new ReentrantLock[NB_LOCKS];
+
+	static {
+		for (int i = 0; i < NB_LOCKS; i++)
+			locks[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Return the index of the lock guarding the given directory.
+	 */
+	@Model
+	static int getLockIndex(Directory directory) {
+		return (System.identityHashCode(directory) & 0x7fffffff) % NB_LOCKS;
+	}
+
+	/**
+	 * Initialize a new transaction without changes.
+	 */
+	public FileSystemTransaction() {
+	}
+
+	/**
+	 * Build and commit a transaction with the given work, building it again as long
+	 * as it conflicts with other changes and the given number of attempts is not exceeded.
+	 *
+	 * @param	work
+	 * 			The work buffering the changes in a given transaction.
+	 * @param	nbAttempts
+	 * 			The maximum number of attempts.
+	 * @throws	IllegalArgumentException
+	 * 			The given work is not effective or the given number of attempts is not positive.
+	 * 			| work == null || nbAttempts < 1
+	 * @throws	TransactionConflictException
+	 * 			The last attempt conflicted with other changes.
+	 */
+	public static void run(Consumer<FileSystemTransaction> work, int nbAttempts)
+			throws IllegalArgumentException, TransactionConflictException {
+		if (work == null || nbAttempts < 1)
+			throw new IllegalArgumentException();
+		for (int attempt = 1;; attempt++) {
+			FileSystemTransaction transaction = new FileSystemTransaction();
+			work.accept(transaction);
+			try {
+				transaction.commit();
+				return;
+			} catch (TransactionConflictException e) {
+				if (attempt >= nbAttempts)
+					throw e;
+				Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * Build and commit a transaction with the given work, retrying on conflicts.
+	 *
+	 * @effect	| run(work, DEFAULT_NB_ATTEMPTS)
+	 */
+	public static void run(Consumer<FileSystemTransaction> work)
+			throws IllegalArgumentException, TransactionConflictException {
+		run(work, DEFAULT_NB_ATTEMPTS);
+	}
+
+	/**********************************************************
+	 * Buffering
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the buffered changes, in the order in which they must be applied.
+	 */
+	private final List<Change> changes = new ArrayList<Change>();
+
+	/**
+	 * Variable referencing the version stamps read for the directories the changes depend on.
+	 */
+	private final Map<Directory, Long> readStamps = new IdentityHashMap<Directory, Long>();
+
+	/**
+	 * Variable referencing the target directories of the buffered moves.
+	 */
+	private final List<Directory> moveTargets = new ArrayList<Directory>();
+
+	/**
+	 * Variable registering whether this transaction has been committed.
+	 */
+	private boolean committed = false;
+
+	/**
+	 * Return the number of buffered changes.
+	 */
+	@Basic
+	public int getNbChanges() {
+		return changes.size();
+	}
+
+	/**
+	 * Check whether this transaction has been committed.
+	 */
+	@Basic
+	public boolean isCommitted() {
+		return committed;
+	}
+
+	/**
+	 * Buffer a change of the name of the given item to the given name.
+	 *
+	 * @effect	When committed, | item.changeName(name)
+	 * @return	| result == this
+	 */
+	public FileSystemTransaction changeName(final Item item, final String name)
+			throws IllegalArgumentException, IllegalStateException {
+		read(item);
+		return add(new Change() {
+			private String oldName;
+
+			void apply() {
+				oldName = item.getName();
+				item.changeName(name);
+			}
+
+			void undo() {
+				item.changeName(oldName);
+			}
+		});
+	}
+
+	/**
+	 * Buffer a move of the given item to the given target directory.
+	 *
+	 * @effect	When committed, | item.move(target)
+	 * @return	| result == this
+	 */
+	public FileSystemTransaction move(final Item item, final Directory target)
+			throws IllegalArgumentException, IllegalStateException {
+		read(item);
+		read(target);
+		moveTargets.add(target);
+		return add(new Change() {
+			private Directory oldParent;
+
+			void apply() {
+				oldParent = item.getParentDirectory();
+				item.move(target);
+			}
+
+			void undo() {
+				if (oldParent == null)
+					((Directory) item).makeRoot();
+				else
+					item.move(oldParent);
+			}
+		});
+	}
+
+	/**
+	 * Buffer an enlargement of the given file by the given number of bytes.
+	 *
+	 * @effect	When committed, | file.enlarge(delta)
+	 * @return	| result == this
+	 */
+	public FileSystemTransaction enlarge(final File file, final int delta)
+			throws IllegalArgumentException, IllegalStateException {
+		read(file);
+		return add(new Change() {
+			void apply() {
+				file.enlarge(delta);
+			}
+
+			void undo() {
+				file.shorten(delta);
+			}
+		});
+	}
+
+	/**
+	 * Buffer a shortening of the given file by the given number of bytes.
+	 *
+	 * @effect	When committed, | file.shorten(delta)
+	 * @return	| result == this
+	 */
+	public FileSystemTransaction shorten(final File file, final int delta)
+			throws IllegalArgumentException, IllegalStateException {
+		read(file);
+		return add(new Change() {
+			void apply() {
+				file.shorten(delta);
+			}
+
+			void undo() {
+				file.enlarge(delta);
+			}
+		});
+	}
+
+	/**
+	 * Buffer a change of the writability of the given disk item.
+	 *
+	 * @effect	When committed, | item.setWritable(writable)
+	 * @return	| result == this
+	 */
+	public FileSystemTransaction setWritable(final DiskItem item, final boolean writable)
+			throws IllegalArgumentException, IllegalStateException {
+		read(item);
+		return add(new Change() {
+			private boolean oldWritable;
+
+			void apply() {
+				oldWritable = item.isWritable();
+				item.setWritable(writable);
+			}
+
+			void undo() {
+				// a directory that is not writable can only be made writable again this way
+				if (item instanceof Directory)
+					((Directory) item).restoreWritable(oldWritable);
+				else
+					item.setWritable(oldWritable);
+			}
+		});
+	}
+
+	/**
+	 * Read the version stamps of the directories a change of the given item depends on:
+	 * the item itself if it is a directory, and its parent directory.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			The given item is not effective.
+	 * 			| item == null
+	 * @throws	IllegalStateException
+	 * 			This transaction has already been committed.
+	 * 			| isCommitted()
+	 */
+	private void read(Item item) throws IllegalArgumentException, IllegalStateException {
+		if (item == null)
+			throw new IllegalArgumentException();
+		if (committed)
+			throw new IllegalStateException("Transaction is already committed");
+		if (item instanceof Directory)
+			read((Directory) item);
+		Directory parent = item.getParentDirectory();
+		if (parent != null)
+			read(parent);
+	}
+
+	/**
+	 * Read the version stamp of the given directory, unless it has been read before.
+	 */
+	private void read(Directory directory) throws IllegalArgumentException {
+		if (directory == null)
+			throw new IllegalArgumentException();
+		if (!readStamps.containsKey(directory))
+			readStamps.put(directory, directory.getVersionStamp());
+	}
+
+	/**
+	 * Buffer the given change.
+	 */
+	private FileSystemTransaction add(Change change) {
+		changes.add(change);
+		return this;
+	}
+
+	/**********************************************************
+	 * Committing
+	 **********************************************************/
+
+	/**
+	 * Apply all buffered changes as a whole.
+	 *
+	 * @post	If all changes have been applied, this transaction is committed.
+	 * 			| new.isCommitted()
+	 * @throws	IllegalStateException
+	 * 			This transaction has already been committed.
+	 * 			| isCommitted()
+	 * @throws	TransactionConflictException
+	 * 			A directory the changes depend on has changed since its version stamp
+	 * 			was read, or an ancestor of the target of a move has been moved. No change
+	 * 			has been applied.
+	 * @throws	RuntimeException
+	 * 			One of the changes failed. All changes applied before it have been undone,
+	 * 			and the failures of undoing them are suppressed by the thrown exception.
+	 */
+	public void commit() throws IllegalStateException, TransactionConflictException {
+		if (committed)
+			throw new IllegalStateException("Transaction is already committed");
+		Map<Directory, Directory> ancestors = getTargetAncestors();
+		int[] indexes = getLockIndexes(ancestors.keySet());
+		for (int index : indexes)
+			locks[index].lock();
+		try {
+			for (Map.Entry<Directory, Directory> entry : ancestors.entrySet())
+				if (entry.getKey().getParentDirectory() != entry.getValue())
+					throw new TransactionConflictException(entry.getKey());
+			for (Map.Entry<Directory, Long> entry : readStamps.entrySet())
+				if (entry.getKey().getVersionStamp() != entry.getValue())
+					throw new TransactionConflictException(entry.getKey());
+			Versions.beginBatch();
+			try {
+				apply();
+			} finally {
+				Versions.endBatch();
+			}
+			committed = true;
+		} finally {
+			for (int i = indexes.length - 1; i >= 0; i--)
+				locks[indexes[i]].unlock();
+		}
+	}
+
+	/**
+	 * Return the ancestors of the targets of the buffered moves, each mapped to its
+	 * parent directory. A move checks that the moved item is not an ancestor of
+	 * its target, so it must not run concurrently with a move of one of these ancestors.
+	 */
+	private Map<Directory, Directory> getTargetAncestors() {
+		Map<Directory, Directory> result = new IdentityHashMap<Directory, Directory>();
+		for (Directory target : moveTargets)
+			for (Directory ancestor = target.getParentDirectory(); ancestor != null
+					&& !result.containsKey(ancestor); ancestor = ancestor.getParentDirectory())
+				result.put(ancestor, ancestor.getParentDirectory());
+		return result;
+	}
+
+	/**
+	 * Return the indexes of the locks guarding the directories read by this transaction
+	 * and the given directories, without duplicates and in ascending order, so that
+	 * transactions acquire their locks in the same order.
+	 */
+	private int[] getLockIndexes(Set<Directory> directories) {
+		boolean[] used = new boolean[NB_LOCKS];
+		for (Directory directory : readStamps.keySet())
+			used[getLockIndex(directory)] = true;
+		for (Directory directory : directories)
+			used[getLockIndex(directory)] = true;
+		int nbUsed = 0;
+		for (boolean isUsed : used)
+			if (isUsed)
+				nbUsed++;
+		int[] result = new int[nbUsed];
+		for (int index = 0, i = 0; index < NB_LOCKS; index++)
+			if (used[index])
+				result[i++] = index;
+		return result;
+	}
+
+	/**
+	 * Apply all buffered changes, undoing the applied ones if one of them fails.
+	 */
+	private void apply() {
+		int nbApplied = 0;
+		try {
+			for (Change change : changes) {
+				change.apply();
+				nbApplied++;
+			}
+		} catch (RuntimeException e) {
+			for (int i = nbApplied - 1; i >= 0; i--)
+				try {
+					changes.get(i).undo();
+				} catch (RuntimeException undoFailure) {
+					e.addSuppressed(undoFailure);
+				}
+			throw e;
+		}
+	}
+
+	/**
+	 * A class of buffered changes.
+	 */
+	private static abstract class Change {
+
+		/**
+		 * Apply this change.
+		 */
+		abstract void apply();
+
+		/**
+		 * Undo this change, after it has been applied.
+		 */
+		abstract void undo();
+	}
+
+}
@@ -0,0 +1,195 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+
+import filesystem.exception.*;
+
+/**
+ * A JUnit test class for testing the public methods of the FileSystemTransaction Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class FileSystemTransactionTest {
+
+	Directory root;
+	Directory sub;
+	Directory other;
+	Directory readOnly;
+	File file;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		other = new Directory(root, "other");
+		readOnly = new Directory(root, "alleenlezen", false);
+		file = new File(sub, "bestand", Type.JAVA, 120, true);
+	}
+
+	@Test
+	public void testCommit_appliesAllAsOneVersion() {
+		long version = Versions.getCurrentVersion();
+		new FileSystemTransaction().changeName(file, "hernoemd").move(file, other).enlarge(file, 10).commit();
+		assertEquals(version + 1, Versions.getCurrentVersion());
+		assertSame(file, other.getItem("hernoemd"));
+		assertEquals(130, file.getSize());
+		assertEquals(0, sub.getNbItems());
+	}
+
+	@Test
+	public void testCommit_failureUndoesAppliedChanges() {
+		FileSystemTransaction transaction = new FileSystemTransaction()
+				.changeName(file, "hernoemd").enlarge(file, 10).move(file, readOnly);
+		try {
+			transaction.commit();
+			fail();
+		} catch (ItemNotWritableException e) {
+			assertSame(readOnly, e.getItem());
+		}
+		assertEquals("bestand", file.getName());
+		assertEquals(120, file.getSize());
+		assertSame(sub, file.getParentDirectory());
+		assertFalse(transaction.isCommitted());
+	}
+
+	@Test
+	public void testCommit_undoFailureSuppressed() {
+		FileSystemTransaction transaction = new FileSystemTransaction()
+				.changeName(file, "hernoemd").enlarge(file, 10).move(file, readOnly);
+		MutationListener listener = new ListenerAdapter() {
+			@Override
+			public void sizeChanged(File changed, int delta) {
+				if (changed == file)
+					new File(sub, "bestand", Type.TEXT);
+			}
+		};
+		Item.addMutationListener(listener);
+		try {
+			transaction.commit();
+			fail();
+		} catch (ItemNotWritableException e) {
+			assertSame(readOnly, e.getItem());
+			assertEquals(1, e.getSuppressed().length);
+			assertTrue(e.getSuppressed()[0] instanceof IllegalArgumentException);
+		} finally {
+			Item.removeMutationListener(listener);
+		}
+		assertEquals("hernoemd", file.getName());
+		assertEquals(120, file.getSize());
+		assertFalse(transaction.isCommitted());
+	}
+
+	@Test
+	public void testCommit_conflict() {
+		FileSystemTransaction transaction = new FileSystemTransaction().enlarge(file, 10);
+		file.shorten(20);
+		try {
+			transaction.commit();
+			fail();
+		} catch (TransactionConflictException e) {
+			assertSame(sub, e.getDirectory());
+		}
+		assertEquals(100, file.getSize());
+	}
+
+	@Test
+	public void testCommit_disjointChangeNoConflict() {
+		FileSystemTransaction transaction = new FileSystemTransaction().enlarge(file, 10);
+		new File(other, "ander", Type.TEXT);
+		transaction.commit();
+		assertEquals(130, file.getSize());
+	}
+
+	@Test
+	public void testRun_retriesOnConflict() {
+		final int[] attempts = { 0 };
+		FileSystemTransaction.run(transaction -> {
+			transaction.enlarge(file, 1);
+			if (++attempts[0] == 1)
+				file.enlarge(100);
+		});
+		assertEquals(2, attempts[0]);
+		assertEquals(221, file.getSize());
+	}
+
+	@Test
+	public void testCommit_disjointTransactionsConcurrent() throws InterruptedException {
+		while (FileSystemTransaction.getLockIndex(other) == FileSystemTransaction.getLockIndex(sub))
+			other = new Directory(root, "other" + other.getNbDescendants() + root.getNbItems());
+		File otherFile = new File(other, "ander", Type.TEXT, 10, true);
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch released = new CountDownLatch(1);
+		boolean[] releasedInTime = { false };
+		MutationListener listener = new ListenerAdapter() {
+			@Override
+			public void sizeChanged(File changed, int delta) {
+				if (changed != file)
+					return;
+				entered.countDown();
+				try {
+					releasedInTime[0] = released.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+		Item.addMutationListener(listener);
+		try {
+			Thread thread = new Thread(() -> new FileSystemTransaction().enlarge(file, 10).commit());
+			thread.start();
+			assertTrue(entered.await(10, TimeUnit.SECONDS));
+			long version = Versions.getCurrentVersion();
+			new FileSystemTransaction().enlarge(otherFile, 5).commit();
+			assertEquals(15, otherFile.getSize());
+			assertEquals(version, Versions.getCurrentVersion());
+			released.countDown();
+			thread.join();
+			assertTrue(releasedInTime[0]);
+			assertEquals(130, file.getSize());
+			assertEquals(version + 1, Versions.getCurrentVersion());
+		} finally {
+			Item.removeMutationListener(listener);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCommit_twice() {
+		FileSystemTransaction transaction = new FileSystemTransaction().enlarge(file, 1);
+		transaction.commit();
+		transaction.commit();
+	}
+
+	/**
+	 * A listener ignoring all mutations, of which tests override the notifications they need.
+	 */
+	private static class ListenerAdapter implements MutationListener {
+		public void itemCreated(Item item) {
+		}
+
+		public void directoryCopied(Directory copy) {
+		}
+
+		public void nameChanged(Item item, String oldName) {
+		}
+
+		public void itemMoved(Item item, Directory oldParent) {
+		}
+
+		public void madeRoot(Directory directory, Directory oldParent) {
+		}
+
+		public void itemTerminated(Item item, Directory oldParent) {
+		}
+
+		public void writabilityChanged(DiskItem item) {
+		}
+
+		public void sizeChanged(File file, int delta) {
+		}
+	}
+
+}
@@ -0,0 +1,406 @@
+package filesystem;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable, sorted sequences of case-folded names, stored front-coded.
+ *
+ * The names are stored in blocks of at most 2 * BLOCK_SIZE names each. The first name
+ * of a block, its restart point, is stored in full; every other name only stores the
+ * length of the prefix it shares with the previous name and the characters that follow.
+ * A name is looked up by a binary search over the restart points, followed by
+ * decoding the names of a single block. Names consist of characters below 128,
+ * which are stored in a single byte each.
+ * Inserting or removing a name only encodes the block of that name again; the
+ * new sequence shares all other blocks with this one.
+ *
+ * @invar	The names are sorted.
+ * 			| for each I in 1..getNbNames()-1:
+ * 			|	getNameAt(I-1).compareTo(getNameAt(I)) < 0
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class FrontCodedNames {
+
+	/**
+	 * Constant registering the number of names in a block when the names are encoded.
+	 */
+	static final int BLOCK_SIZE = 16;
+
+	/**
+	 * Return the folded names of the given items, stored front-coded, or null
+	 * if one of these names has a character that can not be stored in a single byte.
+	 *
+	 * @param	items
+	 * 			The items, sorted by name.
+	 */
+	static FrontCodedNames encode(List<Item> items) {
+		int nbBlocks = (items.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		byte[][] blocks = new byte[nbBlocks][];
+		int[] firsts = new int[nbBlocks];
+		String[] names = new String[BLOCK_SIZE];
+		int maxLength = 0;
+		for (int block = 0; block < nbBlocks; block++) {
+			int first = block * BLOCK_SIZE;
+			int nbNames = Math.min(BLOCK_SIZE, items.size() - first);
+			for (int i = 0; i < nbNames; i++) {
+				names[i] = items.get(first + i).getNameKey().getFolded();
+				maxLength = Math.max(maxLength, names[i].length());
+			}
+			blocks[block] = encodeBlock(names, nbNames);
+			if (blocks[block] == null)
+				return null;
+			firsts[block] = first;
+		}
+		return new FrontCodedNames(blocks, firsts, items.size(), maxLength);
+	}
+
+	/**
+	 * Return the given number of names at the start of the given array, stored front-coded
+	 * in a single block, or null if one of them has a character that can not be stored
+	 * in a single byte.
+	 */
+	private static byte[] encodeBlock(String[] names, int nbNames) {
+		int length = 0;
+		for (int i = 0; i < nbNames; i++)
+			length += names[i].length() + 10;
+		byte[] data = new byte[length];
+		int position = 0;
+		for (int i = 0; i < nbNames; i++) {
+			String name = names[i];
+			int shared = 0;
+			if (i > 0)
+				while (shared < names[i - 1].length() && shared < name.length()
+						&& names[i - 1].charAt(shared) == name.charAt(shared))
+					shared++;
+			position = putVarInt(data, position, shared);
+			position = putVarInt(data, position, name.length() - shared);
+			for (int c = shared; c < name.length(); c++) {
+				if (name.charAt(c) >= 0x80)
+					return null;
+				data[position++] = (byte) name.charAt(c);
+			}
+		}
+		return Arrays.copyOf(data, position);
+	}
+
+	/**
+	 * Initialize new front-coded names with the given blocks.
+	 */
+	private FrontCodedNames(byte[][] blocks, int[] firsts, int nbNames, int maxLength) {
+		this.blocks = blocks;
+		this.firsts = firsts;
+		this.nbNames = nbNames;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Variable referencing the blocks of encoded names.
+	 */
+	private final byte[][] blocks;
+
+	/**
+	 * Variable referencing the index of the first name of each block.
+	 */
+	private final int[] firsts;
+
+	/**
+	 * Variable registering the number of names.
+	 */
+	private final int nbNames;
+
+	/**
+	 * Variable registering an upper bound on the length of the names.
+	 */
+	private final int maxLength;
+
+	/**
+	 * Return the number of names.
+	 */
+	@Basic @Immutable
+	int getNbNames() {
+		return nbNames;
+	}
+
+	/**
+	 * Return the number of bytes taken by the encoded names.
+	 */
+	@Immutable
+	int getEncodedSize() {
+		int size = 4 * firsts.length;
+		for (byte[] block : blocks)
+			size += block.length;
+		return size;
+	}
+
+	/**
+	 * Return the name at the given index.
+	 *
+	 * @param	index
+	 * 			The index of the name, starting from 0.
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= getNbNames()
+	 */
+	String getNameAt(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= nbNames)
+			throw new IndexOutOfBoundsException();
+		int block = getBlockOf(index);
+		byte[] name = new byte[maxLength];
+		int position = 0;
+		int length = 0;
+		for (int i = firsts[block]; i <= index; i++) {
+			long decoded = decode(blocks[block], position, name);
+			position = (int) (decoded >>> 32);
+			length = (int) decoded;
+		}
+		return new String(name, 0, length, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Return the index of the given folded name, or -1 if it is not one of the names.
+	 *
+	 * @param	folded
+	 * 			The case-folded name to look up.
+	 * @return	| if (for some I in 0..getNbNames()-1: getNameAt(I).equals(folded))
+	 * 			| then getNameAt(result).equals(folded)
+	 * 			| else result == -1
+	 */
+	int indexOf(String folded) {
+		// find the last block of which the first name is not after the given name
+		int low = 0, high = blocks.length - 1, block = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compareRestart(middle, folded);
+			if (comparison == 0)
+				return firsts[middle];
+			if (comparison < 0) {
+				block = middle;
+				low = middle + 1;
+			} else
+				high = middle - 1;
+		}
+		if (block < 0)
+			return -1;
+		byte[] name = new byte[maxLength];
+		int position = 0;
+		int end = getEndOf(block);
+		for (int i = firsts[block]; i < end; i++) {
+			long decoded = decode(blocks[block], position, name);
+			position = (int) (decoded >>> 32);
+			int comparison = compare(name, (int) decoded, folded);
+			if (comparison == 0)
+				return i;
+			if (comparison > 0)
+				return -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Return these names with the given folded name inserted at the given index, or
+	 * null if the given name has a character that can not be stored in a single byte.
+	 *
+	 * @param	index
+	 * 			The index of the inserted name, starting from 0.
+	 * @param	folded
+	 * 			The case-folded name to insert.
+	 * @pre		The names stay sorted.
+	 * @return	| result == null || (result.getNbNames() == getNbNames() + 1 &&
+	 * 			|	result.getNameAt(index).equals(folded))
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index > getNbNames()
+	 */
+	FrontCodedNames withInsertion(int index, String folded) throws IndexOutOfBoundsException {
+		if (index < 0 || index > nbNames)
+			throw new IndexOutOfBoundsException();
+		int newMaxLength = Math.max(maxLength, folded.length());
+		if (blocks.length == 0) {
+			byte[] block = encodeBlock(new String[] { folded }, 1);
+			return (block == null) ? null : new FrontCodedNames(new byte[][] { block }, new int[] { 0 }, 1, newMaxLength);
+		}
+		int block = (index == nbNames) ? blocks.length - 1 : getBlockOf(index);
+		String[] names = decodeBlock(block, 1);
+		int nbBlockNames = names.length - 1;
+		int offset = index - firsts[block];
+		System.arraycopy(names, offset, names, offset + 1, nbBlockNames - offset);
+		names[offset] = folded;
+		nbBlockNames++;
+		boolean split = nbBlockNames > 2 * BLOCK_SIZE;
+		byte[][] newBlocks = new byte[blocks.length + (split ? 1 : 0)][];
+		int[] newFirsts = new int[newBlocks.length];
+		System.arraycopy(blocks, 0, newBlocks, 0, block);
+		System.arraycopy(firsts, 0, newFirsts, 0, block + 1);
+		if (split) {
+			String[] upper = Arrays.copyOfRange(names, BLOCK_SIZE, nbBlockNames);
+			newBlocks[block] = encodeBlock(names, BLOCK_SIZE);
+			newBlocks[block + 1] = encodeBlock(upper, upper.length);
+			newFirsts[block + 1] = firsts[block] + BLOCK_SIZE;
+		} else
+			newBlocks[block] = encodeBlock(names, nbBlockNames);
+		if (newBlocks[block] == null || (split && newBlocks[block + 1] == null))
+			return null;
+		int shift = split ? 1 : 0;
+		System.arraycopy(blocks, block + 1, newBlocks, block + 1 + shift, blocks.length - block - 1);
+		for (int i = block + 1; i < blocks.length; i++)
+			newFirsts[i + shift] = firsts[i] + 1;
+		return new FrontCodedNames(newBlocks, newFirsts, nbNames + 1, newMaxLength);
+	}
+
+	/**
+	 * Return these names without the name at the given index.
+	 *
+	 * @param	index
+	 * 			The index of the removed name, starting from 0.
+	 * @return	| result.getNbNames() == getNbNames() - 1
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= getNbNames()
+	 */
+	FrontCodedNames withRemoval(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= nbNames)
+			throw new IndexOutOfBoundsException();
+		int block = getBlockOf(index);
+		String[] names = decodeBlock(block, 0);
+		int offset = index - firsts[block];
+		System.arraycopy(names, offset + 1, names, offset, names.length - offset - 1);
+		int nbBlockNames = names.length - 1;
+		int shift = (nbBlockNames == 0) ? 1 : 0;
+		byte[][] newBlocks = new byte[blocks.length - shift][];
+		int[] newFirsts = new int[newBlocks.length];
+		System.arraycopy(blocks, 0, newBlocks, 0, block);
+		System.arraycopy(firsts, 0, newFirsts, 0, block);
+		if (shift == 0) {
+			newBlocks[block] = encodeBlock(names, nbBlockNames);
+			newFirsts[block] = firsts[block];
+		}
+		System.arraycopy(blocks, block + 1, newBlocks, block + 1 - shift, blocks.length - block - 1);
+		for (int i = block + 1; i < blocks.length; i++)
+			newFirsts[i - shift] = firsts[i] - 1;
+		return new FrontCodedNames(newBlocks, newFirsts, nbNames - 1, maxLength);
+	}
+
+	/**
+	 * Return the index of the block holding the name at the given index.
+	 */
+	private int getBlockOf(int index) {
+		int low = 0, high = firsts.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (firsts[middle] <= index)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Return the index after the last name of the given block.
+	 */
+	private int getEndOf(int block) {
+		return (block + 1 < firsts.length) ? firsts[block + 1] : nbNames;
+	}
+
+	/**
+	 * Return the names of the given block, followed by the given number of free places.
+	 */
+	private String[] decodeBlock(int block, int nbFree) {
+		int nbBlockNames = getEndOf(block) - firsts[block];
+		String[] result = new String[nbBlockNames + nbFree];
+		byte[] name = new byte[maxLength];
+		int position = 0;
+		for (int i = 0; i < nbBlockNames; i++) {
+			long decoded = decode(blocks[block], position, name);
+			position = (int) (decoded >>> 32);
+			result[i] = new String(name, 0, (int) decoded, StandardCharsets.US_ASCII);
+		}
+		return result;
+	}
+
+	/**
+	 * Compare the first name of the given block with the given name.
+	 */
+	private int compareRestart(int block, String folded) {
+		byte[] data = blocks[block];
+		int position = skipVarInt(data, 0);
+		int length = 0, shift = 0;
+		byte b;
+		do {
+			b = data[position++];
+			length |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		int common = Math.min(length, folded.length());
+		for (int i = 0; i < common; i++) {
+			int difference = data[position + i] - folded.charAt(i);
+			if (difference != 0)
+				return difference;
+		}
+		return length - folded.length();
+	}
+
+	/**
+	 * Compare the given decoded name of the given length with the given name.
+	 */
+	private static int compare(byte[] name, int length, String folded) {
+		int common = Math.min(length, folded.length());
+		for (int i = 0; i < common; i++) {
+			int difference = name[i] - folded.charAt(i);
+			if (difference != 0)
+				return difference;
+		}
+		return length - folded.length();
+	}
+
+	/**
+	 * Decode the name at the given position in the given block into the given
+	 * buffer, which holds the previous name of the block.
+	 *
+	 * @return	The position of the next name in the upper half, and the length of the
+	 * 			decoded name in the lower half.
+	 */
+	private static long decode(byte[] data, int position, byte[] name) {
+		int shared = 0, suffix = 0, shift = 0;
+		byte b;
+		do {
+			b = data[position++];
+			shared |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		shift = 0;
+		do {
+			b = data[position++];
+			suffix |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		System.arraycopy(data, position, name, shared, suffix);
+		return ((long) (position + suffix) << 32) | (shared + suffix);
+	}
+
+	/**
+	 * Return the position after the variable length integer at the given position in the given data.
+	 */
+	private static int skipVarInt(byte[] data, int position) {
+		while (data[position++] < 0)
+			;
+		return position;
+	}
+
+	/**
+	 * Store the given value as a variable length integer at the given position in the
+	 * given data, seven bits per byte, and return the position after it.
+	 */
+	private static int putVarInt(byte[] data, int position, int value) {
+		while ((value & ~0x7F) != 0) {
+			data[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		data[position++] = (byte) value;
+		return position;
+	}
+
+}
@@ -0,0 +1,126 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the compact names of the Directory Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class FrontCodedNamesTest {
+
+	Directory root;
+	Directory logs;
+	List<File> files;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		logs = new Directory(root, "logs");
+		files = new ArrayList<File>();
+		for (int i = 0; i < 100; i++)
+			files.add(new File(logs, String.format("log_2026_10_17_%05d", i * 3), Type.TEXT));
+		logs.setCompactNames(true);
+	}
+
+	@Test
+	public void testEncode() {
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 1; i <= logs.getNbItems(); i++)
+			items.add(logs.getItemAt(i));
+		FrontCodedNames names = FrontCodedNames.encode(items);
+		assertEquals(100, names.getNbNames());
+		assertTrue(names.getEncodedSize() < 100 * "log_2026_10_17_00000".length() / 3);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(items.get(i).getName(), names.getNameAt(i));
+			assertEquals(i, names.indexOf(items.get(i).getName()));
+		}
+		assertEquals(-1, names.indexOf("log_2026_10_17_00001"));
+		assertEquals(-1, names.indexOf("a"));
+		assertEquals(-1, names.indexOf("z"));
+	}
+
+	@Test
+	public void testGetItem_compact() {
+		assertTrue(logs.hasCompactNames());
+		for (File file : files)
+			assertSame(file, logs.getItem(file.getName().toUpperCase()));
+		assertNull(logs.getItem("log_2026_10_17_00001"));
+		assertFalse(logs.exists("log"));
+	}
+
+	@Test
+	public void testGetItem_afterChanges() {
+		File added = new File(logs, "log_2026_10_17_00001", Type.TEXT);
+		assertSame(added, logs.getItem("log_2026_10_17_00001"));
+		files.get(0).changeName("aaa");
+		assertSame(files.get(0), logs.getItem("AAA"));
+		files.get(1).terminate();
+		assertNull(logs.getItem("log_2026_10_17_00003"));
+		logs.setCompactNames(false);
+		assertSame(added, logs.getItem("log_2026_10_17_00001"));
+	}
+
+	@Test
+	public void testWithInsertionAndRemoval() {
+		FrontCodedNames names = FrontCodedNames.encode(new ArrayList<Item>());
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 200; i++) {
+			String name = String.format("log_%05d", (i * 37) % 200);
+			int index = -Collections.binarySearch(expected, name) - 1;
+			expected.add(index, name);
+			names = names.withInsertion(index, name);
+		}
+		for (int i = 0; i < 200; i += 3) {
+			names = names.withRemoval(expected.size() - 1 - i / 3);
+			expected.remove(expected.size() - 1 - i / 3);
+		}
+		assertEquals(expected.size(), names.getNbNames());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i), names.getNameAt(i));
+			assertEquals(i, names.indexOf(expected.get(i)));
+		}
+		assertEquals(-1, names.indexOf("log_00199"));
+		assertTrue(names.getEncodedSize() < expected.size() * "log_00000".length() / 2);
+	}
+
+	@Test
+	public void testGetItem_incrementalChanges() {
+		assertSame(files.get(0), logs.getItem(files.get(0).getName()));
+		List<File> added = new ArrayList<File>();
+		for (int i = 0; i < 100; i++)
+			added.add(new File(logs, String.format("log_2026_10_17_%05d", i * 3 + 1), Type.TEXT));
+		for (int i = 0; i < 100; i += 2)
+			files.get(i).terminate();
+		added.get(10).changeName("a_eerst");
+		added.get(20).changeName("z_laatst");
+		for (int i = 0; i < 100; i++) {
+			assertSame(added.get(i), logs.getItem(added.get(i).getName()));
+			assertEquals(i % 2 == 1, logs.exists(String.format("log_2026_10_17_%05d", i * 3)));
+		}
+		assertNull(logs.getItem("log_2026_10_17_00031"));
+		assertTrue(logs.hasProperItems());
+	}
+
+	@Test
+	public void testCompactNames_leanKeys() {
+		assertTrue(files.get(0).getNameKey().isLean());
+		File added = new File(logs, "nieuw", Type.TEXT);
+		assertTrue(added.getNameKey().isLean());
+		added.move(root);
+		assertFalse(added.getNameKey().isLean());
+		assertSame(NameKey.of("nieuw"), added.getNameKey());
+		files.get(1).changeName("hernoemd");
+		assertTrue(files.get(1).getNameKey().isLean());
+		logs.setCompactNames(false);
+		assertFalse(files.get(1).getNameKey().isLean());
+		assertSame(files.get(1), logs.getItem("HERNOEMD"));
+	}
+
+}
@@ -0,0 +1,115 @@
+package filesystem;
+
+import java.util.regex.Pattern;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of glob patterns matching names of items, ignoring case.
+ *
+ * In a glob pattern, '*' matches any sequence of characters, '?' matches a single
+ * character and '[...]' matches a single character of the given set or range, or
+ * not of it if the set starts with '!'. All other characters match themselves.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class Glob {
+
+	/**
+	 * Initialize a new glob with the given pattern.
+	 *
+	 * @param	pattern
+	 * 			The pattern of the new glob.
+	 * @throws	IllegalArgumentException
+	 * 			The given pattern is not effective or has an unterminated set.
+	 * 			| pattern == null
+	 */
+	Glob(String pattern) throws IllegalArgumentException {
+		if (pattern == null)
+			throw new IllegalArgumentException();
+		this.pattern = pattern;
+		this.regex = Pattern.compile(toRegex(pattern), Pattern.CASE_INSENSITIVE);
+		int prefixLength = 0;
+		while (prefixLength < pattern.length() && "*?[".indexOf(pattern.charAt(prefixLength)) < 0)
+			prefixLength++;
+		this.literalPrefix = pattern.substring(0, prefixLength);
+	}
+
+	/**
+	 * Variable referencing the pattern of this glob.
+	 */
+	private final String pattern;
+
+	/**
+	 * Variable referencing the regular expression equivalent to this glob.
+	 */
+	private final Pattern regex;
+
+	/**
+	 * Variable referencing the longest prefix of the pattern without wildcards.
+	 */
+	private final String literalPrefix;
+
+	/**
+	 * Return the pattern of this glob.
+	 */
+	@Basic @Immutable
+	String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Return the longest prefix of the pattern of this glob without wildcards.
+	 * Every name matched by this glob starts with it, ignoring case.
+	 */
+	@Basic @Immutable
+	String getLiteralPrefix() {
+		return literalPrefix;
+	}
+
+	/**
+	 * Check whether the given name matches this glob, ignoring case.
+	 */
+	boolean matches(String name) {
+		return name != null && regex.matcher(name).matches();
+	}
+
+	/**
+	 * Return a regular expression matching the same names as the given glob pattern.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			The given pattern has an unterminated set.
+	 */
+	private static String toRegex(String pattern) throws IllegalArgumentException {
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (c == '*')
+				regex.append(".*");
+			else if (c == '?')
+				regex.append('.');
+			else if (c == '[') {
+				int end = pattern.indexOf(']', i + 2);
+				if (end < 0)
+					throw new IllegalArgumentException("Unterminated set in " + pattern);
+				String set = pattern.substring(i + 1, end);
+				regex.append('[');
+				if (set.startsWith("!")) {
+					regex.append('^');
+					set = set.substring(1);
+				}
+				for (char s : set.toCharArray())
+					if (s == '-' || Character.isLetterOrDigit(s))
+						regex.append(s);
+					else
+						regex.append('\\').append(s);
+				regex.append(']');
+				i = end;
+			} else
+				regex.append(Pattern.quote(String.valueOf(c)));
+		}
+		return regex.toString();
+	}
+
+}
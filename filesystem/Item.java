@@ -2,6 +2,8 @@
 package filesystem;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
@@ -35,6 +37,20 @@ public abstract class Item {
 	}
 	
 	public Item(Directory parent, String name) throws IllegalArgumentException, ItemNotWritableException {
+		this(parent, name, true);
+	}
+
+	/**
+	 * Initialize a new item with given parent directory and name, registering it in
+	 * the given parent directory only if so requested.
+	 *
+	 * @effect	| if (register) then register()
+	 * @note	A subclass that does not let this constructor register the new item, registers
+	 * 			it with register() once everything counted in the totals of its parent
+	 * 			directory is initialized, so that these totals are reserved in one step.
+	 */
+	@Model
+	Item(Directory parent, String name, boolean register) throws IllegalArgumentException, ItemNotWritableException {
 		if (parent == null) 
 			throw new IllegalArgumentException();
 		if (parent.isWritable() && isValidName(name) && parent.containsItemWithName(name))
@@ -46,8 +62,19 @@ public abstract class Item {
 
 		setName(name);
 		setParentDirectory(parent);
+		if (register)
+			register();
+	}
+
+	/**
+	 * Register this new item in its parent directory.
+	 *
+	 * @effect	| getParentDirectory().addAsItem(this)
+	 */
+	@Model @Raw
+	void register() throws QuotaExceededException {
 		try {
-			parent.addAsItem(this);
+			getParentDirectory().addAsItem(this);
 		} catch (ItemNotWritableException e) {
 			//cannot occur
 			assert false;
@@ -57,6 +84,25 @@ public abstract class Item {
 		}
 	}
 
+	/**
+	 * Initialize a new item in the given parent directory as a copy of the item of
+	 * which the given snapshot was taken, with the given name and creation time.
+	 * 
+	 * @post	| new.getName().equals(name) && new.getParentDirectory() == parent
+	 * @post	| new.isWritable() == source.isWritable()
+	 * @post	| new.getCreationTime().equals(creationTime) && new.getModificationTime() == null
+	 * @note	The new item is not registered in the given directory and no listener is
+	 * 			notified: the directory registers the copies of all its items at once.
+	 */
+	@Model
+	Item(@Raw Directory parent, String name, ItemSnapshot source, Date creationTime) {
+		this.name = NameKey.of(name);
+		this.isWritable = source.isWritable();
+		this.creationTime = new Date(creationTime.getTime());
+		this.parentDirectory = parent;
+		registerTreeLabels();
+	}
+
 	/**********************************************************
 	 * delete/termination
 	 **********************************************************/
@@ -108,16 +154,45 @@ public abstract class Item {
 	 **********************************************************/
 
 	/**
-	 * Variable referencing the name of this item.
+	 * Variable referencing the key of the name of this item, holding the name
+	 * together with its case-folded form.
 	 */
-	private String name = null;
+	private volatile NameKey name = null;
 
 	/**
 	 * Return the name of this item.
+	 *
+	 * @note	In a thread with an open read view, the name as of the pinned version is returned.
 	 */
 	@Raw @Basic 
 	public String getName() {
-		return name;
+		NameKey key = getNameKey();
+		return (key == null) ? null : key.getName();
+	}
+
+	/**
+	 * Return the key of the name of this item, used to compare names ignoring case
+	 * without folding them again.
+	 *
+	 * @return	| result.getName().equals(getName())
+	 */
+	@Raw @Model
+	NameKey getNameKey() {
+		return (NameKey) getVersionedValue(NAME, name);
+	}
+
+	/**
+	 * Register the given key for the name of this item, which holds the same name.
+	 *
+	 * @param	key
+	 * 			The key to register.
+	 * @pre		| key.getName().equals(getName())
+	 * @post	| new.getNameKey() == key
+	 */
+	@Raw @Model
+	void setNameKey(NameKey key) {
+		assert key.getName().equals(name.getName());
+		this.name = key;
 	}
 
 	/**
@@ -148,10 +223,12 @@ public abstract class Item {
 	 */
 	@Raw @Model 
 	private void setName(String name) {
+		if (this.name != null)
+			recordRevision(NAME, this.name);
 		if (isValidName(name)) {
-			this.name = name;
+			this.name = NameKey.of(name);
 		} else {
-			this.name = getDefaultName();
+			this.name = NameKey.of(getDefaultName());
 		}
 	}
 
@@ -214,15 +291,69 @@ public abstract class Item {
 		if (isTerminated()) throw new IllegalStateException("Item is terminated!");
 		if (!isWritable()) throw new ItemNotWritableException(this);
 		if (canAcceptAsNewName(name)) {
+			String oldName = getName();
+			NameKey oldKey = getNameKey();
+			int currentIndexInParent = 0;
+			if (!isRoot()) {
+				//look up the index while the item is still found by its name
+				currentIndexInParent = getParentDirectory().getIndexOf(this);
+				getParentDirectory().registerName(NameKey.lean(name));
+			}
 			setName(name);
 			setModificationTime();
 			if(!isRoot()){
-				int currentIndexInParent = getParentDirectory().getIndexOf(this);
 				getParentDirectory().restoreOrderAfterNameChangeAt(currentIndexInParent);
+				getParentDirectory().unregisterName(oldKey);
 			}
+			fireNameChanged(oldName);
 		}
 	}
 
+	/**
+	 * Set the name of this item to the given name, as part of a change of the names of
+	 * several items of its parent directory at once. Restoring the order of the items
+	 * in the parent directory is left to that change.
+	 * 
+	 * @param	name
+	 * 			The new name for this item.
+	 * @effect	| setName(name)
+	 * @effect	| setModificationTime()
+	 */
+	@Model
+	void setNameInBatch(String name) {
+		setName(name);
+		setModificationTime();
+	}
+
+	/**
+	 * Change the name of this item to the given name, reporting why it can not be
+	 * changed instead of throwing an exception.
+	 * 
+	 * @param	name
+	 * 			The new name for this item.
+	 * @return	| if (isTerminated()) then result == ResultCode.TERMINATED
+	 * 			| else if (!isWritable()) then result == ResultCode.NOT_WRITABLE
+	 * 			| else if (!isValidName(name)) then result == ResultCode.INVALID_ARGUMENT
+	 * 			| else if (!getName().equals(name) && !canAcceptAsNewName(name))
+	 * 			| then result == ResultCode.NAME_CLASH
+	 * 			| else result == ResultCode.SUCCESS
+	 * @effect	| if (result == ResultCode.SUCCESS) then changeName(name)
+	 */
+	public ResultCode tryRename(String name) {
+		if (isTerminated())
+			return ResultCode.TERMINATED;
+		if (!isWritable())
+			return ResultCode.NOT_WRITABLE;
+		if (!isValidName(name))
+			return ResultCode.INVALID_ARGUMENT;
+		if (getName().equals(name))
+			return ResultCode.SUCCESS;
+		if (!canAcceptAsNewName(name))
+			return ResultCode.NAME_CLASH;
+		changeName(name);
+		return ResultCode.SUCCESS;
+	}
+
 	/**
 	 * Checks whether the name of this item is lexicographically 
 	 * ordered after the given name, ignoring case.
@@ -235,7 +366,7 @@ public abstract class Item {
 	 *       	| result == (name != null) && (getName().compareToIgnoreCase(name) > 0)
 	 */
 	public boolean isOrderedAfter(String name) {
-		return (name != null) && (getName().compareToIgnoreCase(name) > 0);
+		return (name != null) && (getNameKey().getFolded().compareTo(NameKey.fold(name)) > 0);
 	}
 
 	/**
@@ -250,7 +381,7 @@ public abstract class Item {
 	 *       	| result == (name != null) && (getName().compareToIgnoreCase(name) < 0)
 	 */
 	public boolean isOrderedBefore(String name) {
-		return (name != null) && (getName().compareToIgnoreCase(name) < 0);
+		return (name != null) && (getNameKey().getFolded().compareTo(NameKey.fold(name)) < 0);
 	}
 
 	/**
@@ -268,7 +399,7 @@ public abstract class Item {
 	 *       	|           isOrderedAfter(other.getName())
 	 */
 	public boolean isOrderedAfter(@Raw Item other) {
-		return (other != null) && isOrderedAfter(other.getName());
+		return (other != null) && (getNameKey().compareTo(other.getNameKey()) > 0);
 	}
 
 	/**
@@ -286,7 +417,7 @@ public abstract class Item {
 	 *       	|           isOrderedBefore(other.getName())
 	 */
 	public boolean isOrderedBefore(@Raw Item other) {
-		return (other != null) && isOrderedBefore(other.getName());
+		return (other != null) && (getNameKey().compareTo(other.getNameKey()) < 0);
 	}
 	
 	/**********************************************************
@@ -296,7 +427,7 @@ public abstract class Item {
 	/**
 	 * Variable referencing the time of creation.
 	 */
-	private final Date creationTime = new Date();
+	private Date creationTime = new Date();
 
 	/**
 	 * Return the time at which this item was created.
@@ -333,16 +464,19 @@ public abstract class Item {
 	 * Variable referencing the time of the last modification,
 	 * possibly null.
 	 */
-	private Date modificationTime = null;
+	private volatile Date modificationTime = null;
 
 	/**
 	 * Return the time at which this item was last modified, that is
 	 * at which the name or content was last changed. If this item has
 	 * not yet been modified after construction, null is returned.
+	 *
+	 * @note	In a thread with an open read view, the modification time as of the
+	 * 			pinned version is returned.
 	 */
 	@Raw @Basic
 	public Date getModificationTime() {
-		return modificationTime;
+		return (Date) getVersionedValue(MODIFICATION_TIME, modificationTime);
 	}
 
 	/**
@@ -376,10 +510,40 @@ public abstract class Item {
 	 *         |                    System.currentTimeMillis()) &&
 	 *         | (new.getModificationTime().getTime() <=
 	 *         |                    (new System).currentTimeMillis())
+	 * @effect The snapshots of this item and its ancestors are invalidated.
+	 *         | invalidateSnapshot()
+	 * @effect The version stamps of the directories affected by the change are incremented.
+	 *         | incrementVersionStamps()
 	 */
 	@Model @Raw
 	protected void setModificationTime() {
+		recordRevision(MODIFICATION_TIME, modificationTime);
 		modificationTime = new Date();
+		invalidateSnapshot();
+		incrementVersionStamps();
+	}
+
+	/**
+	 * Restore the creation time and modification time of this item to the
+	 * given times. Used when an item is rebuilt from a checkpoint.
+	 *
+	 * @param	creationTime
+	 * 			The creation time to restore.
+	 * @param	modificationTime
+	 * 			The modification time to restore, possibly null.
+	 * @pre		The given creation time is valid.
+	 * 			| isValidCreationTime(creationTime)
+	 * @pre		The given modification time does not precede the given creation time.
+	 * 			| modificationTime == null || !modificationTime.before(creationTime)
+	 * @post	| new.getCreationTime().equals(creationTime)
+	 * @post	| new.getModificationTime() == modificationTime
+	 */
+	@Raw @Model
+	void restoreTimes(Date creationTime, Date modificationTime) {
+		this.creationTime = creationTime;
+		recordRevision(MODIFICATION_TIME, this.modificationTime);
+		this.modificationTime = modificationTime;
+		invalidateSnapshot();
 	}
 
 	/**
@@ -420,7 +584,7 @@ public abstract class Item {
 	/**
 	 * Variable registering whether or not this item is writable.
 	 */
-	protected boolean isWritable = true;
+	protected volatile boolean isWritable = true;
 
 	/**
 	 * Check whether this item is writable.
@@ -436,7 +600,7 @@ public abstract class Item {
 	 * Variable referencing the directory (if any) to which this 
 	 * item belongs.
 	 */
-	private Directory parentDirectory = null;
+	private volatile Directory parentDirectory = null;
 
 
 	/**
@@ -450,13 +614,17 @@ public abstract class Item {
 	 *         | if (isRoot())
 	 *         | then result == this
 	 *         | else result == getParentDirectory().getRoot()
+	 * @note   The root is registered in this item, so it is returned in constant time.
 	 */
 	public Item getRoot() {
-		if (isRoot()) {
-			return this;
-		} else {
-			return getParentDirectory().getRoot();
+		if (Versions.getCurrentView() != null) {
+			// the registered root is the current one, not the one as of the pinned version
+			Item item = this;
+			while (item.getParentDirectory() != null)
+				item = item.getParentDirectory();
+			return item;
 		}
+		return root;
 	}
 
 	/**
@@ -475,6 +643,8 @@ public abstract class Item {
 	 * @post    The given directory is registered as the parent directory 
 	 *          of this item.
 	 *          | new.getParentDirectory() == target
+	 * @post    If the move fails after this item was removed from its parent
+	 *          directory, it is registered in its old parent directory again.
 	 * @throws  IllegalArgumentException
 	 *          The given target directory is not effective, or the parent
 	 *          directory of this item is the given target directory,
@@ -503,27 +673,80 @@ public abstract class Item {
 		if (!target.isWritable())
 			throw new ItemNotWritableException(target);
 
-		if (!isRoot()) {
-			try{
-				getParentDirectory().removeAsItem(this);
-				//our disk item becomes raw now
-			}catch(IllegalArgumentException e){
-				//this cannot happen because of the class invariants
-				assert false;
-			}
-		}
-		setParentDirectory(target); 
-		try{
+		Directory oldParent = getParentDirectory();
+		try {
+			if (oldParent != null)
+				oldParent.removeAsItem(this);
+			//our disk item becomes raw now
+			setParentDirectory(target); 
 			target.addAsItem(this); //this is a raw item because it's not yet registered in the new parent
 									//so the formal argument of addAsItem should be annotated @Raw
-		}catch(IllegalArgumentException e){
-			//this should not happen, because it can have this item
-			assert false;
-		}catch(ItemNotWritableException e){
-			//this should not happen, because we checked it
-			assert false;
+		} catch (RuntimeException e) {
+			rollBackMove(oldParent, target);
+			throw e;
 		}
 		setModificationTime();
+		fireItemMoved(oldParent);
+	}
+
+	/**
+	 * Move this item to the given target directory, reporting why it can not be
+	 * moved instead of throwing an exception.
+	 * 
+	 * @param	target
+	 * 			The target directory.
+	 * @return	| if (isTerminated() || (target != null && target.isTerminated()))
+	 * 			| then result == ResultCode.TERMINATED
+	 * 			| else if (target == null || getParentDirectory() == target)
+	 * 			| then result == ResultCode.INVALID_ARGUMENT
+	 * 			| else if (target == this || isDirectOrIndirectParentOf(target)) 
+	 * 			| then result == ResultCode.CYCLE
+	 * 			| else if (!isWritable() || !target.isWritable() || 
+	 * 			|		(!isRoot() && !getParentDirectory().isWritable()))
+	 * 			| then result == ResultCode.NOT_WRITABLE
+	 * 			| else if (target.exists(getName())) then result == ResultCode.NAME_CLASH
+	 * 			| else if (the move would exceed a quota) then result == ResultCode.QUOTA_EXCEEDED
+	 * 			| else result == ResultCode.SUCCESS
+	 * @effect	| if (result == ResultCode.SUCCESS) then move(target)
+	 */
+	public ResultCode tryMove(Directory target) {
+		if (isTerminated() || (target != null && target.isTerminated()))
+			return ResultCode.TERMINATED;
+		if (target == null || getParentDirectory() == target)
+			return ResultCode.INVALID_ARGUMENT;
+		if (target == this || isDirectOrIndirectParentOf(target))
+			return ResultCode.CYCLE;
+		if (!isWritable() || !target.isWritable() || (!isRoot() && !getParentDirectory().isWritable()))
+			return ResultCode.NOT_WRITABLE;
+		if (target.exists(getName()))
+			return ResultCode.NAME_CLASH;
+		if (!target.canHaveAsItem(this))
+			return ResultCode.INVALID_ARGUMENT;
+		try {
+			move(target);
+		} catch (QuotaExceededException e) {
+			//the move checks the quotas itself, and is undone if one is exceeded
+			return ResultCode.QUOTA_EXCEEDED;
+		}
+		return ResultCode.SUCCESS;
+	}
+
+	/**
+	 * Undo the part of a move of this item from the given old parent directory
+	 * to the given target that has been done.
+	 */
+	@Raw
+	private void rollBackMove(Directory oldParent, Directory target) {
+		if (target.hasAsItem(this))
+			target.removeAsItem(this);
+		if (parentDirectory != oldParent) {
+			recordRevision(PARENT_DIRECTORY, parentDirectory);
+			parentDirectory = oldParent;
+			updateTreeLabels();
+		}
+		//the item returns to where it was, even if that exceeds a quota lowered since
+		if (oldParent != null && !oldParent.hasAsItem(this))
+			oldParent.addAsItem(this, false);
 	}
 
 	/**
@@ -626,7 +849,16 @@ public abstract class Item {
 	@Raw
 	public boolean isDirectOrIndirectParentOf(@Raw Item item) {
 		if(item == null) return false;
-		else return (this == item.getParentDirectory() || isDirectOrIndirectParentOf(item.getParentDirectory()));
+		if (Versions.getCurrentView() != null) {
+			// the registered labels are the current ones, not the ones as of the pinned version
+			for (Directory parent = item.getParentDirectory(); parent != null; parent = parent.getParentDirectory())
+				if (parent == this)
+					return true;
+			return false;
+		}
+		if (item.root != this.root || item.depth <= this.depth)
+			return false;
+		return item.getAncestorAtDepth(this.depth) == this;
 	}
 
 	/**
@@ -653,16 +885,433 @@ public abstract class Item {
 		if (!canHaveAsParentDirectory(parentDirectory)) {
 			throw new IllegalArgumentException("Inappropriate item!");
 		}
+		recordRevision(PARENT_DIRECTORY, this.parentDirectory);
 		this.parentDirectory = parentDirectory;
+		updateTreeLabels();
 	}
 
 	/**
 	 * Return the parent directory (if any) to which this item
 	 * applies.
+	 *
+	 * @note	In a thread with an open read view, the parent directory as of the
+	 * 			pinned version is returned.
 	 */
 	@Raw @Basic
 	public Directory getParentDirectory() {
-		return parentDirectory;
+		return (Directory) getVersionedValue(PARENT_DIRECTORY, parentDirectory);
+	}
+	
+	/**********************************************************
+	 * tree labels
+	 **********************************************************/
+
+	/**
+	 * Variable registering the number of directories between this item and its root.
+	 */
+	private volatile int depth = 0;
+
+	/**
+	 * Variable referencing the root to which this item directly or indirectly belongs.
+	 */
+	private volatile Item root = this;
+
+	/**
+	 * Variable referencing an ancestor of this item to jump to when looking for a
+	 * more distant ancestor, or this item itself if it has no parent directory.
+	 *
+	 * @note	The jumps form a skew-binary structure: the jump of an item is either its
+	 * 			parent directory, or the jump of the jump of its parent directory if the jumps
+	 * 			of its parent directory and of that jump cover the same distance. Any ancestor
+	 * 			is then reached in a logarithmic number of steps, while every item only
+	 * 			references one ancestor besides its parent directory.
+	 */
+	private volatile Item jump = this;
+
+	/**
+	 * Return the number of directories between this item and its root.
+	 *
+	 * @return	| if (isRoot()) then result == 0
+	 * 			| else result == getParentDirectory().getDepth() + 1
+	 * @note	The depth is registered in this item, so it is returned in constant time.
+	 */
+	@Raw
+	public int getDepth() {
+		if (Versions.getCurrentView() != null) {
+			int result = 0;
+			for (Directory parent = getParentDirectory(); parent != null; parent = parent.getParentDirectory())
+				result++;
+			return result;
+		}
+		return depth;
+	}
+
+	/**
+	 * Return the ancestor of this item at the given depth, following the current
+	 * parent directories.
+	 *
+	 * @pre		| 0 <= depth && depth <= this.depth
+	 */
+	@Raw @Model
+	private Item getAncestorAtDepth(int depth) {
+		Item item = this;
+		while (item.depth > depth)
+			item = (item.jump.depth >= depth) ? item.jump : item.parentDirectory;
+		return item;
+	}
+
+	/**
+	 * Register the depth, root and jump of this item and of all items directly or
+	 * indirectly in it, after its parent directory has changed.
+	 */
+	@Raw @Model
+	private void updateTreeLabels() {
+		Deque<Item> pending = new ArrayDeque<Item>();
+		pending.push(this);
+		while (!pending.isEmpty()) {
+			Item item = pending.pop();
+			item.registerTreeLabels();
+			if (item instanceof Directory)
+				for (Item child : ((Directory) item).getRegisteredItems())
+					pending.push(child);
+		}
+	}
+
+	/**
+	 * Register the depth, root and jump of this item, given the ones of its parent directory.
+	 */
+	@Raw @Model
+	private void registerTreeLabels() {
+		Item parent = parentDirectory;
+		if (parent == null) {
+			depth = 0;
+			root = this;
+			jump = this;
+		} else {
+			Item parentJump = parent.jump;
+			depth = parent.depth + 1;
+			root = parent.root;
+			jump = (parent.depth - parentJump.depth == parentJump.depth - parentJump.jump.depth) ?
+					parentJump.jump : parent;
+		}
+	}
+
+	/**********************************************************
+	 * snapshots
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the snapshot of the current state of this item,
+	 * null if this item has changed since its last snapshot was taken.
+	 *
+	 * @note	If a directory has a snapshot, all items in it have one as well, so
+	 * 			invalidating the snapshots of an item and its ancestors can stop at the
+	 * 			first ancestor without snapshot.
+	 */
+	private volatile ItemSnapshot snapshot = null;
+
+	/**
+	 * Return a snapshot of the current state of this item. A snapshot taken earlier
+	 * is reused if this item did not change since.
+	 *
+	 * @return	| result.getName().equals(getName())
+	 */
+	@Model
+	ItemSnapshot getSnapshot() {
+		ItemSnapshot result = snapshot;
+		if (result == null) {
+			result = createSnapshot();
+			snapshot = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Return a new snapshot of the current state of this item.
+	 */
+	@Model
+	abstract ItemSnapshot createSnapshot();
+
+	/**
+	 * Invalidate the snapshots of this item and of all directories it directly or
+	 * indirectly belongs to.
+	 */
+	@Model @Raw
+	protected void invalidateSnapshot() {
+		snapshot = null;
+		Item ancestor = getParentDirectory();
+		while (ancestor != null && ancestor.snapshot != null) {
+			ancestor.snapshot = null;
+			ancestor = ancestor.getParentDirectory();
+		}
+	}
+
+	/**********************************************************
+	 * versions
+	 **********************************************************/
+
+	/**
+	 * Constants identifying the versioned attributes of items.
+	 */
+	static final int NAME = 0, PARENT_DIRECTORY = 1, MODIFICATION_TIME = 2, WRITABILITY = 3, SIZE = 4, ITEMS = 5;
+
+	/**
+	 * Variable referencing the most recent previous value of an attribute of this item,
+	 * null if there is none.
+	 *
+	 * @invar	The previous values are ordered from the most recently replaced one
+	 * 			to the least recently replaced one.
+	 */
+	private volatile Revision revisions = null;
+
+	/**
+	 * Variable referencing the updater of the previous values of items.
+	 */
+	private static final AtomicReferenceFieldUpdater<Item, Revision> revisionsUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(Item.class, Revision.class, "revisions");
+
+	/**
+	 * Register the given value as the previous value of the given attribute, replaced by
+	 * the mutation in progress. Previous values no longer needed by any read view are dropped.
+	 *
+	 * @param	attribute
+	 * 			The attribute that is about to change.
+	 * @param	value
+	 * 			The value of the attribute before the change.
+	 * @throws	IllegalStateException
+	 * 			The current thread has an open read view.
+	 */
+	@Model @Raw
+	void recordRevision(int attribute, Object value) throws IllegalStateException {
+		long version = Versions.getWriteVersion();
+		long pruneVersion = Versions.getPruneVersion();
+		Revision head;
+		Revision retained;
+		do {
+			head = revisions;
+			retained = Revision.prune(head, pruneVersion);
+		} while (!revisionsUpdater.compareAndSet(this, head, new Revision(attribute, value, version, retained)));
+		if (retained == null)
+			Versions.schedulePruning(this);
+	}
+
+	/**
+	 * Return the value of the given attribute as of the version pinned by the read view
+	 * of the current thread, given its current value.
+	 *
+	 * @param	attribute
+	 * 			The attribute to inspect.
+	 * @param	value
+	 * 			The current value of the attribute.
+	 * @return	The given value if the current thread has no open read view.
+	 * 			| if (Versions.getCurrentView() == null)
+	 * 			|	then result == value
+	 */
+	@Model @Raw
+	Object getVersionedValue(int attribute, Object value) {
+		Versions.ReadView view = Versions.getCurrentView();
+		if (view == null)
+			return value;
+		for (Revision revision = revisions; revision != null && revision.version > view.getVersion();
+				revision = revision.next)
+			if (revision.attribute == attribute)
+				value = revision.value;
+		return value;
+	}
+
+	/**
+	 * Return the value of the given integer attribute as of the version pinned by the
+	 * read view of the current thread, given its current value.
+	 *
+	 * @effect	| getVersionedValue(attribute, (Object) value)
+	 */
+	@Model @Raw
+	int getVersionedValue(int attribute, int value) {
+		if (Versions.getCurrentView() == null)
+			return value;
+		return (Integer) getVersionedValue(attribute, (Object) value);
+	}
+
+	/**
+	 * Return the value of the given boolean attribute as of the version pinned by the
+	 * read view of the current thread, given its current value.
+	 *
+	 * @effect	| getVersionedValue(attribute, (Object) value)
+	 */
+	@Model @Raw
+	boolean getVersionedValue(int attribute, boolean value) {
+		if (Versions.getCurrentView() == null)
+			return value;
+		return (Boolean) getVersionedValue(attribute, (Object) value);
+	}
+
+	/**
+	 * Drop the previous values of this item that were replaced in the given version or before.
+	 *
+	 * @return	True if and only if this item has no previous values left.
+	 */
+	@Model
+	boolean pruneRevisions(long version) {
+		Revision head = revisions;
+		if (Revision.prune(head, version) != null)
+			return false;
+		return revisionsUpdater.compareAndSet(this, head, null) || revisions == null;
+	}
+
+	/**
+	 * Check whether this item has previous values.
+	 */
+	@Model
+	boolean hasRevisions() {
+		return revisions != null;
+	}
+
+	/**
+	 * A class of previous values of attributes of items.
+	 */
+	private static final class Revision {
+
+		private Revision(int attribute, Object value, long version, Revision next) {
+			this.attribute = attribute;
+			this.value = value;
+			this.version = version;
+			this.next = next;
+		}
+
+		/**
+		 * Variable identifying the attribute.
+		 */
+		private final int attribute;
+
+		/**
+		 * Variable referencing the value of the attribute before the version of this revision.
+		 */
+		private final Object value;
+
+		/**
+		 * Variable registering the version in which the value was replaced.
+		 */
+		private final long version;
+
+		/**
+		 * Variable referencing the revision that was recorded before this one.
+		 */
+		private volatile Revision next;
+
+		/**
+		 * Drop the revisions replaced in the given version or before from the chain
+		 * starting at the given revision, and return the remaining chain.
+		 */
+		private static Revision prune(Revision head, long version) {
+			if (head == null || head.version <= version)
+				return null;
+			Revision revision = head;
+			Revision next;
+			while ((next = revision.next) != null && next.version > version)
+				revision = next;
+			revision.next = null;
+			return head;
+		}
+	}
+
+	/**
+	 * Increment the version stamps of the directories affected by a change of this
+	 * item: this item itself if it is a directory, and its parent directory.
+	 */
+	@Model @Raw
+	void incrementVersionStamps() {
+		if (this instanceof Directory)
+			((Directory) this).incrementVersionStamp();
+		Directory parent = parentDirectory;
+		if (parent != null)
+			parent.incrementVersionStamp();
+	}
+
+	/**********************************************************
+	 * mutation listeners
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the listeners that are notified of all mutations
+	 * of items.
+	 */
+	private static final List<MutationListener> mutationListeners = new CopyOnWriteArrayList<MutationListener>();
+
+	/**
+	 * Register the given listener to be notified of all mutations of items.
+	 *
+	 * @param	listener
+	 * 			The listener to register.
+	 * @throws	IllegalArgumentException
+	 * 			The given listener is not effective.
+	 * 			| listener == null
+	 */
+	static void addMutationListener(MutationListener listener) throws IllegalArgumentException {
+		if (listener == null)
+			throw new IllegalArgumentException();
+		mutationListeners.add(listener);
+	}
+
+	/**
+	 * Unregister the given listener.
+	 *
+	 * @param	listener
+	 * 			The listener to unregister.
+	 */
+	static void removeMutationListener(MutationListener listener) {
+		mutationListeners.remove(listener);
+	}
+
+	/**
+	 * Commit the mutation in progress and notify all registered listeners
+	 * that this item has been created.
+	 */
+	@Model
+	void fireItemCreated() {
+		Versions.commit();
+		for (MutationListener listener : mutationListeners)
+			listener.itemCreated(this);
+	}
+
+	/**
+	 * Commit the mutation in progress and notify all registered listeners
+	 * that the name of this item has been changed.
+	 */
+	@Model
+	void fireNameChanged(String oldName) {
+		Versions.commit();
+		for (MutationListener listener : mutationListeners)
+			listener.nameChanged(this, oldName);
+	}
+
+	/**
+	 * Commit the mutation in progress and notify all registered listeners
+	 * that this item has been moved.
+	 */
+	@Model
+	void fireItemMoved(Directory oldParent) {
+		Versions.commit();
+		for (MutationListener listener : mutationListeners)
+			listener.itemMoved(this, oldParent);
+	}
+
+	/**
+	 * Commit the mutation in progress and notify all registered listeners
+	 * that this item has been terminated.
+	 */
+	@Model
+	void fireItemTerminated(Directory oldParent) {
+		Versions.commit();
+		for (MutationListener listener : mutationListeners)
+			listener.itemTerminated(this, oldParent);
+	}
+
+	/**
+	 * Return the listeners that are notified of all mutations of items.
+	 */
+	@Model
+	static List<MutationListener> getMutationListeners() {
+		return mutationListeners;
 	}
 	
 	/***********************************
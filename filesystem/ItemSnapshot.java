@@ -0,0 +1,113 @@
+package filesystem;
+
+import java.util.Date;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable snapshots of the state of an item at some point in time.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public abstract class ItemSnapshot {
+
+	/**
+	 * Initialize a new snapshot of the current state of the given item.
+	 *
+	 * @param	item
+	 * 			The item to take a snapshot of.
+	 * @post	| new.getName().equals(item.getName())
+	 * @post	| new.isWritable() == item.isWritable()
+	 * @post	| new.getCreationTime().equals(item.getCreationTime())
+	 * @post	| new.getModificationTime() == null ? item.getModificationTime() == null
+	 * 			|	: new.getModificationTime().equals(item.getModificationTime())
+	 */
+	@Model
+	ItemSnapshot(Item item) {
+		this.name = item.getName();
+		this.writable = item.isWritable();
+		this.creationTime = item.getCreationTime().getTime();
+		Date modificationTime = item.getModificationTime();
+		this.modificationTime = modificationTime == null ? NO_TIME : modificationTime.getTime();
+	}
+
+	/**
+	 * Constant registering a missing modification time.
+	 */
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Variable registering the name of the item.
+	 */
+	private final String name;
+
+	/**
+	 * Variable registering the writability of the item.
+	 */
+	private final boolean writable;
+
+	/**
+	 * Variable registering the creation time of the item.
+	 */
+	private final long creationTime;
+
+	/**
+	 * Variable registering the modification time of the item.
+	 */
+	private final long modificationTime;
+
+	/**
+	 * Return the name of the item.
+	 */
+	@Basic @Immutable
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Return the writability of the item.
+	 */
+	@Basic @Immutable
+	public boolean isWritable() {
+		return writable;
+	}
+
+	/**
+	 * Return the creation time of the item.
+	 */
+	@Basic @Immutable
+	public Date getCreationTime() {
+		return new Date(creationTime);
+	}
+
+	/**
+	 * Return the modification time of the item, null if it had not been modified.
+	 */
+	@Basic @Immutable
+	public Date getModificationTime() {
+		return modificationTime == NO_TIME ? null : new Date(modificationTime);
+	}
+
+	/**
+	 * Return the total number of bytes used by the item and all items in it.
+	 */
+	public abstract long getTotalDiskUsage();
+
+	/**
+	 * Return a new item in the given parent directory that is a copy of the item of
+	 * which this snapshot was taken, with the given name and creation time.
+	 *
+	 * @return	| result.getName().equals(name) && result.getParentDirectory() == parent
+	 * @return	| result.isWritable() == isWritable()
+	 * @note	The new item is not registered in the given directory.
+	 */
+	@Model
+	abstract Item copy(@Raw Directory parent, String name, Date creationTime);
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + getName() + ")";
+	}
+
+}
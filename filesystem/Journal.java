@@ -0,0 +1,923 @@
+package filesystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.exception.UnvalidLinkException;
+
+/**
+ * A class of write-ahead journals, logging every mutation of the items in the
+ * directory trees attached to them.
+ *
+ * Each mutation of an item in an attached tree (creation, name change, move, making a
+ * directory a root, termination, change of writability and change of size) is appended as
+ * a compact binary record to the journal file. Records of creations carry the creation and
+ * modification time of the new item, and every record carries the modification times the
+ * mutation left on the items it touched, so rebuilt items keep their times. Records are buffered in memory and written
+ * to disk with group commit: a call to sync() forces all records appended so far to disk,
+ * and concurrent calls to sync() are served by one single force of the file.
+ * After a crash, the attached trees are rebuilt from the journal with Recovery.recover(Path).
+ *
+ * The root directories of attached trees are identified by a number that is unique within
+ * the journal. Items are identified by the number of their root and the names on their path
+ * from that root.
+ *
+ * @invar	The durable sequence number never exceeds the last sequence number.
+ * 			| getDurableSequenceNumber() <= getLastSequenceNumber()
+ * @invar	The base sequence number never exceeds the durable sequence number.
+ * 			| getBaseSequenceNumber() <= getDurableSequenceNumber()
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class Journal implements Closeable {
+
+	/**********************************************************
+	 * File format
+	 **********************************************************/
+
+	/**
+	 * Constant registering the magic number identifying a journal file.
+	 */
+	static final int MAGIC = 0x464A524E;
+
+	/**
+	 * Constant registering the size of the header of a journal file (in bytes).
+	 * The header consists of the magic number, a reserved integer and the sequence
+	 * number preceding the first record in the file.
+	 */
+	static final int HEADER_SIZE = 16;
+
+	/**
+	 * Constant registering the number of bytes surrounding the body of a record:
+	 * the length of the body, the sequence number, the operation and the checksum.
+	 */
+	static final int RECORD_OVERHEAD = 4 + 8 + 1 + 4;
+
+	/**
+	 * Constants registering the operations logged in a journal.
+	 */
+	static final byte CREATE_ROOT = 1, CREATE_DIRECTORY = 2, CREATE_FILE = 3, CREATE_LINK = 4,
+			CHANGE_NAME = 5, MOVE = 6, DETACH = 7, MAKE_ROOT = 8, TERMINATE = 9,
+			SET_WRITABLE = 10, SET_SIZE = 11;
+
+	/**
+	 * Constants registering how the target of a logged link is given: not at all because
+	 * it is not in an attached tree, by its location, or not at all because it has been
+	 * terminated and the link is no longer valid.
+	 */
+	static final byte NO_TARGET = 0, TARGET = 1, INVALID_TARGET = 2;
+
+	/**
+	 * Constant registering the logged time of an item without modification time.
+	 */
+	static final long NO_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Constant registering the number of buffered bytes above which the buffered
+	 * records are written to the file, without forcing them to disk.
+	 */
+	private static final int WRITE_THRESHOLD = 1 << 20;
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Open the journal stored in the file at the given path, without periodic syncing.
+	 *
+	 * @param	path
+	 * 			The path of the journal file.
+	 * @effect	| open(path, 0)
+	 */
+	public static Journal open(Path path) throws IllegalArgumentException, IOException {
+		return open(path, 0);
+	}
+
+	/**
+	 * Open the journal stored in the file at the given path. If the file does not
+	 * exist, a new empty journal is created. A torn record at the end of an existing
+	 * journal, left by a crash, is discarded.
+	 *
+	 * @param	path
+	 * 			The path of the journal file.
+	 * @param	syncIntervalMillis
+	 * 			The interval (in milliseconds) at which the journal is synced in the background,
+	 * 			zero if the journal is only synced explicitly.
+	 * @return	A journal appending records to the file at the given path.
+	 * @throws	IllegalArgumentException
+	 * 			The given path is not effective or the given interval is negative.
+	 * 			| path == null || syncIntervalMillis < 0
+	 * @throws	IOException
+	 * 			The journal file could not be opened or is not a journal file.
+	 */
+	public static Journal open(Path path, long syncIntervalMillis) throws IllegalArgumentException, IOException {
+		if (path == null || syncIntervalMillis < 0)
+			throw new IllegalArgumentException();
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			long end;
+			long baseSequenceNumber;
+			long lastSequenceNumber;
+			if (channel.size() == 0) {
+				writeHeader(channel, 0);
+				channel.force(true);
+				end = HEADER_SIZE;
+				baseSequenceNumber = 0;
+				lastSequenceNumber = 0;
+			} else {
+				JournalReader reader = new JournalReader(channel);
+				while (reader.next());
+				end = reader.getValidEnd();
+				baseSequenceNumber = reader.getBaseSequenceNumber();
+				lastSequenceNumber = reader.getSequenceNumber();
+				channel.truncate(end);
+			}
+			return new Journal(path, channel, end, baseSequenceNumber, lastSequenceNumber, syncIntervalMillis);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Initialize a new journal appending to the given channel.
+	 */
+	private Journal(Path path, FileChannel channel, long end, long baseSequenceNumber, long lastSequenceNumber,
+			long syncIntervalMillis) {
+		this.path = path;
+		this.channel = channel;
+		this.end = end;
+		this.baseSequenceNumber = baseSequenceNumber;
+		this.lastSequenceNumber = lastSequenceNumber;
+		this.durableSequenceNumber = lastSequenceNumber;
+		if (syncIntervalMillis > 0) {
+			syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "journal-sync");
+				thread.setDaemon(true);
+				return thread;
+			});
+			syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		} else {
+			syncer = null;
+		}
+		Item.addMutationListener(listener);
+	}
+
+	/**
+	 * Write a journal header with the given base sequence number at the start of the given channel.
+	 */
+	static void writeHeader(FileChannel channel, long baseSequenceNumber) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(0).putLong(baseSequenceNumber);
+		header.flip();
+		while (header.hasRemaining())
+			channel.write(header, header.position());
+	}
+
+	/**
+	 * Variable referencing the path of the journal file.
+	 */
+	private final Path path;
+
+	/**
+	 * Variable referencing the channel to the journal file.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Variable registering the position in the journal file where the next records are written.
+	 */
+	private long end;
+
+	/**
+	 * Variable referencing the background syncer of this journal, if any.
+	 */
+	private final ScheduledExecutorService syncer;
+
+	/**
+	 * Return the path of the file of this journal.
+	 */
+	@Basic @Immutable
+	public Path getPath() {
+		return path;
+	}
+
+	/**********************************************************
+	 * Sequence numbers
+	 **********************************************************/
+
+	/**
+	 * Variable registering the sequence number preceding the first record in the journal file.
+	 * All records up to this number have been removed by a checkpoint.
+	 */
+	private volatile long baseSequenceNumber;
+
+	/**
+	 * Return the sequence number preceding the first record in the journal file.
+	 */
+	@Basic
+	public long getBaseSequenceNumber() {
+		return baseSequenceNumber;
+	}
+
+	/**
+	 * Variable registering the sequence number of the last appended record.
+	 */
+	private long lastSequenceNumber;
+
+	/**
+	 * Variable registering the sequence number of the last record forced to disk.
+	 */
+	private volatile long durableSequenceNumber;
+
+	/**
+	 * Return the sequence number of the last record appended to this journal.
+	 */
+	@Basic
+	public long getLastSequenceNumber() {
+		synchronized (appendLock) {
+			return lastSequenceNumber;
+		}
+	}
+
+	/**
+	 * Return the sequence number of the last record of this journal that is durable on disk.
+	 */
+	@Basic
+	public long getDurableSequenceNumber() {
+		return durableSequenceNumber;
+	}
+
+	/**********************************************************
+	 * Attached trees
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the numbers of the root directories of the trees attached to this journal.
+	 */
+	private final Map<Directory, Integer> rootNumbers = new IdentityHashMap<Directory, Integer>();
+
+	/**
+	 * Variable registering the number for the next attached root directory.
+	 */
+	private int nextRootNumber = 1;
+
+	/**
+	 * Attach the tree of the given root directory to this journal. The creation of the
+	 * given root directory and all its direct and indirect items is logged, and all
+	 * further mutations of items in the tree are logged.
+	 *
+	 * @param	root
+	 * 			The root directory to attach.
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not effective, not a root, terminated or already attached.
+	 * 			| root == null || !root.isRoot() || root.isTerminated() || isAttached(root)
+	 * @throws	IllegalStateException
+	 * 			This journal is closed.
+	 */
+	public void attach(Directory root) throws IllegalArgumentException, IllegalStateException {
+		if (root == null || !root.isRoot() || root.isTerminated())
+			throw new IllegalArgumentException();
+		synchronized (appendLock) {
+			if (rootNumbers.containsKey(root))
+				throw new IllegalArgumentException("Root is already attached");
+			int number = nextRootNumber++;
+			rootNumbers.put(root, number);
+			newBody();
+			ensureBody(4).putInt(number);
+			putName(root.getName());
+			ensureBody(1).put((byte) 1);
+			putTimes(root);
+			append(CREATE_ROOT);
+			logContents(root);
+			if (!root.isWritable())
+				logWritability(root);
+		}
+	}
+
+	/**
+	 * Attach the recovered trees of the given recovery to this journal, without logging
+	 * their creation. The root directories keep the numbers they had in the replayed journal.
+	 *
+	 * @param	recovery
+	 * 			The recovery to attach the trees of.
+	 * @throws	IllegalArgumentException
+	 * 			The given recovery is not effective.
+	 * 			| recovery == null
+	 */
+	public void attach(Recovery recovery) throws IllegalArgumentException {
+		if (recovery == null)
+			throw new IllegalArgumentException();
+		synchronized (appendLock) {
+			for (Map.Entry<Integer, Directory> entry : recovery.getRootsByNumber().entrySet()) {
+				rootNumbers.put(entry.getValue(), entry.getKey());
+				nextRootNumber = Math.max(nextRootNumber, entry.getKey() + 1);
+			}
+			nextRootNumber = Math.max(nextRootNumber, recovery.getNextRootNumber());
+		}
+	}
+
+	/**
+	 * Check whether the tree of the given root directory is attached to this journal.
+	 */
+	public boolean isAttached(Directory root) {
+		synchronized (appendLock) {
+			return rootNumbers.containsKey(root);
+		}
+	}
+
+	/**
+	 * Return the number of the root of the given item in this journal, null if the tree
+	 * of the given item is not attached.
+	 */
+	private Integer rootNumberOf(Item item) {
+		return rootNumbers.get(item.getRoot());
+	}
+
+	/**
+	 * Return a copy of the table of the attached root directories by their number.
+	 */
+	Map<Integer, Directory> getRootsByNumber() {
+		synchronized (appendLock) {
+			Map<Integer, Directory> result = new HashMap<Integer, Directory>();
+			for (Map.Entry<Directory, Integer> entry : rootNumbers.entrySet())
+				result.put(entry.getValue(), entry.getKey());
+			return result;
+		}
+	}
+
+	/**
+	 * Return the number for the next attached root directory.
+	 */
+	int getNextRootNumber() {
+		synchronized (appendLock) {
+			return nextRootNumber;
+		}
+	}
+
+	/**********************************************************
+	 * Logging
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the lock guarding the appending of records.
+	 */
+	private final Object appendLock = new Object();
+
+	/**
+	 * Variable referencing the lock guarding the writing and forcing of records.
+	 */
+	private final Object syncLock = new Object();
+
+	/**
+	 * Variable referencing the buffer with the records that are not yet written to the file.
+	 */
+	private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+
+	/**
+	 * Variable referencing a spare buffer, swapped with the pending buffer when it is written.
+	 */
+	private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+
+	/**
+	 * Variable referencing a reusable buffer for the body of a record.
+	 */
+	private ByteBuffer body = ByteBuffer.allocate(1024);
+
+	/**
+	 * Variable referencing the checksum used to seal records.
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Return the reusable body buffer, cleared.
+	 */
+	private ByteBuffer newBody() {
+		body.clear();
+		return body;
+	}
+
+	/**
+	 * Append a record with the given operation and the contents of the body buffer
+	 * to the buffered records.
+	 *
+	 * @return	The sequence number of the appended record.
+	 * @throws	IllegalStateException
+	 * 			This journal is closed.
+	 */
+	private long append(byte operation) throws IllegalStateException {
+		if (channel == null)
+			throw new IllegalStateException("Journal is closed");
+		body.flip();
+		int length = body.remaining();
+		if (pending.remaining() < length + RECORD_OVERHEAD) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length + RECORD_OVERHEAD));
+			pending.flip();
+			larger.put(pending);
+			pending = larger;
+		}
+		long sequenceNumber = ++lastSequenceNumber;
+		int start = pending.position();
+		pending.putInt(length).putLong(sequenceNumber).put(operation).put(body);
+		crc.reset();
+		ByteBuffer sealed = pending.duplicate();
+		sealed.position(start + 4).limit(pending.position());
+		crc.update(sealed);
+		pending.putInt((int) crc.getValue());
+		return sequenceNumber;
+	}
+
+	/**
+	 * Write the buffered records if there are enough of them, without forcing them to disk.
+	 */
+	private void writeIfFull() {
+		boolean full;
+		synchronized (appendLock) {
+			full = pending.position() >= WRITE_THRESHOLD;
+		}
+		if (full) {
+			try {
+				write(false);
+			} catch (IOException e) {
+				throw new IllegalStateException("Journal could not be written", e);
+			}
+		}
+	}
+
+	/**
+	 * Force all records appended to this journal so far to disk. Concurrent callers
+	 * share a single force of the journal file.
+	 *
+	 * @return	The sequence number of the last durable record.
+	 * 			| result == getDurableSequenceNumber()
+	 * @post	All records appended before this call are durable.
+	 * 			| new.getDurableSequenceNumber() >= getLastSequenceNumber()
+	 * @throws	IOException
+	 * 			The records could not be written.
+	 */
+	public long sync() throws IOException {
+		long target = getLastSequenceNumber();
+		if (durableSequenceNumber >= target)
+			return durableSequenceNumber;
+		synchronized (syncLock) {
+			// a sync by another thread may have covered our records while we waited
+			if (durableSequenceNumber < target)
+				write(true);
+		}
+		return durableSequenceNumber;
+	}
+
+	/**
+	 * Sync this journal, ignoring failures. Used by the background syncer.
+	 */
+	private void syncQuietly() {
+		try {
+			sync();
+		} catch (IOException | IllegalStateException e) {
+			// the next explicit sync reports the failure
+		}
+	}
+
+	/**
+	 * Write all buffered records to the journal file and force them to disk if requested.
+	 */
+	private void write(boolean force) throws IOException {
+		synchronized (syncLock) {
+			ByteBuffer toWrite;
+			long upTo;
+			synchronized (appendLock) {
+				if (channel == null)
+					throw new IllegalStateException("Journal is closed");
+				toWrite = pending;
+				pending = spare;
+				spare = toWrite;
+				upTo = lastSequenceNumber;
+			}
+			toWrite.flip();
+			while (toWrite.hasRemaining())
+				end += channel.write(toWrite, end);
+			toWrite.clear();
+			if (force) {
+				channel.force(false);
+				durableSequenceNumber = upTo;
+			}
+		}
+	}
+
+	/**
+	 * Sync this journal and close it. Mutations are no longer logged.
+	 *
+	 * @throws	IOException
+	 * 			The remaining records could not be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		Item.removeMutationListener(listener);
+		if (syncer != null)
+			syncer.shutdownNow();
+		synchronized (syncLock) {
+			if (channel == null)
+				return;
+			write(true);
+			synchronized (appendLock) {
+				channel.close();
+				channel = null;
+			}
+		}
+	}
+
+	/**********************************************************
+	 * Truncation
+	 **********************************************************/
+
+	/**
+	 * Remove all records with a sequence number up to and including the given sequence
+	 * number from the journal file. The remaining records are copied to a new file that
+	 * atomically replaces the journal file. Records can still be appended while the
+	 * remaining records are copied.
+	 *
+	 * @param	sequenceNumber
+	 * 			The sequence number of the last record to remove.
+	 * @throws	IllegalArgumentException
+	 * 			The given sequence number exceeds the durable sequence number.
+	 * 			| sequenceNumber > getDurableSequenceNumber()
+	 * @throws	IOException
+	 * 			The journal file could not be rewritten.
+	 */
+	@Model
+	void truncateUpTo(long sequenceNumber) throws IllegalArgumentException, IOException {
+		if (sequenceNumber > durableSequenceNumber)
+			throw new IllegalArgumentException("Only durable records can be truncated");
+		synchronized (syncLock) {
+			write(true);
+			Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+			try (FileChannel copy = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				JournalReader reader = new JournalReader(channel);
+				long start = reader.getValidEnd();
+				while (reader.next() && reader.getSequenceNumber() <= sequenceNumber)
+					start = reader.getValidEnd();
+				long base = Math.max(reader.getBaseSequenceNumber(), sequenceNumber);
+				writeHeader(copy, base);
+				long position = HEADER_SIZE;
+				while (start < end) {
+					long transferred = channel.transferTo(start, end - start, copy.position(position));
+					start += transferred;
+					position += transferred;
+				}
+				copy.force(true);
+				synchronized (appendLock) {
+					Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					channel.close();
+					channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+					end = position;
+					baseSequenceNumber = base;
+				}
+			}
+		}
+	}
+
+	/**********************************************************
+	 * Encoding
+	 **********************************************************/
+
+	/**
+	 * Make sure the body buffer can hold the given number of additional bytes.
+	 *
+	 * @return	The body buffer, possibly replaced by a larger one.
+	 */
+	private ByteBuffer ensureBody(int additional) {
+		if (body.remaining() < additional) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(body.capacity() * 2, body.position() + additional));
+			body.flip();
+			larger.put(body);
+			body = larger;
+		}
+		return body;
+	}
+
+	/**
+	 * Append the given name to the body buffer.
+	 */
+	private void putName(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+		ensureBody(2 + bytes.length).putShort((short) bytes.length).put(bytes);
+	}
+
+	/**
+	 * Append the location of the given root directory to the body buffer.
+	 */
+	private void putRootLocation(Directory root) {
+		ensureBody(6).putInt(rootNumbers.get(root)).putShort((short) 0);
+	}
+
+	/**
+	 * Append the location of the item with the given name in the given parent directory
+	 * to the body buffer: the number of its root, followed by the names on its path.
+	 */
+	private void putLocation(Directory parent, String name) {
+		ArrayDeque<String> names = new ArrayDeque<String>();
+		names.push(name);
+		Directory root = parent;
+		while (!root.isRoot()) {
+			names.push(root.getName());
+			root = root.getParentDirectory();
+		}
+		ensureBody(6).putInt(rootNumbers.get(root)).putShort((short) names.size());
+		for (String each : names)
+			putName(each);
+	}
+
+	/**
+	 * Append the location of the given item to the body buffer.
+	 */
+	private void putLocation(Item item) {
+		if (item.isRoot())
+			putRootLocation((Directory) item);
+		else
+			putLocation(item.getParentDirectory(), item.getName());
+	}
+
+	/**
+	 * Append the creation time and the modification time of the given item to the body buffer.
+	 */
+	private void putTimes(Item item) {
+		ensureBody(8).putLong(item.getCreationTime().getTime());
+		putModificationTime(item);
+	}
+
+	/**
+	 * Append the modification time of the given item to the body buffer.
+	 */
+	private void putModificationTime(Item item) {
+		Date time = item.getModificationTime();
+		ensureBody(8).putLong(time == null ? NO_TIME : time.getTime());
+	}
+
+	/**
+	 * Append the modification time of the parent directory of the given item to the body
+	 * buffer, if the item is not a root.
+	 */
+	private void putParentModificationTime(Item item) {
+		if (!item.isRoot())
+			putModificationTime(item.getParentDirectory());
+	}
+
+	/**
+	 * Log the creation of all direct and indirect items of the given directory, such that
+	 * replaying the records rebuilds them. Directories are created writable, links are created
+	 * after all disk items, and the writability of non-writable directories is set last.
+	 */
+	private void logContents(Directory directory) {
+		List<Link> links = new ArrayList<Link>();
+		List<Directory> nonWritable = new ArrayList<Directory>();
+		ArrayDeque<Directory> stack = new ArrayDeque<Directory>();
+		stack.push(directory);
+		while (!stack.isEmpty()) {
+			Directory current = stack.pop();
+			for (int i = 1; i <= current.getNbItems(); i++) {
+				Item item = current.getItemAt(i);
+				if (item instanceof Link) {
+					links.add((Link) item);
+				} else {
+					logCreation(item, true);
+					if (item instanceof Directory) {
+						stack.push((Directory) item);
+						if (!item.isWritable())
+							nonWritable.add((Directory) item);
+					}
+				}
+			}
+		}
+		for (Link link : links)
+			logCreation(link, true);
+		for (int i = nonWritable.size() - 1; i >= 0; i--)
+			logWritability(nonWritable.get(i));
+	}
+
+	/**
+	 * Log the creation of the given item, with its times and the modification time of its
+	 * parent directory. Directories are logged as writable if requested.
+	 */
+	private void logCreation(Item item, boolean writableDirectory) {
+		newBody();
+		putLocation(item);
+		if (item instanceof Directory) {
+			ensureBody(1).put((byte) (writableDirectory || item.isWritable() ? 1 : 0));
+			putTimes(item);
+			putParentModificationTime(item);
+			append(CREATE_DIRECTORY);
+		} else if (item instanceof File) {
+			File file = (File) item;
+			ensureBody(6).put((byte) file.getType().ordinal()).putInt(file.getSize())
+					.put((byte) (file.isWritable() ? 1 : 0));
+			putTimes(item);
+			putParentModificationTime(item);
+			append(CREATE_FILE);
+		} else {
+			Link link = (Link) item;
+			ensureBody(1).put((byte) (link instanceof DirectoryLink ? 1 : 0));
+			DiskItem target = null;
+			boolean valid = true;
+			try {
+				target = link.getRefDiskItem();
+			} catch (UnvalidLinkException e) {
+				valid = false;
+			}
+			if (!valid) {
+				ensureBody(1).put(INVALID_TARGET);
+			} else if (rootNumberOf(target) != null) {
+				ensureBody(1).put(TARGET);
+				putLocation(target);
+			} else {
+				ensureBody(1).put(NO_TARGET);
+			}
+			putTimes(item);
+			putParentModificationTime(item);
+			append(CREATE_LINK);
+		}
+	}
+
+	/**
+	 * Log the creation of the given item and of all items directly or indirectly in it.
+	 */
+	private void logTree(Item item) {
+		logCreation(item, true);
+		if (item instanceof Directory) {
+			logContents((Directory) item);
+			if (!item.isWritable())
+				logWritability((Directory) item);
+		}
+	}
+
+	/**
+	 * Log the writability of the given disk item.
+	 */
+	private void logWritability(DiskItem item) {
+		newBody();
+		putLocation(item);
+		ensureBody(1).put((byte) (item.isWritable() ? 1 : 0));
+		putModificationTime(item);
+		append(SET_WRITABLE);
+	}
+
+	/**
+	 * Variable referencing the listener logging the mutations of attached trees.
+	 */
+	private final MutationListener listener = new MutationListener() {
+
+		@Override
+		public void itemCreated(Item item) {
+			synchronized (appendLock) {
+				if (channel == null || rootNumberOf(item) == null)
+					return;
+				logCreation(item, false);
+			}
+			writeIfFull();
+		}
+
+		@Override
+		public void directoryCopied(Directory copy) {
+			synchronized (appendLock) {
+				if (channel == null || rootNumberOf(copy) == null)
+					return;
+				logTree(copy);
+			}
+			writeIfFull();
+		}
+
+		@Override
+		public void nameChanged(Item item, String oldName) {
+			synchronized (appendLock) {
+				if (channel == null || rootNumberOf(item) == null)
+					return;
+				newBody();
+				if (item.isRoot())
+					putRootLocation((Directory) item);
+				else
+					putLocation(item.getParentDirectory(), oldName);
+				putName(item.getName());
+				putModificationTime(item);
+				putParentModificationTime(item);
+				append(CHANGE_NAME);
+			}
+			writeIfFull();
+		}
+
+		@Override
+		public void itemMoved(Item item, Directory oldParent) {
+			synchronized (appendLock) {
+				if (channel == null)
+					return;
+				boolean wasAttachedRoot = (oldParent == null) && rootNumbers.containsKey(item);
+				boolean fromAttached = wasAttachedRoot || (oldParent != null && rootNumberOf(oldParent) != null);
+				boolean toAttached = rootNumberOf(item) != null;
+				if (fromAttached) {
+					newBody();
+					if (wasAttachedRoot)
+						putRootLocation((Directory) item);
+					else
+						putLocation(oldParent, item.getName());
+					if (toAttached) {
+						putLocation(item.getParentDirectory());
+						putModificationTime(item);
+						putParentModificationTime(item);
+						if (!wasAttachedRoot)
+							putModificationTime(oldParent);
+						append(MOVE);
+					} else {
+						if (!wasAttachedRoot)
+							putModificationTime(oldParent);
+						append(DETACH);
+					}
+					if (wasAttachedRoot)
+						rootNumbers.remove(item);
+				} else if (toAttached) {
+					// an item from a tree that is not attached is logged as a new item
+					logTree(item);
+				}
+			}
+			writeIfFull();
+		}
+
+		@Override
+		public void madeRoot(Directory directory, Directory oldParent) {
+			synchronized (appendLock) {
+				if (channel == null || rootNumberOf(oldParent) == null)
+					return;
+				newBody();
+				putLocation(oldParent, directory.getName());
+				int number = nextRootNumber++;
+				ensureBody(4).putInt(number);
+				putModificationTime(directory);
+				putModificationTime(oldParent);
+				append(MAKE_ROOT);
+				rootNumbers.put(directory, number);
+			}
+			writeIfFull();
+		}
+
+		@Override
+		public void itemTerminated(Item item, Directory oldParent) {
+			synchronized (appendLock) {
+				if (channel == null)
+					return;
+				newBody();
+				if (oldParent == null) {
+					if (!rootNumbers.containsKey(item))
+						return;
+					putRootLocation((Directory) item);
+					rootNumbers.remove(item);
+				} else {
+					if (rootNumberOf(oldParent) == null)
+						return;
+					putLocation(oldParent, item.getName());
+					putModificationTime(oldParent);
+				}
+				append(TERMINATE);
+			}
+			writeIfFull();
+		}
+
+		@Override
+		public void writabilityChanged(DiskItem item) {
+			synchronized (appendLock) {
+				if (channel == null || rootNumberOf(item) == null)
+					return;
+				logWritability(item);
+			}
+			writeIfFull();
+		}
+
+		@Override
+		public void sizeChanged(File file, int delta) {
+			synchronized (appendLock) {
+				if (channel == null || rootNumberOf(file) == null)
+					return;
+				newBody();
+				putLocation(file);
+				ensureBody(4).putInt(file.getSize());
+				putModificationTime(file);
+				append(SET_SIZE);
+			}
+			writeIfFull();
+		}
+	};
+
+}
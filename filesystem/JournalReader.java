@@ -0,0 +1,206 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of readers iterating over the records of a journal file.
+ *
+ * A reader stops at the first record that is incomplete or of which the
+ * checksum does not match. Such a record can only be the result of a crash
+ * while the record was written, so it and everything after it is ignored.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class JournalReader {
+
+	/**
+	 * Initialize a new reader positioned before the first record of the journal
+	 * in the given channel.
+	 *
+	 * @param	channel
+	 * 			The channel to the journal file.
+	 * @throws	IOException
+	 * 			The given channel does not contain a journal.
+	 */
+	JournalReader(FileChannel channel) throws IOException {
+		this.channel = channel;
+		this.size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(Journal.HEADER_SIZE);
+		while (header.hasRemaining() && channel.read(header, header.position()) > 0);
+		if (header.hasRemaining() || header.getInt(0) != Journal.MAGIC)
+			throw new IOException("Not a journal file");
+		baseSequenceNumber = header.getLong(8);
+		sequenceNumber = baseSequenceNumber;
+		position = Journal.HEADER_SIZE;
+		validEnd = position;
+		buffer.limit(0);
+	}
+
+	/**
+	 * Variable referencing the channel to the journal file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Variable registering the size of the journal file when this reader was created.
+	 */
+	private final long size;
+
+	/**
+	 * Variable referencing the buffer with bytes read ahead from the journal file.
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+	/**
+	 * Variable registering the position in the file of the first byte in the buffer.
+	 */
+	private long bufferStart = 0;
+
+	/**
+	 * Variable registering the position in the file of the next record.
+	 */
+	private long position;
+
+	/**
+	 * Variable registering the position in the file right after the last valid record.
+	 */
+	private long validEnd;
+
+	/**
+	 * Variable registering the sequence number preceding the first record in the file.
+	 */
+	private final long baseSequenceNumber;
+
+	/**
+	 * Variable registering the sequence number of the current record.
+	 */
+	private long sequenceNumber;
+
+	/**
+	 * Variable registering the operation of the current record.
+	 */
+	private byte operation;
+
+	/**
+	 * Variable referencing the body of the current record.
+	 */
+	private ByteBuffer body;
+
+	/**
+	 * Variable referencing the checksum used to verify records.
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Return the sequence number preceding the first record in the journal file.
+	 */
+	@Basic @Immutable
+	long getBaseSequenceNumber() {
+		return baseSequenceNumber;
+	}
+
+	/**
+	 * Return the sequence number of the current record, or of the last valid record
+	 * once the reader has reached the end.
+	 */
+	@Basic
+	long getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	/**
+	 * Return the operation of the current record.
+	 */
+	@Basic
+	byte getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Return the body of the current record, positioned at its start.
+	 */
+	@Basic
+	ByteBuffer getBody() {
+		return body;
+	}
+
+	/**
+	 * Return the position in the file right after the last valid record read.
+	 */
+	@Basic
+	long getValidEnd() {
+		return validEnd;
+	}
+
+	/**
+	 * Advance this reader to the next record.
+	 *
+	 * @return	True if there is a next valid record, false if the end of the journal
+	 * 			or a torn record has been reached.
+	 * @throws	IOException
+	 * 			The journal file could not be read.
+	 */
+	boolean next() throws IOException {
+		if (!fill(position, 4))
+			return false;
+		int length = buffer.getInt((int) (position - bufferStart));
+		int total = length + Journal.RECORD_OVERHEAD;
+		if (length < 0 || !fill(position, total))
+			return false;
+		int offset = (int) (position - bufferStart);
+		ByteBuffer record = buffer.duplicate();
+		record.position(offset + 4).limit(offset + total - 4);
+		crc.reset();
+		crc.update(record.duplicate());
+		if ((int) crc.getValue() != buffer.getInt(offset + total - 4))
+			return false;
+		long number = record.getLong();
+		if (number <= sequenceNumber)
+			return false;
+		sequenceNumber = number;
+		operation = record.get();
+		body = record.slice();
+		position += total;
+		validEnd = position;
+		return true;
+	}
+
+	/**
+	 * Make sure the given number of bytes starting at the given position in the file are in the buffer.
+	 *
+	 * @return	False if the file does not contain that many bytes at the given position.
+	 */
+	private boolean fill(long start, int length) throws IOException {
+		if (start + length > size)
+			return false;
+		if (start >= bufferStart && start + length <= bufferStart + buffer.limit())
+			return true;
+		if (length > buffer.capacity())
+			buffer = ByteBuffer.allocate(length);
+		buffer.clear();
+		bufferStart = start;
+		while (buffer.hasRemaining() && bufferStart + buffer.position() < size) {
+			if (channel.read(buffer, bufferStart + buffer.position()) < 0)
+				break;
+		}
+		buffer.flip();
+		return buffer.limit() >= length;
+	}
+
+	/**
+	 * Read a name from the given record body.
+	 */
+	static String getName(ByteBuffer body) {
+		byte[] bytes = new byte[body.getShort() & 0xFFFF];
+		body.get(bytes);
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+}
@@ -0,0 +1,192 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.*;
+
+import filesystem.exception.UnvalidLinkException;
+
+/**
+ * A JUnit test class for testing the public methods of the Journal and Recovery Classes.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class JournalTest {
+
+	Path path;
+	Journal journal;
+	Directory root;
+	Directory sub;
+	File file;
+
+	@Before
+	public void setUpFixture() throws IOException {
+		path = Files.createTempFile("journal", ".log");
+		Files.delete(path);
+		journal = Journal.open(path);
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		journal.attach(root);
+		file = new File(sub, "bestand", Type.JAVA, 10, true);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		journal.close();
+		Files.deleteIfExists(path);
+	}
+
+	private Directory recoveredRoot() throws IOException {
+		journal.sync();
+		Recovery recovery = Recovery.recover(path);
+		assertEquals(1, recovery.getRoots().size());
+		return recovery.getRoots().iterator().next();
+	}
+
+	@Test
+	public void testRecover_creation() throws IOException {
+		new FileLink("link", file, root);
+		Directory recovered = recoveredRoot();
+		assertEquals("root", recovered.getName());
+		assertEquals(2, recovered.getNbItems());
+		File recoveredFile = (File) ((Directory) recovered.getItem("sub")).getItem("bestand");
+		assertEquals(Type.JAVA, recoveredFile.getType());
+		assertEquals(10, recoveredFile.getSize());
+		assertSame(recoveredFile, ((Link) recovered.getItem("link")).getRefDiskItem());
+	}
+
+	@Test
+	public void testRecover_invalidLink() throws IOException {
+		Directory detached = new Directory("los");
+		File target = new File(detached, "doel", Type.TEXT);
+		Directory outside = new Directory("buiten");
+		new FileLink("ongeldig", target, detached);
+		new FileLink("extern", new File(outside, "ver", Type.TEXT), detached);
+		target.terminate();
+		detached.move(root);
+		Directory recovered = (Directory) recoveredRoot().getItem("los");
+		try {
+			((Link) recovered.getItem("ongeldig")).getRefDiskItem();
+			fail();
+		} catch (UnvalidLinkException e) {
+		}
+		assertNotNull(((Link) recovered.getItem("extern")).getRefDiskItem());
+	}
+
+	@Test
+	public void testRecover_mutations() throws IOException {
+		Directory other = new Directory(root, "other");
+		file.enlarge(5);
+		file.changeName("hernoemd");
+		file.move(other);
+		file.setWritable(false);
+		sub.setWritable(false);
+		Directory recovered = recoveredRoot();
+		File recoveredFile = (File) ((Directory) recovered.getItem("other")).getItem("hernoemd");
+		assertEquals(15, recoveredFile.getSize());
+		assertFalse(recoveredFile.isWritable());
+		assertEquals(0, ((Directory) recovered.getItem("sub")).getNbItems());
+		assertFalse(recovered.getItem("sub").isWritable());
+	}
+
+	@Test
+	public void testRecover_times() throws IOException, InterruptedException {
+		Directory other = new Directory(root, "other");
+		File doomed = new File(other, "weg", Type.TEXT);
+		file.enlarge(5);
+		file.changeName("hernoemd");
+		doomed.terminate();
+		Thread.sleep(5);
+		Directory recovered = recoveredRoot();
+		Directory recoveredSub = (Directory) recovered.getItem("sub");
+		Directory recoveredOther = (Directory) recovered.getItem("other");
+		File recoveredFile = (File) recoveredSub.getItem("hernoemd");
+		assertEquals(root.getCreationTime(), recovered.getCreationTime());
+		assertEquals(root.getModificationTime(), recovered.getModificationTime());
+		assertEquals(sub.getModificationTime(), recoveredSub.getModificationTime());
+		assertEquals(other.getCreationTime(), recoveredOther.getCreationTime());
+		assertEquals(other.getModificationTime(), recoveredOther.getModificationTime());
+		assertEquals(file.getCreationTime(), recoveredFile.getCreationTime());
+		assertEquals(file.getModificationTime(), recoveredFile.getModificationTime());
+	}
+
+	@Test
+	public void testRecover_copy() throws IOException {
+		sub.setWritable(false);
+		sub.copyTo(root, "kopie", true);
+		Directory recovered = recoveredRoot();
+		Directory recoveredCopy = (Directory) recovered.getItem("kopie");
+		assertFalse(recoveredCopy.isWritable());
+		assertEquals(10, ((File) recoveredCopy.getItem("bestand")).getSize());
+		assertEquals(4, recovered.getNbDescendants());
+	}
+
+	@Test
+	public void testRecover_copyWithInvalidLink() throws IOException {
+		File target = new File(sub, "doel", Type.TEXT);
+		new FileLink("ongeldig", target, sub);
+		target.terminate();
+		sub.copyTo(root, "kopie");
+		sub.copyTo(root, "lui", true);
+		Directory recovered = recoveredRoot();
+		for (String name : new String[] { "kopie", "lui" }) {
+			Directory recoveredCopy = (Directory) recovered.getItem(name);
+			try {
+				((Link) recoveredCopy.getItem("ongeldig")).getRefDiskItem();
+				fail();
+			} catch (UnvalidLinkException e) {
+			}
+			assertEquals(10, ((File) recoveredCopy.getItem("bestand")).getSize());
+		}
+	}
+
+	@Test
+	public void testRecover_makeRootAndTerminate() throws IOException {
+		file.terminate();
+		sub.makeRoot();
+		journal.sync();
+		Recovery recovery = Recovery.recover(path);
+		assertEquals(2, recovery.getRoots().size());
+		for (Directory each : recovery.getRoots())
+			assertEquals(0, each.getNbItems());
+	}
+
+	@Test
+	public void testReplay_idempotent() throws IOException {
+		file.enlarge(5);
+		journal.sync();
+		Recovery recovery = Recovery.recover(path);
+		assertEquals(0, recovery.replay(path));
+		file.shorten(3);
+		journal.sync();
+		assertEquals(1, recovery.replay(path));
+		Directory recovered = recovery.getRoots().iterator().next();
+		assertEquals(12, ((File) ((Directory) recovered.getItem("sub")).getItem("bestand")).getSize());
+	}
+
+	@Test
+	public void testRecover_tornRecord() throws IOException {
+		journal.sync();
+		long lastDurable = journal.getDurableSequenceNumber();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 1, 2, 3 }));
+		}
+		Recovery recovery = Recovery.recover(path);
+		assertEquals(lastDurable, recovery.getLastAppliedSequenceNumber());
+	}
+
+	@Test
+	public void testSync_durable() throws IOException {
+		file.enlarge(1);
+		assertTrue(journal.getDurableSequenceNumber() < journal.getLastSequenceNumber());
+		assertEquals(journal.getLastSequenceNumber(), journal.sync());
+	}
+
+}
@@ -1,5 +1,7 @@
 package filesystem;
 
+import java.util.Date;
+
 import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
@@ -54,7 +56,22 @@ public abstract class Link extends Item {
 	protected Link (String name, DiskItem refDiskItem, Directory parent)
 			throws IllegalArgumentException, ItemNotWritableException{
 		super(parent, name);
-		setRefDiskItem(refDiskItem);		
+		setRefDiskItem(refDiskItem);
+		fireItemCreated();
+	}
+	
+	/**
+	 * Initialize a new link in the given parent directory as a copy of the link
+	 * of which the given snapshot was taken, with the given name and creation time.
+	 * 
+	 * @effect	| super(parent, name, source, creationTime)
+	 * @post	The new link references the disk item the link of the given snapshot
+	 * 			references, even if that disk item has been terminated.
+	 */
+	@Model
+	Link(@Raw Directory parent, String name, LinkSnapshot source, Date creationTime) {
+		super(parent, name, source, creationTime);
+		this.refDiskItem = source.getLink().refDiskItem;
 	}
 	
 	/**********************************************************
@@ -128,6 +145,12 @@ public abstract class Link extends Item {
 	 * 
 	 * @post 	This link is terminated.
 	 *       	| new.isTerminated()
+	 * @effect 	If this link is not terminated, it is removed from its parent directory
+	 * 			and its parent directory is set to null
+	 * 			| if !isTerminated()  
+	 * 			| then 	{	getParentDirectory().removeAsItem(this)
+	 *			|			setParentDirectory(null) 
+	 *			|		}
 	 * @throws 	IllegalStateException
 	 * 		   	This link is not yet terminated and it can not be terminated.
 	 * 		   	| !isTerminated() && !canBeTerminated()
@@ -137,7 +160,12 @@ public abstract class Link extends Item {
 			if (!canBeTerminated()) {
 				throw new IllegalStateException("This item cannot be terminated");
 			}
+			Directory dir = getParentDirectory();
+			setParentDirectory(null);
+			//this link is now in a raw state
+			dir.removeAsItem(this);
 			this.isTerminated = true;
+			fireItemTerminated(dir);
 		}
 	}
 	
@@ -178,4 +206,16 @@ public abstract class Link extends Item {
 		return true;
 	
 	}
+	
+	/**********************************************************
+	 * snapshot
+	 **********************************************************/
+	
+	/**
+	 * Return a new snapshot of the current state of this link.
+	 */
+	@Override @Model
+	LinkSnapshot createSnapshot() {
+		return new LinkSnapshot(this);
+	}
 }
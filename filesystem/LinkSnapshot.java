@@ -0,0 +1,85 @@
+package filesystem;
+
+import java.util.Date;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable snapshots of the state of a link at some point in time.
+ *
+ * The disk item referenced by a link is not part of its snapshot: it is returned
+ * in its current state.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class LinkSnapshot extends ItemSnapshot {
+
+	/**
+	 * Initialize a new snapshot of the current state of the given link.
+	 *
+	 * @param	link
+	 * 			The link to take a snapshot of.
+	 * @effect	| super(link)
+	 * @post	| new.isDirectoryLink() == (link instanceof DirectoryLink)
+	 */
+	@Model
+	LinkSnapshot(Link link) {
+		super(link);
+		this.link = link;
+	}
+
+	/**
+	 * Variable referencing the link.
+	 */
+	private final Link link;
+
+	/**
+	 * Check whether the link references a directory.
+	 */
+	@Basic @Immutable
+	public boolean isDirectoryLink() {
+		return link instanceof DirectoryLink;
+	}
+
+	/**
+	 * Return the disk item referenced by the link, in its current state.
+	 *
+	 * @effect	| link.getRefDiskItem()
+	 */
+	public DiskItem getRefDiskItem() {
+		return link.getRefDiskItem();
+	}
+
+	/**
+	 * Return the total number of bytes used by the link.
+	 *
+	 * @return	| result == 0
+	 */
+	@Override
+	public long getTotalDiskUsage() {
+		return 0;
+	}
+
+	/**
+	 * Return the link of which this snapshot was taken.
+	 */
+	@Basic @Immutable @Model
+	Link getLink() {
+		return link;
+	}
+
+	/**
+	 * Return a new link in the given parent directory that is a copy of the link of
+	 * which this snapshot was taken, with the given name and creation time.
+	 *
+	 * @return	| (result instanceof DirectoryLink) == isDirectoryLink()
+	 */
+	@Override @Model
+	Link copy(@Raw Directory parent, String name, Date creationTime) {
+		if (isDirectoryLink())
+			return new DirectoryLink(parent, name, this, creationTime);
+		return new FileLink(parent, name, this, creationTime);
+	}
+
+}
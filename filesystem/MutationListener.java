@@ -0,0 +1,88 @@
+package filesystem;
+
+/**
+ * An interface of listeners that are notified of every mutation of the items
+ * in the file system. Listeners are registered with Item.addMutationListener(MutationListener)
+ * and are notified synchronously, after the mutation has been completed.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+interface MutationListener {
+
+	/**
+	 * Notify this listener that the given item has been created in its parent directory.
+	 *
+	 * @param	item
+	 * 			The new item, which is fully initialized.
+	 */
+	void itemCreated(Item item);
+
+	/**
+	 * Notify this listener that the given directory has been created in its parent
+	 * directory as a copy, together with all items directly or indirectly in it.
+	 *
+	 * @param	copy
+	 * 			The new directory, of which the items may still have to be copied.
+	 */
+	void directoryCopied(Directory copy);
+
+	/**
+	 * Notify this listener that the name of the given item has been changed.
+	 *
+	 * @param	item
+	 * 			The renamed item.
+	 * @param	oldName
+	 * 			The name of the item before the change.
+	 */
+	void nameChanged(Item item, String oldName);
+
+	/**
+	 * Notify this listener that the given item has been moved.
+	 *
+	 * @param	item
+	 * 			The moved item.
+	 * @param	oldParent
+	 * 			The parent directory of the item before the move, null if it was a root.
+	 */
+	void itemMoved(Item item, Directory oldParent);
+
+	/**
+	 * Notify this listener that the given directory has been made a root.
+	 *
+	 * @param	directory
+	 * 			The new root directory.
+	 * @param	oldParent
+	 * 			The parent directory of the directory before it was made a root.
+	 */
+	void madeRoot(Directory directory, Directory oldParent);
+
+	/**
+	 * Notify this listener that the given item has been terminated.
+	 *
+	 * @param	item
+	 * 			The terminated item.
+	 * @param	oldParent
+	 * 			The parent directory of the item before its termination, null if it was a root.
+	 */
+	void itemTerminated(Item item, Directory oldParent);
+
+	/**
+	 * Notify this listener that the writability of the given disk item has been set.
+	 *
+	 * @param	item
+	 * 			The disk item of which the writability was set.
+	 */
+	void writabilityChanged(DiskItem item);
+
+	/**
+	 * Notify this listener that the size of the given file has been changed.
+	 *
+	 * @param	file
+	 * 			The resized file.
+	 * @param	delta
+	 * 			The amount of bytes by which the size was changed.
+	 */
+	void sizeChanged(File file, int delta);
+
+}
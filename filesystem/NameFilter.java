@@ -0,0 +1,153 @@
+package filesystem;
+
+import java.util.List;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of counting Bloom filters over case-folded names.
+ *
+ * A filter answers whether a name might have been added to it. It never answers
+ * no for a name that was added and not removed again, but may answer yes for a
+ * name that was never added. Every name is counted in NB_HASHES counters of a
+ * single byte each; a name is removed by decrementing its counters again. Counters
+ * that reach their maximum stay at that maximum, so that they never drop to zero
+ * while names are still counted in them.
+ *
+ * @invar	| getNbNames() <= getCapacity()
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class NameFilter {
+
+	/**
+	 * Constant registering the number of counters a name is counted in.
+	 */
+	static final int NB_HASHES = 4;
+
+	/**
+	 * Constant registering the number of counters per name the filter has room for.
+	 */
+	static final int COUNTERS_PER_NAME = 8;
+
+	/**
+	 * Constant registering the smallest number of names a filter has room for.
+	 */
+	static final int MIN_CAPACITY = 16;
+
+	/**
+	 * Return a new filter for the names of the given items, with room for at least
+	 * the given number of names.
+	 *
+	 * @return	| result.getNbNames() == items.size()
+	 * @return	| result.getCapacity() >= Math.max(capacity, items.size())
+	 */
+	static NameFilter of(List<Item> items, int capacity) {
+		NameFilter filter = new NameFilter(Math.max(capacity, items.size()));
+		for (Item item : items)
+			filter.add(item.getNameKey());
+		return filter;
+	}
+
+	/**
+	 * Initialize a new, empty filter with room for the given number of names.
+	 */
+	private NameFilter(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, MIN_CAPACITY) * COUNTERS_PER_NAME - 1) << 1;
+		this.counters = new byte[size];
+		this.capacity = size / COUNTERS_PER_NAME;
+	}
+
+	/**
+	 * Variable referencing the counters of this filter. The number of counters is
+	 * a power of two.
+	 */
+	private final byte[] counters;
+
+	/**
+	 * Variable registering the number of names this filter has room for.
+	 */
+	private final int capacity;
+
+	/**
+	 * Variable registering the number of names counted in this filter.
+	 */
+	private int nbNames = 0;
+
+	/**
+	 * Return the number of names this filter has room for, before it answers yes
+	 * for too many names that were never added.
+	 */
+	@Basic @Immutable
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Return the number of names counted in this filter.
+	 */
+	@Basic
+	int getNbNames() {
+		return nbNames;
+	}
+
+	/**
+	 * Count the given name in this filter.
+	 *
+	 * @post	| new.mightContain(key.getFolded())
+	 * @post	| new.getNbNames() == getNbNames() + 1
+	 */
+	void add(NameKey key) {
+		int hash = mix(key.getFolded().hashCode());
+		int step = (hash >>> 16) | 1;
+		for (int i = 0; i < NB_HASHES; i++, hash += step) {
+			int index = hash & (counters.length - 1);
+			if (counters[index] != -1)
+				counters[index]++;
+		}
+		nbNames++;
+	}
+
+	/**
+	 * Remove the given name, counted before, from this filter.
+	 *
+	 * @post	| new.getNbNames() == getNbNames() - 1
+	 */
+	void remove(NameKey key) {
+		int hash = mix(key.getFolded().hashCode());
+		int step = (hash >>> 16) | 1;
+		for (int i = 0; i < NB_HASHES; i++, hash += step) {
+			int index = hash & (counters.length - 1);
+			if (counters[index] != -1 && counters[index] != 0)
+				counters[index]--;
+		}
+		nbNames--;
+	}
+
+	/**
+	 * Check whether the given folded name might be counted in this filter.
+	 *
+	 * @return	| if (the given name is counted in this filter) then result == true
+	 */
+	boolean mightContain(String folded) {
+		int hash = mix(folded.hashCode());
+		int step = (hash >>> 16) | 1;
+		for (int i = 0; i < NB_HASHES; i++, hash += step)
+			if (counters[hash & (counters.length - 1)] == 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Return the given hash code with its bits spread over the whole word.
+	 */
+	private static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		return hash ^ (hash >>> 16);
+	}
+
+}
@@ -0,0 +1,103 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the name filter of the Directory Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class NameFilterTest {
+
+	Directory root;
+	Directory sub;
+	List<File> files;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		sub.setNameFilter(true);
+		files = new ArrayList<File>();
+		for (int i = 0; i < 100; i++)
+			files.add(new File(sub, "bestand" + i, Type.TEXT));
+	}
+
+	@Test
+	public void testExists_withFilter() {
+		assertTrue(sub.hasNameFilter());
+		for (File file : files)
+			assertTrue(sub.exists(file.getName().toUpperCase()));
+		for (int i = 100; i < 200; i++)
+			assertFalse(sub.exists("bestand" + i));
+		assertFalse(sub.exists(null));
+	}
+
+	@Test
+	public void testExists_afterChanges() {
+		Directory other = new Directory(root, "other");
+		files.get(0).changeName("hernoemd");
+		files.get(1).changeName("BESTAND1");
+		files.get(2).move(other);
+		files.get(3).terminate();
+		assertTrue(sub.exists("hernoemd"));
+		assertFalse(sub.exists("bestand0"));
+		assertTrue(sub.exists("bestand1"));
+		assertFalse(sub.exists("bestand2"));
+		assertFalse(sub.exists("bestand3"));
+		new File(sub, "bestand3", Type.JAVA);
+		assertTrue(sub.exists("bestand3"));
+		sub.setNameFilter(false);
+		assertFalse(sub.hasNameFilter());
+		assertTrue(sub.exists("hernoemd"));
+	}
+
+	@Test
+	public void testExists_batchRenameResizingFilter() {
+		Map<Item, String> names = new LinkedHashMap<Item, String>();
+		for (int i = 0; i < 60; i++)
+			names.put(files.get(i), "hernoemd" + i);
+		sub.changeNames(names);
+		for (int i = 0; i < 60; i++) {
+			assertTrue(sub.exists("hernoemd" + i));
+			assertFalse(sub.exists("bestand" + i));
+		}
+		for (int i = 60; i < 100; i++)
+			assertTrue(sub.exists("bestand" + i));
+	}
+
+	@Test
+	public void testFilter_fewFalsePositives() {
+		NameFilter filter = NameFilter.of(new ArrayList<Item>(), 0);
+		for (int i = 0; i < filter.getCapacity(); i++)
+			filter.add(NameKey.of("naam" + i));
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++)
+			if (filter.mightContain("ander" + i))
+				falsePositives++;
+		assertTrue(falsePositives < 500);
+		for (int i = 0; i < filter.getCapacity(); i++)
+			filter.remove(NameKey.of("naam" + i));
+		assertEquals(0, filter.getNbNames());
+		assertFalse(filter.mightContain("naam0"));
+	}
+
+	@Test
+	public void testExists_inReadView() throws InterruptedException {
+		try (Versions.ReadView view = Versions.pin()) {
+			Thread thread = new Thread(() -> files.get(0).terminate());
+			thread.start();
+			thread.join();
+			assertTrue(sub.exists("bestand0"));
+		}
+		assertFalse(sub.exists("bestand0"));
+	}
+
+}
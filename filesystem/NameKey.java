@@ -0,0 +1,225 @@
+package filesystem;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of names of items, together with their case-folded form.
+ *
+ * Names are compared and matched ignoring case through their folded forms, which
+ * are computed once. Every character is folded to the lower case of its upper case,
+ * so comparing folded forms gives the same result as String.compareToIgnoreCase
+ * and String.equalsIgnoreCase on the names themselves.
+ * Keys are interned: as long as a key for a name is in use, the same key is returned
+ * for that name, so repeated names in a file system share their key.
+ * Lean keys only keep their name, and derive its folded form whenever it is needed.
+ * They are not interned, and suit items of which the names are kept elsewhere as well.
+ * Folded names that only consist of characters valid in names of items are also
+ * packed in words of PACKED_CHARS characters of 6 bits each, in such a way that
+ * comparing the words gives the same result as comparing the folded names.
+ *
+ * @invar	| getFolded().equals(fold(getName()))
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class NameKey implements Comparable<NameKey> {
+
+	/**
+	 * Variable referencing the interned keys, by their name. The entry for a key is
+	 * dropped once the key is no longer in use, since the table only references the
+	 * name of the key weakly.
+	 */
+	private static final WeakHashMap<String, WeakReference<NameKey>> interned =
+			new WeakHashMap<String, WeakReference<NameKey>>();
+
+	/**
+	 * Return the key for the given name.
+	 *
+	 * @param	name
+	 * 			The name to return the key for.
+	 * @return	| result.getName().equals(name)
+	 * @throws	IllegalArgumentException
+	 * 			The given name is not effective.
+	 * 			| name == null
+	 */
+	static NameKey of(String name) throws IllegalArgumentException {
+		if (name == null)
+			throw new IllegalArgumentException();
+		synchronized (interned) {
+			WeakReference<NameKey> reference = interned.get(name);
+			NameKey key = (reference == null) ? null : reference.get();
+			if (key == null) {
+				key = new NameKey(name);
+				interned.put(key.name, new WeakReference<NameKey>(key));
+			}
+			return key;
+		}
+	}
+
+	/**
+	 * Return a lean key for the given name.
+	 *
+	 * @param	name
+	 * 			The name to return the key for.
+	 * @return	| result.getName().equals(name) && result.isLean()
+	 * @throws	IllegalArgumentException
+	 * 			The given name is not effective.
+	 * 			| name == null
+	 */
+	static NameKey lean(String name) throws IllegalArgumentException {
+		if (name == null)
+			throw new IllegalArgumentException();
+		return new NameKey(name, true);
+	}
+
+	/**
+	 * Return the case-folded form of the given name.
+	 *
+	 * @return	| result.length() == name.length() &&
+	 * 			| for each I in 0..name.length()-1:
+	 * 			|	result.charAt(I) == Character.toLowerCase(Character.toUpperCase(name.charAt(I)))
+	 */
+	static String fold(String name) {
+		char[] folded = null;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			char f = Character.toLowerCase(Character.toUpperCase(c));
+			if (f != c) {
+				if (folded == null)
+					folded = name.toCharArray();
+				folded[i] = f;
+			}
+		}
+		return (folded == null) ? name : new String(folded);
+	}
+
+	/**
+	 * Constant referencing the characters of folded names that can be packed, in
+	 * increasing order. A character is packed as its position in this string plus one,
+	 * so that the unused trailing characters of the last word come before any character.
+	 */
+	private static final String PACKED_ALPHABET = "-.0123456789_abcdefghijklmnopqrstuvwxyz";
+
+	/**
+	 * Constant registering the number of characters packed in a single word.
+	 */
+	static final int PACKED_CHARS = 10;
+
+	/**
+	 * Return the given folded name packed in words, or null if it has a character
+	 * that can not be packed.
+	 *
+	 * @return	| if (for some I in 0..folded.length()-1:
+	 * 			|		PACKED_ALPHABET.indexOf(folded.charAt(I)) < 0)
+	 * 			| then result == null
+	 * 			| else result.length == (folded.length() + PACKED_CHARS - 1) / PACKED_CHARS
+	 */
+	static long[] pack(String folded) {
+		long[] words = new long[(folded.length() + PACKED_CHARS - 1) / PACKED_CHARS];
+		for (int i = 0; i < folded.length(); i++) {
+			int code = PACKED_ALPHABET.indexOf(folded.charAt(i));
+			if (code < 0)
+				return null;
+			// the first character goes in the highest bits; the sign bit stays clear
+			words[i / PACKED_CHARS] |= (long) (code + 1) << (6 * (PACKED_CHARS - 1 - i % PACKED_CHARS));
+		}
+		return words;
+	}
+
+	/**
+	 * Initialize a new key for the given name.
+	 */
+	private NameKey(String name) {
+		this(name, false);
+	}
+
+	/**
+	 * Initialize a new key for the given name, which is lean if so requested.
+	 */
+	private NameKey(String name, boolean lean) {
+		this.name = name;
+		this.folded = lean ? null : fold(name);
+		this.packed = lean ? null : pack(folded);
+	}
+
+	/**
+	 * Variable referencing the name of this key.
+	 */
+	private final String name;
+
+	/**
+	 * Variable referencing the case-folded form of the name of this key, or null if
+	 * this key is lean. It is the same string as the name if folding does not change it.
+	 */
+	private final String folded;
+
+	/**
+	 * Variable referencing the folded name of this key packed in words, or null if
+	 * it can not be packed.
+	 */
+	private final long[] packed;
+
+	/**
+	 * Return the name of this key.
+	 */
+	@Basic @Immutable
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Return the case-folded form of the name of this key.
+	 */
+	@Immutable
+	String getFolded() {
+		return (folded == null) ? fold(name) : folded;
+	}
+
+	/**
+	 * Check whether this key only keeps its name.
+	 */
+	@Basic @Immutable
+	boolean isLean() {
+		return folded == null;
+	}
+
+	/**
+	 * Compare the name of this key with the name of the given key, ignoring case.
+	 *
+	 * @return	| Integer.signum(result) == Integer.signum(getName().compareToIgnoreCase(other.getName()))
+	 */
+	@Override
+	public int compareTo(NameKey other) {
+		if (packed == null || other.packed == null)
+			return getFolded().compareTo(other.getFolded());
+		int common = Math.min(packed.length, other.packed.length);
+		for (int i = 0; i < common; i++)
+			if (packed[i] != other.packed[i])
+				return (packed[i] < other.packed[i]) ? -1 : 1;
+		return packed.length - other.packed.length;
+	}
+
+	/**
+	 * Check whether the name of this key equals the name of the given key, ignoring case.
+	 *
+	 * @return	| result == getName().equalsIgnoreCase(other.getName())
+	 */
+	boolean matches(NameKey other) {
+		if (this == other)
+			return true;
+		if (packed != null && other.packed != null)
+			return Arrays.equals(packed, other.packed);
+		String folded = getFolded(), otherFolded = other.getFolded();
+		return folded.hashCode() == otherFolded.hashCode() && folded.equals(otherFolded);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
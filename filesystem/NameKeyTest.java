@@ -0,0 +1,85 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the methods of the NameKey Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class NameKeyTest {
+
+	String[] names = { "abc", "ABC", "Abd", "ab", "a_b", "a-b", "A0", "zz", "\u00e9t\u00e9", "\u00c9T\u00c9", "\u0131", "I", "\u00df" };
+
+	@Test
+	public void testCompareTo_sameAsCompareToIgnoreCase() {
+		for (String first : names)
+			for (String second : names)
+				assertEquals(first + " " + second,
+						Integer.signum(first.compareToIgnoreCase(second)),
+						Integer.signum(NameKey.of(first).compareTo(NameKey.of(second))));
+	}
+
+	@Test
+	public void testMatches_sameAsEqualsIgnoreCase() {
+		for (String first : names)
+			for (String second : names)
+				assertEquals(first + " " + second, first.equalsIgnoreCase(second),
+						NameKey.of(first).matches(NameKey.of(second)));
+	}
+
+	@Test
+	public void testCompareTo_packedNames() {
+		Random random = new Random(42);
+		String alphabet = "-.0123456789_abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+		String[] packable = new String[200];
+		for (int i = 0; i < packable.length; i++) {
+			StringBuilder name = new StringBuilder();
+			int length = 1 + random.nextInt(25);
+			for (int c = 0; c < length; c++)
+				name.append(alphabet.charAt(random.nextInt(i % 2 == 0 ? 4 : alphabet.length())));
+			packable[i] = name.toString();
+		}
+		for (String first : packable)
+			for (String second : packable) {
+				assertEquals(first + " " + second,
+						Integer.signum(first.compareToIgnoreCase(second)),
+						Integer.signum(NameKey.of(first).compareTo(NameKey.of(second))));
+				assertEquals(first + " " + second, first.equalsIgnoreCase(second),
+						NameKey.of(first).matches(NameKey.of(second)));
+			}
+	}
+
+	@Test
+	public void testPack() {
+		assertEquals(0, NameKey.pack("").length);
+		assertEquals(1, NameKey.pack("abcdefghij").length);
+		assertEquals(2, NameKey.pack("abcdefghijk").length);
+		assertNull(NameKey.pack("\u00e9t\u00e9"));
+		assertNull(NameKey.pack("a b"));
+		assertTrue(NameKey.pack("zzzzzzzzzz")[0] > 0);
+	}
+
+	@Test
+	public void testOf_interned() {
+		NameKey key = NameKey.of("bestand");
+		assertSame(key, NameKey.of(new String("bestand")));
+		assertSame(key.getName(), key.getFolded());
+		assertEquals("bestand", NameKey.of("BeStand").getFolded());
+	}
+
+	@Test
+	public void testItem_sharesKeys() {
+		Directory root = new Directory("root");
+		Directory first = new Directory(root, "src");
+		Directory second = new Directory(first, "src");
+		assertSame(first.getNameKey(), second.getNameKey());
+		assertSame(second, first.getItem("SRC"));
+		assertTrue(first.exists("Src"));
+	}
+
+}
@@ -0,0 +1,440 @@
+package filesystem;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of queries selecting items directly or indirectly in a directory.
+ *
+ * A query is built by adding conditions on the name, type, size, creation time,
+ * modification time, writability, kind and depth of the items, and is then run on
+ * a directory. The depth of an item is the number of directories between it and
+ * that directory, plus one: the items of the directory itself have depth 1.
+ *
+ * When a query is run, it is planned first. If the directory keeps an index that
+ * yields a superset of the result, the candidates are read from that index. A size
+ * or modification time condition uses the attribute index, a type condition the
+ * type index, in that order of preference. Otherwise, the subtree is walked in
+ * parallel, without descending below the maximum depth. In both cases, the result
+ * is streamed lazily and can be cut off with a limit.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class Query {
+
+	/**
+	 * Initialize a new query without conditions, selecting all items.
+	 */
+	public Query() {
+	}
+
+	/**********************************************************
+	 * Conditions
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the glob the names of the selected items must match, if any.
+	 */
+	private Glob nameGlob = null;
+
+	/**
+	 * Variable referencing the type of the selected files, if any.
+	 */
+	private Type type = null;
+
+	/**
+	 * Variables registering the bounds on the size of the selected files.
+	 */
+	private int minSize = 0, maxSize = Integer.MAX_VALUE;
+
+	/**
+	 * Variable registering whether only files are selected.
+	 */
+	private boolean filesOnly = false;
+
+	/**
+	 * Variables referencing the bounds on the creation time of the selected items, if any.
+	 */
+	private Date createdFrom = null, createdTo = null;
+
+	/**
+	 * Variables referencing the bounds on the modification time of the selected items, if any.
+	 */
+	private Date modifiedFrom = null, modifiedTo = null;
+
+	/**
+	 * Variable referencing the writability of the selected items, if it is a condition.
+	 */
+	private Boolean writable = null;
+
+	/**
+	 * Variable referencing whether the selected items are links, if it is a condition.
+	 */
+	private Boolean links = null;
+
+	/**
+	 * Variables registering the bounds on the depth of the selected items.
+	 */
+	private int minDepth = 1, maxDepth = Integer.MAX_VALUE;
+
+	/**
+	 * Variable registering the maximum number of selected items.
+	 */
+	private long limit = Long.MAX_VALUE;
+
+	/**
+	 * Select only items with a name matching the given glob pattern, ignoring case.
+	 *
+	 * @param	pattern
+	 * 			A glob pattern, in which '*' matches any sequence of characters,
+	 * 			'?' any single character and '[...]' any character of a set.
+	 * @return	| result == this
+	 * @throws	IllegalArgumentException
+	 * 			The given pattern is not effective or not a valid glob pattern.
+	 */
+	public Query named(String pattern) throws IllegalArgumentException {
+		nameGlob = new Glob(pattern);
+		return this;
+	}
+
+	/**
+	 * Select only files of the given type.
+	 *
+	 * @return	| result == this
+	 * @throws	IllegalArgumentException
+	 * 			The given type is not effective.
+	 * 			| type == null
+	 */
+	public Query ofType(Type type) throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException();
+		this.type = type;
+		filesOnly = true;
+		return this;
+	}
+
+	/**
+	 * Select only files with a size between the given bounds, both inclusive.
+	 *
+	 * @return	| result == this
+	 */
+	public Query withSizeBetween(int minSize, int maxSize) {
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		filesOnly = true;
+		return this;
+	}
+
+	/**
+	 * Select only items created between the given dates, both inclusive.
+	 * A bound that is not effective is not checked.
+	 *
+	 * @return	| result == this
+	 */
+	public Query createdBetween(Date from, Date to) {
+		createdFrom = from;
+		createdTo = to;
+		return this;
+	}
+
+	/**
+	 * Select only items modified between the given dates, both inclusive.
+	 * A bound that is not effective is not checked, but items that have never
+	 * been modified are not selected.
+	 *
+	 * @return	| result == this
+	 */
+	public Query modifiedBetween(Date from, Date to) {
+		modifiedFrom = (from == null) ? new Date(Long.MIN_VALUE) : from;
+		modifiedTo = (to == null) ? new Date(Long.MAX_VALUE) : to;
+		return this;
+	}
+
+	/**
+	 * Select only items with the given writability.
+	 *
+	 * @return	| result == this
+	 */
+	public Query writable(boolean writable) {
+		this.writable = writable;
+		return this;
+	}
+
+	/**
+	 * Select only links, or only disk items.
+	 *
+	 * @param	links
+	 * 			True to select only links, false to select only disk items.
+	 * @return	| result == this
+	 */
+	public Query links(boolean links) {
+		this.links = links;
+		return this;
+	}
+
+	/**
+	 * Select only items with a depth between the given bounds, both inclusive.
+	 *
+	 * @return	| result == this
+	 * @throws	IllegalArgumentException
+	 * 			The given minimum depth is not positive.
+	 * 			| minDepth < 1
+	 */
+	public Query withDepthBetween(int minDepth, int maxDepth) throws IllegalArgumentException {
+		if (minDepth < 1)
+			throw new IllegalArgumentException();
+		this.minDepth = minDepth;
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * Select at most the given number of items.
+	 *
+	 * @return	| result == this
+	 * @throws	IllegalArgumentException
+	 * 			The given number is negative.
+	 * 			| limit < 0
+	 */
+	public Query limit(long limit) throws IllegalArgumentException {
+		if (limit < 0)
+			throw new IllegalArgumentException();
+		this.limit = limit;
+		return this;
+	}
+
+	/**
+	 * Check whether the given item satisfies all conditions of this query,
+	 * except the conditions on its depth.
+	 */
+	@Model
+	private boolean accepts(Item item) {
+		if (filesOnly) {
+			if (!(item instanceof File))
+				return false;
+			File file = (File) item;
+			if (type != null && file.getType() != type)
+				return false;
+			if (file.getSize() < minSize || file.getSize() > maxSize)
+				return false;
+		}
+		if (links != null && (item instanceof Link) != links)
+			return false;
+		if (writable != null && item.isWritable() != writable)
+			return false;
+		if (nameGlob != null && !nameGlob.matches(item.getName()))
+			return false;
+		if (createdFrom != null && item.getCreationTime().before(createdFrom))
+			return false;
+		if (createdTo != null && item.getCreationTime().after(createdTo))
+			return false;
+		if (modifiedFrom != null) {
+			Date time = item.getModificationTime();
+			if (time == null || time.before(modifiedFrom) || time.after(modifiedTo))
+				return false;
+		}
+		return true;
+	}
+
+	/**********************************************************
+	 * Running
+	 **********************************************************/
+
+	/**
+	 * Return a stream over the items directly or indirectly in the given directory
+	 * that satisfy all conditions of this query, with at most the limit of this query.
+	 *
+	 * @param	directory
+	 * 			The directory to query.
+	 * @return	| for each item in result: directory.isDirectOrIndirectParentOf(item) &&
+	 * 			|	item satisfies all conditions of this query
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not effective.
+	 * 			| directory == null
+	 * @note	The conditions are copied when the query is run, so the query can be changed
+	 * 			and run again while the stream is consumed. The order of the items is unspecified.
+	 */
+	public Stream<Item> run(Directory directory) throws IllegalArgumentException {
+		if (directory == null)
+			throw new IllegalArgumentException();
+		Query plan = copy();
+		Stream<? extends Item> candidates = plan.candidatesFromIndex(directory);
+		Stream<Item> result;
+		if (candidates != null)
+			result = candidates.filter(item -> plan.accepts(item) && plan.hasValidDepth(item, directory))
+					.map(item -> (Item) item);
+		else
+			// worker threads do not see the read view of this thread, if any
+			result = StreamSupport.stream(new SubtreeSpliterator(directory, plan.maxDepth),
+					Versions.getCurrentView() == null)
+					.filter(item -> plan.accepts(item) && plan.hasValidDepth(item, directory));
+		return result.limit(plan.limit);
+	}
+
+	/**
+	 * Return a stream over a superset of the files this query selects from the given
+	 * directory, read from an index the directory keeps, or null if no index applies.
+	 */
+	@Model
+	private Stream<? extends Item> candidatesFromIndex(Directory directory) {
+		if (!filesOnly)
+			return null;
+		AttributeIndex attributes = directory.getIndex(AttributeIndex.class);
+		if (attributes != null && (minSize > 0 || maxSize < Integer.MAX_VALUE))
+			return attributes.getFilesBySize(minSize, maxSize, false);
+		if (attributes != null && modifiedFrom != null)
+			return attributes.getFilesByModificationTime(modifiedFrom.getTime(), modifiedTo.getTime(), false);
+		TypeIndex types = directory.getIndex(TypeIndex.class);
+		if (types != null && type != null)
+			return types.getFilesOfType(type).stream();
+		return null;
+	}
+
+	/**
+	 * Check whether the depth of the given item in the given directory lies between
+	 * the bounds of this query.
+	 */
+	@Model
+	private boolean hasValidDepth(Item item, Directory directory) {
+		if (minDepth == 1 && maxDepth == Integer.MAX_VALUE)
+			return true;
+		int depth = item.getDepth() - directory.getDepth();
+		return depth >= minDepth && depth <= maxDepth;
+	}
+
+	/**
+	 * Return a copy of this query.
+	 */
+	@Model
+	private Query copy() {
+		Query copy = new Query();
+		copy.nameGlob = nameGlob;
+		copy.type = type;
+		copy.minSize = minSize;
+		copy.maxSize = maxSize;
+		copy.filesOnly = filesOnly;
+		copy.createdFrom = createdFrom;
+		copy.createdTo = createdTo;
+		copy.modifiedFrom = modifiedFrom;
+		copy.modifiedTo = modifiedTo;
+		copy.writable = writable;
+		copy.links = links;
+		copy.minDepth = minDepth;
+		copy.maxDepth = maxDepth;
+		copy.limit = limit;
+		return copy;
+	}
+
+	/**
+	 * A class of spliterators over the items directly or indirectly in a directory,
+	 * up to a maximum depth. Splitting hands over half of the directories that still
+	 * have to be visited, or half of the remaining items of the directory being visited,
+	 * so the subtree is walked in parallel.
+	 */
+	private static final class SubtreeSpliterator implements Spliterator<Item> {
+
+		/**
+		 * Initialize a new spliterator over the items in the given directory.
+		 */
+		SubtreeSpliterator(Directory directory, int maxDepth) {
+			this(maxDepth);
+			pendingDirectories.add(directory);
+			pendingDepths.add(0);
+		}
+
+		/**
+		 * Initialize a new spliterator without directories to visit.
+		 */
+		private SubtreeSpliterator(int maxDepth) {
+			this.maxDepth = maxDepth;
+		}
+
+		/**
+		 * Variable registering the maximum depth of the items to return.
+		 */
+		private final int maxDepth;
+
+		/**
+		 * Variables referencing the directories of which the items still have to be
+		 * returned, and their depths.
+		 */
+		private final ArrayDeque<Directory> pendingDirectories = new ArrayDeque<Directory>();
+		private final ArrayDeque<Integer> pendingDepths = new ArrayDeque<Integer>();
+
+		/**
+		 * Variables referencing the directory of which the items are being returned,
+		 * its depth, the index of its next item and the index of its last item to return.
+		 */
+		private Directory current = null;
+		private int currentDepth = 0, nextIndex = 1, endIndex = 0;
+
+		/**
+		 * Start returning the items of the next pending directory, if the items
+		 * of the current directory have all been returned.
+		 *
+		 * @return	True if and only if there are items left to return.
+		 */
+		private boolean ensureCurrent() {
+			while (nextIndex > endIndex) {
+				if (pendingDirectories.isEmpty())
+					return false;
+				current = pendingDirectories.pollFirst();
+				currentDepth = pendingDepths.pollFirst();
+				nextIndex = 1;
+				endIndex = current.getNbItems();
+			}
+			return true;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Item> action) {
+			if (!ensureCurrent())
+				return false;
+			Item item = current.getItemAt(nextIndex++);
+			if (item instanceof Directory && currentDepth + 1 < maxDepth) {
+				pendingDirectories.addLast((Directory) item);
+				pendingDepths.addLast(currentDepth + 1);
+			}
+			action.accept(item);
+			return true;
+		}
+
+		@Override
+		public Spliterator<Item> trySplit() {
+			SubtreeSpliterator split = new SubtreeSpliterator(maxDepth);
+			int half = pendingDirectories.size() / 2;
+			if (half > 0) {
+				for (int i = 0; i < half; i++) {
+					split.pendingDirectories.addLast(pendingDirectories.pollLast());
+					split.pendingDepths.addLast(pendingDepths.pollLast());
+				}
+				return split;
+			}
+			if (!ensureCurrent() || endIndex - nextIndex < 1)
+				return null;
+			int middle = nextIndex + (endIndex - nextIndex + 1) / 2;
+			split.current = current;
+			split.currentDepth = currentDepth;
+			split.nextIndex = middle;
+			split.endIndex = endIndex;
+			endIndex = middle - 1;
+			return split;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return NONNULL | DISTINCT;
+		}
+	}
+
+}
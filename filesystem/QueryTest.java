@@ -0,0 +1,88 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the public methods of the Query Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class QueryTest {
+
+	Directory root;
+	Directory sub;
+	Directory subsub;
+	File javaFile;
+	File textFile;
+	File deepFile;
+	FileLink link;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		subsub = new Directory(sub, "diep");
+		javaFile = new File(root, "bestand", Type.JAVA, 120, true);
+		textFile = new File(sub, "beschrijving", Type.TEXT, 30, false);
+		deepFile = new File(subsub, "verborgen", Type.JAVA, 5000, true);
+		link = new FileLink("verwijzing", javaFile, sub);
+	}
+
+	private Set<Item> run(Query query) {
+		return query.run(root).collect(Collectors.toSet());
+	}
+
+	@Test
+	public void testRun_allItems() {
+		assertEquals(new HashSet<Item>(Arrays.asList(sub, subsub, javaFile, textFile, deepFile, link)),
+				run(new Query()));
+	}
+
+	@Test
+	public void testRun_conditions() {
+		assertEquals(new HashSet<Item>(Arrays.asList(javaFile, textFile)), run(new Query().named("be*")));
+		assertEquals(new HashSet<Item>(Arrays.asList(javaFile)), run(new Query().named("BE?TAND")));
+		assertEquals(new HashSet<Item>(Arrays.asList(javaFile, deepFile)), run(new Query().ofType(Type.JAVA)));
+		assertEquals(new HashSet<Item>(Arrays.asList(deepFile)), run(new Query().withSizeBetween(1000, 10000)));
+		assertEquals(new HashSet<Item>(Arrays.asList(textFile)), run(new Query().writable(false)));
+		assertEquals(new HashSet<Item>(Arrays.asList(link)), run(new Query().links(true)));
+		assertEquals(new HashSet<Item>(Arrays.asList(sub, javaFile)), run(new Query().withDepthBetween(1, 1)));
+		assertEquals(new HashSet<Item>(Arrays.asList(deepFile)), run(new Query().withDepthBetween(3, 3)));
+	}
+
+	@Test
+	public void testRun_times() throws InterruptedException {
+		Date before = new Date();
+		Thread.sleep(5);
+		deepFile.enlarge(1);
+		assertEquals(new HashSet<Item>(Arrays.asList(deepFile)),
+				run(new Query().modifiedBetween(before, null).ofType(Type.JAVA)));
+		assertTrue(run(new Query().createdBetween(new Date(), null)).isEmpty());
+	}
+
+	@Test
+	public void testRun_withIndexes() {
+		root.enableTypeIndex();
+		root.enableAttributeIndex();
+		assertEquals(new HashSet<Item>(Arrays.asList(javaFile, deepFile)), run(new Query().ofType(Type.JAVA)));
+		assertEquals(new HashSet<Item>(Arrays.asList(deepFile)),
+				run(new Query().ofType(Type.JAVA).withSizeBetween(1000, 10000)));
+		assertEquals(new HashSet<Item>(Arrays.asList(javaFile)),
+				run(new Query().ofType(Type.JAVA).withDepthBetween(1, 2)));
+	}
+
+	@Test
+	public void testRun_limit() {
+		Directory many = new Directory(root, "veel");
+		for (int i = 0; i < 200; i++)
+			new File(many, "bestand" + i, Type.TEXT);
+		assertEquals(200, new Query().ofType(Type.TEXT).named("bestand*").run(many).count());
+		assertEquals(10, new Query().limit(10).run(root).count());
+	}
+
+}
@@ -0,0 +1,163 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import filesystem.exception.*;
+
+/**
+ * A JUnit test class for testing the quotas of the Directory Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class QuotaTest {
+
+	Directory root;
+	Directory home;
+	Directory user;
+	Directory other;
+	File file;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		home = new Directory(root, "home");
+		user = new Directory(home, "gebruiker");
+		other = new Directory(root, "ander");
+		file = new File(user, "bestand", Type.TEXT, 100, true);
+		home.setByteQuota(1000);
+	}
+
+	@Test
+	public void testTotals() {
+		new File(other, "groot", Type.JAVA, 5000, true);
+		assertEquals(5100, root.getTotalDiskUsage());
+		assertEquals(100, home.getTotalDiskUsage());
+		assertEquals(5, root.getNbDescendants());
+		file.shorten(40);
+		file.move(other);
+		assertEquals(5060, root.getTotalDiskUsage());
+		assertEquals(0, home.getTotalDiskUsage());
+		assertEquals(1, home.getNbDescendants());
+		assertEquals(2, other.getNbDescendants());
+	}
+
+	@Test
+	public void testEnlarge_exceedsQuota() {
+		file.enlarge(900);
+		assertEquals(1000, home.getTotalDiskUsage());
+		try {
+			file.enlarge(1);
+			fail();
+		} catch (QuotaExceededException e) {
+			assertSame(home, e.getDirectory());
+			assertEquals(1000, file.getSize());
+			assertEquals(1000, root.getTotalDiskUsage());
+		}
+	}
+
+	@Test
+	public void testNewFile_exceedsQuota() {
+		try {
+			new File(user, "te_groot", Type.TEXT, 901, true);
+			fail();
+		} catch (QuotaExceededException e) {
+			assertSame(home, e.getDirectory());
+		}
+		assertFalse(user.exists("te_groot"));
+		assertEquals(2, home.getNbDescendants());
+		assertEquals(ResultCode.QUOTA_EXCEEDED, user.tryCreateFile("te_groot", Type.TEXT, 901, true));
+		assertEquals(ResultCode.SUCCESS, user.tryCreateFile("past", Type.TEXT, 900, true));
+	}
+
+	@Test
+	public void testNewFile_notWritable() {
+		long usage = home.getTotalDiskUsage();
+		int notWritable = home.getNbNotWritableDescendants();
+		try {
+			new File(user, "te_groot", Type.TEXT, 901, false);
+			fail();
+		} catch (QuotaExceededException e) {
+			assertSame(home, e.getDirectory());
+		}
+		assertEquals(usage, home.getTotalDiskUsage());
+		assertEquals(notWritable, home.getNbNotWritableDescendants());
+		new File(user, "alleenlezen", Type.TEXT, 50, false);
+		assertEquals(usage + 50, home.getTotalDiskUsage());
+		assertEquals(notWritable + 1, home.getNbNotWritableDescendants());
+		assertEquals(notWritable + 1, root.getNbNotWritableDescendants());
+	}
+
+	@Test
+	public void testItemQuota() {
+		user.setItemQuota(2);
+		new Directory(user, "map");
+		try {
+			new Directory(user, "teveel");
+			fail();
+		} catch (QuotaExceededException e) {
+			assertSame(user, e.getDirectory());
+		}
+		assertEquals(ResultCode.QUOTA_EXCEEDED, user.tryCreateDirectory("teveel", true));
+		try {
+			new File(user, "teveel", Type.TEXT, 10, true);
+			fail();
+		} catch (QuotaExceededException e) {
+			assertSame(user, e.getDirectory());
+		}
+		assertFalse(user.exists("teveel"));
+		assertEquals(100, home.getTotalDiskUsage());
+		user.setItemQuota(Directory.NO_QUOTA);
+		new Directory(user, "teveel");
+		assertEquals(3, user.getNbDescendants());
+	}
+
+	@Test
+	public void testMove_exceedsQuota() {
+		File big = new File(other, "groot", Type.JAVA, 901, true);
+		try {
+			big.move(user);
+			fail();
+		} catch (QuotaExceededException e) {
+			assertSame(home, e.getDirectory());
+		}
+		assertSame(other, big.getParentDirectory());
+		assertSame(big, other.getItem("groot"));
+		assertEquals(901, other.getTotalDiskUsage());
+		assertEquals(100, home.getTotalDiskUsage());
+		assertEquals(ResultCode.QUOTA_EXCEEDED, big.tryMove(home));
+		// moving within the subtree of a directory does not count against its quota
+		file.enlarge(900);
+		file.move(home);
+		assertEquals(1000, home.getTotalDiskUsage());
+	}
+
+	@Test
+	public void testTotals_inReadView() throws InterruptedException {
+		try (Versions.ReadView view = Versions.pin()) {
+			Thread thread = new Thread(() -> {
+				file.enlarge(50);
+				new Directory(user, "map");
+			});
+			thread.start();
+			thread.join();
+			assertEquals(100, home.getTotalDiskUsage());
+			assertEquals(2, home.getNbDescendants());
+		}
+		assertEquals(150, home.getTotalDiskUsage());
+		assertEquals(3, home.getNbDescendants());
+	}
+
+	@Test
+	public void testTotals_inReadViewWithEmptyDirectories() {
+		new Directory(user, "leeg");
+		try (Versions.ReadView view = Versions.pin()) {
+			assertEquals(100, root.getTotalDiskUsage());
+			assertEquals(0, other.getTotalDiskUsage());
+			assertEquals(5, root.getNbDescendants());
+			assertEquals(0, other.getNbDescendants());
+		}
+	}
+
+}
@@ -0,0 +1,439 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of recoveries, rebuilding directory trees by replaying the records
+ * of a journal.
+ *
+ * A recovery remembers the sequence number of the last record it applied, and
+ * skips all records up to that number. Replaying the same journal more than once
+ * into the same recovery is therefore harmless: every record is applied exactly once.
+ * After replaying, the rebuilt trees are verified against the class invariants
+ * of directories and items.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class Recovery {
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new recovery without trees, that has not applied any record.
+	 *
+	 * @post	| new.getRoots().isEmpty()
+	 * @post	| new.getLastAppliedSequenceNumber() == 0
+	 */
+	public Recovery() {
+	}
+
+	/**
+	 * Rebuild the trees logged in the journal at the given path.
+	 *
+	 * @param	path
+	 * 			The path of the journal file.
+	 * @return	A recovery with all records of the journal applied.
+	 * @effect	| result.replay(path)
+	 */
+	public static Recovery recover(Path path) throws IllegalArgumentException, IOException, IllegalStateException {
+		Recovery recovery = new Recovery();
+		recovery.replay(path);
+		return recovery;
+	}
+
+	/**********************************************************
+	 * Roots
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the rebuilt root directories by their number in the journal.
+	 */
+	private final Map<Integer, Directory> roots = new HashMap<Integer, Directory>();
+
+	/**
+	 * Variable registering the number for the next root directory.
+	 */
+	private int nextRootNumber = 1;
+
+	/**
+	 * Return the rebuilt root directories.
+	 */
+	public Collection<Directory> getRoots() {
+		return Collections.unmodifiableCollection(roots.values());
+	}
+
+	/**
+	 * Return the rebuilt root directories by their number in the journal.
+	 */
+	Map<Integer, Directory> getRootsByNumber() {
+		return Collections.unmodifiableMap(roots);
+	}
+
+	/**
+	 * Return the number for the next root directory.
+	 */
+	int getNextRootNumber() {
+		return nextRootNumber;
+	}
+
+	/**
+	 * Register the given root directory with the given number.
+	 */
+	@Model
+	void addRoot(int number, Directory root) {
+		roots.put(number, root);
+		nextRootNumber = Math.max(nextRootNumber, number + 1);
+	}
+
+	/**
+	 * Make sure the number for the next root directory is at least the given number.
+	 */
+	@Model
+	void reserveRootNumbersBefore(int number) {
+		nextRootNumber = Math.max(nextRootNumber, number);
+	}
+
+	/**********************************************************
+	 * Replay
+	 **********************************************************/
+
+	/**
+	 * Variable registering the sequence number of the last applied record.
+	 */
+	private long lastAppliedSequenceNumber = 0;
+
+	/**
+	 * Return the sequence number of the last record applied by this recovery.
+	 */
+	@Basic
+	public long getLastAppliedSequenceNumber() {
+		return lastAppliedSequenceNumber;
+	}
+
+	/**
+	 * Set the sequence number of the last applied record to the given number.
+	 */
+	@Model
+	void setLastAppliedSequenceNumber(long sequenceNumber) {
+		this.lastAppliedSequenceNumber = sequenceNumber;
+	}
+
+	/**
+	 * Apply all records of the journal at the given path that have not yet been
+	 * applied by this recovery, and verify the rebuilt trees.
+	 *
+	 * @param	path
+	 * 			The path of the journal file.
+	 * @return	The number of applied records.
+	 * @effect	The rebuilt trees are verified.
+	 * 			| verify()
+	 * @throws	IllegalArgumentException
+	 * 			The given path is not effective.
+	 * 			| path == null
+	 * @throws	IOException
+	 * 			The journal could not be read.
+	 * @throws	IllegalStateException
+	 * 			The journal does not connect to the records applied so far, or a record
+	 * 			refers to an item that does not exist.
+	 */
+	public int replay(Path path) throws IllegalArgumentException, IOException, IllegalStateException {
+		if (path == null)
+			throw new IllegalArgumentException();
+		int applied = 0;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			JournalReader reader = new JournalReader(channel);
+			if (reader.getBaseSequenceNumber() > lastAppliedSequenceNumber)
+				throw new IllegalStateException("Journal misses records after " + lastAppliedSequenceNumber);
+			while (reader.next()) {
+				if (reader.getSequenceNumber() <= lastAppliedSequenceNumber)
+					continue;
+				apply(reader.getOperation(), reader.getBody());
+				lastAppliedSequenceNumber = reader.getSequenceNumber();
+				applied++;
+			}
+		}
+		verify();
+		return applied;
+	}
+
+	/**
+	 * Apply the record with the given operation and body.
+	 */
+	private void apply(byte operation, ByteBuffer body) throws IllegalStateException {
+		switch (operation) {
+		case Journal.CREATE_ROOT: {
+			int number = body.getInt();
+			String name = JournalReader.getName(body);
+			Directory root = new Directory(name, body.get() != 0);
+			restoreTimes(root, body);
+			addRoot(number, root);
+			break;
+		}
+		case Journal.CREATE_DIRECTORY: {
+			Location location = new Location(body);
+			Directory parent = location.resolveParent();
+			restoreTimes(new Directory(parent, location.getName(), body.get() != 0), body);
+			restoreModificationTime(parent, body);
+			break;
+		}
+		case Journal.CREATE_FILE: {
+			Location location = new Location(body);
+			Type type = Type.values()[body.get()];
+			int size = body.getInt();
+			Directory parent = location.resolveParent();
+			restoreTimes(new File(parent, location.getName(), type, size, body.get() != 0), body);
+			restoreModificationTime(parent, body);
+			break;
+		}
+		case Journal.CREATE_LINK: {
+			Location location = new Location(body);
+			boolean toDirectory = body.get() != 0;
+			byte targetKind = body.get();
+			DiskItem target = null;
+			if (targetKind == Journal.TARGET)
+				target = (DiskItem) new Location(body).resolve();
+			if (target == null)
+				target = newUnknownTarget(toDirectory);
+			Link link;
+			if (toDirectory)
+				link = new DirectoryLink(location.getName(), (Directory) target, location.resolveParent());
+			else
+				link = new FileLink(location.getName(), (File) target, location.resolveParent());
+			if (targetKind == Journal.INVALID_TARGET)
+				invalidate(link);
+			restoreTimes(link, body);
+			restoreModificationTime(link.getParentDirectory(), body);
+			break;
+		}
+		case Journal.CHANGE_NAME: {
+			Item item = new Location(body).resolve();
+			item.changeName(JournalReader.getName(body));
+			restoreModificationTime(item, body);
+			if (!item.isRoot())
+				restoreModificationTime(item.getParentDirectory(), body);
+			break;
+		}
+		case Journal.MOVE: {
+			Location location = new Location(body);
+			Item item = location.resolve();
+			Directory oldParent = item.getParentDirectory();
+			Directory target = (Directory) new Location(body).resolve();
+			item.move(target);
+			restoreModificationTime(item, body);
+			restoreModificationTime(target, body);
+			if (location.isRoot())
+				roots.remove(location.getRootNumber());
+			else
+				restoreModificationTime(oldParent, body);
+			break;
+		}
+		case Journal.DETACH: {
+			// the item was moved to a tree that is not logged
+			Location location = new Location(body);
+			Item item = location.resolve();
+			Directory oldParent = item.getParentDirectory();
+			item.move(new Directory("detached"));
+			if (location.isRoot())
+				roots.remove(location.getRootNumber());
+			else
+				restoreModificationTime(oldParent, body);
+			break;
+		}
+		case Journal.MAKE_ROOT: {
+			Directory directory = (Directory) new Location(body).resolve();
+			Directory oldParent = directory.getParentDirectory();
+			directory.makeRoot();
+			addRoot(body.getInt(), directory);
+			restoreModificationTime(directory, body);
+			restoreModificationTime(oldParent, body);
+			break;
+		}
+		case Journal.TERMINATE: {
+			Location location = new Location(body);
+			Item item = location.resolve();
+			Directory oldParent = item.getParentDirectory();
+			item.terminate();
+			if (location.isRoot())
+				roots.remove(location.getRootNumber());
+			else
+				restoreModificationTime(oldParent, body);
+			break;
+		}
+		case Journal.SET_WRITABLE: {
+			DiskItem item = (DiskItem) new Location(body).resolve();
+			boolean writable = body.get() != 0;
+			if (item.isWritable() != writable && item instanceof Directory)
+				((Directory) item).restoreWritable(writable);
+			else if (item.isWritable() != writable)
+				item.setWritable(writable);
+			restoreModificationTime(item, body);
+			break;
+		}
+		case Journal.SET_SIZE: {
+			File file = (File) new Location(body).resolve();
+			int delta = body.getInt() - file.getSize();
+			if (delta > 0)
+				file.enlarge(delta);
+			else if (delta < 0)
+				file.shorten(-delta);
+			restoreModificationTime(file, body);
+			break;
+		}
+		default:
+			throw new IllegalStateException("Unknown journal operation: " + operation);
+		}
+	}
+
+	/**
+	 * Restore the creation time and the modification time of the given item to the
+	 * times logged next in the given record body.
+	 */
+	private static void restoreTimes(Item item, ByteBuffer body) {
+		Date creationTime = new Date(body.getLong());
+		item.restoreTimes(creationTime, getModificationTime(body));
+	}
+
+	/**
+	 * Restore the modification time of the given item to the time logged next in the
+	 * given record body.
+	 */
+	private static void restoreModificationTime(Item item, ByteBuffer body) {
+		item.restoreTimes(item.getCreationTime(), getModificationTime(body));
+	}
+
+	/**
+	 * Return the modification time logged next in the given record body.
+	 */
+	private static Date getModificationTime(ByteBuffer body) {
+		long time = body.getLong();
+		return time == Journal.NO_TIME ? null : new Date(time);
+	}
+
+	/**
+	 * Return a new disk item outside the rebuilt trees, to be referenced by a link
+	 * of which the target was not logged.
+	 *
+	 * @param	directory
+	 * 			True if a directory must be returned, false if a file must be returned.
+	 */
+	static DiskItem newUnknownTarget(boolean directory) {
+		if (directory)
+			return new Directory("unknown");
+		return new File(new Directory("unknown"), "unknown", Type.TEXT);
+	}
+
+	/**
+	 * Make the given link, which references a new disk item returned by
+	 * newUnknownTarget(boolean), invalid by terminating that disk item.
+	 *
+	 * @post	| (new link).getRefDiskItem() throws UnvalidLinkException
+	 */
+	static void invalidate(Link link) {
+		link.getRefDiskItem().terminate();
+	}
+
+	/**
+	 * A class of locations of items, decoded from a journal record.
+	 */
+	private final class Location {
+
+		/**
+		 * Decode a location from the given record body.
+		 */
+		private Location(ByteBuffer body) {
+			rootNumber = body.getInt();
+			names = new String[body.getShort() & 0xFFFF];
+			for (int i = 0; i < names.length; i++)
+				names[i] = JournalReader.getName(body);
+		}
+
+		private final int rootNumber;
+
+		private final String[] names;
+
+		private int getRootNumber() {
+			return rootNumber;
+		}
+
+		private boolean isRoot() {
+			return names.length == 0;
+		}
+
+		private String getName() {
+			return names[names.length - 1];
+		}
+
+		/**
+		 * Return the item at this location.
+		 *
+		 * @throws	IllegalStateException
+		 * 			There is no item at this location.
+		 */
+		private Item resolve() throws IllegalStateException {
+			return resolve(names.length);
+		}
+
+		/**
+		 * Return the parent directory of the item at this location.
+		 */
+		private Directory resolveParent() throws IllegalStateException {
+			Item parent = resolve(names.length - 1);
+			if (!(parent instanceof Directory))
+				throw new IllegalStateException("Journal refers to a missing directory");
+			return (Directory) parent;
+		}
+
+		private Item resolve(int depth) throws IllegalStateException {
+			Item item = roots.get(rootNumber);
+			for (int i = 0; i < depth && item instanceof Directory; i++)
+				item = ((Directory) item).getItem(names[i]);
+			if (item == null || (depth > 0 && !item.getName().equalsIgnoreCase(names[depth - 1])))
+				throw new IllegalStateException("Journal refers to a missing item: " + Arrays.toString(names));
+			return item;
+		}
+	}
+
+	/**********************************************************
+	 * Verification
+	 **********************************************************/
+
+	/**
+	 * Verify that all rebuilt trees satisfy the class invariants of directories
+	 * and items.
+	 *
+	 * @throws	IllegalStateException
+	 * 			Some rebuilt directory does not have proper items, or some rebuilt item
+	 * 			in a writable directory does not have a proper parent directory.
+	 * 			| for some item in the rebuilt trees:
+	 * 			|	(item instanceof Directory && !((Directory) item).hasProperItems()) ||
+	 * 			|	(!item.isRoot() && item.getParentDirectory().isWritable() && !item.hasProperParentDirectory())
+	 */
+	public void verify() throws IllegalStateException {
+		ArrayDeque<Directory> stack = new ArrayDeque<Directory>(roots.values());
+		while (!stack.isEmpty()) {
+			Directory directory = stack.pop();
+			if (!directory.hasProperItems())
+				throw new IllegalStateException("Directory without proper items: " + directory.getAbsolutePath());
+			for (int i = 1; i <= directory.getNbItems(); i++) {
+				Item item = directory.getItemAt(i);
+				// the invariant on the parent directory only holds in writable directories
+				if (item.getParentDirectory() != directory
+						|| (directory.isWritable() && !item.hasProperParentDirectory()))
+					throw new IllegalStateException("Item without proper parent: " + item.getAbsolutePath());
+				if (item instanceof Directory)
+					stack.push((Directory) item);
+			}
+		}
+	}
+
+}
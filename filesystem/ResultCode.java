@@ -0,0 +1,58 @@
+package filesystem;
+
+/**
+ * An enumeration of the results of the changes that report their outcome
+ * instead of throwing an exception.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public enum ResultCode {
+
+	/**
+	 * The change has been made.
+	 */
+	SUCCESS,
+
+	/**
+	 * The change has not been made, because one of its arguments is not effective or not valid.
+	 */
+	INVALID_ARGUMENT,
+
+	/**
+	 * The change has not been made, because the directory involved already has
+	 * an item with the same name (ignoring case).
+	 */
+	NAME_CLASH,
+
+	/**
+	 * The change has not been made, because an item involved is not writable.
+	 */
+	NOT_WRITABLE,
+
+	/**
+	 * The change has not been made, because an item involved is terminated.
+	 */
+	TERMINATED,
+
+	/**
+	 * The change has not been made, because it would make a directory an item
+	 * of itself or of one of its direct or indirect items.
+	 */
+	CYCLE,
+
+	/**
+	 * The change has not been made, because it would exceed a quota of a directory.
+	 */
+	QUOTA_EXCEEDED;
+
+	/**
+	 * Check whether this result reports a change that has been made.
+	 *
+	 * @return	| result == (this == SUCCESS)
+	 */
+	public boolean isSuccess() {
+		return this == SUCCESS;
+	}
+
+}
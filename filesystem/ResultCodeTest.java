@@ -0,0 +1,91 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import filesystem.exception.*;
+
+/**
+ * A JUnit test class for testing the methods reporting a ResultCode,
+ * and the exceptions created without stack traces.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class ResultCodeTest {
+
+	Directory root;
+	Directory sub;
+	Directory readOnly;
+	File file;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		readOnly = new Directory(root, "alleenlezen", false);
+		file = new File(sub, "bestand", Type.JAVA, 120, true);
+	}
+
+	@After
+	public void tearDown() {
+		ExceptionSettings.setStackTracesEnabled(true);
+	}
+
+	@Test
+	public void testTryCreate() {
+		assertEquals(ResultCode.SUCCESS, sub.tryCreateFile("nieuw", Type.TEXT, 10, true));
+		assertEquals(10, ((File) sub.getItem("nieuw")).getSize());
+		assertEquals(ResultCode.NAME_CLASH, sub.tryCreateFile("BESTAND", Type.TEXT, 0, true));
+		assertEquals(ResultCode.INVALID_ARGUMENT, sub.tryCreateFile("ongeldig!", Type.TEXT, 0, true));
+		assertEquals(ResultCode.INVALID_ARGUMENT, sub.tryCreateFile("leeg", null, 0, true));
+		assertEquals(ResultCode.NOT_WRITABLE, readOnly.tryCreateDirectory("map", true));
+		assertEquals(ResultCode.SUCCESS, sub.tryCreateDirectory("map", true));
+		assertEquals(ResultCode.INVALID_ARGUMENT, sub.tryCreateDirectory("map.txt", true));
+		assertEquals(3, sub.getNbItems());
+	}
+
+	@Test
+	public void testTryMove() {
+		Directory inner = new Directory(sub, "binnen");
+		assertEquals(ResultCode.CYCLE, sub.tryMove(inner));
+		assertEquals(ResultCode.CYCLE, sub.tryMove(sub));
+		assertEquals(ResultCode.INVALID_ARGUMENT, file.tryMove(sub));
+		assertEquals(ResultCode.INVALID_ARGUMENT, file.tryMove(null));
+		assertEquals(ResultCode.NOT_WRITABLE, file.tryMove(readOnly));
+		new File(root, "bestand", Type.TEXT);
+		assertEquals(ResultCode.NAME_CLASH, file.tryMove(root));
+		assertEquals(ResultCode.SUCCESS, file.tryMove(inner));
+		assertSame(inner, file.getParentDirectory());
+	}
+
+	@Test
+	public void testTryRename() {
+		new File(sub, "ander", Type.JAVA);
+		assertEquals(ResultCode.NAME_CLASH, file.tryRename("ANDER"));
+		assertEquals(ResultCode.INVALID_ARGUMENT, file.tryRename(null));
+		assertEquals(ResultCode.SUCCESS, file.tryRename("bestand"));
+		assertEquals(ResultCode.SUCCESS, file.tryRename("hernoemd"));
+		assertSame(file, sub.getItem("hernoemd"));
+		file.setWritable(false);
+		assertEquals(ResultCode.NOT_WRITABLE, file.tryRename("weer"));
+		File gone = new File(sub, "weg", Type.TEXT);
+		gone.terminate();
+		assertEquals(ResultCode.TERMINATED, gone.tryRename("x"));
+	}
+
+	@Test
+	public void testExceptions_withoutStackTraces() {
+		ExceptionSettings.setStackTracesEnabled(false);
+		try {
+			readOnly.changeName("anders");
+			fail();
+		} catch (ItemNotWritableException e) {
+			assertSame(readOnly, e.getItem());
+			assertEquals(0, e.getStackTrace().length);
+		}
+		ExceptionSettings.setStackTracesEnabled(true);
+		assertTrue(new ItemNotWritableException(file).getStackTrace().length > 0);
+	}
+
+}
@@ -0,0 +1,53 @@
+package filesystem;
+
+import java.util.Date;
+
+/**
+ * An interface of indexes over all files directly or indirectly in a directory.
+ * Indexes are registered with Directory.addIndex(SubtreeIndex) and are updated
+ * synchronously, while the change to the files in the subtree is made.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+interface SubtreeIndex {
+
+	/**
+	 * Register the given file, which has been added to the subtree of this index.
+	 *
+	 * @param	file
+	 * 			The added file, which has an effective type.
+	 */
+	void fileAdded(File file);
+
+	/**
+	 * Unregister the given file, which has been removed from the subtree of this index.
+	 *
+	 * @param	file
+	 * 			The removed file.
+	 */
+	void fileRemoved(File file);
+
+	/**
+	 * Update this index for the given file, of which the size has been changed.
+	 *
+	 * @param	file
+	 * 			The resized file.
+	 * @param	oldSize
+	 * 			The size of the file before the change.
+	 */
+	void fileResized(File file, int oldSize);
+
+	/**
+	 * Update this index for the given file, of which the modification time has been changed.
+	 * Indexes that do not depend on modification times need not override this method.
+	 *
+	 * @param	file
+	 * 			The modified file.
+	 * @param	oldTime
+	 * 			The modification time of the file before the change, possibly null.
+	 */
+	default void fileModified(File file, Date oldTime) {
+	}
+
+}
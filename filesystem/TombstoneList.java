@@ -0,0 +1,315 @@
+package filesystem;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable lists of items, of which successive versions share the slots
+ * the items are stored in.
+ *
+ * Removing an item from a list does not shift the items after it: the slot of the
+ * item is marked as a tombstone, and a Fenwick tree over the slots counts the items
+ * that are still alive, so that the item at a given position is found in O(log(n))
+ * time. Adding an item after the last one fills the next free slot. Each change
+ * returns a new list for the slots as changed, while the list it was made from keeps
+ * its items; the slots record in which change their item was removed.
+ * Once more than MAX_TOMBSTONE_RATIO of the slots are tombstones, or an item is
+ * inserted in between other items, the live items are copied to new slots.
+ *
+ * Only the most recent list of a sequence of changes reads the Fenwick tree. An
+ * older list, or a list that is read while the next change is made, collects its
+ * items in an array list once and reads that list afterwards.
+ *
+ * @invar	| size() <= getNbSlots()
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class TombstoneList extends AbstractList<Item> implements RandomAccess {
+
+	/**
+	 * Constant registering the fraction of the slots that may be tombstones before
+	 * the items are compacted.
+	 */
+	static final double MAX_TOMBSTONE_RATIO = 0.5;
+
+	/**
+	 * Constant registering the number of slots a list has at least.
+	 */
+	static final int MIN_SLOTS = 16;
+
+	/**
+	 * Return a new list holding the given items.
+	 *
+	 * @return	| result.equals(items)
+	 * @return	| result.getNbTombstones() == 0
+	 */
+	static TombstoneList of(List<Item> items) {
+		Slots slots = new Slots(Math.max(MIN_SLOTS, 2 * items.size()));
+		for (Item item : items)
+			slots.append(item);
+		return new TombstoneList(slots, 0, items.size(), items.size());
+	}
+
+	/**
+	 * Initialize a new list of the given slots as of the given change.
+	 */
+	private TombstoneList(Slots slots, int change, int nbSlots, int size) {
+		this.slots = slots;
+		this.change = change;
+		this.nbSlots = nbSlots;
+		this.size = size;
+	}
+
+	/**
+	 * Variable referencing the slots of this list, shared with the lists it was made
+	 * from and the lists made from it.
+	 */
+	private final Slots slots;
+
+	/**
+	 * Variable registering the number of changes made to the slots as of this list.
+	 */
+	private final int change;
+
+	/**
+	 * Variable registering the number of slots in use as of this list.
+	 */
+	private final int nbSlots;
+
+	/**
+	 * Variable registering the number of items of this list.
+	 */
+	private final int size;
+
+	/**
+	 * Variable referencing the items of this list collected in an array list, or null
+	 * if they have not been collected.
+	 */
+	private volatile List<Item> collected = null;
+
+	/**
+	 * Return the number of items of this list.
+	 */
+	@Override @Basic @Immutable
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the number of slots in use by this list.
+	 */
+	@Basic @Immutable
+	int getNbSlots() {
+		return nbSlots;
+	}
+
+	/**
+	 * Return the number of slots in use by this list of which the item has been removed.
+	 *
+	 * @return	| result == getNbSlots() - size()
+	 */
+	int getNbTombstones() {
+		return nbSlots - size;
+	}
+
+	/**
+	 * Return the item at the given position of this list.
+	 *
+	 * @param	index
+	 * 			The position of the item, starting from 0.
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= size()
+	 */
+	@Override
+	public Item get(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		List<Item> items = collected;
+		if (items == null) {
+			int sequence = slots.sequence;
+			if (sequence == 2 * change) {
+				int slot = slots.select(index + 1);
+				Item item = (slot < nbSlots) ? slots.items[slot] : null;
+				if (item != null && slots.sequence == sequence)
+					return item;
+			}
+			items = collect();
+		}
+		return items.get(index);
+	}
+
+	/**
+	 * Return a list with the items of this list, in which the item at the given
+	 * position is removed.
+	 *
+	 * @param	index
+	 * 			The position of the item to remove, starting from 0.
+	 * @return	| result.size() == size() - 1 &&
+	 * 			| (for each I in 0..result.size()-1:
+	 * 			|	result.get(I) == get(I < index ? I : I + 1))
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= size()
+	 */
+	TombstoneList without(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		if (!isLatest() || (nbSlots - size + 1) > MAX_TOMBSTONE_RATIO * nbSlots && nbSlots >= MIN_SLOTS) {
+			List<Item> items = new ArrayList<Item>(this);
+			items.remove(index);
+			return of(items);
+		}
+		slots.beginChange();
+		slots.kill(slots.select(index + 1), change + 1);
+		slots.endChange();
+		return new TombstoneList(slots, change + 1, nbSlots, size - 1);
+	}
+
+	/**
+	 * Return a list with the items of this list, in which the given item is inserted
+	 * at the given position.
+	 *
+	 * @param	index
+	 * 			The position to insert the item at, starting from 0.
+	 * @param	item
+	 * 			The item to insert.
+	 * @return	| result.size() == size() + 1 && result.get(index) == item &&
+	 * 			| (for each I in 0..size()-1:
+	 * 			|	get(I) == result.get(I < index ? I : I + 1))
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index > size()
+	 */
+	TombstoneList with(int index, Item item) throws IndexOutOfBoundsException {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		if (index < size || !isLatest() || nbSlots == slots.items.length) {
+			List<Item> items = new ArrayList<Item>(this);
+			items.add(index, item);
+			return of(items);
+		}
+		slots.beginChange();
+		slots.append(item);
+		slots.endChange();
+		return new TombstoneList(slots, change + 1, nbSlots + 1, size + 1);
+	}
+
+	/**
+	 * Check whether this list is the most recent list made from its slots.
+	 */
+	private boolean isLatest() {
+		return slots.sequence == 2 * change;
+	}
+
+	/**
+	 * Collect the items of this list in an array list, register it and return it.
+	 */
+	private List<Item> collect() {
+		List<Item> items = new ArrayList<Item>(size);
+		Item[] slotItems = slots.items;
+		int[] killed = slots.killed;
+		for (int i = 0; i < nbSlots; i++)
+			if (killed[i] > change)
+				items.add(slotItems[i]);
+		items = Collections.unmodifiableList(items);
+		collected = items;
+		return items;
+	}
+
+	/**
+	 * A class of slots holding items, shared by the lists made from each other.
+	 */
+	private static final class Slots {
+
+		/**
+		 * Initialize new, empty slots with room for the given number of items.
+		 */
+		Slots(int capacity) {
+			items = new Item[capacity];
+			killed = new int[capacity];
+			tree = new int[capacity + 1];
+		}
+
+		/**
+		 * Variable referencing the items of the slots.
+		 */
+		final Item[] items;
+
+		/**
+		 * Variable referencing, for each slot, the change in which its item was removed,
+		 * or Integer.MAX_VALUE if it is alive.
+		 */
+		final int[] killed;
+
+		/**
+		 * Variable referencing the Fenwick tree over the slots, counting the items that
+		 * are alive, starting from 1.
+		 */
+		private final int[] tree;
+
+		/**
+		 * Variable registering the number of slots in use.
+		 */
+		private int nbSlots = 0;
+
+		/**
+		 * Variable registering twice the number of changes made to these slots, plus one
+		 * while a change is in progress.
+		 */
+		volatile int sequence = 0;
+
+		/**
+		 * Register that a change of these slots has started.
+		 */
+		void beginChange() {
+			sequence++;
+		}
+
+		/**
+		 * Register that the change of these slots in progress has ended.
+		 */
+		void endChange() {
+			sequence++;
+		}
+
+		/**
+		 * Fill the next free slot with the given item.
+		 */
+		void append(Item item) {
+			int slot = nbSlots++;
+			items[slot] = item;
+			killed[slot] = Integer.MAX_VALUE;
+			for (int i = slot + 1; i < tree.length; i += i & -i)
+				tree[i]++;
+		}
+
+		/**
+		 * Mark the given slot as a tombstone, removed in the given change.
+		 */
+		void kill(int slot, int change) {
+			killed[slot] = change;
+			for (int i = slot + 1; i < tree.length; i += i & -i)
+				tree[i]--;
+		}
+
+		/**
+		 * Return the slot of the item that is alive at the given rank, starting from 1.
+		 */
+		int select(int rank) {
+			int position = 0;
+			for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>>= 1) {
+				int next = position + step;
+				if (next < tree.length && tree[next] < rank) {
+					position = next;
+					rank -= tree[next];
+				}
+			}
+			return position;
+		}
+	}
+
+}
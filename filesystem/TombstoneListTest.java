@@ -0,0 +1,129 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the lazy removal of items of the Directory Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class TombstoneListTest {
+
+	Directory root;
+	Directory spool;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		spool = new Directory(root, "spool");
+		spool.setLazyRemoval(true);
+	}
+
+	@Test
+	public void testChanges_sameAsArrayList() {
+		Random random = new Random(7);
+		List<Item> model = new ArrayList<Item>();
+		TombstoneList list = TombstoneList.of(model);
+		List<TombstoneList> versions = new ArrayList<TombstoneList>();
+		List<List<Item>> expected = new ArrayList<List<Item>>();
+		for (int i = 0; i < 2000; i++) {
+			if (model.isEmpty() || random.nextInt(3) > 0) {
+				int index = random.nextInt(4) > 0 ? model.size() : random.nextInt(model.size() + 1);
+				Item item = new File(root, "bestand" + i, Type.TEXT);
+				model.add(index, item);
+				list = list.with(index, item);
+			} else {
+				int index = random.nextInt(model.size());
+				model.remove(index);
+				list = list.without(index);
+			}
+			assertEquals(model, list);
+			if (i % 100 == 0) {
+				versions.add(list);
+				expected.add(new ArrayList<Item>(model));
+			}
+		}
+		for (int i = 0; i < versions.size(); i++)
+			assertEquals(expected.get(i), versions.get(i));
+	}
+
+	@Test
+	public void testTombstones_compacted() {
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 0; i < 100; i++)
+			items.add(new File(root, "bestand" + i, Type.TEXT));
+		TombstoneList list = TombstoneList.of(items);
+		for (int i = 0; i < 50; i++)
+			list = list.without(0);
+		assertEquals(50, list.getNbTombstones());
+		list = list.without(0);
+		assertEquals(0, list.getNbTombstones());
+		assertEquals(49, list.size());
+		assertSame(items.get(51), list.get(0));
+	}
+
+	@Test
+	public void testDirectory_churn() {
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < 1000; i++) {
+			files.add(new File(spool, String.format("job%05d", i), Type.TEXT));
+			if (i % 3 == 2)
+				files.remove(0).terminate();
+		}
+		assertTrue(spool.hasLazyRemoval());
+		assertEquals(files.size(), spool.getNbItems());
+		for (int i = 0; i < files.size(); i++) {
+			assertSame(files.get(i), spool.getItemAt(i + 1));
+			assertEquals(i + 1, spool.getIndexOf(files.get(i)));
+		}
+		assertTrue(spool.hasProperItems());
+		files.get(0).changeName("zzz");
+		assertSame(files.get(0), spool.getItemAt(spool.getNbItems()));
+		spool.setLazyRemoval(false);
+		assertFalse(spool.hasLazyRemoval());
+		assertSame(files.get(0), spool.getItem("zzz"));
+	}
+
+	@Test(timeout = 30000)
+	public void testDirectory_manyCreationsAndRemovals() {
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < 40000; i++)
+			files.add(new File(spool, String.format("job%05d", i), Type.TEXT));
+		assertEquals(40000, spool.getNbItems());
+		for (int i = 0; i < files.size(); i += 2)
+			files.get(i).terminate();
+		assertTrue(spool.hasLazyRemoval());
+		assertEquals(20000, spool.getNbItems());
+		assertSame(files.get(39999), spool.getItemAt(20000));
+		assertEquals(10001, spool.getIndexOf(files.get(20001)));
+		for (int i = 1; i < files.size(); i += 2)
+			files.get(i).terminate();
+		assertEquals(0, spool.getNbItems());
+	}
+
+	@Test
+	public void testDirectory_inReadView() throws InterruptedException {
+		File first = new File(spool, "job1", Type.TEXT);
+		File second = new File(spool, "job2", Type.TEXT);
+		try (Versions.ReadView view = Versions.pin()) {
+			Thread thread = new Thread(() -> {
+				first.terminate();
+				new File(spool, "job3", Type.TEXT);
+			});
+			thread.start();
+			thread.join();
+			assertEquals(2, spool.getNbItems());
+			assertSame(first, spool.getItemAt(1));
+			assertSame(second, spool.getItemAt(2));
+		}
+		assertEquals(2, spool.getNbItems());
+		assertSame(second, spool.getItemAt(1));
+	}
+
+}
@@ -0,0 +1,383 @@
+package filesystem;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of decoders, reading directory trees written by a tree encoder.
+ *
+ * A decoder pulls the records of one tree at a time from its channel through a buffer
+ * of bounded size. The records can either be fed to a visitor, which takes memory
+ * proportional to the depth of the tree only, or be used to rebuild the tree.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class TreeDecoder {
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new decoder reading from the given channel.
+	 *
+	 * @param	channel
+	 * 			The channel to read from.
+	 * @throws	IllegalArgumentException
+	 * 			The given channel is not effective.
+	 * 			| channel == null
+	 */
+	public TreeDecoder(ReadableByteChannel channel) throws IllegalArgumentException {
+		if (channel == null)
+			throw new IllegalArgumentException();
+		this.channel = channel;
+		buffer.limit(0);
+	}
+
+	/**
+	 * Initialize a new decoder reading from the given input stream.
+	 *
+	 * @param	in
+	 * 			The input stream to read from.
+	 * @effect	| this(Channels.newChannel(in))
+	 */
+	public TreeDecoder(InputStream in) throws IllegalArgumentException {
+		this(in == null ? null : Channels.newChannel(in));
+	}
+
+	/**
+	 * Variable referencing the channel this decoder reads from.
+	 */
+	private final ReadableByteChannel channel;
+
+	/**
+	 * Variable referencing the buffer of bytes read ahead from the channel.
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocate(TreeEncoder.DEFAULT_BUFFER_SIZE);
+
+	/**
+	 * Variable registering whether the magic number has been read.
+	 */
+	private boolean started = false;
+
+	/**********************************************************
+	 * Decoding
+	 **********************************************************/
+
+	/**
+	 * Feed the records of the next tree to the given visitor.
+	 *
+	 * @param	visitor
+	 * 			The visitor to feed.
+	 * @return	False if there is no next tree, true otherwise.
+	 * @throws	IllegalArgumentException
+	 * 			The given visitor is not effective.
+	 * 			| visitor == null
+	 * @throws	IOException
+	 * 			The channel could not be read, does not hold encoded trees, or ends
+	 * 			in the middle of a tree.
+	 */
+	public boolean accept(TreeVisitor visitor) throws IllegalArgumentException, IOException {
+		if (visitor == null)
+			throw new IllegalArgumentException();
+		if (!started) {
+			if (!fill(4))
+				return false;
+			if (buffer.getInt() != TreeEncoder.MAGIC)
+				throw new IOException("Not an encoded tree");
+			started = true;
+		}
+		if (!fill(1))
+			return false;
+		int depth = 0;
+		do {
+			require(1);
+			byte kind = buffer.get();
+			if (kind == TreeEncoder.EXIT_DIRECTORY) {
+				visitor.exitDirectory();
+				depth--;
+				continue;
+			}
+			String name = getName();
+			require(16);
+			Date creationTime = new Date(buffer.getLong());
+			long modification = buffer.getLong();
+			Date modificationTime = modification == TreeEncoder.NO_TIME ? null : new Date(modification);
+			switch (kind) {
+			case TreeEncoder.ENTER_DIRECTORY:
+				require(1);
+				visitor.enterDirectory(name, buffer.get() != 0, creationTime, modificationTime);
+				depth++;
+				break;
+			case TreeEncoder.FILE:
+				require(6);
+				boolean writable = buffer.get() != 0;
+				byte type = buffer.get();
+				if (type < 0 || type >= Type.values().length)
+					throw new IOException("Corrupt encoded tree");
+				visitor.visitFile(name, Type.values()[type], buffer.getInt(), writable, creationTime, modificationTime);
+				break;
+			case TreeEncoder.LINK:
+				require(3);
+				boolean toDirectory = buffer.get() != 0;
+				int nbNames = buffer.getShort() & 0xFFFF;
+				if (nbNames == TreeEncoder.INVALID_TARGET) {
+					visitor.visitInvalidLink(name, toDirectory, creationTime, modificationTime);
+					break;
+				}
+				List<String> targetPath = null;
+				if (nbNames != TreeEncoder.NO_TARGET) {
+					targetPath = new ArrayList<String>(nbNames);
+					for (int i = 0; i < nbNames; i++)
+						targetPath.add(getName());
+				}
+				visitor.visitLink(name, toDirectory, targetPath, creationTime, modificationTime);
+				break;
+			default:
+				throw new IOException("Corrupt encoded tree");
+			}
+		} while (depth > 0);
+		return true;
+	}
+
+	/**
+	 * Rebuild the next tree.
+	 *
+	 * @return	A new root directory holding a copy of the next tree, or null if there
+	 * 			is no next tree.
+	 * @note	Links are rebuilt after all other items of the tree, because they may
+	 * 			reference items that come after them. Links of which the target is unknown
+	 * 			reference a new disk item outside the tree. Links that were no longer valid
+	 * 			reference such a disk item that is terminated, so they are not valid either.
+	 * @throws	IOException
+	 * 			The channel could not be read, does not hold encoded trees, or ends
+	 * 			in the middle of a tree.
+	 */
+	public Directory rebuild() throws IOException {
+		Builder builder = new Builder();
+		if (!accept(builder))
+			return null;
+		builder.resolveLinks();
+		return builder.getRoot();
+	}
+
+	/**
+	 * Read a name.
+	 */
+	private String getName() throws IOException {
+		require(2);
+		int length = buffer.getShort() & 0xFFFF;
+		require(length);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Make sure the buffer holds the given number of bytes.
+	 *
+	 * @throws	EOFException
+	 * 			The channel ends before the given number of bytes.
+	 */
+	private void require(int length) throws IOException {
+		if (!fill(length))
+			throw new EOFException("Encoded tree is incomplete");
+	}
+
+	/**
+	 * Make sure the buffer holds the given number of bytes, if the channel does not end before.
+	 *
+	 * @return	False if the channel ends before the given number of bytes.
+	 */
+	private boolean fill(int length) throws IOException {
+		if (buffer.remaining() >= length)
+			return true;
+		buffer.compact();
+		while (buffer.position() < length) {
+			if (channel.read(buffer) < 0) {
+				buffer.flip();
+				return false;
+			}
+		}
+		buffer.flip();
+		return true;
+	}
+
+	/**
+	 * A class of visitors rebuilding the visited tree.
+	 */
+	private static final class Builder implements TreeVisitor {
+
+		/**
+		 * Variable referencing the rebuilt root directory.
+		 */
+		private Directory root = null;
+
+		/**
+		 * Variable referencing the directories that are being visited, with the innermost on top.
+		 */
+		private final ArrayDeque<Frame> frames = new ArrayDeque<Frame>();
+
+		/**
+		 * Variable referencing the links still to be rebuilt.
+		 */
+		private final List<PendingLink> links = new ArrayList<PendingLink>();
+
+		/**
+		 * Variable referencing the directories of which the writability and times
+		 * must be restored after the links in them are rebuilt.
+		 */
+		private final List<Frame> deferred = new ArrayList<Frame>();
+
+		private Directory getRoot() {
+			return root;
+		}
+
+		@Override
+		public void enterDirectory(String name, boolean writable, Date creationTime, Date modificationTime) {
+			// directories are writable while their items are added
+			Directory directory = frames.isEmpty() ? new Directory(name, true)
+					: new Directory(frames.peek().directory, name, true);
+			if (root == null)
+				root = directory;
+			frames.push(new Frame(directory, writable, creationTime, modificationTime));
+		}
+
+		@Override
+		public void visitFile(String name, Type type, int size, boolean writable, Date creationTime,
+				Date modificationTime) {
+			new File(frames.peek().directory, name, type, size, writable).restoreTimes(creationTime, modificationTime);
+		}
+
+		@Override
+		public void visitLink(String name, boolean toDirectory, List<String> targetPath, Date creationTime,
+				Date modificationTime) {
+			Frame frame = frames.peek();
+			frame.hasPendingLinks = true;
+			links.add(new PendingLink(frame.directory, name, toDirectory, targetPath, true, creationTime,
+					modificationTime));
+		}
+
+		@Override
+		public void visitInvalidLink(String name, boolean toDirectory, Date creationTime, Date modificationTime) {
+			Frame frame = frames.peek();
+			frame.hasPendingLinks = true;
+			links.add(new PendingLink(frame.directory, name, toDirectory, null, false, creationTime,
+					modificationTime));
+		}
+
+		@Override
+		public void exitDirectory() {
+			Frame frame = frames.pop();
+			if (frame.hasPendingLinks)
+				deferred.add(frame);
+			else
+				frame.restore();
+		}
+
+		/**
+		 * Rebuild the pending links and restore the directories containing them.
+		 */
+		private void resolveLinks() {
+			for (PendingLink link : links) {
+				DiskItem target = resolve(link.targetPath, link.toDirectory);
+				if (target == null)
+					target = Recovery.newUnknownTarget(link.toDirectory);
+				Link rebuilt = link.toDirectory ? new DirectoryLink(link.name, (Directory) target, link.parent)
+						: new FileLink(link.name, (File) target, link.parent);
+				if (!link.valid)
+					Recovery.invalidate(rebuilt);
+				rebuilt.restoreTimes(link.creationTime, link.modificationTime);
+			}
+			for (Frame frame : deferred)
+				frame.restore();
+		}
+
+		/**
+		 * Return the disk item at the given path from the root, or null if there is none.
+		 */
+		private DiskItem resolve(List<String> path, boolean directory) {
+			if (path == null)
+				return null;
+			Item item = root;
+			for (String name : path) {
+				if (!(item instanceof Directory))
+					return null;
+				item = ((Directory) item).getItem(name);
+			}
+			if (directory ? !(item instanceof Directory) : !(item instanceof File))
+				return null;
+			return (DiskItem) item;
+		}
+
+		/**
+		 * A class of directories being rebuilt, with the state to restore once they are complete.
+		 */
+		private static final class Frame {
+
+			private Frame(Directory directory, boolean writable, Date creationTime, Date modificationTime) {
+				this.directory = directory;
+				this.writable = writable;
+				this.creationTime = creationTime;
+				this.modificationTime = modificationTime;
+			}
+
+			private final Directory directory;
+
+			private final boolean writable;
+
+			private final Date creationTime;
+
+			private final Date modificationTime;
+
+			private boolean hasPendingLinks = false;
+
+			private void restore() {
+				if (!writable)
+					directory.setWritable(false);
+				directory.restoreTimes(creationTime, modificationTime);
+			}
+		}
+
+		/**
+		 * A class of links still to be rebuilt.
+		 */
+		private static final class PendingLink {
+
+			private PendingLink(Directory parent, String name, boolean toDirectory, List<String> targetPath,
+					boolean valid, Date creationTime, Date modificationTime) {
+				this.parent = parent;
+				this.name = name;
+				this.toDirectory = toDirectory;
+				this.targetPath = targetPath;
+				this.valid = valid;
+				this.creationTime = creationTime;
+				this.modificationTime = modificationTime;
+			}
+
+			private final Directory parent;
+
+			private final String name;
+
+			private final boolean toDirectory;
+
+			private final List<String> targetPath;
+
+			private final boolean valid;
+
+			private final Date creationTime;
+
+			private final Date modificationTime;
+		}
+	}
+
+}
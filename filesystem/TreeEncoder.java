@@ -0,0 +1,280 @@
+package filesystem;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.exception.UnvalidLinkException;
+
+/**
+ * A class of encoders, writing directory trees as a stream of depth-first records.
+ *
+ * Every directory is written as an enter-directory record, followed by the records of
+ * its items and an exit-directory record. Files and links are written as a single record.
+ * The records are written through a buffer of bounded size, and the tree is walked
+ * without recursion, so encoding only takes memory proportional to the depth of the tree.
+ * Several trees can be written one after the other to the same stream; they are read
+ * back one at a time by a tree decoder.
+ *
+ * @invar	The buffer of each encoder never holds more than its capacity.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class TreeEncoder implements Flushable {
+
+	/**********************************************************
+	 * Record format
+	 **********************************************************/
+
+	/**
+	 * Constant registering the magic number at the start of an encoded stream.
+	 */
+	static final int MAGIC = 0x46545245;
+
+	/**
+	 * Constants registering the kinds of records.
+	 */
+	static final byte ENTER_DIRECTORY = 1, FILE = 2, LINK = 3, EXIT_DIRECTORY = 4;
+
+	/**
+	 * Constant registering a missing modification time.
+	 */
+	static final long NO_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Constant registering the length of the path of a link target outside the encoded tree.
+	 */
+	static final int NO_TARGET = 0xFFFF;
+
+	/**
+	 * Constant registering the length of the path of the target of a link that is no longer
+	 * valid, because its target has been terminated.
+	 */
+	static final int INVALID_TARGET = 0xFFFE;
+
+	/**
+	 * Constant registering the default capacity of the buffer of an encoder.
+	 */
+	static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new encoder writing to the given channel.
+	 *
+	 * @param	channel
+	 * 			The channel to write to.
+	 * @throws	IllegalArgumentException
+	 * 			The given channel is not effective.
+	 * 			| channel == null
+	 */
+	public TreeEncoder(WritableByteChannel channel) throws IllegalArgumentException {
+		if (channel == null)
+			throw new IllegalArgumentException();
+		this.channel = channel;
+	}
+
+	/**
+	 * Initialize a new encoder writing to the given output stream.
+	 *
+	 * @param	out
+	 * 			The output stream to write to.
+	 * @effect	| this(Channels.newChannel(out))
+	 */
+	public TreeEncoder(OutputStream out) throws IllegalArgumentException {
+		this(out == null ? null : Channels.newChannel(out));
+	}
+
+	/**
+	 * Variable referencing the channel this encoder writes to.
+	 */
+	private final WritableByteChannel channel;
+
+	/**
+	 * Variable referencing the buffer of records not yet written to the channel.
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+
+	/**
+	 * Variable registering whether the magic number has been written.
+	 */
+	private boolean started = false;
+
+	/**********************************************************
+	 * Encoding
+	 **********************************************************/
+
+	/**
+	 * Write the tree rooted at the given directory and flush this encoder.
+	 *
+	 * @param	root
+	 * 			The root of the tree to write. It need not be a root directory.
+	 * @return	The number of items written.
+	 * @note	Links are written with the path from the given directory to the item they
+	 * 			reference. Links referencing an item outside the tree are written without
+	 * 			target, and links referencing a terminated item are written as invalid links.
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not effective.
+	 * 			| root == null
+	 * @throws	IOException
+	 * 			The records could not be written.
+	 */
+	public long encode(Directory root) throws IllegalArgumentException, IOException {
+		if (root == null)
+			throw new IllegalArgumentException();
+		if (!started) {
+			ensure(4).putInt(MAGIC);
+			started = true;
+		}
+		long nbItems = 1;
+		putDirectory(root);
+		ArrayDeque<Directory> directories = new ArrayDeque<Directory>();
+		ArrayDeque<Integer> indices = new ArrayDeque<Integer>();
+		directories.push(root);
+		indices.push(1);
+		while (!directories.isEmpty()) {
+			Directory directory = directories.peek();
+			int index = indices.pop();
+			if (index > directory.getNbItems()) {
+				directories.pop();
+				ensure(1).put(EXIT_DIRECTORY);
+				continue;
+			}
+			indices.push(index + 1);
+			Item item = directory.getItemAt(index);
+			nbItems++;
+			if (item instanceof Directory) {
+				putDirectory((Directory) item);
+				directories.push((Directory) item);
+				indices.push(1);
+			} else if (item instanceof File) {
+				putFile((File) item);
+			} else {
+				putLink((Link) item, root);
+			}
+		}
+		flush();
+		return nbItems;
+	}
+
+	/**
+	 * Write an enter-directory record for the given directory.
+	 */
+	private void putDirectory(Directory directory) throws IOException {
+		putHeader(ENTER_DIRECTORY, directory);
+		ensure(1).put((byte) (directory.isWritable() ? 1 : 0));
+	}
+
+	/**
+	 * Write a record for the given file.
+	 */
+	private void putFile(File file) throws IOException {
+		putHeader(FILE, file);
+		ensure(6).put((byte) (file.isWritable() ? 1 : 0)).put((byte) file.getType().ordinal()).putInt(file.getSize());
+	}
+
+	/**
+	 * Write a record for the given link, with the path to its target from the given root.
+	 */
+	private void putLink(Link link, Directory root) throws IOException {
+		putHeader(LINK, link);
+		ensure(1).put((byte) (link instanceof DirectoryLink ? 1 : 0));
+		List<String> path;
+		try {
+			path = getPath(link.getRefDiskItem(), root);
+		} catch (UnvalidLinkException e) {
+			ensure(2).putShort((short) INVALID_TARGET);
+			return;
+		}
+		if (path == null) {
+			ensure(2).putShort((short) NO_TARGET);
+		} else {
+			ensure(2).putShort((short) path.size());
+			for (int i = path.size() - 1; i >= 0; i--)
+				putName(path.get(i));
+		}
+	}
+
+	/**
+	 * Return the names leading from the given root to the given item in reverse order,
+	 * or null if the given item is not in the tree of the given root.
+	 */
+	private static List<String> getPath(Item item, Directory root) {
+		List<String> names = new ArrayList<String>();
+		while (item != root) {
+			if (item == null || names.size() >= INVALID_TARGET - 1)
+				return null;
+			names.add(item.getName());
+			item = item.getParentDirectory();
+		}
+		return names;
+	}
+
+	/**
+	 * Write the kind, name and times of the given item.
+	 */
+	private void putHeader(byte kind, Item item) throws IOException {
+		ensure(1).put(kind);
+		putName(item.getName());
+		Date modificationTime = item.getModificationTime();
+		ensure(17).putLong(item.getCreationTime().getTime())
+				.putLong(modificationTime == null ? NO_TIME : modificationTime.getTime());
+	}
+
+	/**
+	 * Write the given name.
+	 */
+	private void putName(String name) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+		ensure(2).putShort((short) bytes.length);
+		int offset = 0;
+		while (offset < bytes.length) {
+			int length = Math.min(bytes.length - offset, Math.max(1, buffer.remaining()));
+			ensure(length).put(bytes, offset, length);
+			offset += length;
+		}
+	}
+
+	/**
+	 * Return the buffer, after making room for the given number of bytes.
+	 */
+	private ByteBuffer ensure(int length) throws IOException {
+		if (buffer.remaining() < length)
+			drain();
+		return buffer;
+	}
+
+	/**
+	 * Write all buffered records to the channel.
+	 */
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Write all buffered records to the channel.
+	 *
+	 * @throws	IOException
+	 * 			The records could not be written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+	}
+
+}
@@ -0,0 +1,113 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.*;
+
+import filesystem.exception.UnvalidLinkException;
+
+/**
+ * A JUnit test class for testing the public methods of the TreeEncoder and TreeDecoder Classes.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class TreeEncoderTest {
+
+	Directory root;
+	Directory sub;
+	File file;
+	ByteArrayOutputStream out;
+
+	@Before
+	public void setUpFixture() throws IOException {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		file = new File(sub, "bestand", Type.JAVA, 120, false);
+		new FileLink("snelkoppeling", file, root);
+		new Directory(root, "leeg", false);
+		out = new ByteArrayOutputStream();
+		assertEquals(5, new TreeEncoder(out).encode(root));
+	}
+
+	@Test
+	public void testRebuild() throws IOException {
+		TreeDecoder decoder = new TreeDecoder(new ByteArrayInputStream(out.toByteArray()));
+		Directory rebuilt = decoder.rebuild();
+		assertEquals("root", rebuilt.getName());
+		assertEquals(3, rebuilt.getNbItems());
+		assertFalse(rebuilt.getItem("leeg").isWritable());
+		File rebuiltFile = (File) ((Directory) rebuilt.getItem("sub")).getItem("bestand");
+		assertEquals(120, rebuiltFile.getSize());
+		assertFalse(rebuiltFile.isWritable());
+		assertEquals(file.getCreationTime(), rebuiltFile.getCreationTime());
+		assertSame(rebuiltFile, ((Link) rebuilt.getItem("snelkoppeling")).getRefDiskItem());
+		assertNull(decoder.rebuild());
+	}
+
+	@Test
+	public void testAccept_depthFirst() throws IOException {
+		final StringBuilder trace = new StringBuilder();
+		boolean accepted = new TreeDecoder(new ByteArrayInputStream(out.toByteArray())).accept(new TreeVisitor() {
+			public void enterDirectory(String name, boolean writable, Date creationTime, Date modificationTime) {
+				trace.append("<" + name);
+			}
+			public void visitFile(String name, Type type, int size, boolean writable, Date creationTime,
+					Date modificationTime) {
+				trace.append(" " + name);
+			}
+			public void visitLink(String name, boolean toDirectory, List<String> targetPath, Date creationTime,
+					Date modificationTime) {
+				assertEquals(Arrays.asList("sub", "bestand"), targetPath);
+				trace.append(" " + name);
+			}
+			public void exitDirectory() {
+				trace.append(">");
+			}
+		});
+		assertTrue(accepted);
+		assertEquals("<root<leeg> snelkoppeling<sub bestand>>", trace.toString());
+	}
+
+	@Test
+	public void testRebuild_invalidLink() throws IOException {
+		File target = new File(sub, "doel", Type.TEXT);
+		new FileLink("ongeldig", target, root);
+		new FileLink("extern", new File(new Directory("buiten"), "ver", Type.TEXT), root);
+		target.terminate();
+		new TreeEncoder(out = new ByteArrayOutputStream()).encode(root);
+		Directory rebuilt = new TreeDecoder(new ByteArrayInputStream(out.toByteArray())).rebuild();
+		try {
+			((Link) rebuilt.getItem("ongeldig")).getRefDiskItem();
+			fail();
+		} catch (UnvalidLinkException e) {
+		}
+		assertNotNull(((Link) rebuilt.getItem("extern")).getRefDiskItem());
+		assertTrue(rebuilt.hasProperItems());
+	}
+
+	@Test
+	public void testEncode_severalTrees() throws IOException {
+		TreeEncoder encoder = new TreeEncoder(out = new ByteArrayOutputStream());
+		encoder.encode(sub);
+		encoder.encode(root);
+		TreeDecoder decoder = new TreeDecoder(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("sub", decoder.rebuild().getName());
+		assertEquals("root", decoder.rebuild().getName());
+		assertNull(decoder.rebuild());
+	}
+
+	@Test(expected = EOFException.class)
+	public void testRebuild_truncated() throws IOException {
+		byte[] bytes = Arrays.copyOf(out.toByteArray(), out.size() - 3);
+		new TreeDecoder(new ByteArrayInputStream(bytes)).rebuild();
+	}
+
+}
@@ -0,0 +1,92 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the depth, root and ancestor queries of the Item Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class TreeLabelsTest {
+
+	Directory root;
+	Directory sub;
+	Directory other;
+	File file;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		other = new Directory(root, "other");
+		file = new File(sub, "bestand", Type.JAVA, 120, true);
+	}
+
+	@Test
+	public void testLabels_afterConstruction() {
+		assertEquals(0, root.getDepth());
+		assertEquals(1, sub.getDepth());
+		assertEquals(2, file.getDepth());
+		assertSame(root, file.getRoot());
+		assertTrue(root.isDirectOrIndirectParentOf(file));
+		assertTrue(sub.isDirectOrIndirectParentOf(file));
+		assertFalse(other.isDirectOrIndirectParentOf(file));
+		assertFalse(file.isDirectOrIndirectParentOf(sub));
+	}
+
+	@Test
+	public void testLabels_afterMoveAndMakeRoot() {
+		Directory inner = new Directory(other, "binnen");
+		sub.move(inner);
+		assertEquals(3, sub.getDepth());
+		assertEquals(4, file.getDepth());
+		assertTrue(other.isDirectOrIndirectParentOf(file));
+		inner.makeRoot();
+		assertEquals(0, inner.getDepth());
+		assertEquals(2, file.getDepth());
+		assertSame(inner, file.getRoot());
+		assertFalse(root.isDirectOrIndirectParentOf(file));
+		assertFalse(inner.isDirectOrIndirectParentOf(root));
+	}
+
+	@Test
+	public void testLabels_deepChain() {
+		Directory current = sub;
+		Directory[] chain = new Directory[2000];
+		for (int i = 0; i < chain.length; i++)
+			current = chain[i] = new Directory(current, "d" + i);
+		assertEquals(2001, current.getDepth());
+		assertSame(root, current.getRoot());
+		for (int i = 0; i < chain.length; i += 97)
+			assertTrue(chain[i].isDirectOrIndirectParentOf(current));
+		assertFalse(current.isDirectOrIndirectParentOf(chain[0]));
+		assertFalse(other.isDirectOrIndirectParentOf(current));
+		chain[10].move(other);
+		assertEquals(1991, current.getDepth());
+		assertTrue(other.isDirectOrIndirectParentOf(current));
+		assertFalse(chain[9].isDirectOrIndirectParentOf(current));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMove_intoOwnSubtree() {
+		Directory inner = new Directory(sub, "binnen");
+		sub.move(new Directory(inner, "dieper"));
+	}
+
+	@Test
+	public void testLabels_inReadView() throws InterruptedException {
+		try (Versions.ReadView view = Versions.pin()) {
+			Thread thread = new Thread(() -> sub.move(other));
+			thread.start();
+			thread.join();
+			assertEquals(2, file.getDepth());
+			assertFalse(other.isDirectOrIndirectParentOf(file));
+			assertSame(root, file.getRoot());
+		}
+		assertEquals(3, file.getDepth());
+		assertTrue(other.isDirectOrIndirectParentOf(file));
+	}
+
+}
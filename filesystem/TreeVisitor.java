@@ -0,0 +1,92 @@
+package filesystem;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * An interface of visitors that are fed the items of an encoded directory tree
+ * by a tree decoder, in depth-first order.
+ *
+ * The items of every directory are visited in between the call to enterDirectory
+ * and the matching call to exitDirectory, in the order in which they are registered
+ * in that directory.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public interface TreeVisitor {
+
+	/**
+	 * Visit a directory, before its items are visited.
+	 *
+	 * @param	name
+	 * 			The name of the directory.
+	 * @param	writable
+	 * 			The writability of the directory.
+	 * @param	creationTime
+	 * 			The creation time of the directory.
+	 * @param	modificationTime
+	 * 			The modification time of the directory, null if it has not been modified.
+	 */
+	void enterDirectory(String name, boolean writable, Date creationTime, Date modificationTime);
+
+	/**
+	 * Visit a file.
+	 *
+	 * @param	name
+	 * 			The name of the file.
+	 * @param	type
+	 * 			The type of the file.
+	 * @param	size
+	 * 			The size of the file.
+	 * @param	writable
+	 * 			The writability of the file.
+	 * @param	creationTime
+	 * 			The creation time of the file.
+	 * @param	modificationTime
+	 * 			The modification time of the file, null if it has not been modified.
+	 */
+	void visitFile(String name, Type type, int size, boolean writable, Date creationTime, Date modificationTime);
+
+	/**
+	 * Visit a link.
+	 *
+	 * @param	name
+	 * 			The name of the link.
+	 * @param	toDirectory
+	 * 			True if the link references a directory, false if it references a file.
+	 * @param	targetPath
+	 * 			The names leading from the root of the encoded tree to the referenced disk item,
+	 * 			null if the referenced disk item was not part of the encoded tree.
+	 * @param	creationTime
+	 * 			The creation time of the link.
+	 * @param	modificationTime
+	 * 			The modification time of the link, null if it has not been modified.
+	 */
+	void visitLink(String name, boolean toDirectory, List<String> targetPath, Date creationTime, Date modificationTime);
+
+	/**
+	 * Visit a link that is no longer valid, because the disk item it referenced has been
+	 * terminated.
+	 *
+	 * @param	name
+	 * 			The name of the link.
+	 * @param	toDirectory
+	 * 			True if the link referenced a directory, false if it referenced a file.
+	 * @param	creationTime
+	 * 			The creation time of the link.
+	 * @param	modificationTime
+	 * 			The modification time of the link, null if it has not been modified.
+	 * @effect	By default, the link is visited as a link without target.
+	 * 			| visitLink(name, toDirectory, null, creationTime, modificationTime)
+	 */
+	default void visitInvalidLink(String name, boolean toDirectory, Date creationTime, Date modificationTime) {
+		visitLink(name, toDirectory, null, creationTime, modificationTime);
+	}
+
+	/**
+	 * Leave a directory, after all its items are visited.
+	 */
+	void exitDirectory();
+
+}
@@ -0,0 +1,79 @@
+package filesystem;
+
+import java.util.*;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of indexes from types to the files of that type directly or indirectly
+ * in a directory, with the number of files and their total size per type.
+ *
+ * @invar	For each type, the total size equals the sum of the sizes of the files
+ * 			of that type in this index.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class TypeIndex implements SubtreeIndex {
+
+	/**
+	 * Initialize a new, empty type index.
+	 */
+	TypeIndex() {
+		for (Type type : Type.values())
+			files.put(type, Collections.newSetFromMap(new IdentityHashMap<File, Boolean>()));
+	}
+
+	/**
+	 * Variable referencing the files in this index, per type.
+	 */
+	private final EnumMap<Type, Set<File>> files = new EnumMap<Type, Set<File>>(Type.class);
+
+	/**
+	 * Variable referencing the total size of the files in this index, per type ordinal.
+	 */
+	private final long[] totalSizes = new long[Type.values().length];
+
+	/**
+	 * Return a set with the files of the given type in this index.
+	 */
+	@Basic
+	synchronized Set<File> getFilesOfType(Type type) {
+		return new HashSet<File>(files.get(type));
+	}
+
+	/**
+	 * Return the number of files of the given type in this index.
+	 */
+	@Basic
+	synchronized int getNbFilesOfType(Type type) {
+		return files.get(type).size();
+	}
+
+	/**
+	 * Return the total size of the files of the given type in this index.
+	 */
+	@Basic
+	synchronized long getTotalSizeOfType(Type type) {
+		return totalSizes[type.ordinal()];
+	}
+
+	@Override
+	public synchronized void fileAdded(File file) {
+		if (files.get(file.getType()).add(file))
+			totalSizes[file.getType().ordinal()] += file.getSize();
+	}
+
+	@Override
+	public synchronized void fileRemoved(File file) {
+		if (files.get(file.getType()).remove(file))
+			totalSizes[file.getType().ordinal()] -= file.getSize();
+	}
+
+	@Override
+	public synchronized void fileResized(File file, int oldSize) {
+		if (files.get(file.getType()).contains(file))
+			totalSizes[file.getType().ordinal()] += file.getSize() - oldSize;
+	}
+
+}
@@ -0,0 +1,89 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the type index of the Directory Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class TypeIndexTest {
+
+	Directory root;
+	Directory sub;
+	Directory other;
+	File javaFile;
+	File textFile;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		other = new Directory(root, "other");
+		javaFile = new File(sub, "bestand", Type.JAVA, 120, true);
+		textFile = new File(root, "tekst", Type.TEXT, 30, true);
+		root.enableTypeIndex();
+		sub.enableTypeIndex();
+	}
+
+	@Test
+	public void testEnableTypeIndex_existingFiles() {
+		assertTrue(root.hasTypeIndex());
+		assertFalse(other.hasTypeIndex());
+		assertEquals(1, root.getNbFilesOfType(Type.JAVA));
+		assertEquals(1, root.getNbFilesOfType(Type.TEXT));
+		assertEquals(0, root.getNbFilesOfType(Type.PDF));
+		assertEquals(120, root.getTotalSizeOfType(Type.JAVA));
+		assertTrue(sub.getFilesOfType(Type.JAVA).contains(javaFile));
+	}
+
+	@Test
+	public void testTypeIndex_createAndResize() {
+		File created = new File(sub, "nieuw", Type.JAVA, 10, true);
+		created.enlarge(5);
+		javaFile.shorten(20);
+		assertEquals(2, root.getNbFilesOfType(Type.JAVA));
+		assertEquals(115, root.getTotalSizeOfType(Type.JAVA));
+		assertEquals(115, sub.getTotalSizeOfType(Type.JAVA));
+	}
+
+	@Test
+	public void testTypeIndex_moveRenameAndTerminate() {
+		javaFile.changeName("hernoemd");
+		assertEquals(1, sub.getNbFilesOfType(Type.JAVA));
+		javaFile.move(other);
+		assertEquals(0, sub.getNbFilesOfType(Type.JAVA));
+		assertEquals(1, root.getNbFilesOfType(Type.JAVA));
+		other.makeRoot();
+		assertEquals(0, root.getNbFilesOfType(Type.JAVA));
+		textFile.terminate();
+		assertEquals(0, root.getNbFilesOfType(Type.TEXT));
+		assertEquals(0, root.getTotalSizeOfType(Type.TEXT));
+	}
+
+	@Test
+	public void testTypeIndex_createDirectory() {
+		Directory created = new Directory(sub, "nieuw");
+		new File(created, "binnen", Type.JAVA, 15, true);
+		assertTrue(sub.hasProperItems());
+		assertEquals(2, sub.getNbItems());
+		assertEquals(2, root.getNbFilesOfType(Type.JAVA));
+		assertEquals(135, sub.getTotalSizeOfType(Type.JAVA));
+		created.move(other);
+		assertEquals(1, sub.getNbFilesOfType(Type.JAVA));
+		assertEquals(2, root.getNbFilesOfType(Type.JAVA));
+	}
+
+	@Test
+	public void testGetFilesOfType_withoutIndex() {
+		root.disableTypeIndex();
+		assertFalse(root.hasTypeIndex());
+		new File(other, "nieuw", Type.JAVA, 10, true);
+		assertEquals(2, root.getNbFilesOfType(Type.JAVA));
+		assertEquals(130, root.getTotalSizeOfType(Type.JAVA));
+		assertEquals(1, sub.getNbFilesOfType(Type.JAVA));
+	}
+
+}
@@ -0,0 +1,398 @@
+package filesystem;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class managing the versions of the file system.
+ *
+ * Every completed mutation of an item commits a new version of the file system.
+ * When an attribute of an item changes, its previous value is kept in a version
+ * chain of that item, tagged with the version that replaced it. A reader pins a
+ * version by opening a read view; as long as the view is open, the inspectors
+ * getName(), getParentDirectory(), getModificationTime() and isWritable() of items,
+ * getSize() of files and getNbItems() and getItemAt(int) of directories return
+ * the values as of the pinned version in the thread that opened it.
+ * Previous values that are older than the oldest open view are dropped, by the
+ * mutations themselves and by a background pruner.
+ *
+ * @note	Mutations are expected to be performed by one thread at a time, and never by
+ * 			a thread that has an open read view. Only batches, such as committed
+ * 			transactions, may be in progress in several threads at once; their mutations
+ * 			are committed as a single version when the last of them ends.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class Versions {
+
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private Versions() {
+	}
+
+	/**********************************************************
+	 * Commit counter
+	 **********************************************************/
+
+	/**
+	 * Variable registering the last committed version.
+	 */
+	private static volatile long currentVersion = 0;
+
+	/**
+	 * Return the last committed version of the file system.
+	 */
+	@Basic
+	public static long getCurrentVersion() {
+		return currentVersion;
+	}
+
+	/**
+	 * Return the version that is written by the mutation in progress.
+	 *
+	 * @return	| result == getCurrentVersion() + 1
+	 * @throws	IllegalStateException
+	 * 			The current thread has an open read view.
+	 */
+	@Model
+	static long getWriteVersion() throws IllegalStateException {
+		if (getCurrentView() != null)
+			throw new IllegalStateException("Items cannot be mutated while a read view is open");
+		return currentVersion + 1;
+	}
+
+	/**
+	 * Variable referencing the number of nested batches in progress in each thread.
+	 */
+	private static final ThreadLocal<int[]> batchDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+	/**
+	 * Object guarding the number of threads with a batch in progress and the commit
+	 * of the versions written by them.
+	 */
+	private static final Object batchLock = new Object();
+
+	/**
+	 * Variable registering the number of threads with a batch in progress.
+	 */
+	private static int nbOpenBatches = 0;
+
+	/**
+	 * Variable registering whether a mutation has been completed in the batches in progress.
+	 */
+	private static boolean batchChanged = false;
+
+	/**
+	 * Commit the mutation in progress, unless a batch is in progress.
+	 *
+	 * @post	| if (!isInBatch())
+	 * 			|	then new.getCurrentVersion() == getCurrentVersion() + 1
+	 */
+	@Model
+	static void commit() {
+		synchronized (batchLock) {
+			if (nbOpenBatches > 0)
+				batchChanged = true;
+			else
+				currentVersion = currentVersion + 1;
+		}
+	}
+
+	/**
+	 * Start a batch of mutations in the current thread. The mutations of all batches
+	 * that are in progress at the same time are committed as a single version.
+	 */
+	@Model
+	static void beginBatch() {
+		if (batchDepth.get()[0]++ == 0)
+			synchronized (batchLock) {
+				nbOpenBatches++;
+			}
+	}
+
+	/**
+	 * End a batch of mutations in the current thread, committing the mutations of all
+	 * batches if it is the last outermost batch in progress.
+	 */
+	@Model
+	static void endBatch() {
+		if (--batchDepth.get()[0] == 0)
+			synchronized (batchLock) {
+				nbOpenBatches--;
+				if (nbOpenBatches == 0 && batchChanged) {
+					batchChanged = false;
+					currentVersion = currentVersion + 1;
+				}
+			}
+	}
+
+	/**
+	 * Check whether a batch of mutations is in progress in any thread.
+	 */
+	@Model
+	static boolean isInBatch() {
+		synchronized (batchLock) {
+			return nbOpenBatches > 0;
+		}
+	}
+
+	/**********************************************************
+	 * Read views
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the number of open views for each pinned version.
+	 */
+	private static final TreeMap<Long, Integer> pinnedVersions = new TreeMap<Long, Integer>();
+
+	/**
+	 * Variable registering the number of open views.
+	 */
+	private static final AtomicInteger nbOpenViews = new AtomicInteger();
+
+	/**
+	 * Variable referencing the innermost open view of each thread.
+	 */
+	private static final ThreadLocal<ReadView> currentView = new ThreadLocal<ReadView>();
+
+	/**
+	 * Variable registering the version up to which previous values may have been dropped.
+	 */
+	private static long prunedVersion = 0;
+
+	/**
+	 * Open a read view on the last committed version in the current thread.
+	 *
+	 * @return	| result.getVersion() == getCurrentVersion()
+	 */
+	public static ReadView pin() {
+		synchronized (pinnedVersions) {
+			return pin(currentVersion);
+		}
+	}
+
+	/**
+	 * Open a read view on the given version in the current thread.
+	 *
+	 * @param	version
+	 * 			The version to pin.
+	 * @return	| result.getVersion() == version
+	 * @throws	IllegalArgumentException
+	 * 			The given version has not been committed yet, or previous values of it
+	 * 			may already have been dropped.
+	 * 			| version > getCurrentVersion() || version < getOldestAvailableVersion()
+	 */
+	public static ReadView pin(long version) throws IllegalArgumentException {
+		synchronized (pinnedVersions) {
+			if (version > currentVersion || version < prunedVersion)
+				throw new IllegalArgumentException("Version " + version + " is not available");
+			Integer count = pinnedVersions.get(version);
+			pinnedVersions.put(version, count == null ? 1 : count + 1);
+			nbOpenViews.incrementAndGet();
+		}
+		startPruner();
+		ReadView view = new ReadView(version, currentView.get());
+		currentView.set(view);
+		return view;
+	}
+
+	/**
+	 * Return the oldest version that can still be pinned.
+	 */
+	public static long getOldestAvailableVersion() {
+		synchronized (pinnedVersions) {
+			return prunedVersion;
+		}
+	}
+
+	/**
+	 * Return the innermost open view of the current thread, null if it has none.
+	 */
+	@Model
+	static ReadView getCurrentView() {
+		if (nbOpenViews.get() == 0)
+			return null;
+		return currentView.get();
+	}
+
+	/**
+	 * A class of read views, pinning a version of the file system in the thread
+	 * that opened them until they are closed.
+	 */
+	public static final class ReadView implements AutoCloseable {
+
+		private ReadView(long version, ReadView outer) {
+			this.version = version;
+			this.outer = outer;
+		}
+
+		/**
+		 * Variable registering the pinned version.
+		 */
+		private final long version;
+
+		/**
+		 * Variable referencing the view that was open in the same thread when this view was opened.
+		 */
+		private final ReadView outer;
+
+		/**
+		 * Variable registering whether this view is closed.
+		 */
+		private boolean closed = false;
+
+		/**
+		 * Return the version pinned by this view.
+		 */
+		@Basic @Immutable
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * Close this view. Closing a view more than once has no effect.
+		 *
+		 * @throws	IllegalStateException
+		 * 			This view is not the innermost open view of the current thread.
+		 */
+		@Override
+		public void close() throws IllegalStateException {
+			if (closed)
+				return;
+			if (currentView.get() != this)
+				throw new IllegalStateException("Read views must be closed by their thread, innermost first");
+			closed = true;
+			currentView.set(outer);
+			synchronized (pinnedVersions) {
+				int count = pinnedVersions.get(version);
+				if (count == 1)
+					pinnedVersions.remove(version);
+				else
+					pinnedVersions.put(version, count - 1);
+				nbOpenViews.decrementAndGet();
+			}
+		}
+	}
+
+	/**********************************************************
+	 * Pruning
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the items with previous values that may be dropped.
+	 */
+	private static final Set<Item> itemsToPrune = Collections.newSetFromMap(new ConcurrentHashMap<Item, Boolean>());
+
+	/**
+	 * Variable referencing the background pruner, null if it has not been started.
+	 */
+	private static ScheduledExecutorService pruner = null;
+
+	/**
+	 * Constant registering the interval of the background pruner, in milliseconds.
+	 */
+	private static final long PRUNE_INTERVAL_MILLIS = 1000;
+
+	/**
+	 * Constant registering the number of items with previous values above which the
+	 * mutations start to drop previous values themselves.
+	 */
+	static final int MIN_PRUNE_THRESHOLD = 1024;
+
+	/**
+	 * Variable registering the number of items with previous values at which the next
+	 * mutation drops the previous values that are no longer needed.
+	 */
+	private static volatile int pruneThreshold = MIN_PRUNE_THRESHOLD;
+
+	/**
+	 * Return the version up to which previous values are no longer needed by any
+	 * open or future view, and make sure no view can pin an older version anymore.
+	 *
+	 * @return	| result == min(getCurrentVersion(), the oldest pinned version)
+	 * @post	| getOldestAvailableVersion() >= result
+	 */
+	@Model
+	static long getPruneVersion() {
+		synchronized (pinnedVersions) {
+			long version = pinnedVersions.isEmpty() ? currentVersion : Math.min(currentVersion, pinnedVersions.firstKey());
+			prunedVersion = Math.max(prunedVersion, version);
+			return version;
+		}
+	}
+
+	/**
+	 * Register the given item as having previous values that may be dropped later.
+	 *
+	 * @effect	If the number of registered items reaches the prune threshold, the previous
+	 * 			values that are no longer needed are dropped.
+	 * 			| if (getNbItemsToPrune() >= threshold) then prune()
+	 * @note	The threshold is twice the number of items that kept previous values after the
+	 * 			last prune, so the registered items stay bounded without a background pruner,
+	 * 			which is only started once a view is pinned, at an amortized constant cost
+	 * 			per mutation.
+	 */
+	@Model
+	static void schedulePruning(Item item) {
+		itemsToPrune.add(item);
+		if (itemsToPrune.size() >= pruneThreshold) {
+			prune();
+			pruneThreshold = Math.max(MIN_PRUNE_THRESHOLD, 2 * itemsToPrune.size());
+		}
+	}
+
+	/**
+	 * Drop all previous values that are no longer needed by any open or future view.
+	 *
+	 * @return	The number of items of which all previous values were dropped.
+	 */
+	public static int prune() {
+		long version = getPruneVersion();
+		int pruned = 0;
+		for (Item item : itemsToPrune) {
+			if (item.pruneRevisions(version)) {
+				itemsToPrune.remove(item);
+				// a revision may have been added concurrently
+				if (item.hasRevisions())
+					itemsToPrune.add(item);
+				else
+					pruned++;
+			}
+		}
+		return pruned;
+	}
+
+	/**
+	 * Start the background pruner, if it is not running yet.
+	 */
+	private static synchronized void startPruner() {
+		if (pruner != null)
+			return;
+		pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "versions-pruner");
+			thread.setDaemon(true);
+			return thread;
+		});
+		pruner.scheduleWithFixedDelay(Versions::prune, PRUNE_INTERVAL_MILLIS, PRUNE_INTERVAL_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Return the number of items with previous values that are not yet dropped.
+	 */
+	@Model
+	static int getNbItemsToPrune() {
+		return itemsToPrune.size();
+	}
+
+}
@@ -0,0 +1,98 @@
+package filesystem;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+/**
+ * A JUnit test class for testing the public methods of the Versions Class.
+ *
+ * @author Linde en Lotte
+ *
+ */
+public class VersionsTest {
+
+	Directory root;
+	Directory sub;
+	Directory other;
+	File file;
+
+	@Before
+	public void setUpFixture() {
+		root = new Directory("root");
+		sub = new Directory(root, "sub");
+		other = new Directory(root, "other");
+		file = new File(sub, "bestand", Type.JAVA, 120, true);
+	}
+
+	private void inOtherThread(Runnable mutation) throws InterruptedException {
+		Thread thread = new Thread(mutation);
+		thread.start();
+		thread.join();
+	}
+
+	@Test
+	public void testPin_seesPinnedVersion() throws InterruptedException {
+		try (Versions.ReadView view = Versions.pin()) {
+			inOtherThread(() -> {
+				file.enlarge(10);
+				file.changeName("hernoemd");
+				file.move(other);
+				sub.setWritable(false);
+			});
+			assertEquals(view.getVersion() + 4, Versions.getCurrentVersion());
+			assertEquals("bestand", file.getName());
+			assertEquals(120, file.getSize());
+			assertSame(sub, file.getParentDirectory());
+			assertSame(file, sub.getItem("bestand"));
+			assertEquals(0, other.getNbItems());
+			assertTrue(sub.isWritable());
+		}
+		assertEquals("hernoemd", file.getName());
+		assertEquals(130, file.getSize());
+		assertSame(other, file.getParentDirectory());
+		assertEquals(0, sub.getNbItems());
+	}
+
+	@Test
+	public void testPin_olderVersion() throws InterruptedException {
+		try (Versions.ReadView outer = Versions.pin()) {
+			inOtherThread(() -> file.enlarge(1));
+			try (Versions.ReadView inner = Versions.pin(outer.getVersion())) {
+				assertEquals(120, file.getSize());
+			}
+			try (Versions.ReadView inner = Versions.pin()) {
+				assertEquals(121, file.getSize());
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPin_prunedVersion() {
+		file.enlarge(1);
+		Versions.prune();
+		Versions.pin(Versions.getCurrentVersion() - 1);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMutation_inReadView() {
+		try (Versions.ReadView view = Versions.pin()) {
+			file.enlarge(1);
+		}
+	}
+
+	@Test
+	public void testPrune_boundedWithoutViews() {
+		for (int i = 0; i < 20000; i++)
+			new File(sub, "tijdelijk" + i, Type.TEXT).terminate();
+		assertTrue(Versions.getNbItemsToPrune() < 10000);
+	}
+
+	@Test
+	public void testPrune_dropsUnneededVersions() {
+		file.enlarge(1);
+		assertTrue(file.hasRevisions());
+		Versions.prune();
+		assertFalse(file.hasRevisions());
+	}
+
+}
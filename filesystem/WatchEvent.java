@@ -0,0 +1,194 @@
+package filesystem;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of events reporting a change of an item to the watchers of a directory.
+ *
+ * @invar	Each event has a kind.
+ * 			| getKind() != null
+ * @invar	Each event except an overflow event involves an item.
+ * 			| (getKind() == Kind.OVERFLOW) == (getItem() == null)
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class WatchEvent {
+
+	/**
+	 * An enumeration of kinds of changes.
+	 */
+	public static enum Kind {
+		/**
+		 * The item has been created.
+		 */
+		CREATED,
+		/**
+		 * The item has been terminated.
+		 */
+		TERMINATED,
+		/**
+		 * The name of the item has been changed.
+		 */
+		RENAMED,
+		/**
+		 * The item has been moved to another directory, or made a root.
+		 */
+		MOVED,
+		/**
+		 * The size of the file has been changed.
+		 */
+		RESIZED,
+		/**
+		 * The writability of the disk item has been set.
+		 */
+		WRITABILITY_CHANGED,
+		/**
+		 * Events have been dropped, because the watcher could not keep up.
+		 */
+		OVERFLOW
+	}
+
+	/**
+	 * Initialize a new event with the given kind, item and details.
+	 */
+	@Model
+	WatchEvent(Kind kind, Item item, String oldName, String newName, Directory oldParent,
+			Directory newParent, int delta, long version) {
+		this.kind = kind;
+		this.item = item;
+		this.oldName = oldName;
+		this.newName = newName;
+		this.oldParent = oldParent;
+		this.newParent = newParent;
+		this.delta = delta;
+		this.version = version;
+	}
+
+	/**
+	 * Return a new overflow event.
+	 */
+	@Model
+	static WatchEvent overflow(long version) {
+		return new WatchEvent(Kind.OVERFLOW, null, null, null, null, null, 0, version);
+	}
+
+	/**
+	 * Variable referencing the kind of this event.
+	 */
+	private final Kind kind;
+
+	/**
+	 * Variable referencing the item involved in this event.
+	 */
+	private final Item item;
+
+	/**
+	 * Variables referencing the name of the item before and after the change.
+	 */
+	private final String oldName, newName;
+
+	/**
+	 * Variables referencing the parent directory of the item before and after the change.
+	 */
+	private final Directory oldParent, newParent;
+
+	/**
+	 * Variable registering the change of the size of the file.
+	 */
+	private final int delta;
+
+	/**
+	 * Variable registering the version committed by the change.
+	 */
+	private final long version;
+
+	/**
+	 * Return the kind of this event.
+	 */
+	@Basic @Immutable
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Return the item involved in this event, null for an overflow event.
+	 */
+	@Basic @Immutable
+	public Item getItem() {
+		return item;
+	}
+
+	/**
+	 * Return the name of the item before the change.
+	 */
+	@Basic @Immutable
+	public String getOldName() {
+		return oldName;
+	}
+
+	/**
+	 * Return the name of the item after the change.
+	 */
+	@Basic @Immutable
+	public String getNewName() {
+		return newName;
+	}
+
+	/**
+	 * Return the parent directory of the item before the change, null if it was a root
+	 * or had not been created yet.
+	 */
+	@Basic @Immutable
+	public Directory getOldParent() {
+		return oldParent;
+	}
+
+	/**
+	 * Return the parent directory of the item after the change, null if it became a root
+	 * or has been terminated.
+	 */
+	@Basic @Immutable
+	public Directory getNewParent() {
+		return newParent;
+	}
+
+	/**
+	 * Return the number of bytes by which the size of the file was changed,
+	 * 0 for events of another kind than RESIZED.
+	 */
+	@Basic @Immutable
+	public int getDelta() {
+		return delta;
+	}
+
+	/**
+	 * Return the version of the file system committed by the (last) change.
+	 */
+	@Basic @Immutable
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Return an event that combines this event with the given later event of the
+	 * same kind on the same item.
+	 *
+	 * @pre		| later.getKind() == getKind() && later.getItem() == getItem()
+	 * @return	An event with the old state of this event and the new state of the given event.
+	 * 			| result.getOldName() == getOldName() && result.getNewName() == later.getNewName() &&
+	 * 			| result.getOldParent() == getOldParent() && result.getNewParent() == later.getNewParent() &&
+	 * 			| result.getDelta() == getDelta() + later.getDelta()
+	 */
+	@Model
+	WatchEvent coalesce(WatchEvent later) {
+		return new WatchEvent(kind, item, oldName, later.newName, oldParent, later.newParent,
+				delta + later.delta, later.version);
+	}
+
+	@Override
+	public String toString() {
+		return kind + "(" + (item == null ? "" : item.getName()) + ")";
+	}
+
+}
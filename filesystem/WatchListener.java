@@ -0,0 +1,26 @@
+package filesystem;
+
+import java.util.List;
+
+/**
+ * An interface of listeners that receive the changes in watched directories.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public interface WatchListener {
+
+	/**
+	 * Receive a batch of changes in a watched directory.
+	 *
+	 * @param	watch
+	 * 			The watch that registered this listener.
+	 * @param	events
+	 * 			The changes, in the order in which they happened. Successive changes
+	 * 			of the same kind on the same item may have been combined in one event.
+	 * @note	This method is invoked by a dispatching thread, never by the thread that
+	 * 			made the changes, and never concurrently for the same watch.
+	 */
+	void changed(DirectoryWatch watch, List<WatchEvent> events);
+
+}
@@ -0,0 +1,192 @@
+package filesystem;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class translating the mutations of items into events for the watches of the
+ * directories involved.
+ *
+ * An event about an item is posted to the watches of the parent directory of that
+ * item, and to the subtree watches of all directories the parent directory directly
+ * or indirectly belongs to. Events about a moved item are posted to the watches of
+ * both the old and the new parent directory, but at most once to each watch.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+final class WatchService implements MutationListener {
+
+	/**
+	 * Variable referencing the single watch service, null if no directory has been watched yet.
+	 */
+	private static WatchService instance = null;
+
+	/**
+	 * Variable referencing the watches of each watched directory.
+	 */
+	private static final Map<Directory, List<DirectoryWatch>> watches = new ConcurrentHashMap<Directory, List<DirectoryWatch>>();
+
+	/**
+	 * Variable referencing the executor delivering the events.
+	 */
+	private static final ExecutorService dispatcher = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "directory-watch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * This class can only be instantiated by itself.
+	 */
+	private WatchService() {
+	}
+
+	/**
+	 * Register a new watch of the given directory for the given listener.
+	 *
+	 * @param	directory
+	 * 			The directory to watch.
+	 * @param	listener
+	 * 			The listener to deliver the changes to.
+	 * @param	subtree
+	 * 			Whether changes in all directories directly or indirectly in the given
+	 * 			directory are delivered as well.
+	 * @param	capacity
+	 * 			The capacity of the buffer of the new watch.
+	 * @return	| result.getDirectory() == directory && result.getListener() == listener &&
+	 * 			| result.isSubtree() == subtree && result.getCapacity() == capacity
+	 * @throws	IllegalArgumentException
+	 * 			| directory == null || listener == null || capacity < 1
+	 * @throws	IllegalStateException
+	 * 			| directory.isTerminated()
+	 */
+	static DirectoryWatch register(Directory directory, WatchListener listener, boolean subtree, int capacity)
+			throws IllegalArgumentException, IllegalStateException {
+		if (directory == null || listener == null || capacity < 1)
+			throw new IllegalArgumentException();
+		if (directory.isTerminated())
+			throw new IllegalStateException("Directory is terminated!");
+		synchronized (WatchService.class) {
+			if (instance == null) {
+				instance = new WatchService();
+				Item.addMutationListener(instance);
+			}
+		}
+		DirectoryWatch watch = new DirectoryWatch(directory, listener, subtree, capacity);
+		watches.computeIfAbsent(directory, key -> new CopyOnWriteArrayList<DirectoryWatch>()).add(watch);
+		return watch;
+	}
+
+	/**
+	 * Unregister the given watch.
+	 */
+	static void unregister(DirectoryWatch watch) {
+		watches.computeIfPresent(watch.getDirectory(), (directory, list) -> {
+			list.remove(watch);
+			return list.isEmpty() ? null : list;
+		});
+	}
+
+	/**
+	 * Deliver the waiting events of the given watch by a dispatching thread.
+	 */
+	static void dispatch(DirectoryWatch watch) {
+		dispatcher.execute(watch::deliver);
+	}
+
+	/**
+	 * Post the given event to the watches of the given parent directories.
+	 */
+	private static void post(WatchEvent event, Directory... parents) {
+		if (watches.isEmpty())
+			return;
+		Set<DirectoryWatch> posted = null;
+		for (Directory parent : parents) {
+			if (parent == null)
+				continue;
+			boolean direct = true;
+			for (Directory directory = parent; directory != null; directory = directory.getParentDirectory()) {
+				List<DirectoryWatch> list = watches.get(directory);
+				if (list != null) {
+					for (DirectoryWatch watch : list) {
+						if (!direct && !watch.isSubtree())
+							continue;
+						if (parents.length > 1) {
+							if (posted == null)
+								posted = Collections.newSetFromMap(new IdentityHashMap<DirectoryWatch, Boolean>());
+							if (!posted.add(watch))
+								continue;
+						}
+						watch.post(event);
+					}
+				}
+				direct = false;
+			}
+		}
+	}
+
+	@Override
+	public void itemCreated(Item item) {
+		Directory parent = item.getParentDirectory();
+		post(new WatchEvent(WatchEvent.Kind.CREATED, item, null, item.getName(), null, parent, 0,
+				Versions.getCurrentVersion()), parent);
+	}
+
+	@Override
+	public void directoryCopied(Directory copy) {
+		itemCreated(copy);
+	}
+
+	@Override
+	public void nameChanged(Item item, String oldName) {
+		Directory parent = item.getParentDirectory();
+		post(new WatchEvent(WatchEvent.Kind.RENAMED, item, oldName, item.getName(), parent, parent, 0,
+				Versions.getCurrentVersion()), parent);
+	}
+
+	@Override
+	public void itemMoved(Item item, Directory oldParent) {
+		Directory parent = item.getParentDirectory();
+		post(new WatchEvent(WatchEvent.Kind.MOVED, item, item.getName(), item.getName(), oldParent, parent, 0,
+				Versions.getCurrentVersion()), oldParent, parent);
+	}
+
+	@Override
+	public void madeRoot(Directory directory, Directory oldParent) {
+		post(new WatchEvent(WatchEvent.Kind.MOVED, directory, directory.getName(), directory.getName(), oldParent,
+				null, 0, Versions.getCurrentVersion()), oldParent);
+	}
+
+	@Override
+	public void itemTerminated(Item item, Directory oldParent) {
+		if (item instanceof Directory) {
+			List<DirectoryWatch> list = watches.get(item);
+			if (list != null)
+				for (DirectoryWatch watch : list)
+					watch.cancel();
+		}
+		post(new WatchEvent(WatchEvent.Kind.TERMINATED, item, item.getName(), null, oldParent, null, 0,
+				Versions.getCurrentVersion()), oldParent);
+	}
+
+	@Override
+	public void writabilityChanged(DiskItem item) {
+		Directory parent = item.getParentDirectory();
+		post(new WatchEvent(WatchEvent.Kind.WRITABILITY_CHANGED, item, item.getName(), item.getName(), parent,
+				parent, 0, Versions.getCurrentVersion()), parent);
+	}
+
+	@Override
+	public void sizeChanged(File file, int delta) {
+		Directory parent = file.getParentDirectory();
+		post(new WatchEvent(WatchEvent.Kind.RESIZED, file, file.getName(), file.getName(), parent, parent, delta,
+				Versions.getCurrentVersion()), parent);
+	}
+
+}
@@ -0,0 +1,48 @@
+package filesystem.exception;
+
+import be.kuleuven.cs.som.annotate.Basic;
+
+/**
+ * A class of settings shared by the exceptions of the file system.
+ *
+ * Filling in the stack trace of an exception takes far more time than creating it.
+ * Programs that use these exceptions for control flow, like bulk importers that
+ * expect many of their changes to be refused, can turn stack traces off. The
+ * exceptions created afterwards then have an empty stack trace.
+ *
+ * @author 	Lotte en Linde
+ * @version	1.0
+ */
+public final class ExceptionSettings {
+
+	/**
+	 * Prevent the creation of settings objects.
+	 */
+	private ExceptionSettings() {
+	}
+
+	/**
+	 * Variable registering whether new exceptions of the file system fill in their stack trace.
+	 */
+	private static volatile boolean stackTracesEnabled = true;
+
+	/**
+	 * Check whether new exceptions of the file system fill in their stack trace.
+	 */
+	@Basic
+	public static boolean areStackTracesEnabled() {
+		return stackTracesEnabled;
+	}
+
+	/**
+	 * Set whether new exceptions of the file system fill in their stack trace.
+	 *
+	 * @param	enabled
+	 * 			Whether stack traces must be filled in.
+	 * @post	| areStackTracesEnabled() == enabled
+	 */
+	public static void setStackTracesEnabled(boolean enabled) {
+		stackTracesEnabled = enabled;
+	}
+
+}
@@ -23,6 +23,7 @@ public class ItemCannotBeRootException extends RuntimeException {
 	 */
 	@Raw
 	public ItemCannotBeRootException(Item item) {
+		super(null, null, true, ExceptionSettings.areStackTracesEnabled());
 		this.item = item;
 	}
 	
@@ -34,6 +34,7 @@ public class ItemNotWritableException extends RuntimeException {
 	 */
 	@Raw
 	public ItemNotWritableException(Item item) {
+		super(null, null, true, ExceptionSettings.areStackTracesEnabled());
 		this.item = item;
 	}
 	
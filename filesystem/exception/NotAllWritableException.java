@@ -1,8 +1,11 @@
 package filesystem.exception;
 
+import java.util.List;
+
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Raw;
 import filesystem.Directory;
+import filesystem.Item;
 
 public class NotAllWritableException extends RuntimeException {
 
@@ -24,6 +27,7 @@ public class NotAllWritableException extends RuntimeException {
 	 */
 	@Raw
 	public NotAllWritableException(Directory dir) {
+		super(null, null, true, ExceptionSettings.areStackTracesEnabled());
 		this.dir = dir;
 	}
 	
@@ -34,5 +38,17 @@ public class NotAllWritableException extends RuntimeException {
 	public Directory getDir() {
 		return dir;
 	}
+
+	/**
+	 * Return the files and directories in the directory involved in this not all
+	 * writable exception that are not writable.
+	 * 
+	 * @return	| result.equals(getDir().getNotWritableDescendants())
+	 * @note	The items are looked up when this method is invoked, not when this
+	 * 			exception is thrown.
+	 */
+	public List<Item> getNotWritableItems() {
+		return dir.getNotWritableDescendants();
+	}
 	
 }
@@ -0,0 +1,47 @@
+package filesystem.exception;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+import filesystem.Directory;
+
+/**
+ * A class for signaling illegal attempts to change a file system
+ * due to the quotas of a directory.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 3094775372913360210L;
+
+	/**
+	 * Variable referencing the directory of which a quota would be exceeded.
+	 */
+	private final Directory directory;
+
+	/**
+	 * Initialize this new quota exceeded exception involving the
+	 * given directory.
+	 *
+	 * @param	directory
+	 * 			The directory for the new quota exceeded exception.
+	 * @post	The directory involved in the new quota exceeded exception
+	 * 			is set to the given directory.
+	 * 			| new.getDirectory() == directory
+	 */
+	@Raw
+	public QuotaExceededException(Directory directory) {
+		super(null, null, true, ExceptionSettings.areStackTracesEnabled());
+		this.directory = directory;
+	}
+
+	/**
+	 * Return the directory involved in this quota exceeded exception.
+	 */
+	@Raw @Basic
+	public Directory getDirectory() {
+		return directory;
+	}
+
+}
@@ -0,0 +1,46 @@
+package filesystem.exception;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+import filesystem.Directory;
+
+/**
+ * A class for signaling that a transaction could not be committed, because
+ * a directory it depends on was changed after the transaction read it.
+ */
+public class TransactionConflictException extends RuntimeException {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -2837406471958372114L;
+
+	/**
+	 * Variable referencing the directory that was changed.
+	 */
+	private final Directory directory;
+
+	/**
+	 * Initialize this new transaction conflict exception involving the
+	 * given directory.
+	 *
+	 * @param	directory
+	 * 			The directory for the new transaction conflict exception.
+	 * @post	The directory involved in the new transaction conflict exception
+	 * 			is set to the given directory.
+	 * 			| new.getDirectory() == directory
+	 */
+	@Raw
+	public TransactionConflictException(Directory directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Return the directory involved in this transaction conflict exception.
+	 */
+	@Raw @Basic
+	public Directory getDirectory() {
+		return directory;
+	}
+
+}
@@ -23,6 +23,7 @@ public class UnvalidLinkException extends RuntimeException {
 	 */
 	@Raw
 	public UnvalidLinkException(Link link) {
+		super(null, null, true, ExceptionSettings.areStackTracesEnabled());
 		this.link = link;
 	}
 	